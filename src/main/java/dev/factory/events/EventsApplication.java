@@ -2,10 +2,12 @@ package dev.factory.events;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 import java.util.TimeZone;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class EventsApplication {
 
 	public static void main(String[] args) {
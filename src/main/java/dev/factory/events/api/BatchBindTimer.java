@@ -0,0 +1,54 @@
+package dev.factory.events.api;
+
+import dev.factory.events.api.dto.EventBatchRequest;
+import dev.factory.events.util.IngestMetrics;
+import dev.factory.events.util.IngestMetrics.Stage;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
+
+import java.lang.reflect.Type;
+
+/**
+ * Times the conversion of a batch request body into {@link EventBatchRequest}, which
+ * includes reading the body off the connection.
+ */
+@ControllerAdvice
+public class BatchBindTimer extends RequestBodyAdviceAdapter {
+
+    private static final String STARTED = BatchBindTimer.class.getName() + ".started";
+
+    private final IngestMetrics metrics;
+
+    public BatchBindTimer(IngestMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean supports(MethodParameter parameter, Type targetType,
+                            Class<? extends HttpMessageConverter<?>> converterType) {
+        return targetType == EventBatchRequest.class;
+    }
+
+    @Override
+    public HttpInputMessage beforeBodyRead(HttpInputMessage input, MethodParameter parameter, Type targetType,
+                                           Class<? extends HttpMessageConverter<?>> converterType) {
+        RequestContextHolder.currentRequestAttributes()
+                .setAttribute(STARTED, System.nanoTime(), RequestAttributes.SCOPE_REQUEST);
+        return input;
+    }
+
+    @Override
+    public Object afterBodyRead(Object body, HttpInputMessage input, MethodParameter parameter, Type targetType,
+                                Class<? extends HttpMessageConverter<?>> converterType) {
+        if (RequestContextHolder.currentRequestAttributes()
+                .getAttribute(STARTED, RequestAttributes.SCOPE_REQUEST) instanceof Long started) {
+            metrics.record(Stage.BIND, System.nanoTime() - started);
+        }
+        return body;
+    }
+}
@@ -0,0 +1,126 @@
+package dev.factory.events.api;
+
+import dev.factory.events.api.dto.EventBatchRequest;
+import dev.factory.events.api.dto.EventIngestRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.Errors;
+import org.springframework.validation.Validator;
+
+import java.util.List;
+
+/**
+ * Checks an {@link EventBatchRequest} against the constraints declared on it and on
+ * {@link EventIngestRequest}, without Bean Validation.
+ * <p>
+ * Each event is checked with plain field reads and character loops: no reflection, no
+ * regex, and nothing allocated unless a constraint fails. Failures are reported under
+ * the same field paths, codes and default messages Hibernate Validator produces, so
+ * {@code FormatErrorHandler} answers with the same {@code VALIDATION_ERROR} details.
+ * Messages are the default English ones; Bean Validation would localize them to the
+ * request's locale.
+ * <p>
+ * The two must be kept in step: a constraint added to the request classes has to be
+ * added here as well.
+ */
+@Component
+public class EventBatchValidator implements Validator {
+
+    static final int MAX_ID_LENGTH = 64;
+
+    private static final String NOT_BLANK = "must not be blank";
+    private static final String NOT_NULL = "must not be null";
+    private static final String SIZE = "size must be between 0 and " + MAX_ID_LENGTH;
+
+    @Override
+    public boolean supports(Class<?> clazz) {
+        return EventBatchRequest.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public void validate(Object target, Errors errors) {
+        List<EventIngestRequest> events = ((EventBatchRequest) target).getEvents();
+        if (events == null || events.isEmpty()) {
+            errors.rejectValue("events", "NotEmpty", "must not be empty");
+            return;
+        }
+        for (int i = 0; i < events.size(); i++) {
+            EventIngestRequest event = events.get(i);
+            // @Valid does not cascade into null elements
+            if (event != null) {
+                validate(event, i, errors);
+            }
+        }
+    }
+
+    /**
+     * Whether a single event meets the constraints, for callers that reject invalid
+     * events one by one instead of failing the request.
+     */
+    public boolean isValid(EventIngestRequest event) {
+        return validate(event, 0, null);
+    }
+
+    // errors may be null when only the outcome is wanted
+    private static boolean validate(EventIngestRequest e, int index, Errors errors) {
+        boolean valid = checkId(e.getEventId(), 'E', "EventId must be in format E-<digits>", index, "eventId", errors);
+        if (e.getEventTime() == null) {
+            valid = reject(errors, index, "eventTime", "NotNull", NOT_NULL);
+        }
+        if (e.getReceivedTime() == null) {
+            valid = reject(errors, index, "receivedTime", "NotNull", NOT_NULL);
+        }
+        valid &= checkId(e.getMachineId(), (char) 0, null, index, "machineId", errors);
+        valid &= checkId(e.getFactoryId(), 'F', "FactoryId must be in format F-<digits>", index, "factoryId", errors);
+        valid &= checkId(e.getLineId(), 'L', "LineId must be in format L-<digits>", index, "lineId", errors);
+        if (e.getDurationMs() < 0) {
+            valid = reject(errors, index, "durationMs", "Min", "must be greater than or equal to 0");
+        }
+        if (e.getDefectCount() < -1) {
+            valid = reject(errors, index, "defectCount", "Min", "must be greater than or equal to -1");
+        }
+        return valid;
+    }
+
+    // @NotBlank @Size(max = 64), plus @Pattern("^<prefix>-\d+$") when formatMessage is set
+    private static boolean checkId(String value, char prefix, String formatMessage,
+                                   int index, String field, Errors errors) {
+        boolean valid = true;
+        // NotBlankValidator: null or String.isBlank()
+        if (value == null || value.isBlank()) {
+            valid = reject(errors, index, field, "NotBlank", NOT_BLANK);
+        }
+        if (value == null) {
+            return valid;
+        }
+        if (value.length() > MAX_ID_LENGTH) {
+            valid = reject(errors, index, field, "Size", SIZE);
+        }
+        if (formatMessage != null && !hasFormat(value, prefix)) {
+            valid = reject(errors, index, field, "Pattern", formatMessage);
+        }
+        return valid;
+    }
+
+    // the whole value matches ^<prefix>-\d+$, where \d is [0-9]
+    static boolean hasFormat(String value, char prefix) {
+        int length = value.length();
+        if (length < 3 || value.charAt(0) != prefix || value.charAt(1) != '-') {
+            return false;
+        }
+        for (int i = 2; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // always false, so a check can record its failure with valid = reject(...)
+    private static boolean reject(Errors errors, int index, String field, String code, String message) {
+        if (errors != null) {
+            errors.rejectValue("events[" + index + "]." + field, code, message);
+        }
+        return false;
+    }
+}
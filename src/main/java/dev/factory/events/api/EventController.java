@@ -1,18 +1,51 @@
 package dev.factory.events.api;
 
+import dev.factory.events.api.dto.BucketWidth;
+import dev.factory.events.api.dto.BulkStatsRequest;
+import dev.factory.events.api.dto.BulkStatsResponse;
+import dev.factory.events.api.dto.DefectHistogramResponse;
+import dev.factory.events.api.dto.EventBatchQueuedResponse;
 import dev.factory.events.api.dto.EventBatchRequest;
 import dev.factory.events.api.dto.EventBatchResponse;
+import dev.factory.events.api.dto.ExportFormat;
 import dev.factory.events.api.dto.MachineStatsResponse;
 import dev.factory.events.api.dto.TopDefectLinesResponse;
+import dev.factory.events.config.IngestionProperties;
+import dev.factory.events.config.StatsProperties;
+import dev.factory.events.service.DefectHistogramService;
+import dev.factory.events.service.EventExportService;
 import dev.factory.events.service.EventIngestionService;
 import dev.factory.events.service.LineStatsService;
+import dev.factory.events.service.LiveStatsService;
 import dev.factory.events.service.MachineStatsService;
-import jakarta.validation.Valid;
+import dev.factory.events.service.StreamingIngestionService;
+import dev.factory.events.service.WalIngestionService;
+import dev.factory.events.util.IngestMetrics;
+import dev.factory.events.util.IngestMetrics.Stage;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.validation.Errors;
+import org.springframework.validation.SmartValidator;
+import org.springframework.validation.Validator;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 
 @Validated
 @RestController
@@ -28,14 +61,63 @@ public class EventController {
     @Autowired
     LineStatsService lineStatsService;
 
+    @Autowired
+    DefectHistogramService defectHistogramService;
+
+    @Autowired
+    EventExportService eventExportService;
+
+    @Autowired
+    LiveStatsService liveStatsService;
+
+    @Autowired
+    StreamingIngestionService streamingIngestionService;
+
+    // only present when events.ingestion.wal.enabled=true
+    @Autowired(required = false)
+    WalIngestionService walIngestionService;
+
+    @Autowired
+    IngestionProperties ingestionProperties;
+
+    @Autowired
+    StatsProperties statsProperties;
+
+    @Autowired
+    EventBatchValidator eventBatchValidator;
+
+    @Autowired
+    IngestMetrics ingestMetrics;
+
+    @InitBinder("eventBatchRequest")
+    void initBatchBinder(WebDataBinder binder) {
+        Validator validator = ingestionProperties.getValidation() == IngestionProperties.Validation.COMPILED
+                ? eventBatchValidator
+                : binder.getValidator();
+        if (validator != null) {
+            binder.setValidator(new TimedValidator(validator, ingestMetrics));
+        }
+    }
+
+    // @Validated rather than @Valid: the body is validated once, while binding; @Valid
+    // would have the method validation of this @Validated class check it a second time
     @PostMapping("batch")
-    public EventBatchResponse batchIngestEvents(@Valid @RequestBody EventBatchRequest req){
-        long start = System.currentTimeMillis();
-        EventBatchResponse response = eventIngestionService.ingest(req);
-        long end = System.currentTimeMillis();
-        System.out.println("Ingested " + req.getEvents().size() + " events in " + (end - start) + " ms");
+    public EventBatchResponse batchIngestEvents(@Validated @RequestBody EventBatchRequest req){
+        return eventIngestionService.ingest(req);
+    }
 
-        return response;
+    @PostMapping("batch/async")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public EventBatchQueuedResponse asyncIngestEvents(@Validated @RequestBody EventBatchRequest req){
+        if (walIngestionService == null) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Write-ahead log ingestion is disabled");
+        }
+        return walIngestionService.ingest(req);
+    }
+
+    @PostMapping(value = "stream", consumes = "application/x-ndjson")
+    public EventBatchResponse streamIngestEvents(InputStream body) throws IOException {
+        return streamingIngestionService.ingest(body);
     }
 
     @GetMapping("stats")
@@ -48,4 +130,101 @@ public class EventController {
         return lineStatsService.getTopDefectLines(factoryId,start,end,limit);
     }
 
+    // either machineId, or factoryId and lineId
+    @GetMapping("stats/histogram")
+    public DefectHistogramResponse getDefectHistogram(@RequestParam(required = false) String machineId,
+                                                      @RequestParam(required = false) String factoryId,
+                                                      @RequestParam(required = false) String lineId,
+                                                      @RequestParam Instant start, @RequestParam Instant end,
+                                                      @RequestParam BucketWidth bucket){
+        if (!start.isBefore(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "start must be before end");
+        }
+        int maxBuckets = statsProperties.getHistogram().getMaxBuckets();
+        if (bucket.count(start, end) > maxBuckets) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Window spans more than " + maxBuckets + " buckets; use a wider bucket");
+        }
+        if (machineId != null && factoryId == null && lineId == null) {
+            return defectHistogramService.getMachineHistogram(machineId, start, end, bucket);
+        }
+        if (machineId == null && factoryId != null && lineId != null) {
+            return defectHistogramService.getLineHistogram(factoryId, lineId, start, end, bucket);
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Either machineId, or factoryId and lineId, is required");
+    }
+
+    // written to the response as rows are read; a failure after the first bytes can only
+    // cut the response short
+    @GetMapping("export")
+    public void exportEvents(@RequestParam(required = false) String factoryId,
+                             @RequestParam(required = false) String machineId,
+                             @RequestParam Instant start, @RequestParam Instant end,
+                             @RequestParam(defaultValue = "NDJSON") ExportFormat format,
+                             HttpServletResponse response) throws IOException {
+        if (!start.isBefore(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "start must be before end");
+        }
+        response.setContentType(format.contentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("events." + format.extension())
+                .build()
+                .toString());
+        eventExportService.export(format, factoryId, machineId, start, end, response.getOutputStream());
+    }
+
+    // a POST so that hundreds of ids fit; it reads only
+    @PostMapping("stats/bulk")
+    public BulkStatsResponse getBulkStats(@Validated @RequestBody BulkStatsRequest req){
+        return new BulkStatsResponse(
+                machineStatsService.getStatsForMachines(req.getMachineIds(), req.getStart(), req.getEnd()),
+                lineStatsService.getTopDefectLinesForFactories(req.getFactoryIds(), req.getStart(), req.getEnd(), req.getLimit()));
+    }
+
+    // a snapshot of every machine and factory first, then those that ingestion touches
+    @GetMapping(value = "stats/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeLiveStats(@RequestParam(name = "machineId", required = false) @Size(max = 1000) List<@NotBlank String> machineIds,
+                                         @RequestParam(name = "factoryId", required = false) @Size(max = 1000) List<@NotBlank String> factoryIds,
+                                         @RequestParam(defaultValue = "PT1H") Duration window,
+                                         @RequestParam(defaultValue = "5") @PositiveOrZero int limit){
+        machineIds = machineIds == null ? List.of() : machineIds;
+        factoryIds = factoryIds == null ? List.of() : factoryIds;
+        if (machineIds.isEmpty() && factoryIds.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At least one machineId or factoryId is required");
+        }
+        // the defect rate is per hour of the window
+        if (window.compareTo(Duration.ofHours(1)) < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "window must be at least PT1H");
+        }
+        SseEmitter emitter = new SseEmitter(statsProperties.getLive().getTimeout().toMillis());
+        if (!liveStatsService.subscribe(emitter, machineIds, factoryIds, window, limit)) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many live stats subscriptions");
+        }
+        return emitter;
+    }
+
+    // records the binder's validation of a batch as the VALIDATE stage
+    private record TimedValidator(Validator delegate, IngestMetrics metrics) implements SmartValidator {
+
+        @Override
+        public boolean supports(Class<?> clazz) {
+            return delegate.supports(clazz);
+        }
+
+        @Override
+        public void validate(Object target, Errors errors) {
+            metrics.time(Stage.VALIDATE, () -> delegate.validate(target, errors));
+        }
+
+        @Override
+        public void validate(Object target, Errors errors, Object... validationHints) {
+            if (delegate instanceof SmartValidator smart) {
+                metrics.time(Stage.VALIDATE, () -> smart.validate(target, errors, validationHints));
+            } else {
+                validate(target, errors);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,286 @@
+package dev.factory.events.api;
+
+import com.google.protobuf.Timestamp;
+import dev.factory.events.api.dto.EventBatchRequest;
+import dev.factory.events.api.dto.EventBatchResponse;
+import dev.factory.events.api.dto.EventIngestRequest;
+import dev.factory.events.api.dto.EventRejection;
+import dev.factory.events.api.dto.RejectionReason;
+import dev.factory.events.api.grpc.Event;
+import dev.factory.events.api.grpc.EventIngestionGrpc;
+import dev.factory.events.api.grpc.IngestEventsAck;
+import dev.factory.events.api.grpc.IngestEventsRequest;
+import dev.factory.events.api.grpc.Rejection;
+import dev.factory.events.config.IngestionProperties;
+import dev.factory.events.service.EventIngestionService;
+import dev.factory.events.util.IngestMetrics;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.grpc.server.service.GrpcService;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The EventIngestion gRPC service, for producers that keep a stream open and send
+ * events as they happen.
+ * <p>
+ * Events go through the same pipeline as POST /events/stream: each is checked as
+ * {@code events.ingestion.validation} selects, an invalid one is rejected as
+ * MALFORMED_REQUEST instead of failing the stream, and the rest reach
+ * {@link EventIngestionService} in chunks of {@code chunkSize}. Every committed chunk is
+ * acknowledged with the running totals of the stream. A chunk that has not filled up
+ * within {@code maxDelay} is flushed as it is, so slow producers are acknowledged too.
+ * <p>
+ * A full chunk is ingested on the thread delivering the message that filled it, and gRPC
+ * asks the client for the next message only once that returns: a client sending faster
+ * than the database commits is held back by HTTP/2 flow control rather than buffered.
+ */
+@GrpcService
+public class EventIngestionGrpcService extends EventIngestionGrpc.EventIngestionImplBase {
+
+    private static final Logger log = LoggerFactory.getLogger(EventIngestionGrpcService.class);
+
+    private final EventIngestionService ingestionService;
+    private final Validator validator;
+    private final EventBatchValidator eventBatchValidator;
+    private final IngestionProperties.Validation validation;
+    private final IngestionProperties.Grpc config;
+    private final IngestMetrics metrics;
+    private final ScheduledExecutorService delayedFlushes =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("grpc-delayed-flush").daemon().factory());
+
+    public EventIngestionGrpcService(EventIngestionService ingestionService, Validator validator,
+                                     EventBatchValidator eventBatchValidator, IngestionProperties props,
+                                     IngestMetrics metrics) {
+        this.ingestionService = ingestionService;
+        this.validator = validator;
+        this.eventBatchValidator = eventBatchValidator;
+        this.validation = props.getValidation();
+        this.config = props.getGrpc();
+        this.metrics = metrics;
+    }
+
+    @PreDestroy
+    void stop() {
+        delayedFlushes.shutdownNow();
+    }
+
+    @Override
+    public StreamObserver<IngestEventsRequest> ingestEvents(StreamObserver<IngestEventsAck> acks) {
+        if (acks instanceof ServerCallStreamObserver<IngestEventsAck> call) {
+            // acknowledgements to a cancelled call are dropped instead of thrown
+            call.setOnCancelHandler(() -> {});
+        }
+        return new IngestStream(acks);
+    }
+
+    /**
+     * @return the event as the JSON endpoints would have bound it, or null if its
+     * timestamps are outside the range of an {@link Instant}
+     */
+    static EventIngestRequest toRequest(Event event) {
+        EventIngestRequest request = new EventIngestRequest();
+        try {
+            request.setEventTime(event.hasEventTime() ? toInstant(event.getEventTime()) : null);
+            request.setReceivedTime(event.hasReceivedTime() ? toInstant(event.getReceivedTime()) : null);
+        } catch (DateTimeException e) {
+            return null;
+        }
+        request.setEventId(event.getEventId());
+        request.setMachineId(event.getMachineId());
+        request.setFactoryId(event.getFactoryId());
+        request.setLineId(event.getLineId());
+        request.setDurationMs(event.getDurationMs());
+        request.setDefectCount(event.getDefectCount());
+        return request;
+    }
+
+    private static Instant toInstant(Timestamp t) {
+        return Instant.ofEpochSecond(t.getSeconds(), t.getNanos());
+    }
+
+    private boolean isValid(EventIngestRequest event) {
+        return validation == IngestionProperties.Validation.COMPILED
+                ? eventBatchValidator.isValid(event)
+                : validator.validate(event).isEmpty();
+    }
+
+    /**
+     * One call. gRPC delivers its messages one at a time, but a delayed flush runs on
+     * its own thread, so everything is done under the lock.
+     */
+    private final class IngestStream implements StreamObserver<IngestEventsRequest> {
+
+        private final StreamObserver<IngestEventsAck> acks;
+        private final ReentrantLock lock = new ReentrantLock();
+        private List<EventIngestRequest> chunk = new ArrayList<>(config.getChunkSize());
+        // rejections to list in the next acknowledgement
+        private final List<Rejection> rejections = new ArrayList<>();
+        private int listedRejections;
+        private long accepted;
+        private long deduped;
+        private long updated;
+        private long rejected;
+        // events received since the last acknowledgement
+        private int unacknowledged;
+        // counts acknowledgements, so a delayed flush can tell it has been overtaken
+        private long acknowledged;
+        private ScheduledFuture<?> delayedFlush;
+        private boolean closed;
+
+        IngestStream(StreamObserver<IngestEventsAck> acks) {
+            this.acks = acks;
+        }
+
+        @Override
+        public void onNext(IngestEventsRequest message) {
+            lock.lock();
+            try {
+                for (Event event : message.getEventsList()) {
+                    if (closed) {
+                        return;
+                    }
+                    if (unacknowledged++ == 0) {
+                        scheduleFlush();
+                    }
+                    EventIngestRequest request = toRequest(event);
+                    if (request == null || !isValid(request)) {
+                        reject(event.getEventId(), RejectionReason.MALFORMED_REQUEST);
+                        metrics.rejected(RejectionReason.MALFORMED_REQUEST);
+                        continue;
+                    }
+                    chunk.add(request);
+                    if (chunk.size() >= config.getChunkSize()) {
+                        flush(false);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            lock.lock();
+            try {
+                // the client went away; what it was not acknowledged for is not ingested
+                log.debug("IngestEvents stream failed with {} events unacknowledged", unacknowledged, t);
+                close();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+            lock.lock();
+            try {
+                if (!closed) {
+                    flush(true);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void scheduleFlush() {
+            long after = acknowledged;
+            delayedFlush = delayedFlushes.schedule(
+                    // off the scheduler thread, which must not wait for the database
+                    () -> Thread.ofVirtual().name("grpc-delayed-flush").start(() -> flushIfStill(after)),
+                    config.getMaxDelay().toNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        private void flushIfStill(long after) {
+            lock.lock();
+            try {
+                if (!closed && acknowledged == after) {
+                    flush(false);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // ingests the chunk and acknowledges it; the final acknowledgement completes the call
+        private void flush(boolean last) {
+            if (delayedFlush != null) {
+                delayedFlush.cancel(false);
+                delayedFlush = null;
+            }
+            if (!chunk.isEmpty()) {
+                EventBatchResponse response;
+                try {
+                    response = ingestionService.ingest(new EventBatchRequest(chunk));
+                } catch (RuntimeException e) {
+                    log.error("IngestEvents failed to ingest a chunk of {} events", chunk.size(), e);
+                    close();
+                    acks.onError(Status.INTERNAL.withDescription("ingestion failed").asRuntimeException());
+                    return;
+                }
+                chunk = new ArrayList<>(config.getChunkSize());
+                add(response);
+            }
+
+            acks.onNext(IngestEventsAck.newBuilder()
+                    .setAccepted(accepted)
+                    .setDeduped(deduped)
+                    .setUpdated(updated)
+                    .setRejected(rejected)
+                    .addAllRejections(rejections)
+                    .setFinal(last)
+                    .build());
+            rejections.clear();
+            unacknowledged = 0;
+            acknowledged++;
+            if (last) {
+                close();
+                acks.onCompleted();
+            }
+        }
+
+        private void add(EventBatchResponse response) {
+            accepted += response.getAccepted();
+            deduped += response.getDeduped();
+            updated += response.getUpdated();
+            rejected += response.getRejected() - response.getRejections().size();
+            for (EventRejection r : response.getRejections()) {
+                reject(r.getEventId(), r.getReason());
+            }
+        }
+
+        private void reject(String eventId, RejectionReason reason) {
+            rejected++;
+            if (listedRejections < config.getMaxRejections()) {
+                listedRejections++;
+                rejections.add(Rejection.newBuilder()
+                        .setEventId(Objects.requireNonNullElse(eventId, ""))
+                        .setReason(dev.factory.events.api.grpc.RejectionReason.valueOf(reason.name()))
+                        .build());
+            }
+        }
+
+        private void close() {
+            closed = true;
+            chunk = List.of();
+            if (delayedFlush != null) {
+                delayedFlush.cancel(false);
+                delayedFlush = null;
+            }
+        }
+    }
+}
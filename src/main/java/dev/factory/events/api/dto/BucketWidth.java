@@ -0,0 +1,44 @@
+package dev.factory.events.api.dto;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Width of the buckets of a defect histogram. Buckets are aligned to UTC: an HOUR bucket
+ * starts on the hour, a DAY bucket at midnight UTC.
+ */
+public enum BucketWidth {
+
+    MINUTE(Duration.ofMinutes(1)),
+    HOUR(Duration.ofHours(1)),
+    DAY(Duration.ofDays(1));
+
+    private final Duration duration;
+
+    BucketWidth(Duration duration) {
+        this.duration = duration;
+    }
+
+    public Duration duration() {
+        return duration;
+    }
+
+    /**
+     * Start of the bucket holding {@code t}.
+     */
+    public Instant floor(Instant t) {
+        long seconds = duration.toSeconds();
+        return Instant.ofEpochSecond(Math.floorDiv(t.getEpochSecond(), seconds) * seconds);
+    }
+
+    /**
+     * Buckets that overlap [start, end); 0 if the window is empty.
+     */
+    public long count(Instant start, Instant end) {
+        if (!start.isBefore(end)) {
+            return 0;
+        }
+        Instant last = floor(end.minusNanos(1));
+        return Duration.between(floor(start), last).toSeconds() / duration.toSeconds() + 1;
+    }
+}
@@ -0,0 +1,35 @@
+package dev.factory.events.api.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Stats of many machines and top defect lines of many factories over one window.
+ */
+@Data
+public class BulkStatsRequest {
+
+    @NotNull
+    private Instant start;
+
+    @NotNull
+    private Instant end;
+
+    @NotNull
+    @Size(max = 1000)
+    private List<@NotBlank String> machineIds = List.of();
+
+    @NotNull
+    @Size(max = 1000)
+    private List<@NotBlank String> factoryIds = List.of();
+
+    // lines per factory
+    @PositiveOrZero
+    private int limit;
+}
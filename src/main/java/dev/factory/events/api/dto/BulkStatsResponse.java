@@ -0,0 +1,16 @@
+package dev.factory.events.api.dto;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.Map;
+
+@Value
+public class BulkStatsResponse {
+
+    // in the order requested
+    List<MachineStatsResponse> machines;
+
+    // by factoryId, in the order requested
+    Map<String, TopDefectLinesResponse> topDefectLines;
+}
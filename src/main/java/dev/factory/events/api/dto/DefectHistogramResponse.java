@@ -0,0 +1,30 @@
+package dev.factory.events.api.dto;
+
+import lombok.Data;
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+public class DefectHistogramResponse {
+
+    // machineId, or factoryId and lineId
+    String machineId;
+    String factoryId;
+    String lineId;
+
+    Instant start;
+    Instant end;
+    BucketWidth bucket;
+
+    // every bucket overlapping [start, end), oldest first, empty ones included
+    List<Bucket> buckets;
+
+    @Value
+    public static class Bucket {
+        Instant start;
+        long eventsCount;
+        long defectsCount;
+    }
+}
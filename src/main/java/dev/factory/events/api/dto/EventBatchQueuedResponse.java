@@ -0,0 +1,14 @@
+package dev.factory.events.api.dto;
+
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+public class EventBatchQueuedResponse {
+
+    int queued;
+    int rejected;
+
+    List<EventRejection> rejections;
+}
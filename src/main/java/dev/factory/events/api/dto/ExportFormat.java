@@ -0,0 +1,28 @@
+package dev.factory.events.api.dto;
+
+/**
+ * Formats of {@code GET /events/export}. Both write one event per line, with the fields of
+ * {@link EventIngestRequest}, so an NDJSON export can be sent back to
+ * {@code POST /events/stream} as it is.
+ */
+public enum ExportFormat {
+
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    public String extension() {
+        return extension;
+    }
+}
@@ -0,0 +1,29 @@
+package dev.factory.events.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "events.database")
+public class DatabaseProperties {
+
+    /**
+     * Admission to the connection pool while requests run on virtual threads.
+     */
+    private final ConnectionLimit connectionLimit = new ConnectionLimit();
+
+    @Data
+    public static class ConnectionLimit {
+
+        // connections handed out at once; 0 uses the pool's maximum-pool-size
+        private int maxConcurrent = 0;
+
+        // callers queued for a connection; beyond this a request fails at once with 503
+        private int maxWaiting = 5000;
+
+        // longest a caller waits in the queue before its request fails with 503
+        private Duration acquireTimeout = Duration.ofSeconds(10);
+    }
+}
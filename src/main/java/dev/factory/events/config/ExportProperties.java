@@ -0,0 +1,12 @@
+package dev.factory.events.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "events.export")
+public class ExportProperties {
+
+    // rows per round trip of the export cursor; memory is bounded by this, not the export
+    private int fetchSize = 10000;
+}
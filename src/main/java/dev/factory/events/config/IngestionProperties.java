@@ -0,0 +1,211 @@
+package dev.factory.events.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "events.ingestion")
+public class IngestionProperties {
+
+    /**
+     * How a batch is handed to PostgreSQL for classification and upsert.
+     */
+    private Upsert upsert = Upsert.TEMP_TABLE;
+
+    /**
+     * How rows are loaded into the tmp_events staging table before classification.
+     */
+    private StagingLoad stagingLoad = StagingLoad.BATCH_INSERT;
+
+    /**
+     * How the bodies of POST /events/batch and /events/batch/async, and the events of
+     * the IngestEvents gRPC stream, are validated.
+     */
+    private Validation validation = Validation.BEAN_VALIDATION;
+
+    /**
+     * Coalescing of concurrent small requests into one transaction.
+     */
+    private final GroupCommit groupCommit = new GroupCommit();
+
+    /**
+     * Splitting of large batches into sub-batches upserted concurrently on separate connections.
+     */
+    private final Sharding sharding = new Sharding();
+
+    /**
+     * Retries of upserts that lost a deadlock or a serialization conflict to a concurrent batch.
+     */
+    private final Retry retry = new Retry();
+
+    /**
+     * NDJSON streaming ingestion on POST /events/stream.
+     */
+    private final Stream stream = new Stream();
+
+    /**
+     * Streaming ingestion through the IngestEvents gRPC method.
+     */
+    private final Grpc grpc = new Grpc();
+
+    /**
+     * Local write-ahead log behind POST /events/batch/async.
+     */
+    private final Wal wal = new Wal();
+
+    /**
+     * In-process filter of persisted eventIds that lets definitely-new events skip classification.
+     */
+    private final BloomFilter bloomFilter = new BloomFilter();
+
+    /**
+     * Recently written payloads, used to answer retransmissions without the database.
+     */
+    private final PayloadCache payloadCache = new PayloadCache();
+
+    public enum Upsert {
+        // stage rows in an ON COMMIT DROP temp table, loaded according to stagingLoad
+        TEMP_TABLE,
+        // one array parameter per column, unnest()ed inside a single statement
+        ARRAYS
+    }
+
+    public enum StagingLoad {
+        // JDBC batched parameterized INSERTs, 1000 rows per batch
+        BATCH_INSERT,
+        // PostgreSQL COPY ... FROM STDIN (FORMAT BINARY) through CopyManager
+        BINARY_COPY
+    }
+
+    public enum Validation {
+        // Hibernate Validator on the constraint annotations of the request classes
+        BEAN_VALIDATION,
+        // EventBatchValidator, the same constraints checked by hand
+        COMPILED
+    }
+
+    public enum Atomicity {
+        // sub-batches by eventId hash, each committed on its own; a failed batch may be partly written
+        PER_SHARD,
+        // sub-batches by event hour, committed once all of them are written, or rolled back together
+        ALL_OR_NOTHING
+    }
+
+    @Data
+    public static class GroupCommit {
+
+        private boolean enabled = false;
+
+        // how long the first request of a group waits for others to join
+        private Duration window = Duration.ofMillis(5);
+
+        // a group is flushed once it holds this many events; larger requests are not grouped
+        private int maxEvents = 2000;
+
+        // longest a request waits to be picked up by a flush before it is ingested on its own
+        private Duration maxWait = Duration.ofMillis(50);
+
+        // longest a request waits for its group to commit, counted from when it was queued
+        private Duration timeout = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Sharding {
+
+        // sub-batches per large batch, partitioned by eventId hash; 1 writes every batch on one connection
+        private int shards = 1;
+
+        // smaller batches are not split
+        private int minEvents = 10_000;
+
+        // connections all sharded batches together may hold; keep it below the pool size
+        private int maxConnections = 8;
+
+        private Atomicity atomicity = Atomicity.PER_SHARD;
+
+        // ALL_OR_NOTHING: a longer lock wait rolls the sub-batches back and writes the batch on one connection
+        private Duration lockTimeout = Duration.ofSeconds(2);
+    }
+
+    @Data
+    public static class Retry {
+
+        // attempts per transaction, the first one included; 1 disables retries
+        private int maxAttempts = 4;
+
+        // upper bound of the random wait before the first retry, doubled for each further one
+        private Duration initialBackoff = Duration.ofMillis(10);
+
+        private Duration maxBackoff = Duration.ofMillis(200);
+    }
+
+    @Data
+    public static class Stream {
+
+        // events parsed before a chunk is validated, normalized and upserted
+        private int chunkSize = 1000;
+
+        // rejections listed in the response; further ones are only counted
+        private int maxRejections = 1000;
+
+        // longer lines are rejected without being buffered
+        private int maxLineLength = 16 * 1024;
+    }
+
+    @Data
+    public static class Grpc {
+
+        // events received before a chunk is upserted and acknowledged
+        private int chunkSize = 1000;
+
+        // a chunk still short of chunkSize is flushed once its first event has waited this long
+        private Duration maxDelay = Duration.ofMillis(200);
+
+        // rejections listed in the acknowledgements of a stream; further ones are only counted
+        private int maxRejections = 1000;
+    }
+
+    @Data
+    public static class Wal {
+
+        private boolean enabled = false;
+
+        private String directory = "data/wal";
+
+        // each segment is a memory-mapped file of this size
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        // events read from the log per upsert
+        private int drainBatchSize = 5000;
+
+        // pause between drain passes once the log is caught up, and after a failed upsert
+        private Duration drainInterval = Duration.ofMillis(200);
+    }
+
+    @Data
+    public static class BloomFilter {
+
+        private boolean enabled = false;
+
+        // the filter is sized for this many ids, and rebuilt larger once it holds more
+        private long expectedInsertions = 10_000_000;
+
+        // target probability that a new eventId is reported as possibly seen
+        private double falsePositiveRate = 0.01;
+
+        // rows per round trip while scanning event ids to (re)build the filter
+        private int warmupFetchSize = 10_000;
+    }
+
+    @Data
+    public static class PayloadCache {
+
+        private boolean enabled = false;
+
+        // least recently used eventIds are evicted beyond this
+        private int maxEntries = 1_000_000;
+    }
+}
@@ -0,0 +1,41 @@
+package dev.factory.events.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "events.partitions")
+public class PartitionProperties {
+
+    /**
+     * Time span of each new partition of events, aligned to UTC midnight (and Monday for weeks).
+     */
+    private Granularity granularity = Granularity.WEEKLY;
+
+    /**
+     * Partitions kept ready after the one holding the current time.
+     */
+    private int premake = 4;
+
+    /**
+     * Periods this far back get a partition too, so late events do not pile up in the default one.
+     */
+    private Duration history = Duration.ofDays(28);
+
+    /**
+     * Partitions that end longer ago than this are detached; unset keeps every partition.
+     */
+    private Duration retention;
+
+    /**
+     * Pause between maintenance passes.
+     */
+    private Duration maintenanceInterval = Duration.ofHours(1);
+
+    public enum Granularity {
+        DAILY,
+        WEEKLY
+    }
+}
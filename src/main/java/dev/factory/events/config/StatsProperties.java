@@ -0,0 +1,61 @@
+package dev.factory.events.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "events.stats")
+public class StatsProperties {
+
+    /**
+     * In-process minute counters that answer stats for recent windows without the database.
+     */
+    private final Recent recent = new Recent();
+
+    /**
+     * Per-bucket counts of {@code GET /events/stats/histogram}.
+     */
+    private final Histogram histogram = new Histogram();
+
+    /**
+     * Snapshots pushed to subscribers of {@code GET /events/stats/live}.
+     */
+    private final Live live = new Live();
+
+    @Data
+    public static class Recent {
+
+        private boolean enabled = false;
+
+        // windows starting at most this long ago are answered from memory
+        private Duration horizon = Duration.ofHours(24);
+
+        // rows per round trip while the counters are loaded from events at startup
+        private int warmupFetchSize = 10000;
+    }
+
+    @Data
+    public static class Histogram {
+
+        // a week of minutes
+        private int maxBuckets = 10080;
+    }
+
+    @Data
+    public static class Live {
+
+        // at most one push per subscription per interval; changes in between are coalesced
+        private Duration interval = Duration.ofSeconds(1);
+
+        // a comment is sent to idle subscriptions this often, which finds disconnected clients
+        private Duration heartbeat = Duration.ofSeconds(15);
+
+        // subscriptions are closed after this long; EventSource clients reconnect by themselves
+        private Duration timeout = Duration.ofMinutes(30);
+
+        // further subscriptions are refused with 503
+        private int maxSubscriptions = 10000;
+    }
+}
@@ -0,0 +1,71 @@
+package dev.factory.events.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dev.factory.events.util.ConnectionLimitingDataSource;
+import io.grpc.netty.NettyServerBuilder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.grpc.server.ServerBuilderCustomizer;
+
+import javax.sql.DataSource;
+import java.util.concurrent.Executors;
+
+/**
+ * What {@code spring.threads.virtual.enabled=true} adds beyond Spring Boot, which
+ * already runs Tomcat requests on virtual threads: gRPC calls run on virtual threads as
+ * well, and the DataSource is wrapped in a {@link ConnectionLimitingDataSource}, since
+ * the thread count no longer limits how many callers wait for a connection.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfiguration {
+
+    // static, so the post-processor is registered before the DataSource is created
+    @Bean
+    static BeanPostProcessor connectionLimitingPostProcessor(ObjectProvider<DatabaseProperties> props) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ConnectionLimitingDataSource) {
+                    return bean;
+                }
+                DatabaseProperties.ConnectionLimit config = props.getObject().getConnectionLimit();
+                int maxConcurrent = config.getMaxConcurrent();
+                if (maxConcurrent <= 0) {
+                    if (!(bean instanceof HikariDataSource hikari)) {
+                        throw new IllegalStateException("events.database.connection-limit.max-concurrent must be set"
+                                + " for a " + bean.getClass().getName());
+                    }
+                    maxConcurrent = hikari.getMaximumPoolSize();
+                }
+                return new ConnectionLimitingDataSource(
+                        dataSource, maxConcurrent, config.getMaxWaiting(), config.getAcquireTimeout());
+            }
+        };
+    }
+
+    @Bean
+    MeterBinder connectionLimitMetrics(DataSource dataSource) {
+        return registry -> {
+            if (dataSource instanceof ConnectionLimitingDataSource limited) {
+                Gauge.builder("events.db.connections.waiting", limited, ConnectionLimitingDataSource::getWaiting)
+                        .description("Callers queued for a connection permit")
+                        .register(registry);
+                Gauge.builder("events.db.connections.permits", limited, ConnectionLimitingDataSource::getAvailable)
+                        .description("Connection permits not in use")
+                        .register(registry);
+            }
+        };
+    }
+
+    @Bean
+    ServerBuilderCustomizer<NettyServerBuilder> virtualThreadGrpcExecutor() {
+        return builder -> builder.executor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+}
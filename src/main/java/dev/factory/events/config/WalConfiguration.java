@@ -0,0 +1,20 @@
+package dev.factory.events.config;
+
+import dev.factory.events.wal.WriteAheadLog;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Configuration
+@ConditionalOnProperty(prefix = "events.ingestion.wal", name = "enabled", havingValue = "true")
+public class WalConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public WriteAheadLog writeAheadLog(IngestionProperties props) throws IOException {
+        IngestionProperties.Wal wal = props.getWal();
+        return new WriteAheadLog(Path.of(wal.getDirectory()), (int) wal.getSegmentSize().toBytes());
+    }
+}
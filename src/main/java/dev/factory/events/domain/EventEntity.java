@@ -1,5 +1,9 @@
 package dev.factory.events.domain;
 
+import dev.factory.events.repository.DictionaryKeyConverters.EventIdConverter;
+import dev.factory.events.repository.DictionaryKeyConverters.FactoryIdConverter;
+import dev.factory.events.repository.DictionaryKeyConverters.LineIdConverter;
+import dev.factory.events.repository.DictionaryKeyConverters.MachineIdConverter;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.Getter;
@@ -7,12 +11,9 @@ import lombok.Getter;
 import java.time.Instant;
 
 @Entity
-@Table(
-        name = "events",
-        uniqueConstraints = {
-                @UniqueConstraint(name = "uk_events_event_id", columnNames = "event_id")
-        }
-)
+// partitioned by event_time; eventId uniqueness is kept by the event_ids table.
+// Ids are stored as dictionary keys, see DimensionDictionary
+@Table(name = "events")
 @Data
 public class EventEntity {
 
@@ -20,7 +21,8 @@ public class EventEntity {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private long id;
 
-    @Column(name = "event_id", nullable = false, length = 64)
+    @Column(name = "event_key", nullable = false)
+    @Convert(converter = EventIdConverter.class)
     private String eventId;
 
     @Column(name = "event_time", nullable = false)
@@ -29,13 +31,16 @@ public class EventEntity {
     @Column(name = "received_time", nullable = false)
     private Instant receivedTime;
 
-    @Column(name = "machine_id", nullable = false, length = 64)
+    @Column(name = "machine_key", nullable = false)
+    @Convert(converter = MachineIdConverter.class)
     private String machineId;
 
-    @Column(name = "factory_id", nullable = false, length = 64)
+    @Column(name = "factory_key", nullable = false)
+    @Convert(converter = FactoryIdConverter.class)
     private String factoryId;
 
-    @Column(name = "line_id", nullable = false, length = 64)
+    @Column(name = "line_key", nullable = false)
+    @Convert(converter = LineIdConverter.class)
     private String lineId;
 
     @Column(name = "duration_ms", nullable = false)
@@ -44,6 +49,9 @@ public class EventEntity {
     @Column(name = "defect_count", nullable = false)
     private int defectCount;
 
+    @Column(name = "payload_fingerprint", nullable = false)
+    private long payloadFingerprint;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private Instant createdAt;
 
@@ -55,11 +63,17 @@ public class EventEntity {
         Instant now = Instant.now();
         this.createdAt=now;
         this.updatedAt=now;
+        this.payloadFingerprint = fingerprint();
     }
 
     @PreUpdate
     void onUpdate(){
         this.updatedAt= Instant.now();
+        this.payloadFingerprint = fingerprint();
+    }
+
+    private long fingerprint() {
+        return PayloadFingerprint.of(eventTime, machineId, factoryId, lineId, durationMs, defectCount);
     }
 
     protected EventEntity(){}
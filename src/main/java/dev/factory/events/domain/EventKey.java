@@ -0,0 +1,57 @@
+package dev.factory.events.domain;
+
+/**
+ * The BIGINT event_key an eventId is stored under.
+ * <p>
+ * A canonical {@code E-<digits>} id, without leading zeros and within the range of a
+ * long, is stored as its number: {@code E-42} is 42. Any other eventId, such as
+ * {@code E-007}, is given a negative alias in event_id_aliases the first time it is
+ * seen, so the mapping stays one-to-one. The event_key() and event_id() functions of
+ * V6__dictionary_encoded_events.sql do the same in SQL, so the two must change together.
+ */
+public final class EventKey {
+
+    /** Returned by {@link #of} for eventIds that need an alias. */
+    public static final long ALIASED = -1;
+
+    private static final int MAX_DIGITS = 19;
+
+    private EventKey() {}
+
+    /**
+     * @return the key of a canonical eventId, or {@link #ALIASED}
+     */
+    public static long of(String eventId) {
+        int length = eventId.length();
+        if (length < 3 || length > 2 + MAX_DIGITS || eventId.charAt(0) != 'E' || eventId.charAt(1) != '-'
+                || (eventId.charAt(2) == '0' && length > 3)) {
+            return ALIASED;
+        }
+        long key = 0;
+        for (int i = 2; i < length; i++) {
+            int digit = eventId.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return ALIASED;
+            }
+            if (key > (Long.MAX_VALUE - digit) / 10) {
+                return ALIASED;
+            }
+            key = key * 10 + digit;
+        }
+        return key;
+    }
+
+    public static boolean isAlias(long key) {
+        return key < 0;
+    }
+
+    /**
+     * @param key a key of a canonical eventId, not an alias
+     */
+    public static String toEventId(long key) {
+        if (isAlias(key)) {
+            throw new IllegalArgumentException("event key " + key + " is an alias");
+        }
+        return "E-" + key;
+    }
+}
@@ -4,5 +4,15 @@ public record IngestCounts(
         int accepted,
         int updated,
         int deduped
-) {}
+) {
 
+    public static final IngestCounts NONE = new IngestCounts(0, 0, 0);
+
+    public IngestCounts plus(IngestCounts other) {
+        return new IngestCounts(
+                accepted + other.accepted,
+                updated + other.updated,
+                deduped + other.deduped
+        );
+    }
+}
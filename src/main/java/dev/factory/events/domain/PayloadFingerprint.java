@@ -0,0 +1,43 @@
+package dev.factory.events.domain;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+
+/**
+ * 64-bit fingerprint of the fields that decide whether two versions of an event are
+ * identical: eventTime, machineId, factoryId, lineId, durationMs and defectCount.
+ * <p>
+ * It is the first 8 bytes of the MD5 of those fields joined by U+001F, with eventTime as
+ * epoch microseconds rounded the way PostgreSQL stores it. V3__payload_fingerprint.sql
+ * computes the same value in SQL to backfill existing rows, so the two must change together.
+ */
+public final class PayloadFingerprint {
+
+    private static final String SEPARATOR = "\u001f";
+
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private PayloadFingerprint() {}
+
+    public static long of(Instant eventTime, String machineId, String factoryId, String lineId,
+                          long durationMs, int defectCount) {
+        String canonical = epochMicros(eventTime) + SEPARATOR + machineId + SEPARATOR + factoryId
+                + SEPARATOR + lineId + SEPARATOR + durationMs + SEPARATOR + defectCount;
+        byte[] digest = MD5.get().digest(canonical.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(digest).getLong();
+    }
+
+    // nearest microsecond, as timestamptz input is rounded
+    private static long epochMicros(Instant t) {
+        return t.getEpochSecond() * 1_000_000L + (t.getNano() + 500) / 1_000;
+    }
+}
@@ -0,0 +1,75 @@
+package dev.factory.events.repository;
+
+import dev.factory.events.repository.DimensionDictionary.Dimension;
+import jakarta.persistence.AttributeConverter;
+
+/**
+ * Lets {@code EventEntity} keep its String ids while events stores their keys. Hibernate
+ * obtains the converters from the Spring context, so they share the application's
+ * {@link DimensionDictionary}.
+ */
+public final class DictionaryKeyConverters {
+
+    private DictionaryKeyConverters() {}
+
+    public static class EventIdConverter implements AttributeConverter<String, Long> {
+
+        private final DimensionDictionary dictionary;
+
+        public EventIdConverter(DimensionDictionary dictionary) {
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        public Long convertToDatabaseColumn(String eventId) {
+            return eventId == null ? null : dictionary.eventKey(eventId);
+        }
+
+        @Override
+        public String convertToEntityAttribute(Long key) {
+            return key == null ? null : dictionary.eventId(key);
+        }
+    }
+
+    public static class MachineIdConverter extends DimensionConverter {
+
+        public MachineIdConverter(DimensionDictionary dictionary) {
+            super(dictionary, Dimension.MACHINE);
+        }
+    }
+
+    public static class FactoryIdConverter extends DimensionConverter {
+
+        public FactoryIdConverter(DimensionDictionary dictionary) {
+            super(dictionary, Dimension.FACTORY);
+        }
+    }
+
+    public static class LineIdConverter extends DimensionConverter {
+
+        public LineIdConverter(DimensionDictionary dictionary) {
+            super(dictionary, Dimension.LINE);
+        }
+    }
+
+    abstract static class DimensionConverter implements AttributeConverter<String, Integer> {
+
+        private final DimensionDictionary dictionary;
+        private final Dimension dimension;
+
+        DimensionConverter(DimensionDictionary dictionary, Dimension dimension) {
+            this.dictionary = dictionary;
+            this.dimension = dimension;
+        }
+
+        @Override
+        public Integer convertToDatabaseColumn(String name) {
+            return name == null ? null : dictionary.key(dimension, name);
+        }
+
+        @Override
+        public String convertToEntityAttribute(Integer key) {
+            return key == null ? null : dictionary.name(dimension, key);
+        }
+    }
+}
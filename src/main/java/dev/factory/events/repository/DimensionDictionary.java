@@ -0,0 +1,266 @@
+package dev.factory.events.repository;
+
+import dev.factory.events.domain.EventKey;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Translates machine, factory and line ids and eventIds to the integer keys events are
+ * stored under, and back.
+ * <p>
+ * Dimension keys are cached for the life of the process; the dictionaries only grow and
+ * a key never changes its name. An id seen for the first time is added to its dictionary
+ * in the caller's transaction, in name order and one dimension after another, so
+ * concurrent batches adding the same names wait for each other instead of deadlocking.
+ * Keys added by a transaction are cached once it commits: one that rolls back takes its
+ * keys with it.
+ * <p>
+ * eventId aliases are not cached, since every event could need one; batches with
+ * non-canonical eventIds cost a round trip to resolve them.
+ */
+@Repository
+public class DimensionDictionary {
+
+    public enum Dimension {
+        MACHINE("machines", "machine_id"),
+        FACTORY("factories", "factory_id"),
+        LINE("lines", "line_id");
+
+        private final String table;
+        private final String column;
+
+        Dimension(String table, String column) {
+            this.table = table;
+            this.column = column;
+        }
+    }
+
+    private final JdbcTemplate jdbc;
+    private final Map<Dimension, Map<String, Integer>> keys = new EnumMap<>(Dimension.class);
+    private final Map<Dimension, Map<Integer, String>> names = new EnumMap<>(Dimension.class);
+
+    public DimensionDictionary(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+        for (Dimension dimension : Dimension.values()) {
+            keys.put(dimension, new ConcurrentHashMap<>());
+            names.put(dimension, new ConcurrentHashMap<>());
+        }
+    }
+
+    public int key(Dimension dimension, String name) {
+        return keys(dimension, List.of(name))[0];
+    }
+
+    /**
+     * Keys of {@code names}, by position; names not in the dictionary yet are added in
+     * the current transaction.
+     */
+    public int[] keys(Dimension dimension, List<String> names) {
+        Map<String, Integer> cached = keys.get(dimension);
+        Map<String, Integer> pending = pending(dimension, false);
+        int[] result = new int[names.size()];
+        TreeSet<String> missing = null;
+        for (int i = 0; i < result.length; i++) {
+            String name = names.get(i);
+            Integer key = cached.get(name);
+            if (key == null && pending != null) {
+                key = pending.get(name);
+            }
+            if (key == null) {
+                if (missing == null) {
+                    missing = new TreeSet<>();
+                }
+                missing.add(name);
+            } else {
+                result[i] = key;
+            }
+        }
+        if (missing != null) {
+            Map<String, Integer> added = add(dimension, missing);
+            for (int i = 0; i < result.length; i++) {
+                Integer key = added.get(names.get(i));
+                if (key != null) {
+                    result[i] = key;
+                }
+            }
+        }
+        return result;
+    }
+
+    public String name(Dimension dimension, int key) {
+        String name = names.get(dimension).get(key);
+        if (name != null) {
+            return name;
+        }
+        Map<String, Integer> pending = pending(dimension, false);
+        if (pending != null) {
+            for (Map.Entry<String, Integer> e : pending.entrySet()) {
+                if (e.getValue() == key) {
+                    return e.getKey();
+                }
+            }
+        }
+        try {
+            name = jdbc.queryForObject("SELECT %s FROM %s WHERE id = ?".formatted(dimension.column, dimension.table),
+                    String.class, key);
+        } catch (EmptyResultDataAccessException e) {
+            throw new IllegalStateException("no " + dimension.column + " has key " + key, e);
+        }
+        remember(dimension, name, key);
+        return name;
+    }
+
+    public long eventKey(String eventId) {
+        return eventKeys(List.of(eventId))[0];
+    }
+
+    /**
+     * Keys of {@code eventIds}, by position; missing aliases are created in the current
+     * transaction.
+     */
+    public long[] eventKeys(List<String> eventIds) {
+        long[] result = new long[eventIds.size()];
+        TreeSet<String> aliased = null;
+        for (int i = 0; i < result.length; i++) {
+            result[i] = EventKey.of(eventIds.get(i));
+            if (result[i] == EventKey.ALIASED) {
+                if (aliased == null) {
+                    aliased = new TreeSet<>();
+                }
+                aliased.add(eventIds.get(i));
+            }
+        }
+        if (aliased != null) {
+            Map<String, Long> aliases = aliases(aliased);
+            for (int i = 0; i < result.length; i++) {
+                if (result[i] == EventKey.ALIASED) {
+                    result[i] = aliases.get(eventIds.get(i));
+                }
+            }
+        }
+        return result;
+    }
+
+    public String eventId(long key) {
+        if (!EventKey.isAlias(key)) {
+            return EventKey.toEventId(key);
+        }
+        try {
+            return jdbc.queryForObject("SELECT event_id FROM event_id_aliases WHERE event_key = ?", String.class, key);
+        } catch (EmptyResultDataAccessException e) {
+            throw new IllegalStateException("no eventId has key " + key, e);
+        }
+    }
+
+    // event_key() creates the missing ones, in name order
+    private Map<String, Long> aliases(TreeSet<String> eventIds) {
+        Map<String, Long> aliases = new HashMap<>();
+        jdbc.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement(
+                            "SELECT a.id, event_key(a.id) FROM unnest(?::text[]) AS a(id)");
+                    ps.setArray(1, con.createArrayOf("text", eventIds.toArray()));
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> aliases.put(rs.getString(1), rs.getLong(2)));
+        return aliases;
+    }
+
+    // ON CONFLICT waits for a concurrent insert of the same name and skips it once that
+    // commits; the select then reads the committed key
+    private Map<String, Integer> add(Dimension dimension, TreeSet<String> missing) {
+        Map<String, Integer> added = new HashMap<>();
+        Map<String, Integer> created = new HashMap<>();
+        jdbc.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement("""
+                            INSERT INTO %1$s (%2$s)
+                            SELECT unnest(?::text[]) ORDER BY 1
+                            ON CONFLICT (%2$s) DO NOTHING
+                            RETURNING id, %2$s
+                            """.formatted(dimension.table, dimension.column));
+                    ps.setArray(1, con.createArrayOf("text", missing.toArray()));
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> created.put(rs.getString(2), rs.getInt(1)));
+        added.putAll(created);
+
+        if (created.size() < missing.size()) {
+            List<String> existing = new ArrayList<>(missing);
+            existing.removeAll(created.keySet());
+            jdbc.query(
+                    con -> {
+                        PreparedStatement ps = con.prepareStatement("SELECT id, %1$s FROM %2$s WHERE %1$s = ANY(?)"
+                                .formatted(dimension.column, dimension.table));
+                        ps.setArray(1, con.createArrayOf("text", existing.toArray()));
+                        return ps;
+                    },
+                    (RowCallbackHandler) rs -> {
+                        added.put(rs.getString(2), rs.getInt(1));
+                        remember(dimension, rs.getString(2), rs.getInt(1));
+                    });
+        }
+
+        Map<String, Integer> pending = pending(dimension, true);
+        if (pending == null) {
+            created.forEach((name, key) -> remember(dimension, name, key));
+        } else {
+            pending.putAll(created);
+        }
+        return added;
+    }
+
+    private void remember(Dimension dimension, String name, int key) {
+        keys.get(dimension).put(name, key);
+        names.get(dimension).put(key, name);
+    }
+
+    // keys this transaction added, or null outside of a transaction. Kept as a
+    // synchronization, so a suspended transaction's keys are suspended along with it
+    private Map<String, Integer> pending(Dimension dimension, boolean create) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Pending pending = null;
+        for (TransactionSynchronization s : TransactionSynchronizationManager.getSynchronizations()) {
+            if (s instanceof Pending p && p.dictionary() == this) {
+                pending = p;
+            }
+        }
+        if (pending == null) {
+            if (!create) {
+                return null;
+            }
+            pending = new Pending();
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        return pending.created.computeIfAbsent(dimension, d -> new HashMap<>());
+    }
+
+    private final class Pending implements TransactionSynchronization {
+
+        final Map<Dimension, Map<String, Integer>> created = new EnumMap<>(Dimension.class);
+
+        @Override
+        public void afterCommit() {
+            created.forEach((dimension, added) -> added.forEach((name, key) -> remember(dimension, name, key)));
+        }
+
+        DimensionDictionary dictionary() {
+            return DimensionDictionary.this;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package dev.factory.events.repository;
+
+import dev.factory.events.domain.EventKey;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Raw events read through a server-side cursor, for exports.
+ */
+@Repository
+public class EventExportRepository {
+
+    // a canonical eventId is its key; only aliased keys are looked up, one index probe each
+    private static final String SELECT_EVENTS = """
+            SELECT
+                e.event_key,
+                CASE WHEN e.event_key < 0
+                    THEN (SELECT a.event_id FROM event_id_aliases a WHERE a.event_key = e.event_key)
+                END AS alias,
+                e.event_time,
+                e.received_time,
+                m.machine_id,
+                f.factory_id,
+                l.line_id,
+                e.duration_ms,
+                e.defect_count
+            FROM events e
+            JOIN machines m ON m.id = e.machine_key
+            JOIN factories f ON f.id = e.factory_key
+            JOIN lines l ON l.id = e.line_key
+            WHERE e.event_time >= ?
+              AND e.event_time < ?
+            """;
+
+    private final JdbcTemplate jdbc;
+
+    public EventExportRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Streams the events in [from, to) to {@code action}, in no particular order,
+     * optionally only those of one factory and/or machine. Rows are fetched
+     * {@code fetchSize} at a time through a cursor, so memory does not grow with the
+     * number of rows. If {@code action} fails, the cursor is closed and the rest of the
+     * query is never run; an {@link IOException} is rethrown as is.
+     */
+    @Transactional(readOnly = true)
+    public void forEachEvent(String factoryId, String machineId, Instant from, Instant to, int fetchSize,
+                             ExportedEventHandler action) throws IOException {
+        // only the filters given, so the planner sees plain equalities on the index columns
+        StringBuilder sql = new StringBuilder(SELECT_EVENTS);
+        List<Object> args = new ArrayList<>(List.of(Timestamp.from(from), Timestamp.from(to)));
+        if (factoryId != null) {
+            sql.append("  AND e.factory_key = (SELECT id FROM factories WHERE factory_id = ?)\n");
+            args.add(factoryId);
+        }
+        if (machineId != null) {
+            sql.append("  AND e.machine_key = (SELECT id FROM machines WHERE machine_id = ?)\n");
+            args.add(machineId);
+        }
+
+        try {
+            jdbc.query(
+                    con -> {
+                        PreparedStatement ps = con.prepareStatement(sql.toString());
+                        for (int i = 0; i < args.size(); i++) {
+                            ps.setObject(i + 1, args.get(i));
+                        }
+                        ps.setFetchSize(fetchSize);
+                        return ps;
+                    },
+                    (RowCallbackHandler) rs -> {
+                        String alias = rs.getString("alias");
+                        try {
+                            action.accept(
+                                    alias != null ? alias : EventKey.toEventId(rs.getLong("event_key")),
+                                    rs.getTimestamp("event_time").toInstant(),
+                                    rs.getTimestamp("received_time").toInstant(),
+                                    rs.getString("machine_id"),
+                                    rs.getString("factory_id"),
+                                    rs.getString("line_id"),
+                                    rs.getLong("duration_ms"),
+                                    rs.getInt("defect_count"));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    public interface ExportedEventHandler {
+        void accept(String eventId, Instant eventTime, Instant receivedTime, String machineId, String factoryId,
+                    String lineId, long durationMs, int defectCount) throws IOException;
+    }
+}
@@ -1,116 +1,650 @@
 package dev.factory.events.repository;
 
+import dev.factory.events.config.IngestionProperties;
+import dev.factory.events.config.IngestionProperties.StagingLoad;
+import dev.factory.events.domain.EventKey;
 import dev.factory.events.domain.IngestCounts;
+import dev.factory.events.repository.DimensionDictionary.Dimension;
+import dev.factory.events.service.model.EventsChanged;
 import dev.factory.events.service.model.NormalizedEvent;
+import dev.factory.events.service.model.SlottedEvent;
+import dev.factory.events.util.IngestMetrics;
+import dev.factory.events.util.IngestMetrics.Stage;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 @Repository
 public class EventIngestionJDBCRepository {
 
+    private static final String COPY_TMP_EVENTS = """
+            COPY tmp_events (
+                event_key, event_time, received_time,
+                machine_key, factory_key, line_key,
+                duration_ms, defect_count, payload_fingerprint
+            )
+            FROM STDIN (FORMAT BINARY)
+            """;
+
+    // unnest() zips the column arrays back into rows, one array per column
+    private static final String UNNEST_BATCH = """
+            unnest(
+                ?::bigint[], ?::timestamptz[], ?::timestamptz[],
+                ?::int[], ?::int[], ?::int[],
+                ?::bigint[], ?::int[], ?::bigint[]
+            ) AS t(
+                event_key, event_time, received_time,
+                machine_key, factory_key, line_key,
+                duration_ms, defect_count, payload_fingerprint
+            )""";
+
+    private static final String UNNEST_SLOTTED_BATCH = """
+            unnest(
+                ?::bigint[], ?::timestamptz[], ?::timestamptz[],
+                ?::int[], ?::int[], ?::int[],
+                ?::bigint[], ?::int[], ?::bigint[], ?::int[]
+            ) AS t(
+                event_key, event_time, received_time,
+                machine_key, factory_key, line_key,
+                duration_ms, defect_count, payload_fingerprint, slot
+            )""";
+
+    // %s is the batch relation, aliased as t. event_ids arbitrates: a new eventId is
+    // inserted there and into events in this statement, while for a replaced one only
+    // event_ids is updated here and the events row is rewritten by UPDATE_REPLACED.
+    // event_ids rows are locked in key order, as the dictionaries and rollups lock
+    // theirs, so two batches overlapping on some eventIds cannot wait for each other
+    private static final String CLASSIFY_AND_UPSERT = """
+            WITH classified AS (
+                SELECT
+                    t.*,
+                    d.event_key IS NULL AS is_new,
+                    d.received_time < t.received_time AS is_newer,
+                    d.payload_fingerprint = t.payload_fingerprint AS is_identical
+                FROM %s
+                LEFT JOIN event_ids d ON d.event_key = t.event_key
+            ),
+            upserted AS (
+                INSERT INTO event_ids (
+                    event_key, event_time, received_time, payload_fingerprint
+                )
+                SELECT
+                    event_key, event_time, received_time, payload_fingerprint
+                FROM classified
+                WHERE is_new OR (is_newer AND NOT is_identical)
+                ORDER BY event_key
+                ON CONFLICT (event_key) DO UPDATE
+                    SET
+                        event_time = EXCLUDED.event_time,
+                        received_time = EXCLUDED.received_time,
+                        payload_fingerprint = EXCLUDED.payload_fingerprint
+                    WHERE event_ids.received_time < EXCLUDED.received_time
+                RETURNING event_key, xmax <> 0 AS replaced
+            ),
+            inserted AS (
+                INSERT INTO events (
+                    event_key, event_time, received_time,
+                    machine_key, factory_key, line_key,
+                    duration_ms, defect_count, payload_fingerprint
+                )
+                SELECT
+                    c.event_key, c.event_time, c.received_time,
+                    c.machine_key, c.factory_key, c.line_key,
+                    c.duration_ms, c.defect_count, c.payload_fingerprint
+                FROM classified c
+                JOIN upserted u ON u.event_key = c.event_key AND NOT u.replaced
+            )
+            """;
+
+    // a separate statement, so that it sees an events row committed by a concurrent
+    // transaction whose event_ids row the upsert above waited for and then replaced.
+    // o is the same row as read before the update, so RETURNING reports the old version
+    private static final String UPDATE_REPLACED = """
+            UPDATE events e
+            SET
+                event_time = t.event_time,
+                received_time = t.received_time,
+                machine_key = t.machine_key,
+                factory_key = t.factory_key,
+                line_key = t.line_key,
+                duration_ms = t.duration_ms,
+                defect_count = t.defect_count,
+                payload_fingerprint = t.payload_fingerprint
+            FROM %s, events o
+            WHERE e.event_key = t.event_key
+              AND o.id = e.id AND o.event_time = e.event_time
+            RETURNING
+                o.event_key, o.event_time, o.received_time,
+                o.machine_key, o.factory_key, o.line_key,
+                o.duration_ms, o.defect_count
+            """;
+
+    // for events the id filter has never seen, in key order; conflicts are left to CLASSIFY_AND_UPSERT
+    private static final String INSERT_IF_ABSENT = """
+            WITH batch AS MATERIALIZED (
+                SELECT * FROM %s
+            ),
+            claimed AS (
+                INSERT INTO event_ids (
+                    event_key, event_time, received_time, payload_fingerprint
+                )
+                SELECT
+                    event_key, event_time, received_time, payload_fingerprint
+                FROM batch
+                ORDER BY event_key
+                ON CONFLICT (event_key) DO NOTHING
+                RETURNING event_key
+            )
+            INSERT INTO events (
+                event_key, event_time, received_time,
+                machine_key, factory_key, line_key,
+                duration_ms, defect_count, payload_fingerprint
+            )
+            SELECT
+                b.event_key, b.event_time, b.received_time,
+                b.machine_key, b.factory_key, b.line_key,
+                b.duration_ms, b.defect_count, b.payload_fingerprint
+            FROM batch b
+            JOIN claimed c ON c.event_key = b.event_key
+            RETURNING event_key
+            """;
+
+    private static final String COUNTS_SELECT = """
+            SELECT
+                count(*) FILTER (WHERE is_new) AS accepted,
+                count(*) FILTER (
+                    WHERE NOT is_new AND is_newer AND NOT is_identical
+                ) AS updated,
+                count(*) FILTER (
+                    WHERE NOT is_new AND is_identical
+                ) AS deduped,
+                (SELECT array_agg(event_key) FROM upserted WHERE replaced) AS replaced_keys,
+                (SELECT array_agg(event_key) FROM upserted WHERE NOT replaced) AS inserted_keys
+            FROM classified
+            """;
+
+    private static final String COUNTS_BY_SLOT_SELECT = """
+            SELECT
+                slot,
+                count(*) FILTER (WHERE is_new) AS accepted,
+                count(*) FILTER (
+                    WHERE NOT is_new AND is_newer AND NOT is_identical
+                ) AS updated,
+                count(*) FILTER (
+                    WHERE NOT is_new AND is_identical
+                ) AS deduped,
+                (SELECT array_agg(event_key) FROM upserted WHERE replaced) AS replaced_keys,
+                (SELECT array_agg(event_key) FROM upserted WHERE NOT replaced) AS inserted_keys
+            FROM classified
+            GROUP BY slot
+            """;
+
+    private static final RowMapper<IngestCounts> COUNTS = (rs, rowNum) ->
+            new IngestCounts(
+                    rs.getInt("accepted"),
+                    rs.getInt("updated"),
+                    rs.getInt("deduped")
+            );
+
     private final JdbcTemplate jdbc;
+    private final IngestionProperties props;
+    private final ApplicationEventPublisher publisher;
+    private final DimensionDictionary dictionary;
+    private final IngestMetrics metrics;
 
-    public EventIngestionJDBCRepository(JdbcTemplate jdbc) {
+    public EventIngestionJDBCRepository(JdbcTemplate jdbc, IngestionProperties props,
+                                        ApplicationEventPublisher publisher, DimensionDictionary dictionary,
+                                        IngestMetrics metrics) {
         this.jdbc = jdbc;
+        this.props = props;
+        this.publisher = publisher;
+        this.dictionary = dictionary;
+        this.metrics = metrics;
     }
 
     @Transactional
     public IngestCounts ingestBatch(List<NormalizedEvent> events) {
+        return ingestBatch(events, props.getStagingLoad());
+    }
+
+    @Transactional
+    public IngestCounts ingestBatch(List<NormalizedEvent> events, StagingLoad stagingLoad) {
+        metrics.timeCommit();
+        return ingestStaged(keyed(events), stagingLoad);
+    }
+
+    /**
+     * Temp-table-free variant: the batch travels as one array per column and is
+     * classified and upserted by a single statement, so no catalog entries are
+     * created per call.
+     */
+    @Transactional
+    public IngestCounts ingestBatchFromArrays(List<NormalizedEvent> events) {
+        metrics.timeCommit();
+        return ingestFromArrays(keyed(events));
+    }
+
+    /**
+     * Adds the machine, factory and line ids of {@code events} that are not in the
+     * dictionaries yet, committed on their own ahead of the events themselves.
+     */
+    @Transactional
+    public void addDimensionKeys(List<NormalizedEvent> events) {
+        dictionary.keys(Dimension.MACHINE, events.stream().map(NormalizedEvent::getMachineId).toList());
+        dictionary.keys(Dimension.FACTORY, events.stream().map(NormalizedEvent::getFactoryId).toList());
+        dictionary.keys(Dimension.LINE, events.stream().map(NormalizedEvent::getLineId).toList());
+    }
+
+    /**
+     * Upserts events coming from several requests in one transaction and reports
+     * counts per request slot. Each round must hold at most one event per eventId;
+     * rounds run in order, so a later round sees the rows written by earlier ones.
+     */
+    @Transactional
+    public IngestCounts[] ingestSlotted(List<List<SlottedEvent>> rounds, int slotCount) {
+        metrics.timeCommit();
+        IngestCounts[] totals = new IngestCounts[slotCount];
+        Arrays.fill(totals, IngestCounts.NONE);
+
+        // adds every new id to the dictionaries before the first round locks event_ids rows
+        keyed(rounds.stream().flatMap(List::stream).map(SlottedEvent::event).toList());
+
+        for (List<SlottedEvent> round : rounds) {
+            Keyed batch = keyed(round.stream().map(SlottedEvent::event).toList());
+            Integer[] slots = round.stream().map(SlottedEvent::slot).toArray(Integer[]::new);
+            Set<Long> replaced = new HashSet<>();
+            Set<Long> inserted = new HashSet<>();
+
+            long started = System.nanoTime();
+            jdbc.query(
+                    CLASSIFY_AND_UPSERT.formatted(UNNEST_SLOTTED_BATCH) + COUNTS_BY_SLOT_SELECT,
+                    ps -> {
+                        bindColumnArrays(ps, batch);
+                        ps.setArray(10, ps.getConnection().createArrayOf("int4", slots));
+                    },
+                    rs -> {
+                        while (rs.next()) {
+                            int slot = rs.getInt("slot");
+                            totals[slot] = totals[slot].plus(COUNTS.mapRow(rs, 0));
+                            replaced.addAll(keys(rs, "replaced_keys"));
+                            inserted.addAll(keys(rs, "inserted_keys"));
+                        }
+                        return null;
+                    });
+            List<NormalizedEvent> removed = updateReplaced(batch, replaced);
+            metrics.record(Stage.UPSERT, System.nanoTime() - started);
+            publishChanges(batch, inserted, removed);
+        }
+        return totals;
+    }
+
+    /**
+     * Inserts {@code likelyNew} without classifying it and runs everything else through
+     * the configured classify-and-upsert path, in one transaction. Events of
+     * {@code likelyNew} that turn out to exist already are classified as well.
+     *
+     * @return counts of the insert-only path at index 0 and of the classified events at index 1
+     */
+    @Transactional
+    public IngestCounts[] ingestSplit(List<NormalizedEvent> likelyNew, List<NormalizedEvent> possiblySeen) {
+        metrics.timeCommit();
+        List<NormalizedEvent> all = new ArrayList<>(likelyNew.size() + possiblySeen.size());
+        all.addAll(likelyNew);
+        all.addAll(possiblySeen);
+        Keyed batch = keyed(all);
+        Keyed insertOnly = batch.where(i -> i < likelyNew.size());
+
+        Set<Long> inserted = new HashSet<>();
+        if (!likelyNew.isEmpty()) {
+            metrics.time(Stage.UPSERT, () -> jdbc.query(
+                    INSERT_IF_ABSENT.formatted(UNNEST_BATCH),
+                    ps -> bindColumnArrays(ps, insertOnly),
+                    (RowCallbackHandler) rs -> inserted.add(rs.getLong(1))));
+        }
+
+        if (!inserted.isEmpty()) {
+            publishChanges(insertOnly, inserted, List.of());
+        }
+
+        // possiblySeen first, then the events of likelyNew that were already there
+        Keyed rest = batch.where(i -> i >= likelyNew.size())
+                .concat(insertOnly.where(i -> !inserted.contains(insertOnly.eventKeys()[i])));
+
+        IngestCounts classified = IngestCounts.NONE;
+        if (!rest.events().isEmpty()) {
+            classified = props.getUpsert() == IngestionProperties.Upsert.ARRAYS
+                    ? ingestFromArrays(rest)
+                    : ingestStaged(rest, props.getStagingLoad());
+        }
+        return new IngestCounts[]{new IngestCounts(inserted.size(), 0, 0), classified};
+    }
+
+    /**
+     * Streams every stored eventId to {@code action} through a server-side cursor over
+     * the slim event_ids table.
+     */
+    @Transactional(readOnly = true)
+    public void forEachEventId(int fetchSize, Consumer<String> action) {
+        jdbc.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement("""
+                            SELECT d.event_key, a.event_id
+                            FROM event_ids d
+                            LEFT JOIN event_id_aliases a ON a.event_key = d.event_key
+                            """);
+                    ps.setFetchSize(fetchSize);
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> {
+                    String alias = rs.getString(2);
+                    action.accept(alias != null ? alias : EventKey.toEventId(rs.getLong(1)));
+                });
+    }
+
+    /**
+     * Streams the counts of each machine, line and epoch minute at or after {@code from}
+     * to {@code action}, in a repeatable-read transaction. {@code snapshot} receives the
+     * statement that fixes the snapshot of the scan and must run it; callers wrap it to
+     * order it against their own bookkeeping of commits.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void forEachMinuteCount(Instant from, int fetchSize, Consumer<Runnable> snapshot, MinuteCountHandler action) {
+        snapshot.accept(() -> jdbc.queryForObject("SELECT 1", Integer.class));
+        jdbc.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement("""
+                            SELECT m.machine_id, f.factory_id, l.line_id, c.minute, c.events, c.defects
+                            FROM (
+                                SELECT
+                                    machine_key,
+                                    factory_key,
+                                    line_key,
+                                    floor(extract(epoch FROM event_time) / 60)::bigint AS minute,
+                                    count(*) AS events,
+                                    sum(greatest(defect_count, 0)) AS defects
+                                FROM events
+                                WHERE event_time >= ?
+                                GROUP BY 1, 2, 3, 4
+                            ) c
+                            JOIN machines m ON m.id = c.machine_key
+                            JOIN factories f ON f.id = c.factory_key
+                            JOIN lines l ON l.id = c.line_key
+                            """);
+                    ps.setTimestamp(1, Timestamp.from(from));
+                    ps.setFetchSize(fetchSize);
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> action.accept(
+                        rs.getString("machine_id"), rs.getString("factory_id"), rs.getString("line_id"),
+                        rs.getLong("minute"), rs.getLong("events"), rs.getLong("defects")));
+    }
+
+    // dimensions first and in a fixed order, then eventId aliases; see DimensionDictionary
+    private Keyed keyed(List<NormalizedEvent> events) {
+        int[] machineKeys = dictionary.keys(Dimension.MACHINE, events.stream().map(NormalizedEvent::getMachineId).toList());
+        int[] factoryKeys = dictionary.keys(Dimension.FACTORY, events.stream().map(NormalizedEvent::getFactoryId).toList());
+        int[] lineKeys = dictionary.keys(Dimension.LINE, events.stream().map(NormalizedEvent::getLineId).toList());
+        long[] eventKeys = dictionary.eventKeys(events.stream().map(NormalizedEvent::getEventId).toList());
+        return new Keyed(events, eventKeys, machineKeys, factoryKeys, lineKeys);
+    }
+
+    private IngestCounts ingestStaged(Keyed batch, StagingLoad stagingLoad) {
+        long started = System.nanoTime();
 
         // 1. temp table
         jdbc.execute("""
             CREATE TEMP TABLE tmp_events (
-                event_id TEXT,
+                event_key BIGINT,
                 event_time TIMESTAMPTZ,
                 received_time TIMESTAMPTZ,
-                machine_id TEXT,
-                factory_id TEXT,
-                line_id TEXT,
+                machine_key INT,
+                factory_key INT,
+                line_key INT,
                 duration_ms BIGINT,
-                defect_count INT
+                defect_count INT,
+                payload_fingerprint BIGINT
             ) ON COMMIT DROP
         """);
 
-        // 2. batch insert into temp table
+        // 2. load temp table
+        if (stagingLoad == StagingLoad.BINARY_COPY) {
+            copyIntoStaging(batch);
+        } else {
+            batchInsertIntoStaging(batch);
+        }
+        metrics.record(Stage.STAGING, System.nanoTime() - started);
+
+        // 3. classify + upsert + count
+        return classifyAndUpsert("tmp_events t", ps -> { }, batch);
+    }
+
+    private IngestCounts ingestFromArrays(Keyed batch) {
+        return classifyAndUpsert(UNNEST_BATCH, ps -> bindColumnArrays(ps, batch), batch);
+    }
+
+    private static void bindColumnArrays(PreparedStatement ps, Keyed batch) throws SQLException {
+        List<NormalizedEvent> events = batch.events();
+        int n = events.size();
+        Long[] eventKeys = new Long[n];
+        // ISO-8601 text with offset, cast server-side, so the session time zone never applies
+        String[] eventTimes = new String[n];
+        String[] receivedTimes = new String[n];
+        Integer[] machineKeys = new Integer[n];
+        Integer[] factoryKeys = new Integer[n];
+        Integer[] lineKeys = new Integer[n];
+        Long[] durations = new Long[n];
+        Integer[] defectCounts = new Integer[n];
+        Long[] fingerprints = new Long[n];
+
+        for (int i = 0; i < n; i++) {
+            NormalizedEvent e = events.get(i);
+            eventKeys[i] = batch.eventKeys()[i];
+            eventTimes[i] = e.getEventTime().toString();
+            receivedTimes[i] = e.getReceivedTime().toString();
+            machineKeys[i] = batch.machineKeys()[i];
+            factoryKeys[i] = batch.factoryKeys()[i];
+            lineKeys[i] = batch.lineKeys()[i];
+            durations[i] = e.getDurationMs();
+            defectCounts[i] = e.getDefectCount();
+            fingerprints[i] = e.getPayloadFingerprint();
+        }
+
+        Connection con = ps.getConnection();
+        ps.setArray(1, con.createArrayOf("int8", eventKeys));
+        ps.setArray(2, con.createArrayOf("text", eventTimes));
+        ps.setArray(3, con.createArrayOf("text", receivedTimes));
+        ps.setArray(4, con.createArrayOf("int4", machineKeys));
+        ps.setArray(5, con.createArrayOf("int4", factoryKeys));
+        ps.setArray(6, con.createArrayOf("int4", lineKeys));
+        ps.setArray(7, con.createArrayOf("int8", durations));
+        ps.setArray(8, con.createArrayOf("int4", defectCounts));
+        ps.setArray(9, con.createArrayOf("int8", fingerprints));
+    }
+
+    private void batchInsertIntoStaging(Keyed batch) {
+        List<NormalizedEvent> events = batch.events();
         jdbc.batchUpdate("""
             INSERT INTO tmp_events (
-                event_id, event_time, received_time,
-                machine_id, factory_id, line_id,
-                duration_ms, defect_count
+                event_key, event_time, received_time,
+                machine_key, factory_key, line_key,
+                duration_ms, defect_count, payload_fingerprint
             )
-            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
-        """, events, 1000, (ps, e) -> {
-            ps.setString(1, e.getEventId());
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """, IntStream.range(0, events.size()).boxed().toList(), 1000, (ps, i) -> {
+            NormalizedEvent e = events.get(i);
+            ps.setLong(1, batch.eventKeys()[i]);
             ps.setTimestamp(2, Timestamp.from(e.getEventTime()));
             ps.setTimestamp(3, Timestamp.from(e.getReceivedTime()));
-            ps.setString(4, e.getMachineId());
-            ps.setString(5, e.getFactoryId());
-            ps.setString(6, e.getLineId());
+            ps.setInt(4, batch.machineKeys()[i]);
+            ps.setInt(5, batch.factoryKeys()[i]);
+            ps.setInt(6, batch.lineKeys()[i]);
             ps.setLong(7, e.getDurationMs());
             ps.setInt(8, e.getDefectCount());
+            ps.setLong(9, e.getPayloadFingerprint());
         });
+    }
 
-        // 3. classify + upsert + count
-        return jdbc.queryForObject("""
-            WITH classified AS (
-                SELECT
-                    t.*,
-                    e.event_id IS NULL AS is_new,
-                    e.received_time < t.received_time AS is_newer,
-                    (
-                        e.event_time = t.event_time AND
-                        e.machine_id = t.machine_id AND
-                        e.factory_id = t.factory_id AND
-                        e.line_id = t.line_id AND
-                        e.duration_ms = t.duration_ms AND
-                        e.defect_count = t.defect_count
-                    ) AS is_identical
-                FROM tmp_events t
-                LEFT JOIN events e ON e.event_id = t.event_id
-            ),
-            upserted AS (
-                INSERT INTO events (
-                    event_id, event_time, received_time,
-                    machine_id, factory_id, line_id,
-                    duration_ms, defect_count
-                )
-                SELECT
-                    event_id, event_time, received_time,
-                    machine_id, factory_id, line_id,
-                    duration_ms, defect_count
-                FROM classified
-                WHERE is_new OR (is_newer AND NOT is_identical)
-                ON CONFLICT (event_id) DO UPDATE
-                    SET
-                        event_time = EXCLUDED.event_time,
-                        received_time = EXCLUDED.received_time,
-                        machine_id = EXCLUDED.machine_id,
-                        factory_id = EXCLUDED.factory_id,
-                        line_id = EXCLUDED.line_id,
-                        duration_ms = EXCLUDED.duration_ms,
-                        defect_count = EXCLUDED.defect_count
-                    WHERE events.received_time < EXCLUDED.received_time
-                RETURNING event_id
-            )
-            SELECT
-                count(*) FILTER (WHERE is_new) AS accepted,
-                count(*) FILTER (
-                    WHERE NOT is_new AND is_newer AND NOT is_identical
-                ) AS updated,
-                count(*) FILTER (
-                    WHERE NOT is_new AND is_identical
-                ) AS deduped
-            FROM classified
-        """, (rs, rowNum) ->
-                new IngestCounts(
-                        rs.getInt("accepted"),
-                        rs.getInt("updated"),
-                        rs.getInt("deduped")
-                )
-        );
+    // runs on the transaction's connection, so the ON COMMIT DROP temp table is visible
+    private void copyIntoStaging(Keyed batch) {
+        List<NormalizedEvent> events = batch.events();
+        jdbc.execute((ConnectionCallback<Long>) con -> {
+            CopyIn copyIn = con.unwrap(PGConnection.class)
+                    .getCopyAPI()
+                    .copyIn(COPY_TMP_EVENTS);
+            try {
+                PgBinaryCopyWriter writer = new PgBinaryCopyWriter(copyIn);
+                for (int i = 0; i < events.size(); i++) {
+                    NormalizedEvent e = events.get(i);
+                    writer.startRow(9);
+                    writer.writeLong(batch.eventKeys()[i]);
+                    writer.writeTimestamptz(e.getEventTime());
+                    writer.writeTimestamptz(e.getReceivedTime());
+                    writer.writeInt(batch.machineKeys()[i]);
+                    writer.writeInt(batch.factoryKeys()[i]);
+                    writer.writeInt(batch.lineKeys()[i]);
+                    writer.writeLong(e.getDurationMs());
+                    writer.writeInt(e.getDefectCount());
+                    writer.writeLong(e.getPayloadFingerprint());
+                }
+                return writer.finish();
+            } catch (SQLException | RuntimeException ex) {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+                throw ex;
+            }
+        });
+    }
+
+    private IngestCounts classifyAndUpsert(String relation, PreparedStatementSetter binder, Keyed batch) {
+        Set<Long> replaced = new HashSet<>();
+        Set<Long> inserted = new HashSet<>();
+        long started = System.nanoTime();
+        IngestCounts counts = jdbc.query(
+                CLASSIFY_AND_UPSERT.formatted(relation) + COUNTS_SELECT,
+                binder,
+                rs -> {
+                    rs.next();
+                    replaced.addAll(keys(rs, "replaced_keys"));
+                    inserted.addAll(keys(rs, "inserted_keys"));
+                    return COUNTS.mapRow(rs, 0);
+                });
+        List<NormalizedEvent> removed = updateReplaced(batch, replaced);
+        metrics.record(Stage.UPSERT, System.nanoTime() - started);
+        publishChanges(batch, inserted, removed);
+        return counts;
+    }
+
+    /**
+     * Rewrites the events rows of keys whose stored version the upsert replaced.
+     *
+     * @return the versions that were replaced
+     */
+    private List<NormalizedEvent> updateReplaced(Keyed batch, Set<Long> replacedKeys) {
+        if (replacedKeys.isEmpty()) {
+            return List.of();
+        }
+        Keyed replaced = batch.where(i -> replacedKeys.contains(batch.eventKeys()[i]));
+        Map<Long, String> eventIds = new HashMap<>();
+        for (int i = 0; i < replaced.events().size(); i++) {
+            eventIds.put(replaced.eventKeys()[i], replaced.events().get(i).getEventId());
+        }
+        return jdbc.query(UPDATE_REPLACED.formatted(UNNEST_BATCH), ps -> bindColumnArrays(ps, replaced),
+                (rs, rowNum) -> new NormalizedEvent(
+                        eventIds.get(rs.getLong("event_key")),
+                        rs.getTimestamp("event_time").toInstant(),
+                        rs.getTimestamp("received_time").toInstant(),
+                        dictionary.name(Dimension.MACHINE, rs.getInt("machine_key")),
+                        dictionary.name(Dimension.FACTORY, rs.getInt("factory_key")),
+                        dictionary.name(Dimension.LINE, rs.getInt("line_key")),
+                        rs.getLong("duration_ms"),
+                        rs.getInt("defect_count")
+                ));
+    }
+
+    // published inside the transaction; listeners that act on committed data defer themselves
+    private void publishChanges(Keyed batch, Set<Long> insertedKeys, List<NormalizedEvent> removed) {
+        Set<String> removedIds = new HashSet<>();
+        removed.forEach(e -> removedIds.add(e.getEventId()));
+        List<NormalizedEvent> added = new ArrayList<>();
+        for (int i = 0; i < batch.events().size(); i++) {
+            NormalizedEvent e = batch.events().get(i);
+            if (insertedKeys.contains(batch.eventKeys()[i]) || removedIds.contains(e.getEventId())) {
+                added.add(e);
+            }
+        }
+        if (!added.isEmpty()) {
+            publisher.publishEvent(new EventsChanged(removed, added));
+        }
+    }
+
+    private static List<Long> keys(ResultSet rs, String column) throws SQLException {
+        Array keys = rs.getArray(column);
+        return keys == null ? List.of() : Arrays.asList((Long[]) keys.getArray());
+    }
+
+    @FunctionalInterface
+    public interface MinuteCountHandler {
+        void accept(String machineId, String factoryId, String lineId, long epochMinute, long events, long defects);
+    }
+
+    // a batch with the keys its ids are stored under, by position
+    private record Keyed(List<NormalizedEvent> events, long[] eventKeys,
+                         int[] machineKeys, int[] factoryKeys, int[] lineKeys) {
+
+        Keyed where(IntPredicate position) {
+            int[] positions = IntStream.range(0, events.size()).filter(position).toArray();
+            List<NormalizedEvent> selected = new ArrayList<>(positions.length);
+            long[] selectedEventKeys = new long[positions.length];
+            int[] selectedMachineKeys = new int[positions.length];
+            int[] selectedFactoryKeys = new int[positions.length];
+            int[] selectedLineKeys = new int[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                int p = positions[i];
+                selected.add(events.get(p));
+                selectedEventKeys[i] = eventKeys[p];
+                selectedMachineKeys[i] = machineKeys[p];
+                selectedFactoryKeys[i] = factoryKeys[p];
+                selectedLineKeys[i] = lineKeys[p];
+            }
+            return new Keyed(selected, selectedEventKeys, selectedMachineKeys, selectedFactoryKeys, selectedLineKeys);
+        }
+
+        Keyed concat(Keyed other) {
+            List<NormalizedEvent> joined = new ArrayList<>(events);
+            joined.addAll(other.events);
+            return new Keyed(joined,
+                    LongStream.concat(Arrays.stream(eventKeys), Arrays.stream(other.eventKeys)).toArray(),
+                    IntStream.concat(Arrays.stream(machineKeys), Arrays.stream(other.machineKeys)).toArray(),
+                    IntStream.concat(Arrays.stream(factoryKeys), Arrays.stream(other.factoryKeys)).toArray(),
+                    IntStream.concat(Arrays.stream(lineKeys), Arrays.stream(other.lineKeys)).toArray());
+        }
     }
 }
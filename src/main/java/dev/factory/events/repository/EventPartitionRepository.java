@@ -0,0 +1,87 @@
+package dev.factory.events.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Catalog queries and DDL for the range partitions of {@code events}.
+ */
+@Repository
+public class EventPartitionRepository {
+
+    // bounds are printed in the session time zone and parsed back by the same session
+    private static final String RANGE_PARTITIONS = """
+            SELECT name, range_from, range_to
+            FROM (
+                SELECT
+                    c.relname AS name,
+                    (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'FROM \\(''([^'']+)''\\)'))[1]::timestamptz AS range_from,
+                    (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \\(''([^'']+)''\\)'))[1]::timestamptz AS range_to
+                FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = 'events'::regclass
+            ) p
+            WHERE range_from IS NOT NULL
+            ORDER BY range_from
+            """;
+
+    private final JdbcTemplate jdbc;
+
+    public EventPartitionRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Attached range partitions ordered by start; the default partition is left out.
+     */
+    public List<Partition> findRangePartitions() {
+        return jdbc.query(RANGE_PARTITIONS, (rs, rowNum) -> new Partition(
+                rs.getString("name"),
+                rs.getTimestamp("range_from").toInstant(),
+                rs.getTimestamp("range_to").toInstant()
+        ));
+    }
+
+    public void create(String name, Instant from, Instant to) {
+        jdbc.execute("CREATE TABLE \"%s\" PARTITION OF events FOR VALUES FROM ('%s') TO ('%s')"
+                .formatted(name, from, to));
+    }
+
+    /**
+     * Releases the eventIds stored in the partition, drops the hourly rollups of its range
+     * and detaches it, in one transaction, so nothing refers to rows that are no longer
+     * part of events. The table is kept.
+     *
+     * @return the number of eventIds released
+     */
+    @Transactional
+    public int detach(Partition partition) {
+        int released = jdbc.update("""
+                DELETE FROM event_ids d
+                USING "%s" p
+                WHERE d.event_key = p.event_key AND d.event_time = p.event_time
+                """.formatted(partition.name()));
+        for (String rollup : List.of("machine_stats_hourly", "line_stats_hourly")) {
+            jdbc.update("DELETE FROM " + rollup + " WHERE hour >= ? AND hour < ?",
+                    Timestamp.from(partition.from()), Timestamp.from(partition.to()));
+        }
+        jdbc.execute("ALTER TABLE events DETACH PARTITION \"%s\"".formatted(partition.name()));
+        return released;
+    }
+
+    /**
+     * @param from inclusive
+     * @param to   exclusive
+     */
+    public record Partition(String name, Instant from, Instant to) {
+
+        public boolean overlaps(Instant otherFrom, Instant otherTo) {
+            return from.isBefore(otherTo) && otherFrom.isBefore(to);
+        }
+    }
+}
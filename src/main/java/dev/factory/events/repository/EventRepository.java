@@ -1,8 +1,6 @@
 package dev.factory.events.repository;
 
-import dev.factory.events.api.dto.MachineStatsResponse;
 import dev.factory.events.domain.EventEntity;
-import dev.factory.events.service.model.NormalizedEvent;
 import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
@@ -10,7 +8,10 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
 import java.util.List;
 
 public interface EventRepository extends JpaRepository<EventEntity,Long> {
@@ -24,25 +25,37 @@ public interface EventRepository extends JpaRepository<EventEntity,Long> {
     List<EventEntity> findAllByEventIdInForUpdate(@Param("eventIds") List<String> eventIds);
 
 
+    // event_ids is maintained by hand here, as the native path does in its upsert CTE;
+    // a plain insert keeps concurrent inserts of one eventId failing on the primary key
     @Modifying
-    @Query(
-            value = """
-        INSERT INTO events(event_id, event_time, received_time, machine_id, factory_id, line_id, duration_ms, defect_count)
-        VALUES (:#{#e.eventId}, :#{#e.eventTime}, :#{#e.receivedTime}, :#{#e.machineId}, :#{#e.factoryId}, :#{#e.lineId}, :#{#e.durationMs}, :#{#e.defectCount})
-        ON CONFLICT(event_id) DO UPDATE
-        SET
-            event_time = EXCLUDED.event_time,
-            received_time = EXCLUDED.received_time,
-            machine_id = EXCLUDED.machine_id,
-            factory_id = EXCLUDED.factory_id,
-            line_id = EXCLUDED.line_id,
-            duration_ms = EXCLUDED.duration_ms,
-            defect_count = EXCLUDED.defect_count
-        WHERE EXCLUDED.received_time > events.received_time
-        """,
-            nativeQuery = true
-    )
-    int upsertBatch(@Param("e") List<NormalizedEvent> events);
+    @Query(value = """
+    INSERT INTO event_ids (event_key, event_time, received_time, payload_fingerprint)
+    VALUES (event_key(:eventId), :eventTime, :receivedTime, :payloadFingerprint)
+    """, nativeQuery = true)
+    void insertEventId(
+            @Param("eventId") String eventId,
+            @Param("eventTime") Instant eventTime,
+            @Param("receivedTime") Instant receivedTime,
+            @Param("payloadFingerprint") long payloadFingerprint
+    );
+
+    // an upsert, since moving the row to another partition may already have released the id
+    @Modifying
+    @Query(value = """
+    INSERT INTO event_ids (event_key, event_time, received_time, payload_fingerprint)
+    VALUES (event_key(:eventId), :eventTime, :receivedTime, :payloadFingerprint)
+    ON CONFLICT (event_key) DO UPDATE
+    SET
+        event_time = EXCLUDED.event_time,
+        received_time = EXCLUDED.received_time,
+        payload_fingerprint = EXCLUDED.payload_fingerprint
+    """, nativeQuery = true)
+    void upsertEventId(
+            @Param("eventId") String eventId,
+            @Param("eventTime") Instant eventTime,
+            @Param("receivedTime") Instant receivedTime,
+            @Param("payloadFingerprint") long payloadFingerprint
+    );
 
     //FOR TESTS ONLY
     @Query("""
@@ -52,48 +65,487 @@ public interface EventRepository extends JpaRepository<EventEntity,Long> {
     """)
     List<EventEntity> findAllByEventIdIn(@Param("eventIds") List<String> eventIds);
 
-    @Query("""
+    /**
+     * Events and non-negative defects of a machine in [startTime, endTime). Whole UTC hours
+     * are read from machine_stats_hourly; only the partial hours at either edge scan events.
+     */
+    default MachineStatsProjection fetchStats(String machineId, Instant startTime, Instant endTime) {
+        Instant fullFrom = wholeHoursFrom(startTime, endTime);
+        return fetchRolledUpStats(machineId, startTime, endTime, fullFrom, wholeHoursTo(fullFrom, endTime));
+    }
+
+    // the event_time bounds are parameters, so the planner prunes partitions of both edges.
+    // Ids are translated to their dictionary keys once per statement, in an init plan; an
+    // unknown id has no key and matches nothing
+    @Query(value = """
     SELECT
-        COUNT(e) as eventsCount,
-        COALESCE(
-            SUM(
-                CASE
-                    WHEN e.defectCount >= 0 THEN e.defectCount
-                    ELSE 0
-                END
-            ),
-            0
-        ) as defectsCount
-    FROM EventEntity e
-    WHERE e.machineId = :machineId
-      AND e.eventTime >= :startTime
-      AND e.eventTime < :endTime
-    """)
-    MachineStatsProjection fetchStats(
+        COALESCE(SUM(s.events), 0)::bigint as eventsCount,
+        COALESCE(SUM(s.defects), 0)::bigint as defectsCount
+    FROM (
+        SELECT r.events_count AS events, r.defects_count AS defects
+        FROM machine_stats_hourly r
+        WHERE r.machine_key = (SELECT id FROM machines WHERE machine_id = :machineId)
+          AND r.hour >= :fullFrom
+          AND r.hour < :fullTo
+        UNION ALL
+        SELECT 1, CASE WHEN e.defect_count >= 0 THEN e.defect_count ELSE 0 END
+        FROM events e
+        WHERE e.machine_key = (SELECT id FROM machines WHERE machine_id = :machineId)
+          AND e.event_time >= :startTime
+          AND e.event_time < :fullFrom
+        UNION ALL
+        SELECT 1, CASE WHEN e.defect_count >= 0 THEN e.defect_count ELSE 0 END
+        FROM events e
+        WHERE e.machine_key = (SELECT id FROM machines WHERE machine_id = :machineId)
+          AND e.event_time >= :fullTo
+          AND e.event_time < :endTime
+    ) s
+""", nativeQuery = true)
+    MachineStatsProjection fetchRolledUpStats(
             @Param("machineId") String machineId,
             @Param("startTime") Instant startTime,
-            @Param("endTime") Instant endTime
+            @Param("endTime") Instant endTime,
+            @Param("fullFrom") Instant fullFrom,
+            @Param("fullTo") Instant fullTo
     );
 
+    /**
+     * Events and non-negative defects of a machine in [startTime, wholeFrom) and
+     * [wholeTo, endTime): the partial minutes around a window counted in memory.
+     */
     @Query(value = """
     SELECT
-        e.line_id as lineId,
-        COALESCE(SUM(CASE WHEN e.defect_count >= 0 THEN e.defect_count ELSE 0 END), 0) as totalDefects,
-        COUNT(*) as eventCount
+        COUNT(*) as eventsCount,
+        COALESCE(SUM(CASE WHEN e.defect_count >= 0 THEN e.defect_count ELSE 0 END), 0) as defectsCount
     FROM events e
-    WHERE e.factory_id = :factoryId
-      AND e.event_time >= :startTime
-      AND e.event_time < :endTime
-    GROUP BY e.line_id
-    ORDER BY totalDefects DESC
-    LIMIT :limit
+    WHERE e.machine_key = (SELECT id FROM machines WHERE machine_id = :machineId)
+      AND (
+        (e.event_time >= :startTime AND e.event_time < :wholeFrom)
+        OR (e.event_time >= :wholeTo AND e.event_time < :endTime)
+      )
 """, nativeQuery = true)
-    List<TopDefectLineProjection> findTopDefectLinesNative(
+    MachineStatsProjection fetchEdgeStats(
+            @Param("machineId") String machineId,
+            @Param("startTime") Instant startTime,
+            @Param("wholeFrom") Instant wholeFrom,
+            @Param("wholeTo") Instant wholeTo,
+            @Param("endTime") Instant endTime
+    );
+
+    /**
+     * Lines of a factory by non-negative defects in [startTime, endTime), read like
+     * {@link #fetchStats}: whole hours from line_stats_hourly, edges from events.
+     */
+    default List<TopDefectLineProjection> findTopDefectLinesNative(
+            String factoryId, Instant startTime, Instant endTime, int limit) {
+        Instant fullFrom = wholeHoursFrom(startTime, endTime);
+        return findTopDefectLinesRolledUp(factoryId, startTime, endTime, fullFrom, wholeHoursTo(fullFrom, endTime), limit);
+    }
+
+    /**
+     * Per-line counts of the given lines of a factory in [startTime, wholeFrom) and
+     * [wholeTo, endTime): the partial minutes around a window counted in memory. Naming
+     * the lines lets idx_events_factory_line_time seek to each line's time range instead
+     * of reading every line of the factory.
+     */
+    @Query(value = """
+    SELECT
+        l.line_id as lineId,
+        s.totalDefects,
+        s.eventCount
+    FROM (
+        SELECT
+            e.line_key,
+            COALESCE(SUM(CASE WHEN e.defect_count >= 0 THEN e.defect_count ELSE 0 END), 0)::bigint as totalDefects,
+            COUNT(*) as eventCount
+        FROM events e
+        WHERE e.factory_key = (SELECT id FROM factories WHERE factory_id = :factoryId)
+          AND e.line_key = ANY (ARRAY(SELECT id FROM lines WHERE line_id IN (:lineIds)))
+          AND (
+            (e.event_time >= :startTime AND e.event_time < :wholeFrom)
+            OR (e.event_time >= :wholeTo AND e.event_time < :endTime)
+          )
+        GROUP BY e.line_key
+    ) s
+    JOIN lines l ON l.id = s.line_key
+""", nativeQuery = true)
+    List<TopDefectLineProjection> findEdgeLineStats(
+            @Param("factoryId") String factoryId,
+            @Param("lineIds") Collection<String> lineIds,
+            @Param("startTime") Instant startTime,
+            @Param("wholeFrom") Instant wholeFrom,
+            @Param("wholeTo") Instant wholeTo,
+            @Param("endTime") Instant endTime
+    );
+
+    @Query(value = """
+    SELECT
+        l.line_id as lineId,
+        t.totalDefects,
+        t.eventCount
+    FROM (
+        SELECT
+            s.line_key,
+            SUM(s.defects)::bigint as totalDefects,
+            SUM(s.events)::bigint as eventCount
+        FROM (
+            SELECT r.line_key, r.events_count AS events, r.defects_count AS defects
+            FROM line_stats_hourly r
+            WHERE r.factory_key = (SELECT id FROM factories WHERE factory_id = :factoryId)
+              AND r.hour >= :fullFrom
+              AND r.hour < :fullTo
+            UNION ALL
+            SELECT e.line_key, 1, CASE WHEN e.defect_count >= 0 THEN e.defect_count ELSE 0 END
+            FROM events e
+            WHERE e.factory_key = (SELECT id FROM factories WHERE factory_id = :factoryId)
+              AND e.event_time >= :startTime
+              AND e.event_time < :fullFrom
+            UNION ALL
+            SELECT e.line_key, 1, CASE WHEN e.defect_count >= 0 THEN e.defect_count ELSE 0 END
+            FROM events e
+            WHERE e.factory_key = (SELECT id FROM factories WHERE factory_id = :factoryId)
+              AND e.event_time >= :fullTo
+              AND e.event_time < :endTime
+        ) s
+        GROUP BY s.line_key
+        HAVING SUM(s.events) > 0
+        ORDER BY totalDefects DESC
+        LIMIT :limit
+    ) t
+    JOIN lines l ON l.id = t.line_key
+    ORDER BY t.totalDefects DESC
+""", nativeQuery = true)
+    List<TopDefectLineProjection> findTopDefectLinesRolledUp(
             @Param("factoryId") String factoryId,
             @Param("startTime") Instant startTime,
             @Param("endTime") Instant endTime,
+            @Param("fullFrom") Instant fullFrom,
+            @Param("fullTo") Instant fullTo,
+            @Param("limit") int limit
+    );
+
+    /**
+     * {@link #fetchStats} for several machines over one window, in one statement. Machines
+     * without events in the window, and unknown ids, have no row.
+     */
+    default List<MachineIdStatsProjection> fetchStatsForMachines(
+            Collection<String> machineIds, Instant startTime, Instant endTime) {
+        Instant fullFrom = wholeHoursFrom(startTime, endTime);
+        return fetchRolledUpStatsForMachines(machineIds.toArray(String[]::new), startTime, endTime,
+                fullFrom, wholeHoursTo(fullFrom, endTime));
+    }
+
+    // the ids are bound as one array, so the statement and its plan are the same for any
+    // number of machines; each branch scans its index once per key of the array
+    @Query(value = """
+    SELECT
+        m.machine_id as machineId,
+        t.eventsCount,
+        t.defectsCount
+    FROM (
+        SELECT
+            s.machine_key,
+            SUM(s.events)::bigint as eventsCount,
+            SUM(s.defects)::bigint as defectsCount
+        FROM (
+            SELECT r.machine_key, r.events_count AS events, r.defects_count AS defects
+            FROM machine_stats_hourly r
+            WHERE r.machine_key = ANY (ARRAY(SELECT id FROM machines WHERE machine_id = ANY (:machineIds)))
+              AND r.hour >= :fullFrom
+              AND r.hour < :fullTo
+            UNION ALL
+            SELECT e.machine_key, 1, CASE WHEN e.defect_count >= 0 THEN e.defect_count ELSE 0 END
+            FROM events e
+            WHERE e.machine_key = ANY (ARRAY(SELECT id FROM machines WHERE machine_id = ANY (:machineIds)))
+              AND e.event_time >= :startTime
+              AND e.event_time < :fullFrom
+            UNION ALL
+            SELECT e.machine_key, 1, CASE WHEN e.defect_count >= 0 THEN e.defect_count ELSE 0 END
+            FROM events e
+            WHERE e.machine_key = ANY (ARRAY(SELECT id FROM machines WHERE machine_id = ANY (:machineIds)))
+              AND e.event_time >= :fullTo
+              AND e.event_time < :endTime
+        ) s
+        GROUP BY s.machine_key
+    ) t
+    JOIN machines m ON m.id = t.machine_key
+""", nativeQuery = true)
+    List<MachineIdStatsProjection> fetchRolledUpStatsForMachines(
+            @Param("machineIds") String[] machineIds,
+            @Param("startTime") Instant startTime,
+            @Param("endTime") Instant endTime,
+            @Param("fullFrom") Instant fullFrom,
+            @Param("fullTo") Instant fullTo
+    );
+
+    /**
+     * {@link #fetchEdgeStats} for several machines, in one statement. Machines without
+     * events at the edges have no row.
+     */
+    @Query(value = """
+    SELECT
+        m.machine_id as machineId,
+        t.eventsCount,
+        t.defectsCount
+    FROM (
+        SELECT
+            e.machine_key,
+            COUNT(*) as eventsCount,
+            COALESCE(SUM(CASE WHEN e.defect_count >= 0 THEN e.defect_count ELSE 0 END), 0)::bigint as defectsCount
+        FROM events e
+        WHERE e.machine_key = ANY (ARRAY(SELECT id FROM machines WHERE machine_id = ANY (:machineIds)))
+          AND (
+            (e.event_time >= :startTime AND e.event_time < :wholeFrom)
+            OR (e.event_time >= :wholeTo AND e.event_time < :endTime)
+          )
+        GROUP BY e.machine_key
+    ) t
+    JOIN machines m ON m.id = t.machine_key
+""", nativeQuery = true)
+    List<MachineIdStatsProjection> fetchEdgeStatsForMachines(
+            @Param("machineIds") String[] machineIds,
+            @Param("startTime") Instant startTime,
+            @Param("wholeFrom") Instant wholeFrom,
+            @Param("wholeTo") Instant wholeTo,
+            @Param("endTime") Instant endTime
+    );
+
+    /**
+     * {@link #findTopDefectLinesNative} for several factories over one window, in one
+     * statement: the {@code limit} lines with the most defects of each factory, grouped by
+     * factory and by defects within it.
+     */
+    default List<FactoryDefectLineProjection> findTopDefectLinesForFactories(
+            Collection<String> factoryIds, Instant startTime, Instant endTime, int limit) {
+        Instant fullFrom = wholeHoursFrom(startTime, endTime);
+        return findTopDefectLinesRolledUpForFactories(factoryIds.toArray(String[]::new), startTime, endTime,
+                fullFrom, wholeHoursTo(fullFrom, endTime), limit);
+    }
+
+    @Query(value = """
+    SELECT
+        f.factory_id as factoryId,
+        l.line_id as lineId,
+        t.totalDefects,
+        t.eventCount
+    FROM (
+        SELECT
+            s.factory_key,
+            s.line_key,
+            SUM(s.defects)::bigint as totalDefects,
+            SUM(s.events)::bigint as eventCount,
+            row_number() OVER (PARTITION BY s.factory_key ORDER BY SUM(s.defects) DESC) as rank
+        FROM (
+            SELECT r.factory_key, r.line_key, r.events_count AS events, r.defects_count AS defects
+            FROM line_stats_hourly r
+            WHERE r.factory_key = ANY (ARRAY(SELECT id FROM factories WHERE factory_id = ANY (:factoryIds)))
+              AND r.hour >= :fullFrom
+              AND r.hour < :fullTo
+            UNION ALL
+            SELECT e.factory_key, e.line_key, 1, CASE WHEN e.defect_count >= 0 THEN e.defect_count ELSE 0 END
+            FROM events e
+            WHERE e.factory_key = ANY (ARRAY(SELECT id FROM factories WHERE factory_id = ANY (:factoryIds)))
+              AND e.event_time >= :startTime
+              AND e.event_time < :fullFrom
+            UNION ALL
+            SELECT e.factory_key, e.line_key, 1, CASE WHEN e.defect_count >= 0 THEN e.defect_count ELSE 0 END
+            FROM events e
+            WHERE e.factory_key = ANY (ARRAY(SELECT id FROM factories WHERE factory_id = ANY (:factoryIds)))
+              AND e.event_time >= :fullTo
+              AND e.event_time < :endTime
+        ) s
+        GROUP BY s.factory_key, s.line_key
+        HAVING SUM(s.events) > 0
+    ) t
+    JOIN factories f ON f.id = t.factory_key
+    JOIN lines l ON l.id = t.line_key
+    WHERE t.rank <= :limit
+    ORDER BY f.factory_id, t.totalDefects DESC
+""", nativeQuery = true)
+    List<FactoryDefectLineProjection> findTopDefectLinesRolledUpForFactories(
+            @Param("factoryIds") String[] factoryIds,
+            @Param("startTime") Instant startTime,
+            @Param("endTime") Instant endTime,
+            @Param("fullFrom") Instant fullFrom,
+            @Param("fullTo") Instant fullTo,
             @Param("limit") int limit
     );
 
+    /**
+     * {@link #findEdgeLineStats} for the given lines of several factories, in one statement.
+     */
+    @Query(value = """
+    SELECT
+        f.factory_id as factoryId,
+        l.line_id as lineId,
+        s.totalDefects,
+        s.eventCount
+    FROM (
+        SELECT
+            e.factory_key,
+            e.line_key,
+            COALESCE(SUM(CASE WHEN e.defect_count >= 0 THEN e.defect_count ELSE 0 END), 0)::bigint as totalDefects,
+            COUNT(*) as eventCount
+        FROM events e
+        WHERE e.factory_key = ANY (ARRAY(SELECT id FROM factories WHERE factory_id = ANY (:factoryIds)))
+          AND e.line_key = ANY (ARRAY(SELECT id FROM lines WHERE line_id = ANY (:lineIds)))
+          AND (
+            (e.event_time >= :startTime AND e.event_time < :wholeFrom)
+            OR (e.event_time >= :wholeTo AND e.event_time < :endTime)
+          )
+        GROUP BY e.factory_key, e.line_key
+    ) s
+    JOIN factories f ON f.id = s.factory_key
+    JOIN lines l ON l.id = s.line_key
+""", nativeQuery = true)
+    List<FactoryDefectLineProjection> findEdgeLineStatsForFactories(
+            @Param("factoryIds") String[] factoryIds,
+            @Param("lineIds") String[] lineIds,
+            @Param("startTime") Instant startTime,
+            @Param("wholeFrom") Instant wholeFrom,
+            @Param("wholeTo") Instant wholeTo,
+            @Param("endTime") Instant endTime
+    );
+
+    /**
+     * Events and non-negative defects of a machine in [startTime, endTime) per bucket of
+     * {@code width}, aligned to the epoch, oldest first; buckets without events have no
+     * row. Widths of whole hours read whole hours from machine_stats_hourly like
+     * {@link #fetchStats}; other widths scan events.
+     */
+    default List<HistogramBucketProjection> fetchMachineHistogram(
+            String machineId, Instant startTime, Instant endTime, Duration width) {
+        Instant fullFrom = wholeHoursFrom(startTime, endTime, width);
+        return fetchRolledUpMachineHistogram(machineId, startTime, endTime, fullFrom,
+                wholeHoursTo(fullFrom, endTime, width), width.toSeconds());
+    }
+
+    // one pass over the same rows as fetchRolledUpStats, binned rather than summed
+    @Query(value = """
+    SELECT
+        b.bucket as bucketStart,
+        SUM(b.events)::bigint as eventsCount,
+        SUM(b.defects)::bigint as defectsCount
+    FROM (
+        SELECT
+            date_bin(:widthSeconds * INTERVAL '1 second', r.hour, TIMESTAMPTZ '1970-01-01 00:00:00+00') AS bucket,
+            r.events_count AS events,
+            r.defects_count AS defects
+        FROM machine_stats_hourly r
+        WHERE r.machine_key = (SELECT id FROM machines WHERE machine_id = :machineId)
+          AND r.hour >= :fullFrom
+          AND r.hour < :fullTo
+        UNION ALL
+        SELECT
+            date_bin(:widthSeconds * INTERVAL '1 second', e.event_time, TIMESTAMPTZ '1970-01-01 00:00:00+00'),
+            1,
+            CASE WHEN e.defect_count >= 0 THEN e.defect_count ELSE 0 END
+        FROM events e
+        WHERE e.machine_key = (SELECT id FROM machines WHERE machine_id = :machineId)
+          AND e.event_time >= :startTime
+          AND e.event_time < :fullFrom
+        UNION ALL
+        SELECT
+            date_bin(:widthSeconds * INTERVAL '1 second', e.event_time, TIMESTAMPTZ '1970-01-01 00:00:00+00'),
+            1,
+            CASE WHEN e.defect_count >= 0 THEN e.defect_count ELSE 0 END
+        FROM events e
+        WHERE e.machine_key = (SELECT id FROM machines WHERE machine_id = :machineId)
+          AND e.event_time >= :fullTo
+          AND e.event_time < :endTime
+    ) b
+    GROUP BY b.bucket
+    ORDER BY b.bucket
+""", nativeQuery = true)
+    List<HistogramBucketProjection> fetchRolledUpMachineHistogram(
+            @Param("machineId") String machineId,
+            @Param("startTime") Instant startTime,
+            @Param("endTime") Instant endTime,
+            @Param("fullFrom") Instant fullFrom,
+            @Param("fullTo") Instant fullTo,
+            @Param("widthSeconds") long widthSeconds
+    );
+
+    /**
+     * {@link #fetchMachineHistogram} of one line of a factory, whole hours read from
+     * line_stats_hourly.
+     */
+    default List<HistogramBucketProjection> fetchLineHistogram(
+            String factoryId, String lineId, Instant startTime, Instant endTime, Duration width) {
+        Instant fullFrom = wholeHoursFrom(startTime, endTime, width);
+        return fetchRolledUpLineHistogram(factoryId, lineId, startTime, endTime, fullFrom,
+                wholeHoursTo(fullFrom, endTime, width), width.toSeconds());
+    }
+
+    @Query(value = """
+    SELECT
+        b.bucket as bucketStart,
+        SUM(b.events)::bigint as eventsCount,
+        SUM(b.defects)::bigint as defectsCount
+    FROM (
+        SELECT
+            date_bin(:widthSeconds * INTERVAL '1 second', r.hour, TIMESTAMPTZ '1970-01-01 00:00:00+00') AS bucket,
+            r.events_count AS events,
+            r.defects_count AS defects
+        FROM line_stats_hourly r
+        WHERE r.factory_key = (SELECT id FROM factories WHERE factory_id = :factoryId)
+          AND r.line_key = (SELECT id FROM lines WHERE line_id = :lineId)
+          AND r.hour >= :fullFrom
+          AND r.hour < :fullTo
+        UNION ALL
+        SELECT
+            date_bin(:widthSeconds * INTERVAL '1 second', e.event_time, TIMESTAMPTZ '1970-01-01 00:00:00+00'),
+            1,
+            CASE WHEN e.defect_count >= 0 THEN e.defect_count ELSE 0 END
+        FROM events e
+        WHERE e.factory_key = (SELECT id FROM factories WHERE factory_id = :factoryId)
+          AND e.line_key = (SELECT id FROM lines WHERE line_id = :lineId)
+          AND e.event_time >= :startTime
+          AND e.event_time < :fullFrom
+        UNION ALL
+        SELECT
+            date_bin(:widthSeconds * INTERVAL '1 second', e.event_time, TIMESTAMPTZ '1970-01-01 00:00:00+00'),
+            1,
+            CASE WHEN e.defect_count >= 0 THEN e.defect_count ELSE 0 END
+        FROM events e
+        WHERE e.factory_key = (SELECT id FROM factories WHERE factory_id = :factoryId)
+          AND e.line_key = (SELECT id FROM lines WHERE line_id = :lineId)
+          AND e.event_time >= :fullTo
+          AND e.event_time < :endTime
+    ) b
+    GROUP BY b.bucket
+    ORDER BY b.bucket
+""", nativeQuery = true)
+    List<HistogramBucketProjection> fetchRolledUpLineHistogram(
+            @Param("factoryId") String factoryId,
+            @Param("lineId") String lineId,
+            @Param("startTime") Instant startTime,
+            @Param("endTime") Instant endTime,
+            @Param("fullFrom") Instant fullFrom,
+            @Param("fullTo") Instant fullTo,
+            @Param("widthSeconds") long widthSeconds
+    );
+
+    // an hourly row falls in a single bucket only if buckets are whole hours; for narrower
+    // buckets there are no whole hours, and the first edge covers the window
+    private static Instant wholeHoursFrom(Instant start, Instant end, Duration width) {
+        return width.toSeconds() % 3600 == 0 ? wholeHoursFrom(start, end) : end;
+    }
+
+    private static Instant wholeHoursTo(Instant fullFrom, Instant end, Duration width) {
+        return width.toSeconds() % 3600 == 0 ? wholeHoursTo(fullFrom, end) : end;
+    }
+
+    // first whole UTC hour of [start, end), or end if there is none
+    private static Instant wholeHoursFrom(Instant start, Instant end) {
+        Instant hour = start.truncatedTo(ChronoUnit.HOURS);
+        Instant ceil = hour.equals(start) ? start : hour.plus(1, ChronoUnit.HOURS);
+        return ceil.isBefore(end) ? ceil : end;
+    }
 
+    // end of the whole hours starting at fullFrom; equal to fullFrom if there are none
+    private static Instant wholeHoursTo(Instant fullFrom, Instant end) {
+        Instant floor = end.truncatedTo(ChronoUnit.HOURS);
+        return floor.isAfter(fullFrom) ? floor : fullFrom;
+    }
 }
@@ -0,0 +1,9 @@
+package dev.factory.events.repository;
+
+/**
+ * {@link TopDefectLineProjection} of a line of one factory among several answered together.
+ */
+public interface FactoryDefectLineProjection extends TopDefectLineProjection {
+
+    String getFactoryId();
+}
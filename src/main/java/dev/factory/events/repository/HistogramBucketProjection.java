@@ -0,0 +1,12 @@
+package dev.factory.events.repository;
+
+import java.time.Instant;
+
+public interface HistogramBucketProjection {
+
+    Instant getBucketStart();
+
+    long getEventsCount();
+
+    long getDefectsCount();
+}
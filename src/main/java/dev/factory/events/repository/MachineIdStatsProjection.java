@@ -0,0 +1,9 @@
+package dev.factory.events.repository;
+
+/**
+ * {@link MachineStatsProjection} of one machine among several answered together.
+ */
+public interface MachineIdStatsProjection extends MachineStatsProjection {
+
+    String getMachineId();
+}
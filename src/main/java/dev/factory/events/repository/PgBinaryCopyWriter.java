@@ -0,0 +1,91 @@
+package dev.factory.events.repository;
+
+import org.postgresql.copy.CopyIn;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Instant;
+
+/**
+ * Streams tuples into an open {@link CopyIn} using PostgreSQL's binary COPY format.
+ * Rows are encoded into a fixed buffer which is handed to the driver whenever it fills up,
+ * so memory use does not depend on the number of rows.
+ */
+class PgBinaryCopyWriter {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // PostgreSQL timestamps count microseconds from 2000-01-01T00:00:00Z
+    private static final long PG_EPOCH_SECONDS = 946_684_800L;
+
+    private final CopyIn copyIn;
+    private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+
+    PgBinaryCopyWriter(CopyIn copyIn) throws SQLException {
+        this.copyIn = copyIn;
+        buf.put(SIGNATURE);
+        buf.putInt(0); // flags
+        buf.putInt(0); // header extension length
+    }
+
+    void startRow(int fieldCount) throws SQLException {
+        ensure(Short.BYTES);
+        buf.putShort((short) fieldCount);
+    }
+
+    void writeText(String value) throws SQLException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensure(Integer.BYTES + bytes.length);
+        buf.putInt(bytes.length);
+        buf.put(bytes);
+    }
+
+    void writeTimestamptz(Instant value) throws SQLException {
+        // round to the nearest microsecond, as the server does for text input
+        long micros = (value.getEpochSecond() - PG_EPOCH_SECONDS) * 1_000_000L
+                + (value.getNano() + 500) / 1_000;
+        writeLong(micros);
+    }
+
+    void writeLong(long value) throws SQLException {
+        ensure(Integer.BYTES + Long.BYTES);
+        buf.putInt(Long.BYTES);
+        buf.putLong(value);
+    }
+
+    void writeInt(int value) throws SQLException {
+        ensure(Integer.BYTES + Integer.BYTES);
+        buf.putInt(Integer.BYTES);
+        buf.putInt(value);
+    }
+
+    /**
+     * Writes the trailer and completes the COPY.
+     *
+     * @return number of rows the server reports as copied
+     */
+    long finish() throws SQLException {
+        ensure(Short.BYTES);
+        buf.putShort((short) -1);
+        flush();
+        return copyIn.endCopy();
+    }
+
+    private void ensure(int bytes) throws SQLException {
+        if (buf.remaining() < bytes) {
+            flush();
+        }
+        if (buf.remaining() < bytes) {
+            throw new IllegalArgumentException("COPY field of " + bytes + " bytes exceeds buffer size");
+        }
+    }
+
+    private void flush() throws SQLException {
+        if (buf.position() > 0) {
+            copyIn.writeToCopy(buf.array(), 0, buf.position());
+            buf.clear();
+        }
+    }
+}
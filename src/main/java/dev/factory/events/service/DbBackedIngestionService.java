@@ -3,10 +3,12 @@ package dev.factory.events.service;
 import dev.factory.events.api.dto.*;
 import dev.factory.events.domain.EventEntity;
 import dev.factory.events.repository.EventRepository;
+import dev.factory.events.service.model.EventsChanged;
 import dev.factory.events.service.model.NormalizedEvent;
 import dev.factory.events.util.ClockProvider;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
@@ -23,10 +25,12 @@ public class DbBackedIngestionService implements EventIngestionService {
 
     private final EventRepository eventRepository;
     private final ClockProvider clock;
+    private final ApplicationEventPublisher publisher;
 
-    public DbBackedIngestionService(EventRepository eventRepository, @Qualifier("runningClock") ClockProvider clock) {
+    public DbBackedIngestionService(EventRepository eventRepository, @Qualifier("runningClock") ClockProvider clock, ApplicationEventPublisher publisher) {
         this.eventRepository = eventRepository;
         this.clock = clock;
+        this.publisher = publisher;
     }
 
     @Override
@@ -104,6 +108,8 @@ public class DbBackedIngestionService implements EventIngestionService {
 
         List<EventEntity> toInsert = new ArrayList<>();
         List<EventEntity> toUpdate = new ArrayList<>();
+        List<NormalizedEvent> removed = new ArrayList<>();
+        List<NormalizedEvent> added = new ArrayList<>();
 
         // re-normalise with db data
         for (NormalizedEvent candidate : candidates.values()) {
@@ -112,6 +118,7 @@ public class DbBackedIngestionService implements EventIngestionService {
 
             if (existing == null) {
                 toInsert.add(toEntity(candidate));
+                added.add(candidate);
                 accepted++;
                 continue;
             }
@@ -122,6 +129,8 @@ public class DbBackedIngestionService implements EventIngestionService {
             }
 
             if (candidate.getReceivedTime().isAfter(existing.getReceivedTime())) {
+                removed.add(toEvent(existing));
+                added.add(candidate);
                 applyUpdate(existing, candidate);
                 toUpdate.add(existing);
                 updated++;
@@ -131,10 +140,21 @@ public class DbBackedIngestionService implements EventIngestionService {
         // Step 5: batch write
         if (!toInsert.isEmpty()) {
             eventRepository.saveAll(toInsert);
+            for (EventEntity e : toInsert) {
+                eventRepository.insertEventId(e.getEventId(), e.getEventTime(), e.getReceivedTime(), e.getPayloadFingerprint());
+            }
         }
 
         if (!toUpdate.isEmpty()) {
             eventRepository.saveAll(toUpdate);
+            for (EventEntity e : toUpdate) {
+                NormalizedEvent c = candidates.get(e.getEventId());
+                eventRepository.upsertEventId(c.getEventId(), c.getEventTime(), c.getReceivedTime(), c.getPayloadFingerprint());
+            }
+        }
+
+        if (!added.isEmpty()) {
+            publisher.publishEvent(new EventsChanged(removed, added));
         }
 
         return new EventBatchResponse(
@@ -159,6 +179,19 @@ public class DbBackedIngestionService implements EventIngestionService {
         );
     }
 
+    private NormalizedEvent toEvent(EventEntity e) {
+        return new NormalizedEvent(
+                e.getEventId(),
+                e.getEventTime(),
+                e.getReceivedTime(),
+                e.getMachineId(),
+                e.getFactoryId(),
+                e.getLineId(),
+                e.getDurationMs(),
+                e.getDefectCount()
+        );
+    }
+
     private void applyUpdate(EventEntity entity, NormalizedEvent e) {
         entity.setEventTime(e.getEventTime());
         entity.setReceivedTime(e.getReceivedTime());
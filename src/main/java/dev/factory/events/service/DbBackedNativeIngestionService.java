@@ -1,80 +1,56 @@
 package dev.factory.events.service;
 
 import dev.factory.events.api.dto.*;
+import dev.factory.events.config.IngestionProperties;
 import dev.factory.events.domain.IngestCounts;
 import dev.factory.events.repository.EventIngestionJDBCRepository;
+import dev.factory.events.service.model.NormalizedBatch;
 import dev.factory.events.service.model.NormalizedEvent;
 import dev.factory.events.util.ClockProvider;
+import dev.factory.events.util.IngestMetrics;
+import dev.factory.events.util.IngestMetrics.Stage;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
-import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 @Primary
 @Service("nativeIngestion")
 public class DbBackedNativeIngestionService implements EventIngestionService {
 
-    private static final Duration MAX_DURATION = Duration.ofHours(6);
-    private static final Duration FUTURE_TOLERANCE = Duration.ofMinutes(15);
-
     private final EventIngestionJDBCRepository repo;
-    private final ClockProvider clock;
-
-    public DbBackedNativeIngestionService(EventIngestionJDBCRepository repo, @Qualifier("runningClock") ClockProvider clock) {
+    private final EventNormalizer normalizer;
+    private final IngestionProperties props;
+    private final GroupCommitter groupCommitter;
+    private final EventIdFilter eventIdFilter;
+    private final RecentPayloadCache payloadCache;
+    private final ShardedUpserter shardedUpserter;
+    private final LockConflictRetry retry;
+    private final IngestMetrics metrics;
+
+    public DbBackedNativeIngestionService(EventIngestionJDBCRepository repo, @Qualifier("runningClock") ClockProvider clock, IngestionProperties props, GroupCommitter groupCommitter, EventIdFilter eventIdFilter, RecentPayloadCache payloadCache, ShardedUpserter shardedUpserter, LockConflictRetry retry, IngestMetrics metrics) {
         this.repo = repo;
-        this.clock = clock;
+        this.normalizer = new EventNormalizer(clock);
+        this.props = props;
+        this.groupCommitter = groupCommitter;
+        this.eventIdFilter = eventIdFilter;
+        this.payloadCache = payloadCache;
+        this.shardedUpserter = shardedUpserter;
+        this.retry = retry;
+        this.metrics = metrics;
     }
 
     @Override
     public EventBatchResponse ingest(EventBatchRequest request) {
 
-        Instant now = clock.now();
-//        System.out.println(now);
-        List<EventRejection> rejections = new ArrayList<>();
-        Map<String, NormalizedEvent> dedupedInRequest = new HashMap<>();
-
-        for (EventIngestRequest raw : request.getEvents()) {
-
-            if (raw.getDurationMs() < 0 || raw.getDurationMs() > MAX_DURATION.toMillis()) {
-                rejections.add(new EventRejection(
-                        raw.getEventId(),
-                        RejectionReason.INVALID_DURATION
-                ));
-                continue;
-            }
-
-            if (raw.getEventTime().isAfter(now.plus(FUTURE_TOLERANCE))) {
-                rejections.add(new EventRejection(
-                        raw.getEventId(),
-                        RejectionReason.EVENT_TIME_TOO_FAR_IN_FUTURE
-                ));
-                continue;
-            }
-
-            NormalizedEvent ne = new NormalizedEvent(
-                    raw.getEventId(),
-                    raw.getEventTime(),
-                    now,
-                    raw.getMachineId(),
-                    raw.getFactoryId(),
-                    raw.getLineId(),
-                    raw.getDurationMs(),
-                    raw.getDefectCount()
-            );
+        metrics.batch(request.getEvents().size());
+        NormalizedBatch checked = metrics.time(Stage.NORMALIZE, () -> normalizer.applyRules(request.getEvents()));
+        List<EventRejection> rejections = checked.rejections();
+        metrics.rejected(rejections);
 
-            NormalizedEvent existing = dedupedInRequest.get(ne.getEventId());
-            if (existing == null || ne.getReceivedTime().isAfter(existing.getReceivedTime())) {
-                dedupedInRequest.put(ne.getEventId(), ne);
-            }
-        }
-
-        if (dedupedInRequest.isEmpty()) {
+        if (checked.events().isEmpty()) {
             return new EventBatchResponse(
                     0, 0, 0,
                     rejections.size(),
@@ -82,8 +58,8 @@ public class DbBackedNativeIngestionService implements EventIngestionService {
             );
         }
 
-        IngestCounts counts =
-                repo.ingestBatch(new ArrayList<>(dedupedInRequest.values()));
+        List<NormalizedEvent> deduped = metrics.time(Stage.DEDUPE, () -> EventNormalizer.dedupe(checked.events()));
+        IngestCounts counts = upsert(deduped);
 
         return new EventBatchResponse(
                 counts.accepted(),
@@ -93,4 +69,65 @@ public class DbBackedNativeIngestionService implements EventIngestionService {
                 rejections
         );
     }
+
+    /**
+     * Upserts already normalized events. Retransmissions the recent-payload cache can
+     * answer are counted without a round trip; large batches are split into concurrent
+     * sub-batches when sharding is enabled, and the rest go through group commit when
+     * enabled, or straight to {@link #write}.
+     */
+    public IngestCounts upsert(List<NormalizedEvent> events) {
+        IngestCounts counts = cachedOrWritten(events);
+        metrics.counts(counts);
+        return counts;
+    }
+
+    private IngestCounts cachedOrWritten(List<NormalizedEvent> events) {
+        if (!payloadCache.isEnabled()) {
+            return writeGrouped(events);
+        }
+
+        RecentPayloadCache.Lookup lookup = payloadCache.lookup(events);
+        if (lookup.remaining().isEmpty()) {
+            return lookup.counts();
+        }
+        // the cache records what the write stored once it commits; see RecentPayloadCache#onChanged
+        return writeGrouped(lookup.remaining()).plus(lookup.counts());
+    }
+
+    private IngestCounts writeGrouped(List<NormalizedEvent> batch) {
+        if (shardedUpserter.applies(batch)) {
+            return shardedUpserter.ingest(batch, this::write);
+        }
+        if (!groupCommitter.isEnabled()) {
+            return write(batch);
+        }
+        return groupCommitter.ingest(batch, this::write);
+    }
+
+    /**
+     * Writes events in one transaction with the configured strategy, repeated if it loses
+     * a deadlock to a concurrent batch. Once the eventId filter is warm, events it has
+     * never seen are inserted without classification.
+     */
+    private IngestCounts write(List<NormalizedEvent> batch) {
+        IngestCounts counts;
+        if (eventIdFilter.isReady()) {
+            List<NormalizedEvent> likelyNew = new ArrayList<>();
+            List<NormalizedEvent> possiblySeen = new ArrayList<>();
+            for (NormalizedEvent e : batch) {
+                (eventIdFilter.mightContain(e.getEventId()) ? possiblySeen : likelyNew).add(e);
+            }
+            IngestCounts[] split = retry.run(() -> repo.ingestSplit(likelyNew, possiblySeen));
+            // conflicts from likelyNew existed already, so anything classified as new was a false positive
+            eventIdFilter.recordFalsePositives(split[1].accepted());
+            counts = split[0].plus(split[1]);
+        } else {
+            counts = retry.run(() -> props.getUpsert() == IngestionProperties.Upsert.ARRAYS
+                    ? repo.ingestBatchFromArrays(batch)
+                    : repo.ingestBatch(batch));
+        }
+        eventIdFilter.addAll(batch);
+        return counts;
+    }
 }
@@ -0,0 +1,75 @@
+package dev.factory.events.service;
+
+import dev.factory.events.api.dto.BucketWidth;
+import dev.factory.events.api.dto.DefectHistogramResponse;
+import dev.factory.events.repository.EventRepository;
+import dev.factory.events.repository.HistogramBucketProjection;
+import dev.factory.events.util.IngestMetrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Event and defect counts of a machine or a factory line per bucket of a window, for
+ * charting trends in one request instead of one stats request per bucket.
+ */
+@Service
+public class DefectHistogramService {
+
+    private final EventRepository eventRepository;
+    private final Timer machineQuery;
+    private final Timer lineQuery;
+
+    public DefectHistogramService(EventRepository eventRepository, IngestMetrics metrics) {
+        this.eventRepository = eventRepository;
+        this.machineQuery = metrics.statsQuery("machine-histogram", "database");
+        this.lineQuery = metrics.statsQuery("line-histogram", "database");
+    }
+
+    public DefectHistogramResponse getMachineHistogram(String machineId, Instant start, Instant end, BucketWidth bucket) {
+        List<HistogramBucketProjection> rows =
+                machineQuery.record(() -> eventRepository.fetchMachineHistogram(machineId, start, end, bucket.duration()));
+
+        DefectHistogramResponse res = response(start, end, bucket, rows);
+        res.setMachineId(machineId);
+        return res;
+    }
+
+    public DefectHistogramResponse getLineHistogram(String factoryId, String lineId, Instant start, Instant end,
+                                                    BucketWidth bucket) {
+        List<HistogramBucketProjection> rows =
+                lineQuery.record(() -> eventRepository.fetchLineHistogram(factoryId, lineId, start, end, bucket.duration()));
+
+        DefectHistogramResponse res = response(start, end, bucket, rows);
+        res.setFactoryId(factoryId);
+        res.setLineId(lineId);
+        return res;
+    }
+
+    // the query returns only buckets with events, oldest first; the gaps are filled with zeros
+    private static DefectHistogramResponse response(Instant start, Instant end, BucketWidth bucket,
+                                                    List<HistogramBucketProjection> rows) {
+        List<DefectHistogramResponse.Bucket> buckets = new ArrayList<>((int) bucket.count(start, end));
+        Iterator<HistogramBucketProjection> it = rows.iterator();
+        HistogramBucketProjection next = it.hasNext() ? it.next() : null;
+        for (Instant b = bucket.floor(start); b.isBefore(end); b = b.plus(bucket.duration())) {
+            if (next != null && next.getBucketStart().equals(b)) {
+                buckets.add(new DefectHistogramResponse.Bucket(b, next.getEventsCount(), next.getDefectsCount()));
+                next = it.hasNext() ? it.next() : null;
+            } else {
+                buckets.add(new DefectHistogramResponse.Bucket(b, 0, 0));
+            }
+        }
+
+        DefectHistogramResponse res = new DefectHistogramResponse();
+        res.setStart(start);
+        res.setEnd(end);
+        res.setBucket(bucket);
+        res.setBuckets(buckets);
+        return res;
+    }
+}
@@ -0,0 +1,130 @@
+package dev.factory.events.service;
+
+import dev.factory.events.api.dto.ExportFormat;
+import dev.factory.events.config.ExportProperties;
+import dev.factory.events.repository.EventExportRepository;
+import dev.factory.events.repository.EventExportRepository.ExportedEventHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Writes raw events to a stream as they come off the export cursor, one line per event.
+ * Nothing is collected: each row is formatted into the output buffer and dropped, so an
+ * export of any size runs in the memory of one fetch. If the client goes away, the next
+ * write fails, which closes the cursor and ends the query.
+ */
+@Service
+public class EventExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(EventExportService.class);
+
+    static final String CSV_HEADER =
+            "eventId,eventTime,receivedTime,machineId,factoryId,lineId,durationMs,defectCount\n";
+
+    private final EventExportRepository exportRepo;
+    private final ObjectWriter lineWriter;
+    private final int fetchSize;
+
+    public EventExportService(EventExportRepository exportRepo, JsonMapper jsonMapper, ExportProperties props) {
+        this.exportRepo = exportRepo;
+        // each object ends its own line; nothing goes between root values
+        this.lineWriter = jsonMapper.writer().withRootValueSeparator("");
+        this.fetchSize = props.getFetchSize();
+    }
+
+    /**
+     * Writes the events in [from, to), of one factory and/or machine if given, to
+     * {@code out} and closes it.
+     *
+     * @return the number of events written
+     */
+    public long export(ExportFormat format, String factoryId, String machineId, Instant from, Instant to,
+                       OutputStream out) throws IOException {
+        long started = System.nanoTime();
+        long[] rows = new long[1];
+        if (format == ExportFormat.CSV) {
+            try (Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024)) {
+                w.write(CSV_HEADER);
+                exportRepo.forEachEvent(factoryId, machineId, from, to, fetchSize, counted(rows, csv(w)));
+            }
+        } else {
+            try (JsonGenerator g = lineWriter.createGenerator(out)) {
+                exportRepo.forEachEvent(factoryId, machineId, from, to, fetchSize, counted(rows, ndjson(g)));
+            }
+        }
+        log.info("Exported {} events as {} in {} ms", rows[0], format, (System.nanoTime() - started) / 1_000_000);
+        return rows[0];
+    }
+
+    private static ExportedEventHandler counted(long[] rows, ExportedEventHandler handler) {
+        return (eventId, eventTime, receivedTime, machineId, factoryId, lineId, durationMs, defectCount) -> {
+            handler.accept(eventId, eventTime, receivedTime, machineId, factoryId, lineId, durationMs, defectCount);
+            rows[0]++;
+        };
+    }
+
+    private static ExportedEventHandler ndjson(JsonGenerator g) {
+        return (eventId, eventTime, receivedTime, machineId, factoryId, lineId, durationMs, defectCount) -> {
+            g.writeStartObject();
+            g.writeStringProperty("eventId", eventId);
+            g.writeStringProperty("eventTime", eventTime.toString());
+            g.writeStringProperty("receivedTime", receivedTime.toString());
+            g.writeStringProperty("machineId", machineId);
+            g.writeStringProperty("factoryId", factoryId);
+            g.writeStringProperty("lineId", lineId);
+            g.writeNumberProperty("durationMs", durationMs);
+            g.writeNumberProperty("defectCount", defectCount);
+            g.writeEndObject();
+            g.writeRaw('\n');
+        };
+    }
+
+    private static ExportedEventHandler csv(Writer w) {
+        return (eventId, eventTime, receivedTime, machineId, factoryId, lineId, durationMs, defectCount) -> {
+            writeField(w, eventId);
+            w.write(',');
+            w.write(eventTime.toString());
+            w.write(',');
+            w.write(receivedTime.toString());
+            w.write(',');
+            writeField(w, machineId);
+            w.write(',');
+            writeField(w, factoryId);
+            w.write(',');
+            writeField(w, lineId);
+            w.write(',');
+            w.write(Long.toString(durationMs));
+            w.write(',');
+            w.write(Integer.toString(defectCount));
+            w.write('\n');
+        };
+    }
+
+    // RFC 4180: quoted only if it holds a separator, quote or line break; quotes doubled
+    static void writeField(Writer w, String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            w.write(value);
+            return;
+        }
+        w.write('"');
+        w.write(value.replace("\"", "\"\""));
+        w.write('"');
+    }
+}
@@ -0,0 +1,167 @@
+package dev.factory.events.service;
+
+import dev.factory.events.config.IngestionProperties;
+import dev.factory.events.repository.EventIngestionJDBCRepository;
+import dev.factory.events.repository.EventRepository;
+import dev.factory.events.service.model.NormalizedEvent;
+import dev.factory.events.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bloom filter of the eventIds stored in {@code events}.
+ * <p>
+ * An eventId the filter does not contain has never been persisted by this process or
+ * seen by the last scan, so the event can be inserted without the classify/compare join.
+ * The filter is only a hint: the insert-only path uses {@code ON CONFLICT DO NOTHING}
+ * and hands conflicts back to the classify path, so rows written by other instances or
+ * by the JPA service never cause wrong results, only extra work.
+ * <p>
+ * The filter is built by scanning the table on a background thread at startup and is
+ * not consulted until that scan completes. Once it holds more ids than it was sized for,
+ * it is rebuilt at twice the size the same way while the old one keeps serving.
+ */
+@Component
+public class EventIdFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(EventIdFilter.class);
+
+    private final EventIngestionJDBCRepository jdbcRepo;
+    private final EventRepository eventRepository;
+    private final IngestionProperties.BloomFilter config;
+
+    private final Counter definitelyNew;
+    private final Counter possiblySeen;
+    private final Counter falsePositives;
+
+    // read building before current, so an id added during a swap reaches the new filter
+    private volatile BloomFilter current;
+    private volatile BloomFilter building;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    public EventIdFilter(EventIngestionJDBCRepository jdbcRepo, EventRepository eventRepository,
+                         IngestionProperties props, MeterRegistry registry) {
+        this.jdbcRepo = jdbcRepo;
+        this.eventRepository = eventRepository;
+        this.config = props.getBloomFilter();
+
+        Gauge.builder("events.bloom.memory", this, f -> f.current == null ? 0 : f.current.memoryBytes())
+                .description("Size of the eventId Bloom filter's bit array")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("events.bloom.expected.fpp", this, f -> f.current == null ? 0 : f.current.expectedFalsePositiveRate())
+                .description("False-positive rate implied by the bits set so far")
+                .register(registry);
+        Gauge.builder("events.bloom.observed.fpp", this, EventIdFilter::observedFalsePositiveRate)
+                .description("Share of new events the filter reported as possibly seen")
+                .register(registry);
+        Gauge.builder("events.bloom.entries", this, f -> f.current == null ? 0 : f.current.approximateElementCount())
+                .description("Approximate number of eventIds in the filter")
+                .register(registry);
+        this.definitelyNew = Counter.builder("events.bloom.lookups")
+                .tag("result", "new")
+                .register(registry);
+        this.possiblySeen = Counter.builder("events.bloom.lookups")
+                .tag("result", "maybe")
+                .register(registry);
+        this.falsePositives = Counter.builder("events.bloom.false.positives")
+                .description("Events reported as possibly seen that turned out to be new")
+                .register(registry);
+    }
+
+    @PostConstruct
+    void start() {
+        if (config.isEnabled()) {
+            rebuildAsync();
+        }
+    }
+
+    /**
+     * True once the filter is enabled and warmed; until then every event must be classified.
+     */
+    public boolean isReady() {
+        return current != null;
+    }
+
+    public boolean mightContain(String eventId) {
+        boolean maybe = current.mightContain(eventId);
+        (maybe ? possiblySeen : definitelyNew).increment();
+        return maybe;
+    }
+
+    /**
+     * Records how many of the events reported as possibly seen were in fact new.
+     */
+    public void recordFalsePositives(int count) {
+        falsePositives.increment(count);
+    }
+
+    /**
+     * Adds the ids of committed events.
+     */
+    public void addAll(List<NormalizedEvent> events) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        BloomFilter next = building;
+        BloomFilter filter = current;
+        for (NormalizedEvent e : events) {
+            if (next != null) {
+                next.put(e.getEventId());
+            }
+            if (filter != null) {
+                filter.put(e.getEventId());
+            }
+        }
+        if (filter != null && filter.approximateElementCount() > filter.bitSize() / bitsPerEntry()) {
+            rebuildAsync();
+        }
+    }
+
+    double observedFalsePositiveRate() {
+        double trulyNew = definitelyNew.count() + falsePositives.count();
+        return trulyNew == 0 ? 0 : falsePositives.count() / trulyNew;
+    }
+
+    private void rebuildAsync() {
+        if (rebuilding.compareAndSet(false, true)) {
+            Thread.ofPlatform().name("event-id-filter").daemon().start(this::rebuild);
+        }
+    }
+
+    private void rebuild() {
+        try {
+            long start = System.nanoTime();
+            long rows = eventRepository.count();
+            long capacity = Math.max(config.getExpectedInsertions(), rows * 2);
+            BloomFilter filter = BloomFilter.create(capacity, config.getFalsePositiveRate());
+
+            // published before the scan, so ids committed while it runs are not missed
+            building = filter;
+            jdbcRepo.forEachEventId(config.getWarmupFetchSize(), filter::put);
+            current = filter;
+            building = null;
+
+            log.info("EventId filter built from {} rows in {} ms: capacity {}, {} KB, {} hashes",
+                    rows, (System.nanoTime() - start) / 1_000_000, capacity,
+                    filter.memoryBytes() / 1024, filter.hashCount());
+        } catch (RuntimeException e) {
+            building = null;
+            log.warn("Building the eventId filter failed; events are classified without it", e);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    private double bitsPerEntry() {
+        return -Math.log(config.getFalsePositiveRate()) / (Math.log(2) * Math.log(2));
+    }
+}
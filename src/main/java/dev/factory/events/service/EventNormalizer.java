@@ -0,0 +1,94 @@
+package dev.factory.events.service;
+
+import dev.factory.events.api.dto.EventIngestRequest;
+import dev.factory.events.api.dto.EventRejection;
+import dev.factory.events.api.dto.RejectionReason;
+import dev.factory.events.service.model.NormalizedBatch;
+import dev.factory.events.service.model.NormalizedEvent;
+import dev.factory.events.util.ClockProvider;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies the ingest business rules to schema-valid requests: rejects bad durations and
+ * future event times, stamps the receive time and de-duplicates by eventId within the batch.
+ */
+public class EventNormalizer {
+
+    private static final Duration MAX_DURATION = Duration.ofHours(6);
+    private static final Duration FUTURE_TOLERANCE = Duration.ofMinutes(15);
+
+    private final ClockProvider clock;
+
+    public EventNormalizer(ClockProvider clock) {
+        this.clock = clock;
+    }
+
+    public NormalizedBatch normalize(List<EventIngestRequest> events) {
+        NormalizedBatch checked = applyRules(events);
+        return new NormalizedBatch(dedupe(checked.events()), checked.rejections());
+    }
+
+    /**
+     * The business rules alone: the accepted events may still repeat an eventId.
+     */
+    public NormalizedBatch applyRules(List<EventIngestRequest> events) {
+
+        Instant now = clock.now();
+        List<EventRejection> rejections = new ArrayList<>();
+        List<NormalizedEvent> accepted = new ArrayList<>(events.size());
+
+        for (EventIngestRequest raw : events) {
+
+            if (raw.getDurationMs() < 0 || raw.getDurationMs() > MAX_DURATION.toMillis()) {
+                rejections.add(new EventRejection(
+                        raw.getEventId(),
+                        RejectionReason.INVALID_DURATION
+                ));
+                continue;
+            }
+
+            if (raw.getEventTime().isAfter(now.plus(FUTURE_TOLERANCE))) {
+                rejections.add(new EventRejection(
+                        raw.getEventId(),
+                        RejectionReason.EVENT_TIME_TOO_FAR_IN_FUTURE
+                ));
+                continue;
+            }
+
+            NormalizedEvent ne = new NormalizedEvent(
+                    raw.getEventId(),
+                    raw.getEventTime(),
+                    now,
+                    raw.getMachineId(),
+                    raw.getFactoryId(),
+                    raw.getLineId(),
+                    raw.getDurationMs(),
+                    raw.getDefectCount()
+            );
+
+            accepted.add(ne);
+        }
+
+        return new NormalizedBatch(accepted, rejections);
+    }
+
+    /**
+     * Keeps one event per eventId, the latest received; of events received together, the first.
+     */
+    public static List<NormalizedEvent> dedupe(List<NormalizedEvent> events) {
+        Map<String, NormalizedEvent> dedupedInRequest = new HashMap<>();
+        for (NormalizedEvent ne : events) {
+            NormalizedEvent existing = dedupedInRequest.get(ne.getEventId());
+            if (existing == null || ne.getReceivedTime().isAfter(existing.getReceivedTime())) {
+                dedupedInRequest.put(ne.getEventId(), ne);
+            }
+        }
+        return new ArrayList<>(dedupedInRequest.values());
+    }
+}
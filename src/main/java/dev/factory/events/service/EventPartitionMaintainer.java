@@ -0,0 +1,139 @@
+package dev.factory.events.service;
+
+import dev.factory.events.config.PartitionProperties;
+import dev.factory.events.repository.EventPartitionRepository;
+import dev.factory.events.repository.EventPartitionRepository.Partition;
+import dev.factory.events.util.ClockProvider;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.List;
+
+/**
+ * Keeps the range partitions of {@code events} ahead of the clock and detaches expired ones.
+ * <p>
+ * Each pass creates the partitions for the periods from {@code now - history} up to the
+ * current one and the next {@code premake} ones, skipping any period an existing partition
+ * already overlaps, so a change of granularity only affects periods not yet covered. A
+ * period whose rows already sit in the default partition cannot be created and is skipped. With a retention set, partitions
+ * that end before {@code now - retention} are detached together with their eventIds
+ * and hourly rollups;
+ * the detached tables stay in the database until someone archives or drops them.
+ * <p>
+ * The first pass runs during startup, later ones on a background thread. Events whose
+ * time no range partition covers land in {@code events_default}.
+ */
+@Component
+public class EventPartitionMaintainer {
+
+    private static final Logger log = LoggerFactory.getLogger(EventPartitionMaintainer.class);
+
+    private static final DateTimeFormatter NAME_DATE = DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
+
+    private final EventPartitionRepository repo;
+    private final PartitionProperties config;
+    private final ClockProvider clock;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public EventPartitionMaintainer(EventPartitionRepository repo, PartitionProperties config,
+                                    @Qualifier("runningClock") ClockProvider clock) {
+        this.repo = repo;
+        this.config = config;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    void start() {
+        maintainQuietly();
+        running = true;
+        worker = Thread.ofPlatform().name("event-partitions").daemon().start(this::maintainLoop);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join();
+    }
+
+    void maintain() {
+        Instant now = clock.now();
+        List<Partition> existing = repo.findRangePartitions();
+
+        Instant last = periodStart(now);
+        for (int i = 0; i < config.getPremake(); i++) {
+            last = periodEnd(last);
+        }
+        for (Instant from = periodStart(now.minus(config.getHistory())); !from.isAfter(last); from = periodEnd(from)) {
+            Instant start = from;
+            Instant to = periodEnd(from);
+            if (existing.stream().noneMatch(p -> p.overlaps(start, to))) {
+                create("events_p" + NAME_DATE.format(from), from, to);
+            }
+        }
+
+        if (config.getRetention() != null) {
+            Instant cutoff = now.minus(config.getRetention());
+            for (Partition p : existing) {
+                if (!p.to().isAfter(cutoff)) {
+                    int released = repo.detach(p);
+                    log.info("Detached partition {} for [{}, {}), released {} eventIds", p.name(), p.from(), p.to(), released);
+                }
+            }
+        }
+    }
+
+    private void create(String name, Instant from, Instant to) {
+        try {
+            repo.create(name, from, to);
+            log.info("Created partition {} for [{}, {})", name, from, to);
+        } catch (DataAccessException e) {
+            log.warn("Could not create partition {} for [{}, {}): {}", name, from, to, e.getMessage());
+        }
+    }
+
+    private void maintainLoop() {
+        while (running) {
+            try {
+                Thread.sleep(config.getMaintenanceInterval());
+            } catch (InterruptedException e) {
+                break;
+            }
+            maintainQuietly();
+        }
+    }
+
+    private void maintainQuietly() {
+        try {
+            maintain();
+        } catch (RuntimeException e) {
+            log.warn("Partition maintenance failed; retrying in {}", config.getMaintenanceInterval(), e);
+        }
+    }
+
+    private Instant periodStart(Instant t) {
+        LocalDate day = LocalDate.ofInstant(t, ZoneOffset.UTC);
+        if (config.getGranularity() == PartitionProperties.Granularity.WEEKLY) {
+            day = day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        }
+        return day.atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    private Instant periodEnd(Instant start) {
+        return start.plus(config.getGranularity() == PartitionProperties.Granularity.WEEKLY ? 7 : 1, ChronoUnit.DAYS);
+    }
+}
@@ -0,0 +1,260 @@
+package dev.factory.events.service;
+
+import dev.factory.events.config.IngestionProperties;
+import dev.factory.events.domain.IngestCounts;
+import dev.factory.events.repository.EventIngestionJDBCRepository;
+import dev.factory.events.service.model.NormalizedEvent;
+import dev.factory.events.service.model.SlottedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Coalesces small concurrent ingest requests into one upsert transaction.
+ * <p>
+ * Requests queue up until the group window closes or the group reaches
+ * {@code maxEvents}; a single flusher thread then upserts them together and
+ * hands each caller its own counts. A request that is not picked up within
+ * {@code maxWait} is withdrawn and ingested on the caller's thread instead,
+ * as is any request whose group fails. A request whose group has not committed
+ * within {@code timeout} of it being queued fails with a
+ * {@link QueryTimeoutException}; the group may still commit, and since the upsert
+ * is idempotent the batch can be sent again.
+ */
+@Component
+public class GroupCommitter {
+
+    private static final Logger log = LoggerFactory.getLogger(GroupCommitter.class);
+
+    private final EventIngestionJDBCRepository repo;
+    private final IngestionProperties.GroupCommit config;
+    private final LockConflictRetry retry;
+    private final EventIdFilter eventIdFilter;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pendingChanged = lock.newCondition();
+    private final Deque<Pending> queue = new ArrayDeque<>();
+    private int queuedEvents;
+    private volatile boolean running;
+    private Thread flusher;
+
+    public GroupCommitter(EventIngestionJDBCRepository repo, IngestionProperties props, LockConflictRetry retry,
+                          EventIdFilter eventIdFilter) {
+        this.repo = repo;
+        this.config = props.getGroupCommit();
+        this.retry = retry;
+        this.eventIdFilter = eventIdFilter;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        running = true;
+        flusher = Thread.ofPlatform().name("group-commit").daemon().start(this::flushLoop);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        running = false;
+        flusher.interrupt();
+        flusher.join();
+    }
+
+    public boolean isEnabled() {
+        return running;
+    }
+
+    /**
+     * Ingests the batch as part of a group, or through {@code direct} when it is too
+     * large to group, is not picked up in time, or its group fails.
+     */
+    public IngestCounts ingest(List<NormalizedEvent> batch,
+                               Function<List<NormalizedEvent>, IngestCounts> direct) {
+
+        if (!running || batch.size() >= config.getMaxEvents()) {
+            return direct.apply(batch);
+        }
+
+        Pending pending = new Pending(batch);
+        lock.lock();
+        try {
+            queue.addLast(pending);
+            queuedEvents += batch.size();
+            pendingChanged.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        IngestCounts counts;
+        try {
+            counts = pending.result.get(config.getMaxWait().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            if (withdraw(pending)) {
+                return direct.apply(batch);
+            }
+            // already claimed by a flush, so it commits with its group
+            counts = awaitClaimed(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            counts = withdraw(pending) ? direct.apply(batch) : awaitClaimed(pending);
+        } catch (ExecutionException e) {
+            counts = null;
+        }
+
+        // null means the group could not take this request
+        return counts != null ? counts : direct.apply(batch);
+    }
+
+    // for what is left of the timeout; an interrupt is kept for later, as the group commits regardless
+    private IngestCounts awaitClaimed(Pending pending) {
+        boolean interrupted = Thread.interrupted();
+        try {
+            while (true) {
+                long left = pending.enqueuedNanos + config.getTimeout().toNanos() - System.nanoTime();
+                try {
+                    return pending.result.get(Math.max(left, 0), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    return null;
+                } catch (TimeoutException e) {
+                    throw new QueryTimeoutException("Group commit did not complete within " + config.getTimeout());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private boolean withdraw(Pending pending) {
+        lock.lock();
+        try {
+            if (queue.remove(pending)) {
+                queuedEvents -= pending.events.size();
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            List<Pending> group;
+            try {
+                group = nextGroup();
+            } catch (InterruptedException e) {
+                break;
+            }
+            flush(group);
+        }
+
+        // hand anything left back to its caller
+        lock.lock();
+        try {
+            queue.forEach(p -> p.result.complete(null));
+            queue.clear();
+            queuedEvents = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Pending> nextGroup() throws InterruptedException {
+        lock.lock();
+        try {
+            while (queue.isEmpty()) {
+                pendingChanged.await();
+            }
+
+            long closesAt = queue.peekFirst().enqueuedNanos + config.getWindow().toNanos();
+            long remaining;
+            while (queuedEvents < config.getMaxEvents()
+                    && !queue.isEmpty()
+                    && (remaining = closesAt - System.nanoTime()) > 0) {
+                pendingChanged.awaitNanos(remaining);
+            }
+
+            List<Pending> group = new ArrayList<>();
+            int events = 0;
+            while (!queue.isEmpty()
+                    && events + queue.peekFirst().events.size() <= config.getMaxEvents()) {
+                Pending p = queue.pollFirst();
+                events += p.events.size();
+                group.add(p);
+            }
+            queuedEvents -= events;
+            return group;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flush(List<Pending> group) {
+        if (group.isEmpty()) {
+            return;
+        }
+        try {
+            IngestCounts[] counts = retry.run(() -> repo.ingestSlotted(rounds(group), group.size()));
+            // requests ingested through direct are added to the filter there
+            for (int slot = 0; slot < group.size(); slot++) {
+                eventIdFilter.addAll(group.get(slot).events);
+                group.get(slot).result.complete(counts[slot]);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Group commit of {} requests failed, falling back to per-request ingestion", group.size(), e);
+            group.forEach(p -> p.result.complete(null));
+        }
+    }
+
+    /**
+     * Splits the group so that each round holds an eventId at most once. The n-th
+     * occurrence of an eventId across the group goes to round n, which replays
+     * overlapping requests in queue order, as if they had committed one after another.
+     */
+    static List<List<SlottedEvent>> rounds(List<Pending> group) {
+        List<List<SlottedEvent>> rounds = new ArrayList<>();
+        Map<String, Integer> occurrences = new HashMap<>();
+
+        for (int slot = 0; slot < group.size(); slot++) {
+            for (NormalizedEvent e : group.get(slot).events) {
+                int round = occurrences.merge(e.getEventId(), 1, Integer::sum) - 1;
+                if (round == rounds.size()) {
+                    rounds.add(new ArrayList<>());
+                }
+                rounds.get(round).add(new SlottedEvent(slot, e));
+            }
+        }
+        return rounds;
+    }
+
+    static final class Pending {
+        final List<NormalizedEvent> events;
+        final long enqueuedNanos = System.nanoTime();
+        final CompletableFuture<IngestCounts> result = new CompletableFuture<>();
+
+        Pending(List<NormalizedEvent> events) {
+            this.events = events;
+        }
+    }
+}
@@ -3,20 +3,42 @@ package dev.factory.events.service;
 import dev.factory.events.api.dto.DefectLineResponse;
 import dev.factory.events.api.dto.TopDefectLinesResponse;
 import dev.factory.events.repository.EventRepository;
+import dev.factory.events.repository.FactoryDefectLineProjection;
 import dev.factory.events.repository.TopDefectLineProjection;
+import dev.factory.events.util.IngestMetrics;
+import dev.factory.events.util.MinuteRing;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 public class LineStatsService {
 
     private final EventRepository eventRepository;
+    private final RecentStats recentStats;
+    private final Timer fromDatabase;
+    private final Timer fromMemory;
+    private final Timer bulkFromDatabase;
+    private final Timer bulkFromMemory;
 
-    public LineStatsService(EventRepository eventRepository) {
+    public LineStatsService(EventRepository eventRepository, RecentStats recentStats, IngestMetrics metrics) {
         this.eventRepository = eventRepository;
+        this.recentStats = recentStats;
+        this.fromDatabase = metrics.statsQuery("top-defect-lines", "database");
+        this.fromMemory = metrics.statsQuery("top-defect-lines", "memory");
+        this.bulkFromDatabase = metrics.statsQuery("top-defect-lines-bulk", "database");
+        this.bulkFromMemory = metrics.statsQuery("top-defect-lines-bulk", "memory");
     }
 
     public TopDefectLinesResponse getTopDefectLines(
@@ -25,9 +47,40 @@ public class LineStatsService {
             Instant to,
             int limit
     ) {
-        List<TopDefectLineProjection> raw =
-                eventRepository.findTopDefectLinesNative(factoryId, from, to, limit);
+        List<? extends TopDefectLineProjection> raw = recentStats.covers(from, to)
+                ? fromMemory.record(() -> recentTopDefectLines(factoryId, from, to, limit))
+                : fromDatabase.record(() -> eventRepository.findTopDefectLinesNative(factoryId, from, to, limit));
 
+        return toResponse(raw);
+    }
+
+    /**
+     * {@link #getTopDefectLines} of several factories over one window, keyed by factoryId in
+     * the order given. The lines of all factories come from one query, or from memory plus
+     * one query for the partial minutes at the edges.
+     */
+    public Map<String, TopDefectLinesResponse> getTopDefectLinesForFactories(
+            Collection<String> factoryIds,
+            Instant from,
+            Instant to,
+            int limit
+    ) {
+        Set<String> ids = new LinkedHashSet<>(factoryIds);
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, List<TopDefectLineProjection>> raw = recentStats.covers(from, to)
+                ? bulkFromMemory.record(() -> recentTopDefectLines(ids, from, to, limit))
+                : bulkFromDatabase.record(() -> byFactory(eventRepository.findTopDefectLinesForFactories(ids, from, to, limit)));
+
+        Map<String, TopDefectLinesResponse> res = new LinkedHashMap<>();
+        for (String factoryId : ids) {
+            res.put(factoryId, toResponse(raw.getOrDefault(factoryId, List.of())));
+        }
+        return res;
+    }
+
+    private TopDefectLinesResponse toResponse(List<? extends TopDefectLineProjection> raw) {
         TopDefectLinesResponse res = new TopDefectLinesResponse();
         res.setDefectLines(raw.stream()
                 .map(this::toResponse)
@@ -35,6 +88,54 @@ public class LineStatsService {
         return res;
     }
 
+    // rows arrive grouped by factory, each group in rank order
+    private static Map<String, List<TopDefectLineProjection>> byFactory(List<FactoryDefectLineProjection> rows) {
+        Map<String, List<TopDefectLineProjection>> lines = new HashMap<>();
+        for (FactoryDefectLineProjection row : rows) {
+            lines.computeIfAbsent(row.getFactoryId(), k -> new ArrayList<>()).add(row);
+        }
+        return lines;
+    }
+
+    // whole minutes from memory; partial minutes at either edge from events
+    private List<RecentStats.LineCounts> recentTopDefectLines(String factoryId, Instant from, Instant to, int limit) {
+        Instant wholeFrom = MinuteRing.wholeMinutesFrom(from, to);
+        Instant wholeTo = MinuteRing.wholeMinutesTo(wholeFrom, to);
+
+        Map<String, MinuteRing.Counts> edges = new HashMap<>();
+        Set<String> lineIds = recentStats.lineIds(factoryId);
+        if (!lineIds.isEmpty() && (from.isBefore(wholeFrom) || wholeTo.isBefore(to))) {
+            for (TopDefectLineProjection p : eventRepository.findEdgeLineStats(factoryId, lineIds, from, wholeFrom, wholeTo, to)) {
+                edges.put(p.getLineId(), new MinuteRing.Counts(p.getEventCount(), p.getTotalDefects()));
+            }
+        }
+        return recentStats.topDefectLines(factoryId, wholeFrom, wholeTo, edges, limit);
+    }
+
+    // as above, with the edges of all factories in one query
+    private Map<String, List<TopDefectLineProjection>> recentTopDefectLines(
+            Set<String> factoryIds, Instant from, Instant to, int limit) {
+        Instant wholeFrom = MinuteRing.wholeMinutesFrom(from, to);
+        Instant wholeTo = MinuteRing.wholeMinutesTo(wholeFrom, to);
+
+        Map<String, Map<String, MinuteRing.Counts>> edges = new HashMap<>();
+        Set<String> lineIds = new HashSet<>();
+        factoryIds.forEach(factoryId -> lineIds.addAll(recentStats.lineIds(factoryId)));
+        if (!lineIds.isEmpty() && (from.isBefore(wholeFrom) || wholeTo.isBefore(to))) {
+            for (FactoryDefectLineProjection p : eventRepository.findEdgeLineStatsForFactories(
+                    factoryIds.toArray(String[]::new), lineIds.toArray(String[]::new), from, wholeFrom, wholeTo, to)) {
+                edges.computeIfAbsent(p.getFactoryId(), k -> new HashMap<>())
+                        .put(p.getLineId(), new MinuteRing.Counts(p.getEventCount(), p.getTotalDefects()));
+            }
+        }
+        Map<String, List<TopDefectLineProjection>> lines = new HashMap<>();
+        for (String factoryId : factoryIds) {
+            lines.put(factoryId, List.copyOf(recentStats.topDefectLines(factoryId, wholeFrom, wholeTo,
+                    edges.getOrDefault(factoryId, Map.of()), limit)));
+        }
+        return lines;
+    }
+
     private DefectLineResponse toResponse(TopDefectLineProjection p) {
         long eventCount = p.getEventCount();
         long totalDefects = p.getTotalDefects();
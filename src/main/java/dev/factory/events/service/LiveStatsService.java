@@ -0,0 +1,345 @@
+package dev.factory.events.service;
+
+import dev.factory.events.api.dto.BulkStatsResponse;
+import dev.factory.events.api.dto.MachineStatsResponse;
+import dev.factory.events.api.dto.TopDefectLinesResponse;
+import dev.factory.events.config.StatsProperties;
+import dev.factory.events.service.model.EventsChanged;
+import dev.factory.events.service.model.NormalizedEvent;
+import dev.factory.events.util.ClockProvider;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes the stats of machines and factories to Server-Sent Events subscribers when
+ * ingestion commits events of theirs, so that dashboards need not poll.
+ * <p>
+ * A commit only marks the subscriptions watching its machines and factories: nothing is
+ * queried or sent on the writing thread, and a rolled-back write marks nothing. Every
+ * {@code interval}, one thread takes the marks of all subscriptions and computes the
+ * snapshots with one bulk query per window (and limit), however many subscriptions share
+ * a machine or factory. Each marked subscription then gets one event, written on a
+ * virtual thread of its own; while a write to a slow client is in progress, its marks
+ * accumulate and go out together in its next event.
+ * <p>
+ * Idle subscriptions get a comment every {@code heartbeat}, so that a client that went
+ * away fails a write and is dropped.
+ */
+@Component
+public class LiveStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveStatsService.class);
+
+    private final MachineStatsService machineStatsService;
+    private final LineStatsService lineStatsService;
+    private final ClockProvider clock;
+    private final StatsProperties.Live config;
+
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger admitted = new AtomicInteger();
+    // machineId / factoryId -> the subscriptions watching it
+    private final Map<String, Set<Subscription>> byMachine = new ConcurrentHashMap<>();
+    private final Map<String, Set<Subscription>> byFactory = new ConcurrentHashMap<>();
+    private final ThreadFactory senders = Thread.ofVirtual().name("live-stats-send-", 0).factory();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public LiveStatsService(MachineStatsService machineStatsService, LineStatsService lineStatsService,
+                            @Qualifier("runningClock") ClockProvider clock, StatsProperties props,
+                            MeterRegistry registry) {
+        this.machineStatsService = machineStatsService;
+        this.lineStatsService = lineStatsService;
+        this.clock = clock;
+        this.config = props.getLive();
+
+        Gauge.builder("events.stats.live.subscriptions", subscriptions, Set::size)
+                .description("Open live stats subscriptions")
+                .register(registry);
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        worker = Thread.ofPlatform().name("live-stats").daemon().start(this::pushLoop);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join();
+        subscriptions.forEach(s -> s.emitter.complete());
+    }
+
+    /**
+     * Registers {@code emitter} for the stats of {@code machineIds} and the top
+     * {@code limit} defect lines of {@code factoryIds}, over the {@code window} that ends
+     * when each event is sent. The first event holds all of them; later ones only those
+     * that ingestion has committed events of since.
+     *
+     * @return false, leaving the emitter alone, if {@code max-subscriptions} are open
+     */
+    public boolean subscribe(SseEmitter emitter, Collection<String> machineIds, Collection<String> factoryIds,
+                             Duration window, int limit) {
+        if (admitted.incrementAndGet() > config.getMaxSubscriptions()) {
+            admitted.decrementAndGet();
+            return false;
+        }
+        Subscription s = new Subscription(emitter, machineIds, factoryIds, window, limit);
+        subscriptions.add(s);
+        emitter.onCompletion(() -> unsubscribe(s));
+        emitter.onError(e -> unsubscribe(s));
+        emitter.onTimeout(() -> {
+            unsubscribe(s);
+            emitter.complete();
+        });
+        s.machineIds.forEach(id -> watch(byMachine, id, s));
+        s.factoryIds.forEach(id -> watch(byFactory, id, s));
+        s.markedMachines.addAll(s.machineIds);
+        s.markedFactories.addAll(s.factoryIds);
+        return true;
+    }
+
+    private void unsubscribe(Subscription s) {
+        if (subscriptions.remove(s)) {
+            admitted.decrementAndGet();
+            s.machineIds.forEach(id -> unwatch(byMachine, id, s));
+            s.factoryIds.forEach(id -> unwatch(byFactory, id, s));
+        }
+    }
+
+    // in compute, so that a set is never dropped as empty while it is being added to
+    private static void watch(Map<String, Set<Subscription>> index, String id, Subscription s) {
+        index.compute(id, (k, subs) -> {
+            Set<Subscription> res = subs == null ? ConcurrentHashMap.newKeySet() : subs;
+            res.add(s);
+            return res;
+        });
+    }
+
+    private static void unwatch(Map<String, Set<Subscription>> index, String id, Subscription s) {
+        index.computeIfPresent(id, (k, subs) -> {
+            subs.remove(s);
+            return subs.isEmpty() ? null : subs;
+        });
+    }
+
+    @EventListener
+    void onChanged(EventsChanged change) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            TouchedKeys touched = new TouchedKeys();
+            touched.add(change);
+            mark(touched);
+            return;
+        }
+        TouchedKeys pending = (TouchedKeys) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new TouchedKeys();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.add(change);
+    }
+
+    private void mark(TouchedKeys touched) {
+        for (String machineId : touched.machineIds) {
+            byMachine.getOrDefault(machineId, Set.of()).forEach(s -> s.markedMachines.add(machineId));
+        }
+        for (String factoryId : touched.factoryIds) {
+            byFactory.getOrDefault(factoryId, Set.of()).forEach(s -> s.markedFactories.add(factoryId));
+        }
+    }
+
+    private void pushLoop() {
+        while (running) {
+            try {
+                Thread.sleep(config.getInterval());
+                push();
+            } catch (InterruptedException e) {
+                break;
+            } catch (RuntimeException e) {
+                log.warn("Pushing live stats failed, retrying", e);
+            }
+        }
+    }
+
+    /**
+     * One pass: takes the marks of every subscription not still writing its last event,
+     * queries the marked machines and factories once per window, and sends each marked
+     * subscription its part. If a query fails, the marks are put back for the next pass.
+     */
+    void push() {
+        Instant now = clock.now();
+        long nanos = System.nanoTime();
+        long heartbeat = config.getHeartbeat().toNanos();
+
+        Map<Subscription, Marks> due = new HashMap<>();
+        Map<Duration, Set<String>> machinesByWindow = new HashMap<>();
+        Map<Query, Set<String>> factoriesByQuery = new HashMap<>();
+        for (Subscription s : subscriptions) {
+            if (s.sending.get()) {
+                continue;
+            }
+            Marks marks = new Marks(take(s.markedMachines), take(s.markedFactories));
+            if (!marks.machineIds().isEmpty() || !marks.factoryIds().isEmpty()) {
+                due.put(s, marks);
+                machinesByWindow.computeIfAbsent(s.window, w -> new HashSet<>()).addAll(marks.machineIds());
+                factoriesByQuery.computeIfAbsent(s.query(), q -> new HashSet<>()).addAll(marks.factoryIds());
+            } else if (nanos - s.lastSent >= heartbeat) {
+                send(s, SseEmitter.event().comment("heartbeat"));
+            }
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+
+        Map<Duration, Map<String, MachineStatsResponse>> machineStats = new HashMap<>();
+        Map<Query, Map<String, TopDefectLinesResponse>> topDefectLines = new HashMap<>();
+        try {
+            machinesByWindow.forEach((window, ids) -> {
+                Map<String, MachineStatsResponse> byId = new HashMap<>();
+                machineStatsService.getStatsForMachines(ids, now.minus(window), now)
+                        .forEach(res -> byId.put(res.getMachineId(), res));
+                machineStats.put(window, byId);
+            });
+            factoriesByQuery.forEach((query, ids) -> topDefectLines.put(query,
+                    lineStatsService.getTopDefectLinesForFactories(ids, now.minus(query.window()), now, query.limit())));
+        } catch (RuntimeException e) {
+            due.forEach((s, marks) -> {
+                s.markedMachines.addAll(marks.machineIds());
+                s.markedFactories.addAll(marks.factoryIds());
+            });
+            throw e;
+        }
+
+        // each in the order subscribed
+        due.forEach((s, marks) -> {
+            List<MachineStatsResponse> machines = new ArrayList<>();
+            for (String machineId : s.machineIds) {
+                if (marks.machineIds().contains(machineId)) {
+                    machines.add(machineStats.get(s.window).get(machineId));
+                }
+            }
+            Map<String, TopDefectLinesResponse> lines = new LinkedHashMap<>();
+            for (String factoryId : s.factoryIds) {
+                if (marks.factoryIds().contains(factoryId)) {
+                    lines.put(factoryId, topDefectLines.get(s.query()).get(factoryId));
+                }
+            }
+            send(s, SseEmitter.event().name("stats").data(new BulkStatsResponse(machines, lines), MediaType.APPLICATION_JSON));
+        });
+    }
+
+    // removed one by one, so that marks added meanwhile are either taken or stay for the next pass
+    private static Set<String> take(Set<String> marked) {
+        Set<String> taken = new HashSet<>();
+        for (Iterator<String> it = marked.iterator(); it.hasNext(); ) {
+            taken.add(it.next());
+            it.remove();
+        }
+        return taken;
+    }
+
+    private void send(Subscription s, SseEmitter.SseEventBuilder event) {
+        s.sending.set(true);
+        senders.newThread(() -> {
+            try {
+                s.emitter.send(event);
+                s.lastSent = System.nanoTime();
+            } catch (IOException | IllegalStateException e) {
+                // the client went away, or the emitter has completed
+                unsubscribe(s);
+            } finally {
+                s.sending.set(false);
+            }
+        }).start();
+    }
+
+    private record Query(Duration window, int limit) {}
+
+    private record Marks(Set<String> machineIds, Set<String> factoryIds) {}
+
+    private static final class Subscription {
+        final SseEmitter emitter;
+        final Set<String> machineIds;
+        final Set<String> factoryIds;
+        final Duration window;
+        final int limit;
+
+        // changed since the last event
+        final Set<String> markedMachines = ConcurrentHashMap.newKeySet();
+        final Set<String> markedFactories = ConcurrentHashMap.newKeySet();
+        final AtomicBoolean sending = new AtomicBoolean();
+        volatile long lastSent = System.nanoTime();
+
+        Subscription(SseEmitter emitter, Collection<String> machineIds, Collection<String> factoryIds,
+                     Duration window, int limit) {
+            this.emitter = emitter;
+            this.machineIds = new LinkedHashSet<>(machineIds);
+            this.factoryIds = new LinkedHashSet<>(factoryIds);
+            this.window = window;
+            this.limit = limit;
+        }
+
+        Query query() {
+            return new Query(window, limit);
+        }
+    }
+
+    // the machines and factories of one transaction, marked only if it commits
+    private final class TouchedKeys implements TransactionSynchronization {
+        final Set<String> machineIds = new HashSet<>();
+        final Set<String> factoryIds = new HashSet<>();
+
+        void add(EventsChanged change) {
+            change.removed().forEach(this::add);
+            change.added().forEach(this::add);
+        }
+
+        private void add(NormalizedEvent e) {
+            machineIds.add(e.getMachineId());
+            factoryIds.add(e.getFactoryId());
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(LiveStatsService.this);
+            if (status == STATUS_COMMITTED) {
+                mark(this);
+            }
+        }
+    }
+}
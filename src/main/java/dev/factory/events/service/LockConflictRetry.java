@@ -0,0 +1,106 @@
+package dev.factory.events.service;
+
+import dev.factory.events.config.IngestionProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Runs a transaction again when PostgreSQL aborted it to resolve a deadlock (40P01) or
+ * a serialization conflict (40001) with a concurrent batch.
+ * <p>
+ * The upserts lock rows in key order within each statement, but a transaction of
+ * several statements can still close a cycle with another one, e.g. on the rollup rows
+ * of an earlier statement. Such an abort undoes the whole transaction, so the upsert is
+ * safe to repeat. Each retry waits a random time of up to {@code initialBackoff},
+ * doubled per attempt and capped at {@code maxBackoff}, so that the two losers of a
+ * conflict do not meet again at once.
+ * <p>
+ * A call that joins a transaction already open on this thread is run only once: the
+ * abort has spoiled the outer transaction too, and only its owner can repeat it.
+ */
+@Component
+public class LockConflictRetry {
+
+    private static final Logger log = LoggerFactory.getLogger(LockConflictRetry.class);
+
+    private static final String DEADLOCK = "40P01";
+    private static final String SERIALIZATION_FAILURE = "40001";
+
+    private final IngestionProperties.Retry config;
+    private final Counter deadlocks;
+    private final Counter serializationFailures;
+    private final Counter exhausted;
+
+    public LockConflictRetry(IngestionProperties props, MeterRegistry registry) {
+        this.config = props.getRetry();
+        this.deadlocks = Counter.builder("events.ingest.retries")
+                .description("Upsert transactions repeated after losing a lock conflict")
+                .tag("cause", "deadlock")
+                .register(registry);
+        this.serializationFailures = Counter.builder("events.ingest.retries")
+                .description("Upsert transactions repeated after losing a lock conflict")
+                .tag("cause", "serialization")
+                .register(registry);
+        this.exhausted = Counter.builder("events.ingest.retries.exhausted")
+                .description("Upsert transactions that still lost a lock conflict on their last attempt")
+                .register(registry);
+    }
+
+    public <T> T run(Supplier<T> transaction) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return transaction.get();
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transaction.get();
+            } catch (RuntimeException e) {
+                String sqlState = conflictState(e);
+                if (sqlState == null) {
+                    throw e;
+                }
+                if (attempt >= config.getMaxAttempts()) {
+                    exhausted.increment();
+                    throw e;
+                }
+                (DEADLOCK.equals(sqlState) ? deadlocks : serializationFailures).increment();
+                log.debug("Upsert lost a lock conflict ({}) on attempt {}, retrying", sqlState, attempt);
+                if (!backOff(attempt)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // full jitter: anywhere between no wait and the doubled bound
+    private boolean backOff(int attempt) {
+        long bound = Math.min(config.getMaxBackoff().toNanos(),
+                config.getInitialBackoff().toNanos() << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(Duration.ofNanos(ThreadLocalRandom.current().nextLong(bound + 1)));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // the SQLState of the deadlock or serialization failure in e's causes, or null
+    static String conflictState(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql
+                    && (DEADLOCK.equals(sql.getSQLState()) || SERIALIZATION_FAILURE.equals(sql.getSQLState()))) {
+                return sql.getSQLState();
+            }
+        }
+        return null;
+    }
+}
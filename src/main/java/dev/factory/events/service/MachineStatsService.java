@@ -2,21 +2,41 @@ package dev.factory.events.service;
 
 import dev.factory.events.api.dto.MachineStatsResponse;
 import dev.factory.events.repository.EventRepository;
+import dev.factory.events.repository.MachineIdStatsProjection;
 import dev.factory.events.repository.MachineStatsProjection;
-import org.springframework.beans.factory.annotation.Autowired;
+import dev.factory.events.util.IngestMetrics;
+import dev.factory.events.util.MinuteRing;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class MachineStatsService {
 
 
     private final EventRepository eventRepository;
+    private final RecentStats recentStats;
+    private final Timer fromDatabase;
+    private final Timer fromMemory;
+    private final Timer bulkFromDatabase;
+    private final Timer bulkFromMemory;
 
-    public MachineStatsService(EventRepository eventRepository) {
+    public MachineStatsService(EventRepository eventRepository, RecentStats recentStats, IngestMetrics metrics) {
         this.eventRepository = eventRepository;
+        this.recentStats = recentStats;
+        this.fromDatabase = metrics.statsQuery("machine", "database");
+        this.fromMemory = metrics.statsQuery("machine", "memory");
+        this.bulkFromDatabase = metrics.statsQuery("machine-bulk", "database");
+        this.bulkFromMemory = metrics.statsQuery("machine-bulk", "memory");
     }
 
     public MachineStatsResponse getStats(
@@ -24,11 +44,49 @@ public class MachineStatsService {
             Instant startTime,
             Instant endTime
     ) {
-        MachineStatsProjection stats =
-                eventRepository.fetchStats(machineId, startTime, endTime);
+        long events;
+        long defects;
+        if (recentStats.covers(startTime, endTime)) {
+            MinuteRing.Counts counts = fromMemory.record(() -> recentCounts(machineId, startTime, endTime));
+            events = counts.events();
+            defects = counts.defects();
+        } else {
+            MachineStatsProjection stats =
+                    fromDatabase.record(() -> eventRepository.fetchStats(machineId, startTime, endTime));
+            events = stats.getEventsCount();
+            defects = stats.getDefectsCount();
+        }
+        return toResponse(machineId, startTime, endTime, events, defects);
+    }
+
+    /**
+     * {@link #getStats} of several machines over one window, in the order given, each
+     * machine once. The counts of all machines come from one query, or from memory plus one
+     * query for the partial minutes at the edges.
+     */
+    public List<MachineStatsResponse> getStatsForMachines(
+            Collection<String> machineIds,
+            Instant startTime,
+            Instant endTime
+    ) {
+        Set<String> ids = new LinkedHashSet<>(machineIds);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<String, MinuteRing.Counts> counts = recentStats.covers(startTime, endTime)
+                ? bulkFromMemory.record(() -> recentCounts(ids, startTime, endTime))
+                : bulkFromDatabase.record(() -> byMachine(eventRepository.fetchStatsForMachines(ids, startTime, endTime)));
+
+        List<MachineStatsResponse> res = new ArrayList<>(ids.size());
+        for (String machineId : ids) {
+            MinuteRing.Counts c = counts.getOrDefault(machineId, MinuteRing.Counts.ZERO);
+            res.add(toResponse(machineId, startTime, endTime, c.events(), c.defects()));
+        }
+        return res;
+    }
 
-        long events = stats.getEventsCount();
-        long defects = stats.getDefectsCount();
+    private static MachineStatsResponse toResponse(String machineId, Instant startTime, Instant endTime,
+                                                   long events, long defects) {
         long hours = Duration.between(startTime,endTime).toHours();
         double avgDefectRate =
                 events == 0 ? 0.0 : (double) defects / hours;
@@ -44,4 +102,44 @@ public class MachineStatsService {
 
         return res;
     }
+
+    private static Map<String, MinuteRing.Counts> byMachine(List<MachineIdStatsProjection> rows) {
+        Map<String, MinuteRing.Counts> counts = new HashMap<>();
+        for (MachineIdStatsProjection row : rows) {
+            counts.put(row.getMachineId(), new MinuteRing.Counts(row.getEventsCount(), row.getDefectsCount()));
+        }
+        return counts;
+    }
+
+    // whole minutes from memory; partial minutes at either edge from events
+    private MinuteRing.Counts recentCounts(String machineId, Instant startTime, Instant endTime) {
+        Instant wholeFrom = MinuteRing.wholeMinutesFrom(startTime, endTime);
+        Instant wholeTo = MinuteRing.wholeMinutesTo(wholeFrom, endTime);
+
+        MinuteRing.Counts counts = recentStats.machineCounts(machineId, wholeFrom, wholeTo);
+        if (startTime.isBefore(wholeFrom) || wholeTo.isBefore(endTime)) {
+            MachineStatsProjection edges =
+                    eventRepository.fetchEdgeStats(machineId, startTime, wholeFrom, wholeTo, endTime);
+            counts = counts.plus(new MinuteRing.Counts(edges.getEventsCount(), edges.getDefectsCount()));
+        }
+        return counts;
+    }
+
+    // as above, with the edges of all machines in one query
+    private Map<String, MinuteRing.Counts> recentCounts(Set<String> machineIds, Instant startTime, Instant endTime) {
+        Instant wholeFrom = MinuteRing.wholeMinutesFrom(startTime, endTime);
+        Instant wholeTo = MinuteRing.wholeMinutesTo(wholeFrom, endTime);
+
+        Map<String, MinuteRing.Counts> edges = Map.of();
+        if (startTime.isBefore(wholeFrom) || wholeTo.isBefore(endTime)) {
+            edges = byMachine(eventRepository.fetchEdgeStatsForMachines(
+                    machineIds.toArray(String[]::new), startTime, wholeFrom, wholeTo, endTime));
+        }
+        Map<String, MinuteRing.Counts> counts = new HashMap<>();
+        for (String machineId : machineIds) {
+            counts.put(machineId, recentStats.machineCounts(machineId, wholeFrom, wholeTo)
+                    .plus(edges.getOrDefault(machineId, MinuteRing.Counts.ZERO)));
+        }
+        return counts;
+    }
 }
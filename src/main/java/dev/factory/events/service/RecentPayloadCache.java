@@ -0,0 +1,210 @@
+package dev.factory.events.service;
+
+import dev.factory.events.config.IngestionProperties;
+import dev.factory.events.domain.IngestCounts;
+import dev.factory.events.service.model.EventsChanged;
+import dev.factory.events.service.model.NormalizedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded cache of the stored version of recently written events, keyed by eventId.
+ * <p>
+ * Each entry mirrors the committed row: its receivedTime and payload fingerprint. That
+ * is enough to decide, without the database, what the classify CTE would do for a
+ * retransmission: an identical payload is deduped and a different payload received no
+ * later than the stored one is ignored. Everything else goes to the database.
+ * <p>
+ * Entries are only ever set from the rows a committed upsert reports it inserted or
+ * replaced, and never moved back to an older receivedTime, so concurrent requests
+ * converge on the same version as the table.
+ * Ids that are about to be written are evicted first, so nobody short-circuits against a
+ * version that is being replaced. The cache assumes this process is the only writer.
+ */
+@Component
+public class RecentPayloadCache {
+
+    private static final int STRIPES = 64;
+
+    private final boolean enabled;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final Counter deduped;
+    private final Counter dropped;
+    private final Counter misses;
+
+    public RecentPayloadCache(IngestionProperties props, MeterRegistry registry) {
+        IngestionProperties.PayloadCache config = props.getPayloadCache();
+        this.enabled = config.isEnabled();
+        int perStripe = Math.max(1, config.getMaxEntries() / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+
+        Gauge.builder("events.payload.cache.size", this, RecentPayloadCache::size)
+                .description("EventIds held in the recent-payload cache")
+                .register(registry);
+        Gauge.builder("events.payload.cache.hit.ratio", this, RecentPayloadCache::hitRatio)
+                .description("Share of looked-up events answered without the database")
+                .register(registry);
+        this.deduped = Counter.builder("events.payload.cache.lookups")
+                .tag("result", "deduped")
+                .register(registry);
+        this.dropped = Counter.builder("events.payload.cache.lookups")
+                .tag("result", "dropped")
+                .register(registry);
+        this.misses = Counter.builder("events.payload.cache.lookups")
+                .tag("result", "miss")
+                .register(registry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Answers what it can from the cache and evicts the ids of the events that remain,
+     * since the caller is about to write them.
+     */
+    public Lookup lookup(List<NormalizedEvent> batch) {
+        List<NormalizedEvent> remaining = new ArrayList<>(batch.size());
+        int dedupedCount = 0;
+        int droppedCount = 0;
+
+        for (NormalizedEvent e : batch) {
+            Stripe stripe = stripeFor(e.getEventId());
+            stripe.lock.lock();
+            try {
+                Entry entry = stripe.map.get(e.getEventId());
+                if (entry != null && entry.payloadFingerprint == e.getPayloadFingerprint()) {
+                    dedupedCount++;
+                    continue;
+                }
+                if (entry != null && !e.getReceivedTime().isAfter(entry.receivedTime)) {
+                    droppedCount++;
+                    continue;
+                }
+                if (entry != null) {
+                    stripe.map.remove(e.getEventId());
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+            remaining.add(e);
+        }
+
+        deduped.increment(dedupedCount);
+        dropped.increment(droppedCount);
+        misses.increment(remaining.size());
+        return new Lookup(remaining, new IngestCounts(0, 0, dedupedCount));
+    }
+
+    /**
+     * Records the events a write stored, as the upsert reported them: the rows it inserted
+     * and the ones it replaced. Deduped and ignored events are not among them. Inside a
+     * transaction they are recorded once it commits, so a rolled-back write is never cached.
+     */
+    @EventListener
+    void onChanged(EventsChanged change) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.added().forEach(this::put);
+            return;
+        }
+        PendingWrites pending = (PendingWrites) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingWrites();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.written.addAll(change.added());
+    }
+
+    void put(NormalizedEvent e) {
+        Stripe stripe = stripeFor(e.getEventId());
+        stripe.lock.lock();
+        try {
+            Entry existing = stripe.map.get(e.getEventId());
+            // the upsert keeps the latest receivedTime, so must the cache
+            if (existing == null || e.getReceivedTime().isAfter(existing.receivedTime)) {
+                stripe.map.put(e.getEventId(), new Entry(e.getPayloadFingerprint(), e.getReceivedTime()));
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.map.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    double hitRatio() {
+        double hits = deduped.count() + dropped.count();
+        double total = hits + misses.count();
+        return total == 0 ? 0 : hits / total;
+    }
+
+    private Stripe stripeFor(String eventId) {
+        return stripes[Math.floorMod(eventId.hashCode(), STRIPES)];
+    }
+
+    /**
+     * @param remaining events that still need the database
+     * @param counts    what the cache answered on its own
+     */
+    public record Lookup(List<NormalizedEvent> remaining, IngestCounts counts) {
+    }
+
+    private record Entry(long payloadFingerprint, Instant receivedTime) {
+    }
+
+    // the events one transaction stored, cached only if it commits
+    private final class PendingWrites implements TransactionSynchronization {
+        final List<NormalizedEvent> written = new ArrayList<>();
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(RecentPayloadCache.this);
+            if (status == STATUS_COMMITTED) {
+                written.forEach(RecentPayloadCache.this::put);
+            }
+        }
+    }
+
+    // access-ordered, so the least recently used eventId is evicted first. Guarded by a
+    // ReentrantLock rather than a monitor: a virtual thread blocked entering a monitor
+    // pins its carrier thread
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final LinkedHashMap<String, Entry> map;
+
+        Stripe(int capacity) {
+            this.map = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+    }
+}
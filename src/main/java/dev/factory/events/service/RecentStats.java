@@ -0,0 +1,320 @@
+package dev.factory.events.service;
+
+import dev.factory.events.config.StatsProperties;
+import dev.factory.events.repository.EventIngestionJDBCRepository;
+import dev.factory.events.repository.TopDefectLineProjection;
+import dev.factory.events.service.model.EventsChanged;
+import dev.factory.events.service.model.NormalizedEvent;
+import dev.factory.events.util.ClockProvider;
+import dev.factory.events.util.MinuteRing;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Event and defect counts of the last {@code horizon}, one {@link MinuteRing} per machine
+ * and one per factory line, kept in memory from the changes ingestion commits.
+ * <p>
+ * Changes are published inside the writing transaction and applied once it commits, so
+ * a rolled-back write leaves no trace. A replaced event is subtracted from the machine
+ * and minute of its old version and added under the new one.
+ * <p>
+ * The counters are loaded from events on a background thread at startup and are not
+ * consulted until that completes. A commit holds the read lock from just before it
+ * commits until its changes are applied, and the load fixes its snapshot under the write
+ * lock, so each commit is counted once: by the scan, or by the changes applied on top.
+ * Like {@link RecentPayloadCache}, this assumes the process is the only writer; rows
+ * deleted outside ingestion are not seen.
+ */
+@Component
+public class RecentStats {
+
+    private static final Logger log = LoggerFactory.getLogger(RecentStats.class);
+
+    // event times may run up to 15 minutes ahead of now (EventNormalizer), plus the current minute
+    private static final int FUTURE_MINUTES = 16;
+
+    private final EventIngestionJDBCRepository jdbcRepo;
+    private final ClockProvider clock;
+    private final StatsProperties.Recent config;
+    private final long horizonMinutes;
+
+    private final ReentrantReadWriteLock applyLock = new ReentrantReadWriteLock();
+    // swapped under the write lock; while loading, changes go to building as well
+    private volatile Counters live;
+    private volatile Counters building;
+
+    public RecentStats(EventIngestionJDBCRepository jdbcRepo, @Qualifier("runningClock") ClockProvider clock,
+                       StatsProperties props, MeterRegistry registry) {
+        this.jdbcRepo = jdbcRepo;
+        this.clock = clock;
+        this.config = props.getRecent();
+        this.horizonMinutes = config.getHorizon().toMinutes();
+
+        Gauge.builder("events.stats.recent.machines", this, s -> s.live == null ? 0 : s.live.machines.size())
+                .description("Machines with in-memory minute counters")
+                .register(registry);
+        Gauge.builder("events.stats.recent.lines", this, s -> s.live == null ? 0 : s.live.lineCount())
+                .description("Factory lines with in-memory minute counters")
+                .register(registry);
+    }
+
+    @PostConstruct
+    void start() {
+        if (config.isEnabled()) {
+            Thread.ofPlatform().name("recent-stats").daemon().start(this::load);
+        }
+    }
+
+    /**
+     * True if [start, end) can be answered from memory: the counters are loaded, the
+     * window starts within the horizon and ends no later than events can be stamped.
+     */
+    public boolean covers(Instant start, Instant end) {
+        if (live == null) {
+            return false;
+        }
+        long now = epochMinute(clock.now());
+        return epochMinute(start) >= now - horizonMinutes && epochMinute(end) < now + FUTURE_MINUTES;
+    }
+
+    /**
+     * Counts of a machine in [from, to), both on whole minutes and within {@link #covers}.
+     */
+    public MinuteRing.Counts machineCounts(String machineId, Instant from, Instant to) {
+        MinuteRing ring = live.machines.get(machineId);
+        return ring == null ? MinuteRing.Counts.ZERO : ring.sum(epochMinute(from), epochMinute(to));
+    }
+
+    /**
+     * Lines of a factory that have counters. Every line with an event inside the horizon
+     * is among them once the counters are loaded.
+     */
+    public Set<String> lineIds(String factoryId) {
+        return Set.copyOf(live.lines.getOrDefault(factoryId, Map.of()).keySet());
+    }
+
+    /**
+     * The {@code limit} lines of a factory with the most defects in [from, to), both on
+     * whole minutes and within {@link #covers}, after adding {@code extra} per line.
+     * Lines without events are left out, ties go to the smaller lineId. Each line is summed
+     * once and offered to a heap of {@code limit} entries, so the cost grows with the
+     * number of lines and minutes, not events.
+     */
+    public List<LineCounts> topDefectLines(String factoryId, Instant from, Instant to,
+                                           Map<String, MinuteRing.Counts> extra, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        Map<String, MinuteRing> lines = live.lines.getOrDefault(factoryId, Map.of());
+        Set<String> lineIds = new HashSet<>(lines.keySet());
+        lineIds.addAll(extra.keySet());
+
+        PriorityQueue<LineCounts> top = new PriorityQueue<>(limit + 1, BY_DEFECTS.reversed());
+        for (String lineId : lineIds) {
+            MinuteRing ring = lines.get(lineId);
+            MinuteRing.Counts counts = (ring == null ? MinuteRing.Counts.ZERO : ring.sum(epochMinute(from), epochMinute(to)))
+                    .plus(extra.getOrDefault(lineId, MinuteRing.Counts.ZERO));
+            if (counts.events() <= 0) {
+                continue;
+            }
+            top.offer(new LineCounts(lineId, counts.defects(), counts.events()));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<LineCounts> result = new ArrayList<>(top);
+        result.sort(BY_DEFECTS);
+        return result;
+    }
+
+    @EventListener
+    void onChanged(EventsChanged change) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            applyLock.readLock().lock();
+            try {
+                apply(List.of(change));
+            } finally {
+                applyLock.readLock().unlock();
+            }
+            return;
+        }
+        PendingChanges pending = (PendingChanges) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingChanges();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.changes.add(change);
+    }
+
+    // callers hold the read lock, so live and building do not change underneath
+    private void apply(List<EventsChanged> changes) {
+        long oldest = epochMinute(clock.now()) - horizonMinutes;
+        if (live != null) {
+            apply(live, changes, oldest);
+        }
+        if (building != null) {
+            apply(building, changes, oldest);
+        }
+    }
+
+    private void apply(Counters target, List<EventsChanged> changes, long oldest) {
+        for (EventsChanged change : changes) {
+            change.removed().forEach(e -> count(target, e, -1, oldest));
+            change.added().forEach(e -> count(target, e, 1, oldest));
+        }
+    }
+
+    private void count(Counters target, NormalizedEvent e, int sign, long oldest) {
+        long minute = epochMinute(e.getEventTime());
+        if (minute >= oldest) {
+            long defects = sign * Math.max(e.getDefectCount(), 0L);
+            target.machine(e.getMachineId()).add(minute, sign, defects);
+            target.line(e.getFactoryId(), e.getLineId()).add(minute, sign, defects);
+        }
+    }
+
+    private void load() {
+        try {
+            long start = System.nanoTime();
+            Instant from = clock.now().truncatedTo(ChronoUnit.MINUTES).minus(config.getHorizon());
+            Counters next = new Counters();
+
+            jdbcRepo.forEachMinuteCount(from, config.getWarmupFetchSize(),
+                    takeSnapshot -> {
+                        applyLock.writeLock().lock();
+                        try {
+                            takeSnapshot.run();
+                            building = next;
+                        } finally {
+                            applyLock.writeLock().unlock();
+                        }
+                    },
+                    (machineId, factoryId, lineId, minute, events, defects) -> {
+                        next.machine(machineId).add(minute, events, defects);
+                        next.line(factoryId, lineId).add(minute, events, defects);
+                    });
+
+            applyLock.writeLock().lock();
+            try {
+                live = next;
+                building = null;
+            } finally {
+                applyLock.writeLock().unlock();
+            }
+            log.info("Recent stats loaded for {} machines and {} lines since {} in {} ms",
+                    next.machines.size(), next.lineCount(), from, (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            building = null;
+            log.warn("Loading recent stats failed; stats are read from the database", e);
+        }
+    }
+
+    private static long epochMinute(Instant t) {
+        return Math.floorDiv(t.getEpochSecond(), 60);
+    }
+
+    private static final Comparator<LineCounts> BY_DEFECTS =
+            Comparator.comparingLong(LineCounts::defects).reversed().thenComparing(LineCounts::lineId);
+
+    /**
+     * Totals of one line, shaped like the rows of the top-lines query.
+     */
+    public record LineCounts(String lineId, long defects, long events) implements TopDefectLineProjection {
+
+        @Override
+        public String getLineId() {
+            return lineId;
+        }
+
+        @Override
+        public Long getTotalDefects() {
+            return defects;
+        }
+
+        @Override
+        public Long getEventCount() {
+            return events;
+        }
+    }
+
+    private final class Counters {
+        final Map<String, MinuteRing> machines = new ConcurrentHashMap<>();
+        // factoryId -> lineId -> counts
+        final Map<String, Map<String, MinuteRing>> lines = new ConcurrentHashMap<>();
+
+        MinuteRing machine(String machineId) {
+            return machines.computeIfAbsent(machineId, id -> newRing());
+        }
+
+        MinuteRing line(String factoryId, String lineId) {
+            return lines.computeIfAbsent(factoryId, id -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(lineId, id -> newRing());
+        }
+
+        long lineCount() {
+            return lines.values().stream().mapToLong(Map::size).sum();
+        }
+
+        private MinuteRing newRing() {
+            return new MinuteRing((int) horizonMinutes + FUTURE_MINUTES);
+        }
+    }
+
+    // the changes of one transaction, applied only if it commits
+    private final class PendingChanges implements TransactionSynchronization {
+        final List<EventsChanged> changes = new ArrayList<>();
+        boolean locked;
+
+        // ahead of other synchronizations, so that work done after the commit reads counters that include it
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            applyLock.readLock().lock();
+            locked = true;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(RecentStats.this);
+            try {
+                if (status == STATUS_COMMITTED) {
+                    apply(changes);
+                }
+            } finally {
+                if (locked) {
+                    applyLock.readLock().unlock();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package dev.factory.events.service;
+
+import dev.factory.events.config.IngestionProperties;
+import dev.factory.events.config.IngestionProperties.Atomicity;
+import dev.factory.events.domain.IngestCounts;
+import dev.factory.events.repository.EventIngestionJDBCRepository;
+import dev.factory.events.service.model.NormalizedEvent;
+import dev.factory.events.util.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Splits a large batch into disjoint sub-batches and upserts them concurrently, each in
+ * its own transaction on its own connection.
+ * <p>
+ * Ids new to the dimension dictionaries are added in a transaction of their own first,
+ * since sub-batches adding the same machine would otherwise wait for each other's
+ * dictionary rows. The hourly rollup rows are shared all the same: every insert adds to
+ * the rows of its machine and line for the hour of its events.
+ * <p>
+ * With {@link Atomicity#PER_SHARD} the batch is partitioned by eventId hash and each
+ * sub-batch commits as soon as it is written. Sub-batches of the same hours take turns
+ * on the rollup rows, and a failure leaves the other sub-batches in place; sending the
+ * batch again is safe, since the upsert is idempotent.
+ * <p>
+ * With {@link Atomicity#ALL_OR_NOTHING} the sub-batches keep their transactions open
+ * until all of them are written, and roll back together if one fails. A sub-batch
+ * waiting for a row another one holds would wait forever, so the batch is partitioned by
+ * the hour of its events instead, which keeps the rollup rows apart. Any lock wait
+ * longer than {@code lockTimeout}, such as an update moving an event to another
+ * sub-batch's hour, rolls every sub-batch back, and the batch is written again on one
+ * connection. Only a commit failing after another sub-batch committed can leave such a
+ * batch partly written.
+ * <p>
+ * A sharded batch takes all its connection permits at once, out of
+ * {@code maxConnections}, so sub-batches waiting for one another never hold every
+ * connection of the pool.
+ */
+@Component
+public class ShardedUpserter {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedUpserter.class);
+
+    private static final long MILLIS_PER_HOUR = 3_600_000;
+
+    private final EventIngestionJDBCRepository repo;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactions;
+    private final IngestionProperties.Sharding config;
+    private final Semaphore connections;
+    private final ThreadFactory threads = Thread.ofVirtual().name("upsert-shard-", 0).factory();
+
+    public ShardedUpserter(EventIngestionJDBCRepository repo, JdbcTemplate jdbc,
+                           PlatformTransactionManager transactionManager, IngestionProperties props) {
+        this.repo = repo;
+        this.jdbc = jdbc;
+        this.transactions = new TransactionTemplate(transactionManager);
+        this.config = props.getSharding();
+        this.connections = new Semaphore(config.getMaxConnections(), true);
+    }
+
+    public boolean applies(List<NormalizedEvent> batch) {
+        return config.getShards() > 1 && batch.size() >= config.getMinEvents();
+    }
+
+    /**
+     * Upserts the batch as concurrent sub-batches, each written by {@code write}.
+     *
+     * @return the counts of all sub-batches
+     */
+    public IngestCounts ingest(List<NormalizedEvent> batch, Function<List<NormalizedEvent>, IngestCounts> write) {
+        int shardCount = Math.min(config.getShards(), config.getMaxConnections());
+        boolean allOrNothing = config.getAtomicity() == Atomicity.ALL_OR_NOTHING;
+        List<List<NormalizedEvent>> shards = allOrNothing
+                ? partition(batch, shardCount, ShardedUpserter::utcHour)
+                : partition(batch, shardCount, ShardedUpserter::eventIdHash);
+        if (shards.size() < 2) {
+            return write.apply(batch);
+        }
+        repo.addDimensionKeys(batch);
+
+        connections.acquireUninterruptibly(shards.size());
+        try {
+            if (!allOrNothing) {
+                return perShard(shards, write);
+            }
+            return allOrNothing(shards, write);
+        } catch (RuntimeException e) {
+            if (!allOrNothing || !waitedForLock(e)) {
+                throw e;
+            }
+            log.debug("Sub-batches of {} events waited for a lock and rolled back", batch.size(), e);
+        } finally {
+            connections.release(shards.size());
+        }
+        return write.apply(batch);
+    }
+
+    /**
+     * Splits {@code batch} by {@code key} modulo {@code shardCount}, keeping the order of
+     * events within each part; empty parts are left out.
+     */
+    static List<List<NormalizedEvent>> partition(List<NormalizedEvent> batch, int shardCount,
+                                                 ToLongFunction<NormalizedEvent> key) {
+        List<List<NormalizedEvent>> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new ArrayList<>(batch.size() / shardCount + 1));
+        }
+        for (NormalizedEvent e : batch) {
+            shards.get((int) Math.floorMod(key.applyAsLong(e), (long) shardCount)).add(e);
+        }
+        shards.removeIf(List::isEmpty);
+        return shards;
+    }
+
+    static long eventIdHash(NormalizedEvent e) {
+        return Hashing.hash64(e.getEventId().getBytes(StandardCharsets.UTF_8), 0);
+    }
+
+    // consecutive hours go to consecutive sub-batches
+    static long utcHour(NormalizedEvent e) {
+        return Math.floorDiv(e.getEventTime().toEpochMilli(), MILLIS_PER_HOUR);
+    }
+
+    private IngestCounts perShard(List<List<NormalizedEvent>> shards,
+                                  Function<List<NormalizedEvent>, IngestCounts> write) {
+        List<Future<IngestCounts>> written = new ArrayList<>(shards.size());
+        try (ExecutorService executor = Executors.newThreadPerTaskExecutor(threads)) {
+            for (List<NormalizedEvent> shard : shards) {
+                written.add(executor.submit(() -> write.apply(shard)));
+            }
+        }
+        return sum(written);
+    }
+
+    // each sub-batch waits inside its transaction until every other one is written
+    private IngestCounts allOrNothing(List<List<NormalizedEvent>> shards,
+                                      Function<List<NormalizedEvent>, IngestCounts> write) {
+        String lockTimeout = config.getLockTimeout().toMillis() + "ms";
+        CountDownLatch allWritten = new CountDownLatch(shards.size());
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Future<IngestCounts>> written = new ArrayList<>(shards.size());
+        try (ExecutorService executor = Executors.newThreadPerTaskExecutor(threads)) {
+            for (List<NormalizedEvent> shard : shards) {
+                written.add(executor.submit(() -> transactions.execute(status -> {
+                    IngestCounts counts;
+                    try {
+                        jdbc.queryForObject("SELECT set_config('lock_timeout', ?, true)", String.class, lockTimeout);
+                        counts = write.apply(shard);
+                    } catch (RuntimeException | Error e) {
+                        failed.set(true);
+                        throw e;
+                    } finally {
+                        allWritten.countDown();
+                    }
+                    awaitUninterruptibly(allWritten);
+                    if (failed.get()) {
+                        status.setRollbackOnly();
+                    }
+                    return counts;
+                })));
+            }
+        }
+        return sum(written);
+    }
+
+    // rethrows the failure of the first failed sub-batch, if any
+    private static IngestCounts sum(List<Future<IngestCounts>> written) {
+        IngestCounts total = IngestCounts.NONE;
+        RuntimeException failure = null;
+        for (Future<IngestCounts> shard : written) {
+            try {
+                total = total.plus(shard.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException re
+                            ? re
+                            : new IllegalStateException("Sub-batch upsert failed", e.getCause());
+                }
+            } catch (InterruptedException e) {
+                // the executor has already waited for every sub-batch
+                throw new IllegalStateException(e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return total;
+    }
+
+    // lock_timeout (55P03), which JdbcTemplate leaves uncategorized, or a deadlock (40P01)
+    private static boolean waitedForLock(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof PessimisticLockingFailureException) {
+                return true;
+            }
+            if (t instanceof SQLException sql
+                    && ("55P03".equals(sql.getSQLState()) || "40P01".equals(sql.getSQLState()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package dev.factory.events.service;
+
+import dev.factory.events.api.EventBatchValidator;
+import dev.factory.events.api.dto.*;
+import dev.factory.events.config.IngestionProperties;
+import dev.factory.events.util.IngestMetrics;
+import jakarta.validation.Validator;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectReader;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ingests newline-delimited JSON without materializing the body.
+ * <p>
+ * Lines are parsed one at a time and handed to {@link EventIngestionService} in
+ * chunks of {@code chunkSize}, so only one chunk is held at any point. Lines that
+ * are not valid JSON, fail the event schema (checked as {@code validation} selects)
+ * or exceed {@code maxLineLength} are rejected as
+ * {@link RejectionReason#MALFORMED_REQUEST} instead of failing the whole stream,
+ * since earlier chunks may already be committed.
+ */
+@Service
+public class StreamingIngestionService {
+
+    private final EventIngestionService ingestionService;
+    private final Validator validator;
+    private final EventBatchValidator eventBatchValidator;
+    private final IngestionProperties.Validation validation;
+    private final ObjectReader eventReader;
+    private final IngestionProperties.Stream config;
+    private final IngestMetrics metrics;
+
+    public StreamingIngestionService(EventIngestionService ingestionService, Validator validator,
+                                     EventBatchValidator eventBatchValidator, JsonMapper jsonMapper,
+                                     IngestionProperties props, IngestMetrics metrics) {
+        this.ingestionService = ingestionService;
+        this.validator = validator;
+        this.eventBatchValidator = eventBatchValidator;
+        this.validation = props.getValidation();
+        this.eventReader = jsonMapper.readerFor(EventIngestRequest.class);
+        this.config = props.getStream();
+        this.metrics = metrics;
+    }
+
+    public EventBatchResponse ingest(InputStream body) throws IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        LineReader lines = new LineReader(reader, config.getMaxLineLength());
+        Totals totals = new Totals(config.getMaxRejections(), metrics);
+        List<EventIngestRequest> chunk = new ArrayList<>(config.getChunkSize());
+
+        String line;
+        while ((line = lines.next()) != null) {
+            if (line == LineReader.OVERSIZED) {
+                totals.reject(null, RejectionReason.MALFORMED_REQUEST);
+                continue;
+            }
+            if (line.isBlank()) {
+                continue;
+            }
+
+            EventIngestRequest event = parse(line, totals);
+            if (event == null) {
+                continue;
+            }
+
+            chunk.add(event);
+            if (chunk.size() >= config.getChunkSize()) {
+                totals.add(ingestionService.ingest(new EventBatchRequest(chunk)));
+                chunk = new ArrayList<>(config.getChunkSize());
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            totals.add(ingestionService.ingest(new EventBatchRequest(chunk)));
+        }
+        return totals.toResponse();
+    }
+
+    private EventIngestRequest parse(String line, Totals totals) {
+        EventIngestRequest event;
+        try {
+            event = eventReader.readValue(line);
+        } catch (JacksonException e) {
+            totals.reject(null, RejectionReason.MALFORMED_REQUEST);
+            return null;
+        }
+
+        if (event == null || !isValid(event)) {
+            totals.reject(event == null ? null : event.getEventId(), RejectionReason.MALFORMED_REQUEST);
+            return null;
+        }
+        return event;
+    }
+
+    private boolean isValid(EventIngestRequest event) {
+        return validation == IngestionProperties.Validation.COMPILED
+                ? eventBatchValidator.isValid(event)
+                : validator.validate(event).isEmpty();
+    }
+
+    private static final class Totals {
+        private final int maxRejections;
+        private final IngestMetrics metrics;
+        private final List<EventRejection> rejections = new ArrayList<>();
+        private int accepted;
+        private int deduped;
+        private int updated;
+        private int rejected;
+
+        Totals(int maxRejections, IngestMetrics metrics) {
+            this.maxRejections = maxRejections;
+            this.metrics = metrics;
+        }
+
+        void reject(String eventId, RejectionReason reason) {
+            rejected++;
+            metrics.rejected(reason);
+            if (rejections.size() < maxRejections) {
+                rejections.add(new EventRejection(eventId, reason));
+            }
+        }
+
+        void add(EventBatchResponse chunk) {
+            accepted += chunk.getAccepted();
+            deduped += chunk.getDeduped();
+            updated += chunk.getUpdated();
+            rejected += chunk.getRejected();
+            for (EventRejection r : chunk.getRejections()) {
+                if (rejections.size() >= maxRejections) {
+                    break;
+                }
+                rejections.add(r);
+            }
+        }
+
+        EventBatchResponse toResponse() {
+            return new EventBatchResponse(accepted, deduped, updated, rejected, rejections);
+        }
+    }
+
+    /**
+     * Reads '\n'-terminated lines (tolerating '\r\n') and refuses to buffer more than
+     * {@code maxLength} characters of a single line.
+     */
+    static final class LineReader {
+
+        static final String OVERSIZED = new String("<oversized>");
+
+        private final Reader reader;
+        private final int maxLength;
+        private final StringBuilder buf = new StringBuilder();
+
+        LineReader(Reader reader, int maxLength) {
+            this.reader = reader;
+            this.maxLength = maxLength;
+        }
+
+        String next() throws IOException {
+            buf.setLength(0);
+            boolean oversized = false;
+            int c;
+            while ((c = reader.read()) != -1) {
+                if (c == '\n') {
+                    return finish(oversized);
+                }
+                if (oversized) {
+                    continue;
+                }
+                if (buf.length() >= maxLength) {
+                    oversized = true;
+                    buf.setLength(0);
+                    continue;
+                }
+                buf.append((char) c);
+            }
+            return oversized || buf.length() > 0 ? finish(oversized) : null;
+        }
+
+        private String finish(boolean oversized) {
+            if (oversized) {
+                return OVERSIZED;
+            }
+            int end = buf.length();
+            if (end > 0 && buf.charAt(end - 1) == '\r') {
+                end--;
+            }
+            return buf.substring(0, end);
+        }
+    }
+}
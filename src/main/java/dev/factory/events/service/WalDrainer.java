@@ -0,0 +1,158 @@
+package dev.factory.events.service;
+
+import dev.factory.events.config.IngestionProperties;
+import dev.factory.events.domain.IngestCounts;
+import dev.factory.events.service.model.NormalizedEvent;
+import dev.factory.events.util.ClockProvider;
+import dev.factory.events.wal.WalBatch;
+import dev.factory.events.wal.WalPosition;
+import dev.factory.events.wal.WriteAheadLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays the write-ahead log into PostgreSQL in large batches.
+ * <p>
+ * Each pass reads up to {@code drainBatchSize} events after the checkpoint, keeps the
+ * latest version of each eventId, upserts them and only then advances the checkpoint.
+ * A crash between commit and checkpoint replays the batch, which the upsert classifies
+ * as duplicates, so delivery is at-least-once with idempotent effect.
+ */
+@Component
+@ConditionalOnProperty(prefix = "events.ingestion.wal", name = "enabled", havingValue = "true")
+public class WalDrainer {
+
+    private static final Logger log = LoggerFactory.getLogger(WalDrainer.class);
+
+    private final WriteAheadLog wal;
+    private final DbBackedNativeIngestionService ingestion;
+    private final IngestionProperties.Wal config;
+    private final ClockProvider clock;
+
+    private final Counter drained;
+    private final Counter failures;
+
+    private volatile Instant oldestPending;
+    private volatile boolean running;
+    private Thread worker;
+
+    public WalDrainer(WriteAheadLog wal, DbBackedNativeIngestionService ingestion, IngestionProperties props,
+                      @Qualifier("runningClock") ClockProvider clock, MeterRegistry registry) {
+        this.wal = wal;
+        this.ingestion = ingestion;
+        this.config = props.getWal();
+        this.clock = clock;
+
+        Gauge.builder("events.wal.depth", wal, WriteAheadLog::depthBytes)
+                .description("Bytes appended to the write-ahead log but not yet drained")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("events.wal.segments", wal, w -> {
+                    try {
+                        return w.segmentCount();
+                    } catch (IOException e) {
+                        return Double.NaN;
+                    }
+                })
+                .description("Write-ahead log segment files on disk")
+                .register(registry);
+        TimeGauge.builder("events.wal.drain.lag", this, TimeUnit.MILLISECONDS, WalDrainer::lagMillis)
+                .description("Age of the oldest event not yet drained")
+                .register(registry);
+        this.drained = Counter.builder("events.wal.drained")
+                .description("Events upserted from the write-ahead log")
+                .register(registry);
+        this.failures = Counter.builder("events.wal.drain.failures")
+                .description("Failed drain passes")
+                .register(registry);
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        worker = Thread.ofPlatform().name("wal-drainer").daemon().start(this::drainLoop);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join();
+    }
+
+    double lagMillis() {
+        Instant oldest = oldestPending;
+        return oldest == null ? 0 : Math.max(0, Duration.between(oldest, clock.now()).toMillis());
+    }
+
+    private void drainLoop() {
+        WalPosition position = wal.checkpoint();
+
+        while (running) {
+            try {
+                WalBatch batch = wal.read(position, config.getDrainBatchSize());
+                if (batch.events().isEmpty()) {
+                    oldestPending = null;
+                    Thread.sleep(config.getDrainInterval());
+                    continue;
+                }
+
+                oldestPending = batch.events().getFirst().getReceivedTime();
+                List<NormalizedEvent> latest = latestPerEventId(batch.events());
+                IngestCounts counts = ingestion.upsert(latest);
+                wal.checkpoint(batch.next());
+                position = batch.next();
+
+                drained.increment(latest.size());
+                log.debug("Drained {} events from WAL: {}", latest.size(), counts);
+            } catch (InterruptedException e) {
+                break;
+            } catch (IOException | RuntimeException e) {
+                failures.increment();
+                log.warn("WAL drain failed at {}, retrying", position, e);
+                try {
+                    Thread.sleep(config.getDrainInterval());
+                } catch (InterruptedException ie) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * The upsert cannot touch a row twice in one statement, so of several log entries for
+     * the same eventId only the one that would have won serially is kept: a different payload
+     * received strictly later replaces an earlier one, while a repeat of the same payload, or
+     * any payload received at the same instant, keeps the first.
+     */
+    static List<NormalizedEvent> latestPerEventId(List<NormalizedEvent> events) {
+        Map<String, NormalizedEvent> latest = new LinkedHashMap<>();
+        for (NormalizedEvent e : events) {
+            NormalizedEvent existing = latest.get(e.getEventId());
+            if (existing == null
+                    || (e.getReceivedTime().isAfter(existing.getReceivedTime())
+                        && e.getPayloadFingerprint() != existing.getPayloadFingerprint())) {
+                latest.put(e.getEventId(), e);
+            }
+        }
+        return new ArrayList<>(latest.values());
+    }
+}
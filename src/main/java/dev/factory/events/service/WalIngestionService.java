@@ -0,0 +1,53 @@
+package dev.factory.events.service;
+
+import dev.factory.events.api.dto.EventBatchQueuedResponse;
+import dev.factory.events.api.dto.EventBatchRequest;
+import dev.factory.events.service.model.NormalizedBatch;
+import dev.factory.events.util.ClockProvider;
+import dev.factory.events.util.IngestMetrics;
+import dev.factory.events.wal.WriteAheadLog;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Validates and normalizes a batch, then makes it durable in the local write-ahead log.
+ * Classification against stored events happens later, when {@link WalDrainer} replays the log.
+ */
+@Service
+@ConditionalOnProperty(prefix = "events.ingestion.wal", name = "enabled", havingValue = "true")
+public class WalIngestionService {
+
+    private final WriteAheadLog wal;
+    private final EventNormalizer normalizer;
+    private final IngestMetrics metrics;
+
+    public WalIngestionService(WriteAheadLog wal, @Qualifier("runningClock") ClockProvider clock, IngestMetrics metrics) {
+        this.wal = wal;
+        this.normalizer = new EventNormalizer(clock);
+        this.metrics = metrics;
+    }
+
+    public EventBatchQueuedResponse ingest(EventBatchRequest request) {
+        metrics.batch(request.getEvents().size());
+        NormalizedBatch normalized = normalizer.normalize(request.getEvents());
+        metrics.rejected(normalized.rejections());
+
+        if (!normalized.events().isEmpty()) {
+            try {
+                wal.append(normalized.events());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not append to write-ahead log", e);
+            }
+        }
+
+        return new EventBatchQueuedResponse(
+                normalized.events().size(),
+                normalized.rejections().size(),
+                normalized.rejections()
+        );
+    }
+}
@@ -0,0 +1,13 @@
+package dev.factory.events.service.model;
+
+import java.util.List;
+
+/**
+ * Rows one write statement took out of and put into {@code events}, published inside
+ * the writing transaction. A replaced event appears in both lists: its stored version
+ * in {@code removed} and the new one in {@code added}.
+ */
+public record EventsChanged(
+        List<NormalizedEvent> removed,
+        List<NormalizedEvent> added
+) {}
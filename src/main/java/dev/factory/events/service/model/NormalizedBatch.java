@@ -0,0 +1,14 @@
+package dev.factory.events.service.model;
+
+import dev.factory.events.api.dto.EventRejection;
+
+import java.util.List;
+
+/**
+ * Outcome of normalizing one request: events ready to persist, de-duplicated by eventId,
+ * and the rejections for everything else.
+ */
+public record NormalizedBatch(
+        List<NormalizedEvent> events,
+        List<EventRejection> rejections
+) {}
@@ -1,5 +1,6 @@
 package dev.factory.events.service.model;
 
+import dev.factory.events.domain.PayloadFingerprint;
 import lombok.Value;
 
 import java.time.Instant;
@@ -15,4 +16,21 @@ public class NormalizedEvent {
     String lineId;
     long durationMs;
     int defectCount;
+
+    // derived from the fields above, stored alongside them for dedupe
+    long payloadFingerprint;
+
+    public NormalizedEvent(String eventId, Instant eventTime, Instant receivedTime,
+                           String machineId, String factoryId, String lineId,
+                           long durationMs, int defectCount) {
+        this.eventId = eventId;
+        this.eventTime = eventTime;
+        this.receivedTime = receivedTime;
+        this.machineId = machineId;
+        this.factoryId = factoryId;
+        this.lineId = lineId;
+        this.durationMs = durationMs;
+        this.defectCount = defectCount;
+        this.payloadFingerprint = PayloadFingerprint.of(eventTime, machineId, factoryId, lineId, durationMs, defectCount);
+    }
 }
@@ -0,0 +1,10 @@
+package dev.factory.events.service.model;
+
+/**
+ * A normalized event tagged with the index of the request it came from,
+ * so that counts from a coalesced upsert can be split back per request.
+ */
+public record SlottedEvent(
+        int slot,
+        NormalizedEvent event
+) {}
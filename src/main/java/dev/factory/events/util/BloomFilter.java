@@ -0,0 +1,110 @@
+package dev.factory.events.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter over strings.
+ * <p>
+ * Bit positions come from two 64-bit hashes of the UTF-8 bytes combined as
+ * {@code h1 + i * h2} (Kirsch–Mitzenmacher). Bits are set with CAS, so concurrent
+ * {@link #put} calls never lose each other's bits and the filter has no false negatives.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitSize;
+    private final int hashCount;
+    private final AtomicLong bitsSet = new AtomicLong();
+
+    private BloomFilter(long bitSize, int hashCount) {
+        this.words = new AtomicLongArray(Math.toIntExact((bitSize + 63) / 64));
+        this.bitSize = (long) words.length() * 64;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Sizes the filter so that {@code expectedInsertions} entries give a false-positive
+     * rate of about {@code falsePositiveRate}.
+     */
+    public static BloomFilter create(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("expectedInsertions must be > 0 and falsePositiveRate in (0, 1)");
+        }
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int hashes = Math.max(1, (int) Math.round((double) bits / expectedInsertions * Math.log(2)));
+        return new BloomFilter(Math.max(64, bits), hashes);
+    }
+
+    public boolean mightContain(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long h1 = Hashing.hash64(bytes, 0);
+        long h2 = Hashing.hash64(bytes, h1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitSize);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if any bit changed, i.e. the value was definitely not present before
+     */
+    public boolean put(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long h1 = Hashing.hash64(bytes, 0);
+        long h2 = Hashing.hash64(bytes, h1) | 1;
+        boolean changed = false;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitSize);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word;
+            do {
+                word = words.get(index);
+                if ((word & mask) != 0) {
+                    break;
+                }
+            } while (!words.compareAndSet(index, word, word | mask));
+            if ((word & mask) == 0) {
+                bitsSet.incrementAndGet();
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    public long bitSize() {
+        return bitSize;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    public long memoryBytes() {
+        return bitSize / 8;
+    }
+
+    /**
+     * Probability that {@link #mightContain} answers true for a value never put,
+     * given the bits set so far.
+     */
+    public double expectedFalsePositiveRate() {
+        return Math.pow((double) bitsSet.get() / bitSize, hashCount);
+    }
+
+    /**
+     * Estimated number of distinct values put, derived from the fraction of bits set.
+     */
+    public long approximateElementCount() {
+        double fractionSet = (double) bitsSet.get() / bitSize;
+        if (fractionSet >= 1) {
+            return Long.MAX_VALUE;
+        }
+        return Math.round(-Math.log1p(-fractionSet) * bitSize / hashCount);
+    }
+}
@@ -0,0 +1,136 @@
+package dev.factory.events.util;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admits callers to a connection pool through a fair semaphore with one permit per
+ * connection.
+ * <p>
+ * With a thread per request, the request thread pool bounds how many callers can wait
+ * for a connection. On virtual threads nothing does, and thousands of callers would queue
+ * inside the pool until its connection timeout. Here a caller takes a permit before it
+ * asks the pool and returns it when it closes the connection, so the pool always has a
+ * connection to hand out. Callers beyond {@code maxWaiting}, and callers that wait
+ * longer than {@code acquireTimeout}, fail at once with a
+ * {@link SQLTransientConnectionException}. The semaphore parks virtual threads without
+ * pinning their carriers.
+ */
+public class ConnectionLimitingDataSource extends DelegatingDataSource {
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final int maxWaiting;
+    private final long acquireTimeoutNanos;
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public ConnectionLimitingDataSource(DataSource target, int maxConcurrent, int maxWaiting,
+                                        Duration acquireTimeout) {
+        super(target);
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaiting = maxWaiting;
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            return limited(obtainTargetDataSource().getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        try {
+            return limited(obtainTargetDataSource().getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getAvailable() {
+        return permits.availablePermits();
+    }
+
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    private void acquire() throws SQLException {
+        // a timed tryAcquire, unlike tryAcquire(), does not jump the queue
+        try {
+            if (permits.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+                return;
+            }
+            if (waiting.incrementAndGet() > maxWaiting) {
+                waiting.decrementAndGet();
+                throw new SQLTransientConnectionException(
+                        "Too many callers waiting for a connection (max-waiting " + maxWaiting + ")");
+            }
+            try {
+                if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                    throw new SQLTransientConnectionException("No connection available after "
+                            + Duration.ofNanos(acquireTimeoutNanos).toMillis() + " ms");
+                }
+            } finally {
+                waiting.decrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+        }
+    }
+
+    // returns the permit on the first close(); everything else goes to the pool's connection
+    private Connection limited(Connection target) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "Limited " + target;
+                        case "close":
+                            try {
+                                target.close();
+                            } finally {
+                                if (released.compareAndSet(false, true)) {
+                                    permits.release();
+                                }
+                            }
+                            return null;
+                        default:
+                            try {
+                                return method.invoke(target, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getTargetException();
+                            }
+                    }
+                });
+    }
+}
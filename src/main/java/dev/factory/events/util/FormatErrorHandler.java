@@ -1,12 +1,18 @@
 package dev.factory.events.util;
 
 import jakarta.validation.ConstraintViolationException;
+import org.springframework.core.NestedRuntimeException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.http.HttpStatus;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import java.util.List;
 import java.util.Map;
 
 @RestControllerAdvice
@@ -35,4 +41,38 @@ public class FormatErrorHandler {
                         .toList()
         );
     }
+
+    // no connection within the pool's timeout, or, on virtual threads, too many waiting for
+    // one. JdbcTemplate and Hibernate report it as a DataAccessResourceFailureException, a
+    // transaction that cannot begin as a CannotCreateTransactionException
+    @ExceptionHandler({DataAccessResourceFailureException.class, CannotCreateTransactionException.class})
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public Map<String, Object> handleNoConnection(NestedRuntimeException ex) {
+        return Map.of(
+                "error", "DATABASE_BUSY",
+                "details", List.of(String.valueOf(ex.getMostSpecificCause().getMessage()))
+        );
+    }
+
+    // a deadlock or serialization failure that outlasted its retries; the upsert rolled
+    // back as a whole, so the batch can be sent again
+    @ExceptionHandler(PessimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public Map<String, Object> handleLockConflict(PessimisticLockingFailureException ex) {
+        return Map.of(
+                "error", "LOCK_CONFLICT",
+                "details", List.of(String.valueOf(ex.getMostSpecificCause().getMessage()))
+        );
+    }
+
+    // a grouped batch whose group did not commit in time; it may still commit, and the
+    // upsert is idempotent, so the batch can be sent again
+    @ExceptionHandler(QueryTimeoutException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public Map<String, Object> handleTimeout(QueryTimeoutException ex) {
+        return Map.of(
+                "error", "DATABASE_TIMEOUT",
+                "details", List.of(String.valueOf(ex.getMessage()))
+        );
+    }
 }
@@ -0,0 +1,24 @@
+package dev.factory.events.util;
+
+public final class Hashing {
+
+    private Hashing() {}
+
+    /**
+     * Seeded 64-bit hash: FNV-1a over the bytes, then the MurmurHash3 64-bit finalizer
+     * to spread FNV's weak low bits.
+     */
+    public static long hash64(byte[] bytes, long seed) {
+        long h = 0xcbf29ce484222325L ^ seed;
+        for (byte b : bytes) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
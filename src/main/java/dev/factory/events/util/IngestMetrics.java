@@ -0,0 +1,176 @@
+package dev.factory.events.util;
+
+import dev.factory.events.api.dto.EventRejection;
+import dev.factory.events.api.dto.RejectionReason;
+import dev.factory.events.domain.IngestCounts;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Meters of the ingest path and of stats queries.
+ * <p>
+ * Every stage of a request is a tag of one timer, {@code events.ingest.stage}, so a
+ * dashboard can stack them: JSON binding, request validation, the business rules, the
+ * in-request dedupe, loading the staging table, the classify-and-upsert statements and
+ * the commit. Events are counted by outcome, rejections by reason, and request sizes
+ * go to {@code events.ingest.batch.size}. Stats queries are timed by query and by
+ * whether the database or the in-memory counters answered them.
+ */
+@Component
+public class IngestMetrics {
+
+    public enum Stage {
+        // reading the JSON body of POST /events/batch into the request object
+        BIND,
+        // schema constraints of the bound request, by Bean Validation or the hand-written validator
+        VALIDATE,
+        // duration and event-time rules, receive time
+        NORMALIZE,
+        // keeping one event per eventId within a request
+        DEDUPE,
+        // creating and filling the staging table, for the temp-table upsert
+        STAGING,
+        // classify-and-upsert statements and the rewrite of replaced events
+        UPSERT,
+        // the commit of the upsert transaction
+        COMMIT
+    }
+
+    private final MeterRegistry registry;
+    private final Map<Stage, Timer> stages = new EnumMap<>(Stage.class);
+    private final DistributionSummary batchSize;
+    private final Counter accepted;
+    private final Counter deduped;
+    private final Counter updated;
+    private final Map<RejectionReason, Counter> rejected = new EnumMap<>(RejectionReason.class);
+
+    public IngestMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, Timer.builder("events.ingest.stage")
+                    .description("Time spent in one stage of ingesting a batch")
+                    .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                    .register(registry));
+        }
+        this.batchSize = DistributionSummary.builder("events.ingest.batch.size")
+                .description("Events per ingested request or chunk, before validation")
+                .baseUnit("events")
+                .register(registry);
+        this.accepted = outcome("accepted");
+        this.deduped = outcome("deduped");
+        this.updated = outcome("updated");
+        for (RejectionReason reason : RejectionReason.values()) {
+            rejected.put(reason, Counter.builder("events.ingest.rejected")
+                    .description("Events rejected, by reason")
+                    .tag("reason", reason.name())
+                    .register(registry));
+        }
+    }
+
+    private Counter outcome(String outcome) {
+        return Counter.builder("events.ingest.events")
+                .description("Events written or recognized, by outcome")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    public <T> T time(Stage stage, Supplier<T> work) {
+        long started = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            record(stage, System.nanoTime() - started);
+        }
+    }
+
+    public void time(Stage stage, Runnable work) {
+        long started = System.nanoTime();
+        try {
+            work.run();
+        } finally {
+            record(stage, System.nanoTime() - started);
+        }
+    }
+
+    public void record(Stage stage, long nanos) {
+        stages.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void batch(int events) {
+        batchSize.record(events);
+    }
+
+    public void counts(IngestCounts counts) {
+        accepted.increment(counts.accepted());
+        deduped.increment(counts.deduped());
+        updated.increment(counts.updated());
+    }
+
+    public void rejected(RejectionReason reason) {
+        rejected.get(reason).increment();
+    }
+
+    public void rejected(List<EventRejection> rejections) {
+        for (EventRejection r : rejections) {
+            rejected(r.getReason());
+        }
+    }
+
+    /**
+     * Times the commit of the current transaction, if one is active; further calls in the
+     * same transaction do nothing.
+     */
+    public void timeCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private long started;
+
+            @Override
+            public void beforeCompletion() {
+                started = System.nanoTime();
+            }
+
+            @Override
+            public void afterCommit() {
+                record(Stage.COMMIT, System.nanoTime() - started);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(IngestMetrics.this);
+            }
+        });
+    }
+
+    /**
+     * @param query  {@code machine}, {@code top-defect-lines}, their multi-key forms
+     *               {@code machine-bulk} and {@code top-defect-lines-bulk}, or the
+     *               histograms {@code machine-histogram} and {@code line-histogram}
+     * @param source {@code database}, or {@code memory} when the recent-stats counters
+     *               answered the whole minutes of the range; histograms always use
+     *               {@code database}
+     */
+    public Timer statsQuery(String query, String source) {
+        return Timer.builder("events.stats.query")
+                .description("Time to answer a stats query")
+                .tag("query", query)
+                .tag("source", source)
+                .register(registry);
+    }
+}
@@ -0,0 +1,103 @@
+package dev.factory.events.util;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Event and defect counters for a sliding range of epoch minutes.
+ * <p>
+ * Minute {@code m} lives in slot {@code m mod capacity}. A slot holds the bucket of one
+ * minute and is taken over, by CAS, by the first write for a later minute that maps to
+ * it; writes for a minute older than the slot's are dropped, since it left the ring.
+ * Counters are {@link LongAdder}s, so writers of the same minute do not contend, and
+ * counts may be negative while a removal is applied before its matching addition.
+ */
+public final class MinuteRing {
+
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    public MinuteRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+        this.buckets = new AtomicReferenceArray<>(capacity);
+    }
+
+    public int capacity() {
+        return buckets.length();
+    }
+
+    public void add(long minute, long events, long defects) {
+        int slot = (int) Math.floorMod(minute, (long) buckets.length());
+        while (true) {
+            Bucket bucket = buckets.get(slot);
+            if (bucket != null && bucket.minute == minute) {
+                bucket.events.add(events);
+                bucket.defects.add(defects);
+                return;
+            }
+            if (bucket != null && bucket.minute > minute) {
+                return;
+            }
+            buckets.compareAndSet(slot, bucket, new Bucket(minute));
+        }
+    }
+
+    /**
+     * Sums the minutes in [fromMinute, toMinute). Minutes never written, or whose slot
+     * has been taken over since, count as zero.
+     */
+    public Counts sum(long fromMinute, long toMinute) {
+        long events = 0;
+        long defects = 0;
+        long from = Math.max(fromMinute, toMinute - buckets.length());
+        for (long minute = from; minute < toMinute; minute++) {
+            Bucket bucket = buckets.get((int) Math.floorMod(minute, (long) buckets.length()));
+            if (bucket != null && bucket.minute == minute) {
+                events += bucket.events.sum();
+                defects += bucket.defects.sum();
+            }
+        }
+        return new Counts(events, defects);
+    }
+
+    /**
+     * First whole minute of [start, end), or end if there is none. With
+     * {@link #wholeMinutesTo} this splits a window into the whole minutes a ring can
+     * answer and the partial minutes at either edge, which it cannot.
+     */
+    public static Instant wholeMinutesFrom(Instant start, Instant end) {
+        Instant minute = start.truncatedTo(ChronoUnit.MINUTES);
+        Instant ceil = minute.equals(start) ? start : minute.plus(1, ChronoUnit.MINUTES);
+        return ceil.isBefore(end) ? ceil : end;
+    }
+
+    /**
+     * End of the whole minutes starting at wholeFrom; equal to wholeFrom if there are none.
+     */
+    public static Instant wholeMinutesTo(Instant wholeFrom, Instant end) {
+        Instant floor = end.truncatedTo(ChronoUnit.MINUTES);
+        return floor.isAfter(wholeFrom) ? floor : wholeFrom;
+    }
+
+    public record Counts(long events, long defects) {
+
+        public static final Counts ZERO = new Counts(0, 0);
+
+        public Counts plus(Counts other) {
+            return new Counts(events + other.events, defects + other.defects);
+        }
+    }
+
+    private static final class Bucket {
+        final long minute;
+        final LongAdder events = new LongAdder();
+        final LongAdder defects = new LongAdder();
+
+        Bucket(long minute) {
+            this.minute = minute;
+        }
+    }
+}
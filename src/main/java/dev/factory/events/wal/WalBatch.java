@@ -0,0 +1,13 @@
+package dev.factory.events.wal;
+
+import dev.factory.events.service.model.NormalizedEvent;
+
+import java.util.List;
+
+/**
+ * Events read from the log, and the position just after the last one.
+ */
+public record WalBatch(
+        List<NormalizedEvent> events,
+        WalPosition next
+) {}
@@ -0,0 +1,132 @@
+package dev.factory.events.wal;
+
+import dev.factory.events.service.model.NormalizedEvent;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary record format of the write-ahead log.
+ * <pre>
+ * int   payload length (0 marks the end of written data in a segment)
+ * int   CRC32C of the payload
+ * bytes payload: eventId, eventTime, receivedTime, machineId, factoryId, lineId, durationMs, defectCount
+ * </pre>
+ * Strings are written as an unsigned short byte length followed by UTF-8 bytes,
+ * instants as epoch seconds (long) plus nanos (int).
+ */
+final class WalCodec {
+
+    static final int HEADER_BYTES = Integer.BYTES * 2;
+
+    private WalCodec() {}
+
+    static byte[] encode(NormalizedEvent e) {
+        byte[] eventId = utf8(e.getEventId());
+        byte[] machineId = utf8(e.getMachineId());
+        byte[] factoryId = utf8(e.getFactoryId());
+        byte[] lineId = utf8(e.getLineId());
+
+        int payload = 4 * Short.BYTES + eventId.length + machineId.length + factoryId.length + lineId.length
+                + 2 * (Long.BYTES + Integer.BYTES)
+                + Long.BYTES + Integer.BYTES;
+
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + payload);
+        buf.position(HEADER_BYTES);
+        putString(buf, eventId);
+        putInstant(buf, e.getEventTime());
+        putInstant(buf, e.getReceivedTime());
+        putString(buf, machineId);
+        putString(buf, factoryId);
+        putString(buf, lineId);
+        buf.putLong(e.getDurationMs());
+        buf.putInt(e.getDefectCount());
+
+        CRC32C crc = new CRC32C();
+        crc.update(buf.array(), HEADER_BYTES, payload);
+        buf.putInt(0, payload);
+        buf.putInt(Integer.BYTES, (int) crc.getValue());
+        return buf.array();
+    }
+
+    /**
+     * Decodes the record at the buffer's position and advances past it.
+     *
+     * @return the event, or {@code null} if the buffer holds no complete, intact record
+     *         there; the position is left unchanged in that case
+     */
+    static NormalizedEvent decode(ByteBuffer buf) {
+        int start = buf.position();
+        if (buf.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        int payload = buf.getInt(start);
+        int checksum = buf.getInt(start + Integer.BYTES);
+        if (payload <= 0 || buf.remaining() - HEADER_BYTES < payload) {
+            return null;
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(buf.slice(start + HEADER_BYTES, payload));
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+
+        buf.position(start + HEADER_BYTES);
+        NormalizedEvent e = new NormalizedEvent(
+                getString(buf),
+                getInstant(buf),
+                getInstant(buf),
+                getString(buf),
+                getString(buf),
+                getString(buf),
+                buf.getLong(),
+                buf.getInt()
+        );
+        buf.position(start + HEADER_BYTES + payload);
+        return e;
+    }
+
+    /**
+     * True if the bytes at the buffer's position could still become a record, i.e. the
+     * buffer was cut short rather than hitting the end marker or a corrupt record.
+     */
+    static boolean isTruncated(ByteBuffer buf) {
+        if (buf.remaining() < HEADER_BYTES) {
+            return true;
+        }
+        int payload = buf.getInt(buf.position());
+        return payload > 0 && buf.remaining() - HEADER_BYTES < payload;
+    }
+
+    private static byte[] utf8(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("String too long for WAL record: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    private static void putString(ByteBuffer buf, byte[] bytes) {
+        buf.putShort((short) bytes.length);
+        buf.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buf.getShort())];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putInstant(ByteBuffer buf, Instant t) {
+        buf.putLong(t.getEpochSecond());
+        buf.putInt(t.getNano());
+    }
+
+    private static Instant getInstant(ByteBuffer buf) {
+        long seconds = buf.getLong();
+        return Instant.ofEpochSecond(seconds, buf.getInt());
+    }
+}
@@ -0,0 +1,18 @@
+package dev.factory.events.wal;
+
+/**
+ * A byte offset inside a numbered WAL segment.
+ */
+public record WalPosition(
+        long segment,
+        int offset
+) implements Comparable<WalPosition> {
+
+    public static final WalPosition START = new WalPosition(0, 0);
+
+    @Override
+    public int compareTo(WalPosition o) {
+        int bySegment = Long.compare(segment, o.segment);
+        return bySegment != 0 ? bySegment : Integer.compare(offset, o.offset);
+    }
+}
@@ -0,0 +1,316 @@
+package dev.factory.events.wal;
+
+import dev.factory.events.service.model.NormalizedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Segmented, memory-mapped append-only log of normalized events.
+ * <p>
+ * Appends are written into the active segment's mapping and forced to disk before
+ * {@link #append} returns; only then does the new end of the log become visible to
+ * readers. When a segment is full the writer seals it with an end marker and maps the
+ * next one. A single reader tracks its progress with {@link #checkpoint(WalPosition)};
+ * segments entirely before the checkpoint are deleted.
+ * <p>
+ * On startup the last segment is scanned up to the first incomplete or corrupt record
+ * (a write torn by a crash) and everything after it is zeroed, so that unacknowledged
+ * bytes can never be read back.
+ */
+public class WriteAheadLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final int READ_CHUNK = 4 * 1024 * 1024;
+
+    private final Path dir;
+    private final int segmentSize;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private FileChannel activeChannel;
+    private MappedByteBuffer active;
+    private long activeSegment;
+
+    // end of durable, readable data
+    private volatile WalPosition head;
+    private volatile WalPosition checkpoint;
+
+    public WriteAheadLog(Path dir, int segmentSize) throws IOException {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(dir);
+
+        this.checkpoint = readCheckpoint();
+        List<Long> segments = segments();
+        long last = segments.isEmpty()
+                ? checkpoint.segment()
+                : Math.max(segments.getLast(), checkpoint.segment());
+
+        openSegment(last);
+        int end = recoverEnd();
+        zeroFrom(end);
+        active.position(end);
+        head = new WalPosition(last, end);
+        log.info("Write-ahead log at {} opened: head {}, checkpoint {}", dir, head, checkpoint);
+    }
+
+    /**
+     * Appends the events and forces them to disk.
+     *
+     * @return the end of the log after this append
+     */
+    public WalPosition append(List<NormalizedEvent> events) throws IOException {
+        appendLock.lock();
+        try {
+            int flushFrom = active.position();
+            try {
+                for (NormalizedEvent e : events) {
+                    byte[] record = WalCodec.encode(e);
+                    if (record.length + Integer.BYTES > segmentSize) {
+                        throw new IllegalArgumentException("Record of " + record.length + " bytes does not fit a WAL segment");
+                    }
+                    if (active.remaining() < record.length + Integer.BYTES) {
+                        active.force(flushFrom, active.position() - flushFrom);
+                        roll();
+                        flushFrom = 0;
+                    }
+                    active.put(record);
+                }
+                active.force(flushFrom, active.position() - flushFrom);
+            } catch (IOException | RuntimeException ex) {
+                try {
+                    discardPartialAppend();
+                } catch (IOException | RuntimeException discardFailure) {
+                    ex.addSuppressed(discardFailure);
+                }
+                throw ex;
+            }
+            head = new WalPosition(activeSegment, active.position());
+            return head;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Reads up to {@code maxEvents} events starting at {@code from}, never past the head.
+     */
+    public WalBatch read(WalPosition from, int maxEvents) throws IOException {
+        WalPosition limit = head;
+        List<NormalizedEvent> events = new ArrayList<>();
+        WalPosition pos = from;
+
+        while (events.size() < maxEvents && pos.compareTo(limit) < 0) {
+            boolean sealed = pos.segment() < limit.segment();
+            int end = sealed ? segmentSize : limit.offset();
+            int length = Math.min(end - pos.offset(), READ_CHUNK);
+            ByteBuffer buf = readRange(pos.segment(), pos.offset(), length);
+
+            while (events.size() < maxEvents) {
+                NormalizedEvent e = WalCodec.decode(buf);
+                if (e == null) {
+                    break;
+                }
+                events.add(e);
+            }
+            int offset = pos.offset() + buf.position();
+
+            boolean cutByChunk = length < end - pos.offset() && WalCodec.isTruncated(buf);
+            if (events.size() >= maxEvents || cutByChunk || !sealed) {
+                pos = new WalPosition(pos.segment(), offset);
+                if (!sealed) {
+                    break;
+                }
+                continue;
+            }
+
+            if (buf.remaining() >= Integer.BYTES && buf.getInt(buf.position()) != 0) {
+                log.warn("Corrupt WAL record in segment {} at offset {}, skipping rest of segment", pos.segment(), offset);
+            }
+            pos = new WalPosition(pos.segment() + 1, 0);
+        }
+        return new WalBatch(events, pos);
+    }
+
+    public WalPosition head() {
+        return head;
+    }
+
+    public WalPosition checkpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Durably records that everything before {@code position} has been consumed and
+     * deletes segments that lie entirely before it.
+     */
+    public void checkpoint(WalPosition position) throws IOException {
+        Path tmp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.write(ByteBuffer.wrap((position.segment() + " " + position.offset()).getBytes(StandardCharsets.US_ASCII)));
+            ch.force(true);
+        }
+        Files.move(tmp, dir.resolve(CHECKPOINT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        checkpoint = position;
+
+        for (long segment : segments()) {
+            if (segment < position.segment() && segment < head.segment()) {
+                Files.deleteIfExists(segmentPath(segment));
+            }
+        }
+    }
+
+    /**
+     * Bytes written but not yet checkpointed. Sealed segments are counted at full size.
+     */
+    public long depthBytes() {
+        WalPosition h = head;
+        WalPosition c = checkpoint;
+        if (c.compareTo(h) >= 0) {
+            return 0;
+        }
+        if (c.segment() == h.segment()) {
+            return h.offset() - c.offset();
+        }
+        return (long) (segmentSize - c.offset())
+                + (h.segment() - c.segment() - 1) * (long) segmentSize
+                + h.offset();
+    }
+
+    public int segmentCount() throws IOException {
+        return segments().size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            active.force();
+            activeChannel.close();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void roll() throws IOException {
+        // explicit end marker, so a reader never mistakes stale bytes for records
+        if (active.remaining() >= Integer.BYTES) {
+            active.putInt(active.position(), 0);
+        }
+        active.force();
+        activeChannel.close();
+        openSegment(activeSegment + 1);
+    }
+
+    /**
+     * Puts the log back where it was before a failed append: segments rolled into since the
+     * head are deleted, and an end marker at the head hides the partial records both from
+     * readers, which read a sealed segment up to its marker, and from recovery on restart.
+     */
+    private void discardPartialAppend() throws IOException {
+        WalPosition h = head;
+        if (activeSegment != h.segment()) {
+            activeChannel.close();
+            for (long segment = h.segment() + 1; segment <= activeSegment; segment++) {
+                Files.deleteIfExists(segmentPath(segment));
+            }
+            forceDirectory();
+            openSegment(h.segment());
+        }
+        if (segmentSize - h.offset() >= Integer.BYTES) {
+            active.putInt(h.offset(), 0);
+        }
+        active.force();
+        active.position(h.offset());
+    }
+
+    private void openSegment(long segment) throws IOException {
+        Path path = segmentPath(segment);
+        boolean created = Files.notExists(path);
+        activeChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        active = activeChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        activeSegment = segment;
+        if (created) {
+            forceDirectory();
+        }
+    }
+
+    private int recoverEnd() {
+        ByteBuffer scan = active.duplicate();
+        scan.position(0);
+        while (WalCodec.decode(scan) != null) {
+            // advance to the first incomplete or corrupt record
+        }
+        return scan.position();
+    }
+
+    private void zeroFrom(int offset) {
+        byte[] zeros = new byte[64 * 1024];
+        ByteBuffer buf = active.duplicate();
+        buf.position(offset);
+        while (buf.hasRemaining()) {
+            buf.put(zeros, 0, Math.min(zeros.length, buf.remaining()));
+        }
+        active.force();
+    }
+
+    private ByteBuffer readRange(long segment, int offset, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        try (FileChannel ch = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+            while (buf.hasRemaining()) {
+                if (ch.read(buf, offset + buf.position()) < 0) {
+                    break;
+                }
+            }
+        }
+        return buf.flip();
+    }
+
+    private WalPosition readCheckpoint() throws IOException {
+        Path file = dir.resolve(CHECKPOINT_FILE);
+        if (Files.notExists(file)) {
+            return WalPosition.START;
+        }
+        String[] parts = Files.readString(file, StandardCharsets.US_ASCII).trim().split(" ");
+        return new WalPosition(Long.parseLong(parts[0]), Integer.parseInt(parts[1]));
+    }
+
+    private List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith(SEGMENT_PREFIX) && n.endsWith(SEGMENT_SUFFIX))
+                    .map(n -> Long.parseLong(n.substring(SEGMENT_PREFIX.length(), n.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return dir.resolve(SEGMENT_PREFIX + String.format("%020d", segment) + SEGMENT_SUFFIX);
+    }
+
+    // makes a newly created segment file survive a crash
+    private void forceDirectory() {
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException e) {
+            // not supported on every platform
+        }
+    }
+}
@@ -0,0 +1,27 @@
+-- Must match dev.factory.events.domain.PayloadFingerprint.
+CREATE FUNCTION payload_fingerprint(
+    event_time TIMESTAMPTZ,
+    machine_id TEXT,
+    factory_id TEXT,
+    line_id TEXT,
+    duration_ms BIGINT,
+    defect_count INT
+) RETURNS BIGINT
+LANGUAGE sql IMMUTABLE STRICT PARALLEL SAFE
+AS $$
+    SELECT ('x' || substr(md5(concat_ws(
+        chr(31),
+        (extract(epoch FROM event_time) * 1000000)::bigint,
+        machine_id, factory_id, line_id,
+        duration_ms, defect_count
+    )), 1, 16))::bit(64)::bigint
+$$;
+
+ALTER TABLE events ADD COLUMN payload_fingerprint BIGINT;
+
+UPDATE events
+SET payload_fingerprint = payload_fingerprint(
+    event_time, machine_id, factory_id, line_id, duration_ms, defect_count
+);
+
+ALTER TABLE events ALTER COLUMN payload_fingerprint SET NOT NULL;
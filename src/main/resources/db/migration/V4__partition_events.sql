@@ -0,0 +1,108 @@
+-- events becomes range-partitioned by event_time. A unique index on a partitioned
+-- table must contain the partition key, so eventId uniqueness across partitions moves
+-- to event_ids: one slim row per eventId carrying what the ingest classification needs.
+-- The ingest path inserts into event_ids first and only writes events for the rows it won.
+
+ALTER TABLE events RENAME TO events_unpartitioned;
+ALTER TABLE events_unpartitioned RENAME CONSTRAINT events_pkey TO events_unpartitioned_pkey;
+DROP INDEX idx_events_machine_time;
+DROP INDEX idx_events_factory_line_time;
+ALTER SEQUENCE events_id_seq OWNED BY NONE;
+
+CREATE TABLE events (
+    id BIGINT NOT NULL DEFAULT nextval('events_id_seq'),
+    event_id VARCHAR(64) NOT NULL,
+    event_time TIMESTAMPTZ NOT NULL,
+    received_time TIMESTAMPTZ NOT NULL,
+    machine_id VARCHAR(64) NOT NULL,
+    factory_id VARCHAR(64) NOT NULL,
+    line_id VARCHAR(64) NOT NULL,
+    duration_ms BIGINT NOT NULL,
+    defect_count INT NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    payload_fingerprint BIGINT NOT NULL,
+    PRIMARY KEY (id, event_time)
+) PARTITION BY RANGE (event_time);
+
+ALTER SEQUENCE events_id_seq OWNED BY events.id;
+
+-- catches event times no partition covers yet, e.g. far-past backfills
+CREATE TABLE events_default PARTITION OF events DEFAULT;
+
+-- weekly partitions, Monday 00:00 UTC, from the oldest stored event (or four weeks back)
+-- to four weeks ahead; EventPartitionMaintainer keeps extending them
+DO $$
+DECLARE
+    week TIMESTAMP := date_trunc('week', least(
+        (SELECT min(event_time) FROM events_unpartitioned),
+        now() - INTERVAL '4 weeks') AT TIME ZONE 'UTC');
+    last TIMESTAMP := date_trunc('week', now() AT TIME ZONE 'UTC') + INTERVAL '4 weeks';
+BEGIN
+    WHILE week <= last LOOP
+        EXECUTE format(
+            'CREATE TABLE %I PARTITION OF events FOR VALUES FROM (%L) TO (%L)',
+            'events_p' || to_char(week, 'YYYYMMDD'),
+            week AT TIME ZONE 'UTC',
+            (week + INTERVAL '1 week') AT TIME ZONE 'UTC');
+        week := week + INTERVAL '1 week';
+    END LOOP;
+END
+$$;
+
+CREATE INDEX idx_events_machine_time ON events(machine_id, event_time);
+CREATE INDEX idx_events_factory_line_time ON events(factory_id, line_id, event_time);
+CREATE INDEX idx_events_event_id ON events(event_id);
+
+CREATE TABLE event_ids (
+    event_id VARCHAR(64) PRIMARY KEY,
+    event_time TIMESTAMPTZ NOT NULL,
+    received_time TIMESTAMPTZ NOT NULL,
+    payload_fingerprint BIGINT NOT NULL
+);
+
+INSERT INTO events (
+    id, event_id, event_time, received_time,
+    machine_id, factory_id, line_id,
+    duration_ms, defect_count, created_at, updated_at, payload_fingerprint
+)
+SELECT
+    id, event_id, event_time, received_time,
+    machine_id, factory_id, line_id,
+    duration_ms, defect_count, created_at, updated_at, payload_fingerprint
+FROM events_unpartitioned;
+
+INSERT INTO event_ids (event_id, event_time, received_time, payload_fingerprint)
+SELECT event_id, event_time, received_time, payload_fingerprint
+FROM events_unpartitioned;
+
+DROP TABLE events_unpartitioned;
+
+-- Rows deleted from events release their eventId. The event_time check skips the
+-- delete half of a cross-partition UPDATE, whose event_ids row already has the new time.
+CREATE FUNCTION release_event_id() RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    DELETE FROM event_ids
+    WHERE event_id = OLD.event_id AND event_time = OLD.event_time;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER events_release_event_id
+    AFTER DELETE ON events
+    FOR EACH ROW EXECUTE FUNCTION release_event_id();
+
+CREATE FUNCTION release_all_event_ids() RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    TRUNCATE event_ids;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER events_release_all_event_ids
+    AFTER TRUNCATE ON events
+    FOR EACH STATEMENT EXECUTE FUNCTION release_all_event_ids();
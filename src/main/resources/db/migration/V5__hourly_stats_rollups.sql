@@ -0,0 +1,96 @@
+-- Hourly event and defect counts per machine and per (factory, line), kept in step with
+-- events by statement-level triggers, so every write path updates them in its own
+-- transaction with one grouped upsert per statement. Hours are aligned to UTC.
+-- defects_count sums defect_count >= 0 only, like the stats queries.
+
+CREATE TABLE machine_stats_hourly (
+    machine_id VARCHAR(64) NOT NULL,
+    hour TIMESTAMPTZ NOT NULL,
+    events_count BIGINT NOT NULL,
+    defects_count BIGINT NOT NULL,
+    PRIMARY KEY (machine_id, hour)
+);
+
+CREATE TABLE line_stats_hourly (
+    factory_id VARCHAR(64) NOT NULL,
+    hour TIMESTAMPTZ NOT NULL,
+    line_id VARCHAR(64) NOT NULL,
+    events_count BIGINT NOT NULL,
+    defects_count BIGINT NOT NULL,
+    PRIMARY KEY (factory_id, hour, line_id)
+);
+
+INSERT INTO machine_stats_hourly (machine_id, hour, events_count, defects_count)
+SELECT machine_id, date_trunc('hour', event_time, 'UTC'), count(*), sum(greatest(defect_count, 0))
+FROM events
+GROUP BY 1, 2;
+
+INSERT INTO line_stats_hourly (factory_id, hour, line_id, events_count, defects_count)
+SELECT factory_id, date_trunc('hour', event_time, 'UTC'), line_id, count(*), sum(greatest(defect_count, 0))
+FROM events
+GROUP BY 1, 2, 3;
+
+-- Adds (sign 1) or subtracts (sign -1) the rows of changed_rows. Upserts run in key
+-- order, so concurrent statements lock shared rollup rows in the same order.
+CREATE FUNCTION roll_up_events() RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    sign INT := TG_ARGV[0]::INT;
+BEGIN
+    INSERT INTO machine_stats_hourly AS m (machine_id, hour, events_count, defects_count)
+    SELECT machine_id, date_trunc('hour', event_time, 'UTC'),
+           sign * count(*), sign * sum(greatest(defect_count, 0))
+    FROM changed_rows
+    GROUP BY 1, 2
+    ORDER BY 1, 2
+    ON CONFLICT (machine_id, hour) DO UPDATE
+        SET
+            events_count = m.events_count + EXCLUDED.events_count,
+            defects_count = m.defects_count + EXCLUDED.defects_count;
+
+    INSERT INTO line_stats_hourly AS l (factory_id, hour, line_id, events_count, defects_count)
+    SELECT factory_id, date_trunc('hour', event_time, 'UTC'), line_id,
+           sign * count(*), sign * sum(greatest(defect_count, 0))
+    FROM changed_rows
+    GROUP BY 1, 2, 3
+    ORDER BY 1, 2, 3
+    ON CONFLICT (factory_id, hour, line_id) DO UPDATE
+        SET
+            events_count = l.events_count + EXCLUDED.events_count,
+            defects_count = l.defects_count + EXCLUDED.defects_count;
+
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER events_roll_up_inserted
+    AFTER INSERT ON events
+    REFERENCING NEW TABLE AS changed_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION roll_up_events('1');
+
+-- an update replaces the old values by the new ones; rows moved to another
+-- partition are part of both transition tables as well
+CREATE TRIGGER events_roll_up_updated_new
+    AFTER UPDATE ON events
+    REFERENCING NEW TABLE AS changed_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION roll_up_events('1');
+
+CREATE TRIGGER events_roll_up_updated_old
+    AFTER UPDATE ON events
+    REFERENCING OLD TABLE AS changed_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION roll_up_events('-1');
+
+CREATE TRIGGER events_roll_up_deleted
+    AFTER DELETE ON events
+    REFERENCING OLD TABLE AS changed_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION roll_up_events('-1');
+
+CREATE OR REPLACE FUNCTION release_all_event_ids() RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    TRUNCATE event_ids, machine_stats_hourly, line_stats_hourly;
+    RETURN NULL;
+END
+$$;
@@ -0,0 +1,265 @@
+-- events, event_ids and the hourly rollups store integer keys instead of VARCHAR ids.
+-- Machines, factories and lines are dictionary-encoded through the tables below, which
+-- only ever grow: a key, once handed out, names the same id for good. There are no
+-- foreign keys to them, so writes to events pay no per-row check.
+-- eventIds become event_key BIGINT: the number itself for a canonical E-<digits> id and
+-- a negative alias from event_id_aliases for any other, so each maps back to its text.
+-- events_named decodes the keys for people and ad-hoc queries.
+
+CREATE TABLE machines (
+    id INT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    machine_id VARCHAR(64) NOT NULL UNIQUE
+);
+
+CREATE TABLE factories (
+    id INT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    factory_id VARCHAR(64) NOT NULL UNIQUE
+);
+
+CREATE TABLE lines (
+    id INT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    line_id VARCHAR(64) NOT NULL UNIQUE
+);
+
+CREATE TABLE event_id_aliases (
+    event_key BIGINT GENERATED ALWAYS AS IDENTITY (START WITH -1 INCREMENT BY -1 MAXVALUE -1) PRIMARY KEY,
+    event_id VARCHAR(64) NOT NULL UNIQUE
+);
+
+-- Must match dev.factory.events.domain.EventKey. A missing alias is created; a
+-- concurrent transaction creating the same one makes the insert wait for its outcome.
+CREATE FUNCTION event_key(id TEXT) RETURNS BIGINT
+LANGUAGE plpgsql STRICT
+AS $$
+DECLARE
+    key BIGINT;
+BEGIN
+    IF id ~ '^E-(0|[1-9][0-9]{0,18})$' THEN
+        IF substr(id, 3)::numeric <= 9223372036854775807 THEN
+            RETURN substr(id, 3)::bigint;
+        END IF;
+    END IF;
+
+    SELECT a.event_key INTO key FROM event_id_aliases a WHERE a.event_id = id;
+    IF key IS NULL THEN
+        INSERT INTO event_id_aliases AS a (event_id) VALUES (id)
+        ON CONFLICT (event_id) DO NOTHING
+        RETURNING a.event_key INTO key;
+    END IF;
+    IF key IS NULL THEN
+        SELECT a.event_key INTO key FROM event_id_aliases a WHERE a.event_id = id;
+    END IF;
+    RETURN key;
+END
+$$;
+
+CREATE FUNCTION event_id(key BIGINT) RETURNS TEXT
+LANGUAGE sql STABLE STRICT PARALLEL SAFE
+AS $$
+    SELECT CASE
+        WHEN key >= 0 THEN 'E-' || key
+        ELSE (SELECT a.event_id FROM event_id_aliases a WHERE a.event_key = key)
+    END
+$$;
+
+INSERT INTO machines (machine_id) SELECT DISTINCT machine_id FROM events ORDER BY 1;
+INSERT INTO factories (factory_id) SELECT DISTINCT factory_id FROM events ORDER BY 1;
+INSERT INTO lines (line_id) SELECT DISTINCT line_id FROM events ORDER BY 1;
+
+-- the old table and its partitions step aside under a _wide suffix; the new ones take
+-- their names and bounds
+ALTER TABLE events RENAME TO events_wide;
+ALTER TABLE events_wide RENAME CONSTRAINT events_pkey TO events_wide_pkey;
+DROP INDEX idx_events_machine_time;
+DROP INDEX idx_events_factory_line_time;
+DROP INDEX idx_events_event_id;
+ALTER SEQUENCE events_id_seq OWNED BY NONE;
+
+-- eight-byte columns first, then the four-byte ones, so no alignment padding is stored
+CREATE TABLE events (
+    id BIGINT NOT NULL DEFAULT nextval('events_id_seq'),
+    event_key BIGINT NOT NULL,
+    event_time TIMESTAMPTZ NOT NULL,
+    received_time TIMESTAMPTZ NOT NULL,
+    duration_ms BIGINT NOT NULL,
+    payload_fingerprint BIGINT NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    machine_key INT NOT NULL,
+    factory_key INT NOT NULL,
+    line_key INT NOT NULL,
+    defect_count INT NOT NULL,
+    PRIMARY KEY (id, event_time)
+) PARTITION BY RANGE (event_time);
+
+ALTER SEQUENCE events_id_seq OWNED BY events.id;
+
+DO $$
+DECLARE
+    p RECORD;
+BEGIN
+    FOR p IN
+        SELECT c.relname AS name,
+               pg_get_expr(c.relpartbound, c.oid) AS bound,
+               (SELECT conname FROM pg_constraint WHERE conrelid = c.oid AND contype = 'p') AS pkey
+        FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'events_wide'::regclass
+    LOOP
+        EXECUTE format('ALTER TABLE %I RENAME TO %I', p.name, p.name || '_wide');
+        EXECUTE format('ALTER TABLE %I RENAME CONSTRAINT %I TO %I',
+                p.name || '_wide', p.pkey, p.pkey || '_wide');
+        EXECUTE format('CREATE TABLE %I PARTITION OF events %s', p.name, p.bound);
+    END LOOP;
+END
+$$;
+
+INSERT INTO events (
+    id, event_key, event_time, received_time,
+    duration_ms, payload_fingerprint, created_at, updated_at,
+    machine_key, factory_key, line_key, defect_count
+)
+SELECT
+    e.id, event_key(e.event_id), e.event_time, e.received_time,
+    e.duration_ms, e.payload_fingerprint, e.created_at, e.updated_at,
+    m.id, f.id, l.id, e.defect_count
+FROM events_wide e
+JOIN machines m ON m.machine_id = e.machine_id
+JOIN factories f ON f.factory_id = e.factory_id
+JOIN lines l ON l.line_id = e.line_id;
+
+DROP TABLE events_wide;
+
+CREATE INDEX idx_events_machine_time ON events(machine_key, event_time);
+CREATE INDEX idx_events_factory_line_time ON events(factory_key, line_key, event_time);
+CREATE INDEX idx_events_event_key ON events(event_key);
+
+ALTER TABLE event_ids RENAME TO event_ids_wide;
+ALTER TABLE event_ids_wide RENAME CONSTRAINT event_ids_pkey TO event_ids_wide_pkey;
+
+CREATE TABLE event_ids (
+    event_key BIGINT PRIMARY KEY,
+    event_time TIMESTAMPTZ NOT NULL,
+    received_time TIMESTAMPTZ NOT NULL,
+    payload_fingerprint BIGINT NOT NULL
+);
+
+INSERT INTO event_ids (event_key, event_time, received_time, payload_fingerprint)
+SELECT event_key(event_id), event_time, received_time, payload_fingerprint
+FROM event_ids_wide;
+
+DROP TABLE event_ids_wide;
+
+DROP TABLE machine_stats_hourly;
+DROP TABLE line_stats_hourly;
+
+CREATE TABLE machine_stats_hourly (
+    machine_key INT NOT NULL,
+    hour TIMESTAMPTZ NOT NULL,
+    events_count BIGINT NOT NULL,
+    defects_count BIGINT NOT NULL,
+    PRIMARY KEY (machine_key, hour)
+);
+
+CREATE TABLE line_stats_hourly (
+    factory_key INT NOT NULL,
+    hour TIMESTAMPTZ NOT NULL,
+    line_key INT NOT NULL,
+    events_count BIGINT NOT NULL,
+    defects_count BIGINT NOT NULL,
+    PRIMARY KEY (factory_key, hour, line_key)
+);
+
+-- in key order, so the hours of one machine or factory share pages as they would
+-- have had the triggers filled the tables
+INSERT INTO machine_stats_hourly (machine_key, hour, events_count, defects_count)
+SELECT machine_key, date_trunc('hour', event_time, 'UTC'), count(*), sum(greatest(defect_count, 0))
+FROM events
+GROUP BY 1, 2
+ORDER BY 1, 2;
+
+INSERT INTO line_stats_hourly (factory_key, hour, line_key, events_count, defects_count)
+SELECT factory_key, date_trunc('hour', event_time, 'UTC'), line_key, count(*), sum(greatest(defect_count, 0))
+FROM events
+GROUP BY 1, 2, 3
+ORDER BY 1, 2, 3;
+
+CREATE OR REPLACE FUNCTION release_event_id() RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    DELETE FROM event_ids
+    WHERE event_key = OLD.event_key AND event_time = OLD.event_time;
+    RETURN NULL;
+END
+$$;
+
+CREATE OR REPLACE FUNCTION roll_up_events() RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    sign INT := TG_ARGV[0]::INT;
+BEGIN
+    INSERT INTO machine_stats_hourly AS m (machine_key, hour, events_count, defects_count)
+    SELECT machine_key, date_trunc('hour', event_time, 'UTC'),
+           sign * count(*), sign * sum(greatest(defect_count, 0))
+    FROM changed_rows
+    GROUP BY 1, 2
+    ORDER BY 1, 2
+    ON CONFLICT (machine_key, hour) DO UPDATE
+        SET
+            events_count = m.events_count + EXCLUDED.events_count,
+            defects_count = m.defects_count + EXCLUDED.defects_count;
+
+    INSERT INTO line_stats_hourly AS l (factory_key, hour, line_key, events_count, defects_count)
+    SELECT factory_key, date_trunc('hour', event_time, 'UTC'), line_key,
+           sign * count(*), sign * sum(greatest(defect_count, 0))
+    FROM changed_rows
+    GROUP BY 1, 2, 3
+    ORDER BY 1, 2, 3
+    ON CONFLICT (factory_key, hour, line_key) DO UPDATE
+        SET
+            events_count = l.events_count + EXCLUDED.events_count,
+            defects_count = l.defects_count + EXCLUDED.defects_count;
+
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER events_release_event_id
+    AFTER DELETE ON events
+    FOR EACH ROW EXECUTE FUNCTION release_event_id();
+
+CREATE TRIGGER events_release_all_event_ids
+    AFTER TRUNCATE ON events
+    FOR EACH STATEMENT EXECUTE FUNCTION release_all_event_ids();
+
+CREATE TRIGGER events_roll_up_inserted
+    AFTER INSERT ON events
+    REFERENCING NEW TABLE AS changed_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION roll_up_events('1');
+
+CREATE TRIGGER events_roll_up_updated_new
+    AFTER UPDATE ON events
+    REFERENCING NEW TABLE AS changed_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION roll_up_events('1');
+
+CREATE TRIGGER events_roll_up_updated_old
+    AFTER UPDATE ON events
+    REFERENCING OLD TABLE AS changed_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION roll_up_events('-1');
+
+CREATE TRIGGER events_roll_up_deleted
+    AFTER DELETE ON events
+    REFERENCING OLD TABLE AS changed_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION roll_up_events('-1');
+
+CREATE VIEW events_named AS
+SELECT
+    e.id, event_id(e.event_key) AS event_id, e.event_time, e.received_time,
+    m.machine_id, f.factory_id, l.line_id,
+    e.duration_ms, e.defect_count, e.created_at, e.updated_at, e.payload_fingerprint
+FROM events e
+JOIN machines m ON m.id = e.machine_key
+JOIN factories f ON f.id = e.factory_key
+JOIN lines l ON l.id = e.line_key;
@@ -12,7 +12,8 @@ import org.testcontainers.postgresql.PostgreSQLContainer;
 
 import java.util.TimeZone;
 
-@SpringBootTest
+// several contexts can be cached at once, each with its own gRPC server
+@SpringBootTest(properties = "spring.grpc.server.port=0")
 @Testcontainers
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 @ActiveProfiles("test")
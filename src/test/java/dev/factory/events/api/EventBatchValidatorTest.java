@@ -0,0 +1,147 @@
+package dev.factory.events.api;
+
+import dev.factory.events.api.dto.EventBatchRequest;
+import dev.factory.events.api.dto.EventIngestRequest;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Errors;
+import org.springframework.validation.Validator;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventBatchValidatorTest {
+
+    private final Validator compiled = new EventBatchValidator();
+    private final Validator beanValidation =
+            new SpringValidatorAdapter(Validation.buildDefaultValidatorFactory().getValidator());
+
+    private static EventIngestRequest valid() {
+        EventIngestRequest e = new EventIngestRequest();
+        e.setEventId("E-1");
+        e.setEventTime(Instant.parse("2026-01-15T09:59:00Z"));
+        e.setReceivedTime(Instant.parse("2026-01-15T09:59:01Z"));
+        e.setMachineId("M-1");
+        e.setFactoryId("F-1");
+        e.setLineId("L-1");
+        e.setDurationMs(1000);
+        e.setDefectCount(0);
+        return e;
+    }
+
+    private static EventIngestRequest valid(Consumer<EventIngestRequest> change) {
+        EventIngestRequest e = valid();
+        change.accept(e);
+        return e;
+    }
+
+    // "field: message" as FormatErrorHandler renders them, with the code for good measure
+    private static List<String> details(Validator validator, EventBatchRequest batch) {
+        Errors errors = new BeanPropertyBindingResult(batch, "eventBatchRequest");
+        validator.validate(batch, errors);
+        assertThat(errors.getGlobalErrors()).isEmpty();
+        return errors.getFieldErrors().stream()
+                .map(err -> err.getField() + ": " + err.getDefaultMessage() + " [" + err.getCode() + "]")
+                .toList();
+    }
+
+    static Stream<EventIngestRequest> events() {
+        String longDigits = "1".repeat(64);
+        return Stream.of(
+                valid(),
+                valid(e -> e.setDefectCount(-1)),
+                valid(e -> e.setDurationMs(0)),
+                valid(e -> e.setEventId(null)),
+                valid(e -> e.setEventId("")),
+                valid(e -> e.setEventId(" \t ")),
+                valid(e -> e.setEventId("E-")),
+                valid(e -> e.setEventId("E1")),
+                valid(e -> e.setEventId("e-1")),
+                valid(e -> e.setEventId("E-1a")),
+                valid(e -> e.setEventId("E-1\n")),
+                valid(e -> e.setEventId("E-١")),
+                valid(e -> e.setEventId(" E-1")),
+                valid(e -> e.setEventId("E-" + longDigits)),
+                valid(e -> e.setEventId("X" + longDigits)),
+                valid(e -> e.setEventId(" ")),
+                valid(e -> e.setMachineId(null)),
+                valid(e -> e.setMachineId(" ")),
+                valid(e -> e.setMachineId("anything goes")),
+                valid(e -> e.setMachineId("M".repeat(65))),
+                valid(e -> e.setFactoryId("L-1")),
+                valid(e -> e.setFactoryId("")),
+                valid(e -> e.setLineId("F-1")),
+                valid(e -> e.setLineId(null)),
+                valid(e -> e.setEventTime(null)),
+                valid(e -> e.setReceivedTime(null)),
+                valid(e -> e.setDurationMs(-1)),
+                valid(e -> e.setDefectCount(-2)),
+                new EventIngestRequest()
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("events")
+    void reportsWhatBeanValidationReports(EventIngestRequest event) {
+        EventBatchRequest batch = new EventBatchRequest(List.of(valid(), event));
+
+        assertThat(details(compiled, batch))
+                .containsExactlyInAnyOrderElementsOf(details(beanValidation, batch));
+    }
+
+    @ParameterizedTest
+    @MethodSource("events")
+    void isValidAgreesWithBeanValidation(EventIngestRequest event) {
+        jakarta.validation.Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+        assertThat(new EventBatchValidator().isValid(event)).isEqualTo(validator.validate(event).isEmpty());
+    }
+
+    @Test
+    void reportsEveryEventOfTheBatch() {
+        List<EventIngestRequest> events = new ArrayList<>(events().toList());
+        EventBatchRequest batch = new EventBatchRequest(events);
+
+        List<String> expected = details(beanValidation, batch);
+        assertThat(expected).hasSizeGreaterThan(30);
+        assertThat(details(compiled, batch)).containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    @Test
+    void emptyAndMissingEventsAreRejected() {
+        for (EventBatchRequest batch : List.of(new EventBatchRequest(List.of()), new EventBatchRequest(null))) {
+            assertThat(details(compiled, batch))
+                    .containsExactly("events: must not be empty [NotEmpty]")
+                    .isEqualTo(details(beanValidation, batch));
+        }
+    }
+
+    @Test
+    void nullEventsAreSkippedLikeBeanValidation() {
+        EventBatchRequest batch = new EventBatchRequest(Arrays.asList(valid(), null));
+
+        assertThat(details(compiled, batch)).isEmpty();
+        assertThat(details(beanValidation, batch)).isEmpty();
+    }
+
+    @Test
+    void largeValidBatchPasses() {
+        List<EventIngestRequest> events = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            String eventId = "E-" + i;
+            events.add(valid(e -> e.setEventId(eventId)));
+        }
+
+        assertThat(details(compiled, new EventBatchRequest(events))).isEmpty();
+    }
+}
@@ -0,0 +1,97 @@
+package dev.factory.events.api;
+
+import dev.factory.events.api.dto.EventBatchResponse;
+import dev.factory.events.config.IngestionProperties;
+import dev.factory.events.service.EventIngestionService;
+import dev.factory.events.util.FormatErrorHandler;
+import dev.factory.events.util.IngestMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class EventControllerValidationTest {
+
+    private static final String VALID = """
+            {"eventId":"E-1","eventTime":"2026-01-15T09:59:00Z","receivedTime":"2026-01-15T09:59:00Z",
+             "machineId":"M-1","factoryId":"F-1","lineId":"L-1","durationMs":1000,"defectCount":0}""";
+
+    private static final String INVALID = """
+            {"eventId":"X-1","eventTime":"2026-01-15T09:59:00Z",
+             "machineId":" ","factoryId":"F-1","lineId":"L-1","durationMs":-5,"defectCount":-1}""";
+
+    private EventIngestionService ingestionService;
+    private SimpleMeterRegistry registry;
+
+    private MockMvc mockMvc(IngestionProperties.Validation validation) {
+        ingestionService = mock(EventIngestionService.class);
+        when(ingestionService.ingest(any())).thenReturn(new EventBatchResponse(1, 0, 0, 0, List.of()));
+
+        EventController controller = new EventController();
+        controller.eventIngestionService = ingestionService;
+        controller.ingestionProperties = new IngestionProperties();
+        controller.ingestionProperties.setValidation(validation);
+        controller.eventBatchValidator = new EventBatchValidator();
+        registry = new SimpleMeterRegistry();
+        controller.ingestMetrics = new IngestMetrics(registry);
+        return MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new FormatErrorHandler(), new BatchBindTimer(controller.ingestMetrics))
+                .build();
+    }
+
+    @ParameterizedTest
+    @EnumSource(IngestionProperties.Validation.class)
+    void invalidEventsGetTheSameDetailsInEitherMode(IngestionProperties.Validation validation) throws Exception {
+        mockMvc(validation).perform(post("/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"events\":[" + VALID + "," + INVALID + "]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("VALIDATION_ERROR"))
+                .andExpect(jsonPath("$.details", containsInAnyOrder(
+                        "events[1].eventId: EventId must be in format E-<digits>",
+                        "events[1].receivedTime: must not be null",
+                        "events[1].machineId: must not be blank",
+                        "events[1].durationMs: must be greater than or equal to 0")));
+
+        verify(ingestionService, never()).ingest(any());
+    }
+
+    @ParameterizedTest
+    @EnumSource(IngestionProperties.Validation.class)
+    void emptyBatchIsRejectedInEitherMode(IngestionProperties.Validation validation) throws Exception {
+        mockMvc(validation).perform(post("/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"events\":[]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.details[0]").value("events: must not be empty"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(IngestionProperties.Validation.class)
+    void validBatchIsIngested(IngestionProperties.Validation validation) throws Exception {
+        mockMvc(validation).perform(post("/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"events\":[" + VALID + "]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(1));
+
+        verify(ingestionService).ingest(any());
+        assertThat(registry.get("events.ingest.stage").tag("stage", "bind").timer().count()).isEqualTo(1);
+        assertThat(registry.get("events.ingest.stage").tag("stage", "validate").timer().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,223 @@
+package dev.factory.events.api;
+
+import com.google.protobuf.Timestamp;
+import dev.factory.events.api.dto.EventBatchRequest;
+import dev.factory.events.api.dto.EventBatchResponse;
+import dev.factory.events.api.dto.EventIngestRequest;
+import dev.factory.events.api.dto.EventRejection;
+import dev.factory.events.api.grpc.Event;
+import dev.factory.events.api.grpc.IngestEventsAck;
+import dev.factory.events.api.grpc.IngestEventsRequest;
+import dev.factory.events.api.grpc.Rejection;
+import dev.factory.events.api.grpc.RejectionReason;
+import dev.factory.events.config.IngestionProperties;
+import dev.factory.events.service.EventIngestionService;
+import dev.factory.events.util.IngestMetrics;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class EventIngestionGrpcServiceTest {
+
+    private EventIngestionService ingestionService;
+    private IngestionProperties props;
+    private EventIngestionGrpcService service;
+    private Acks acks;
+
+    @BeforeEach
+    void setUp() {
+        ingestionService = mock(EventIngestionService.class);
+        when(ingestionService.ingest(any())).thenAnswer(inv -> {
+            EventBatchRequest req = inv.getArgument(0);
+            return new EventBatchResponse(req.getEvents().size(), 0, 0, 0, List.of());
+        });
+        props = new IngestionProperties();
+        props.getGrpc().setChunkSize(2);
+        props.getGrpc().setMaxDelay(Duration.ofMinutes(1));
+        acks = new Acks();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.stop();
+        }
+    }
+
+    private StreamObserver<IngestEventsRequest> open() {
+        service = new EventIngestionGrpcService(ingestionService,
+                Validation.buildDefaultValidatorFactory().getValidator(), new EventBatchValidator(), props,
+                new IngestMetrics(new SimpleMeterRegistry()));
+        return service.ingestEvents(acks);
+    }
+
+    private static Event event(String eventId) {
+        Timestamp time = Timestamp.newBuilder().setSeconds(1768471140).build();
+        return Event.newBuilder()
+                .setEventId(eventId)
+                .setEventTime(time)
+                .setReceivedTime(time)
+                .setMachineId("M-1")
+                .setFactoryId("F-1")
+                .setLineId("L-1")
+                .setDurationMs(1000)
+                .setDefectCount(0)
+                .build();
+    }
+
+    private static IngestEventsRequest message(Event... events) {
+        return IngestEventsRequest.newBuilder().addAllEvents(List.of(events)).build();
+    }
+
+    private List<EventBatchRequest> ingested() {
+        ArgumentCaptor<EventBatchRequest> captor = ArgumentCaptor.forClass(EventBatchRequest.class);
+        verify(ingestionService, atLeast(0)).ingest(captor.capture());
+        return captor.getAllValues();
+    }
+
+    @Test
+    void acknowledgesEachChunkWithRunningTotals() {
+        StreamObserver<IngestEventsRequest> stream = open();
+
+        stream.onNext(message(event("E-1")));
+        assertThat(acks.received).isEmpty();
+        stream.onNext(message(event("E-2"), event("E-3"), event("E-4"), event("E-5")));
+        stream.onCompleted();
+
+        assertThat(ingested()).extracting(r -> r.getEvents().size()).containsExactly(2, 2, 1);
+        assertThat(acks.received).extracting(IngestEventsAck::getAccepted).containsExactly(2L, 4L, 5L);
+        assertThat(acks.received).extracting(IngestEventsAck::getFinal).containsExactly(false, false, true);
+        assertThat(acks.completed).isTrue();
+    }
+
+    @ParameterizedTest
+    @EnumSource(IngestionProperties.Validation.class)
+    void invalidEventsAreRejectedWithoutFailingTheStream(IngestionProperties.Validation validation) {
+        props.setValidation(validation);
+        StreamObserver<IngestEventsRequest> stream = open();
+
+        stream.onNext(message(
+                event("E-1"),
+                event("not-an-id"),
+                event("E-2").toBuilder().clearEventTime().build(),
+                event("E-3").toBuilder().setDurationMs(-5).build(),
+                event("E-4").toBuilder().setEventTime(Timestamp.newBuilder().setSeconds(Long.MAX_VALUE)).build(),
+                event("E-5")));
+        stream.onCompleted();
+
+        assertThat(ingested()).flatExtracting(EventBatchRequest::getEvents)
+                .extracting(EventIngestRequest::getEventId).containsExactly("E-1", "E-5");
+        IngestEventsAck last = acks.received.getLast();
+        assertThat(last.getAccepted()).isEqualTo(2);
+        assertThat(last.getRejected()).isEqualTo(4);
+        assertThat(acks.received).flatExtracting(IngestEventsAck::getRejectionsList)
+                .extracting(Rejection::getEventId, Rejection::getReason)
+                .containsExactly(
+                        tuple("not-an-id", RejectionReason.MALFORMED_REQUEST),
+                        tuple("E-2", RejectionReason.MALFORMED_REQUEST),
+                        tuple("E-3", RejectionReason.MALFORMED_REQUEST),
+                        tuple("E-4", RejectionReason.MALFORMED_REQUEST));
+    }
+
+    @Test
+    void pipelineRejectionsAreCountedAndListedUpToTheLimit() {
+        props.getGrpc().setMaxRejections(1);
+        doReturn(new EventBatchResponse(0, 1, 0, 1, List.of(
+                new EventRejection("E-1", dev.factory.events.api.dto.RejectionReason.INVALID_DURATION))))
+                .when(ingestionService).ingest(any());
+        StreamObserver<IngestEventsRequest> stream = open();
+
+        stream.onNext(message(event("E-1"), event("E-2"), event("E-3"), event("E-4")));
+        stream.onCompleted();
+
+        IngestEventsAck last = acks.received.getLast();
+        assertThat(last.getDeduped()).isEqualTo(2);
+        assertThat(last.getRejected()).isEqualTo(2);
+        assertThat(acks.received).flatExtracting(IngestEventsAck::getRejectionsList)
+                .extracting(Rejection::getReason).containsExactly(RejectionReason.INVALID_DURATION);
+    }
+
+    @Test
+    void partialChunkIsFlushedAfterMaxDelay() throws InterruptedException {
+        props.getGrpc().setMaxDelay(Duration.ofMillis(20));
+        StreamObserver<IngestEventsRequest> stream = open();
+
+        stream.onNext(message(event("E-1")));
+
+        assertThat(acks.first.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(acks.received.getFirst().getAccepted()).isEqualTo(1);
+        assertThat(acks.received.getFirst().getFinal()).isFalse();
+
+        stream.onCompleted();
+        assertThat(ingested()).hasSize(1);
+        assertThat(acks.received.getLast().getFinal()).isTrue();
+    }
+
+    @Test
+    void failedIngestFailsTheStream() {
+        doThrow(new IllegalStateException("database is down")).when(ingestionService).ingest(any());
+        StreamObserver<IngestEventsRequest> stream = open();
+
+        stream.onNext(message(event("E-1"), event("E-2")));
+        stream.onNext(message(event("E-3"), event("E-4")));
+        stream.onCompleted();
+
+        verify(ingestionService, times(1)).ingest(any());
+        assertThat(acks.received).isEmpty();
+        assertThat(Status.fromThrowable(acks.error).getCode()).isEqualTo(Status.Code.INTERNAL);
+        assertThat(acks.completed).isFalse();
+    }
+
+    @Test
+    void cancelledStreamDropsUnacknowledgedEvents() {
+        StreamObserver<IngestEventsRequest> stream = open();
+
+        stream.onNext(message(event("E-1"), event("E-2"), event("E-3")));
+        stream.onError(Status.CANCELLED.asRuntimeException());
+
+        assertThat(ingested()).extracting(r -> r.getEvents().size()).containsExactly(2);
+        assertThat(acks.received).hasSize(1);
+        assertThat(acks.completed).isFalse();
+    }
+
+    private static final class Acks implements StreamObserver<IngestEventsAck> {
+        final List<IngestEventsAck> received = new CopyOnWriteArrayList<>();
+        final CountDownLatch first = new CountDownLatch(1);
+        volatile Throwable error;
+        volatile boolean completed;
+
+        @Override
+        public void onNext(IngestEventsAck ack) {
+            received.add(ack);
+            first.countDown();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+        }
+    }
+}
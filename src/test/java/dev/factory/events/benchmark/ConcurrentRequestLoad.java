@@ -0,0 +1,175 @@
+package dev.factory.events.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test of many concurrent small requests against a running instance, for comparing
+ * platform-thread and virtual-thread request execution.
+ * <p>
+ * Each of {@code clients} virtual threads keeps one request in flight for
+ * {@code seconds}, alternating a POST /events/batch of {@code events} new events with a
+ * GET /events/stats of one machine over the last day. Latencies are measured from send
+ * to complete response. Prints throughput, latency percentiles per request kind and the
+ * status codes of failed requests.
+ * <p>
+ * Start the application with and without {@code --spring.threads.virtual.enabled=true},
+ * then:
+ * <pre>
+ * mvn -B test-compile
+ * mvn -B dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp "target/test-classes:target/classes:$(cat target/test-classpath.txt)" \
+ *     dev.factory.events.benchmark.ConcurrentRequestLoad http://localhost:8080 1000 30 5
+ * </pre>
+ */
+public class ConcurrentRequestLoad {
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int events = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        // eventIds no earlier run has used
+        AtomicLong nextEventId = new AtomicLong(System.currentTimeMillis() * 1000);
+        Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+        // per client, filled in by its thread when it finishes
+        long[][] ingestLatencies = new long[clients][];
+        long[][] statsLatencies = new long[clients][];
+        CountDownLatch start = new CountDownLatch(1);
+        long[] window = new long[2];
+
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                int client = c;
+                threads.submit(() -> {
+                    Recorder ingest = new Recorder();
+                    Recorder stats = new Recorder();
+                    start.await();
+                    long deadline = window[1];
+                    boolean post = client % 2 == 0;
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = post
+                                ? batch(baseUrl, nextEventId, events, client)
+                                : stats(baseUrl, client);
+                        long sent = System.nanoTime();
+                        String outcome;
+                        try {
+                            HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                            outcome = response.statusCode() == 200 ? null : "HTTP " + response.statusCode();
+                        } catch (Exception e) {
+                            outcome = e.getClass().getSimpleName();
+                        }
+                        long elapsed = System.nanoTime() - sent;
+                        if (outcome == null) {
+                            (post ? ingest : stats).add(elapsed);
+                        } else {
+                            failures.computeIfAbsent(outcome, k -> new LongAdder()).increment();
+                        }
+                        post = !post;
+                    }
+                    ingestLatencies[client] = ingest.toArray();
+                    statsLatencies[client] = stats.toArray();
+                    return null;
+                });
+            }
+            window[0] = System.nanoTime();
+            window[1] = window[0] + Duration.ofSeconds(seconds).toNanos();
+            start.countDown();
+        }
+        double elapsed = (System.nanoTime() - window[0]) / 1e9;
+
+        long[] ingest = merge(ingestLatencies);
+        long[] stats = merge(statsLatencies);
+        long failed = failures.values().stream().mapToLong(LongAdder::sum).sum();
+        System.out.printf("clients=%d events/request=%d duration=%.1fs%n", clients, events, elapsed);
+        System.out.printf("throughput: %.0f requests/s ok, %.0f events/s ingested, %d failed%n",
+                (ingest.length + stats.length) / elapsed, ingest.length * (double) events / elapsed, failed);
+        report("POST /events/batch", ingest);
+        report("GET /events/stats ", stats);
+        new TreeMap<>(failures).forEach((outcome, count) -> System.out.println("  " + outcome + ": " + count.sum()));
+    }
+
+    private static HttpRequest batch(String baseUrl, AtomicLong nextEventId, int events, int client) {
+        Instant now = Instant.now();
+        StringBuilder body = new StringBuilder("{\"events\":[");
+        for (int i = 0; i < events; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append("{\"eventId\":\"E-").append(nextEventId.getAndIncrement())
+                    .append("\",\"eventTime\":\"").append(now.minusSeconds(60 + i))
+                    .append("\",\"receivedTime\":\"").append(now)
+                    .append("\",\"machineId\":\"M-").append(client % 100)
+                    .append("\",\"factoryId\":\"F-").append(client % 20)
+                    .append("\",\"lineId\":\"L-").append(client % 50)
+                    .append("\",\"durationMs\":1000,\"defectCount\":").append(i % 3).append('}');
+        }
+        body.append("]}");
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/events/batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+    }
+
+    private static HttpRequest stats(String baseUrl, int client) {
+        Instant end = Instant.now();
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/events/stats?machineId=M-" + client % 100
+                        + "&start=" + end.minus(Duration.ofDays(1)) + "&end=" + end))
+                .GET()
+                .build();
+    }
+
+    private static long[] merge(long[][] perClient) {
+        return Arrays.stream(perClient).flatMapToLong(Arrays::stream).sorted().toArray();
+    }
+
+    private static void report(String kind, long[] sorted) {
+        if (sorted.length == 0) {
+            System.out.println(kind + ": no successful requests");
+            return;
+        }
+        System.out.printf("%s: %d ok, p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms%n", kind, sorted.length,
+                percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+                sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    // latencies of one client
+    private static final class Recorder {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package dev.factory.events.benchmark;
+
+import dev.factory.events.api.EventBatchValidator;
+import dev.factory.events.api.dto.EventBatchRequest;
+import dev.factory.events.api.dto.EventIngestRequest;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Validator;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validation of a valid {@code /events/batch} body the way the request binder runs it:
+ * Bean Validation through Spring's adapter versus {@link EventBatchValidator}.
+ * <p>
+ * Run with {@code -prof gc} for the allocation rate; see Benchmarks.md for how to launch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventBatchValidationBenchmark {
+
+    @Param({"500", "5000"})
+    int batchSize;
+
+    private ValidatorFactory factory;
+    private Validator beanValidation;
+    private Validator compiled;
+    private EventBatchRequest batch;
+
+    @Setup
+    public void setUp() {
+        factory = Validation.buildDefaultValidatorFactory();
+        beanValidation = new SpringValidatorAdapter(factory.getValidator());
+        compiled = new EventBatchValidator();
+
+        Instant t = Instant.parse("2026-01-15T09:00:00Z");
+        List<EventIngestRequest> events = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            EventIngestRequest e = new EventIngestRequest();
+            e.setEventId("E-" + i);
+            e.setEventTime(t.plusSeconds(i));
+            e.setReceivedTime(t.plusSeconds(i + 1));
+            e.setMachineId("M-" + (i % 20));
+            e.setFactoryId("F-" + (i % 2));
+            e.setLineId("L-" + (i % 10));
+            e.setDurationMs(1000);
+            e.setDefectCount(i % 7 - 1);
+            events.add(e);
+        }
+        batch = new EventBatchRequest(events);
+    }
+
+    @TearDown
+    public void tearDown() {
+        factory.close();
+    }
+
+    @Benchmark
+    public int beanValidation() {
+        return validate(beanValidation);
+    }
+
+    @Benchmark
+    public int compiled() {
+        return validate(compiled);
+    }
+
+    private int validate(Validator validator) {
+        BeanPropertyBindingResult errors = new BeanPropertyBindingResult(batch, "eventBatchRequest");
+        validator.validate(batch, errors);
+        return errors.getErrorCount();
+    }
+}
@@ -0,0 +1,528 @@
+package dev.factory.events.benchmark;
+
+import dev.factory.events.EventsApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.SerializationFeature;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-to-end load test: starts PostgreSQL in a container and the application in this
+ * JVM, then replays event batches over HTTP at several concurrency levels and duplicate
+ * ratios, and writes a JSON report.
+ * <p>
+ * A step runs one batch source at one duplicate ratio and one concurrency. Sources are
+ * the sample files ({@code large_events.json}, {@code large_events_1000.json}) and
+ * generated batches of a given size. Event times are moved so that the latest
+ * receivedTime of a source is now, and each event gets a new eventId, except for the
+ * {@code duplicate-ratio} share of events that resend an event already sent in the
+ * step, unchanged. Each of {@code concurrency} clients keeps one request in flight,
+ * posting a batch to {@code /events/batch} or, for a {@code stats-share} of requests,
+ * querying {@code /events/stats} or {@code /events/stats/top-defect-lines}.
+ * <p>
+ * Per step the report holds throughput, p50/p95/p99 latency per request kind, the
+ * accepted/deduped/updated/rejected totals, the changes in {@code pg_stat_database}
+ * and the most expensive statements from {@code pg_stat_statements}, reset after the
+ * warm-up. Data is kept between steps, so later steps run against larger tables.
+ * <p>
+ * Options are {@code --name=value}; {@code --spring.*}, {@code --events.*},
+ * {@code --server.*} and {@code --management.*} are passed to the application.
+ * {@code --jdbc-url} uses an existing database instead of a container; statement
+ * statistics then need {@code pg_stat_statements} in its
+ * {@code shared_preload_libraries}.
+ * <pre>
+ * mvn -B test-compile
+ * mvn -B dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp "target/test-classes:target/classes:$(cat target/test-classpath.txt)" \
+ *     dev.factory.events.benchmark.EventReplayLoad --concurrency=1,8,32 --duplicate-ratio=0,0.5 \
+ *     --generated=100 --seconds=30 --output=target/load-report.json
+ * </pre>
+ */
+public class EventReplayLoad {
+
+    private static final Map<String, String> DEFAULTS = Map.ofEntries(
+            Map.entry("files", "large_events.json,large_events_1000.json"),
+            // sizes of generated batches; empty for none
+            Map.entry("generated", "100"),
+            Map.entry("concurrency", "1,8,32"),
+            Map.entry("duplicate-ratio", "0,0.5"),
+            Map.entry("stats-share", "0.2"),
+            Map.entry("warmup", "5"),
+            Map.entry("seconds", "20"),
+            Map.entry("top-statements", "15"),
+            Map.entry("output", "target/load-report.json"),
+            Map.entry("jdbc-url", ""),
+            Map.entry("jdbc-user", "events_user"),
+            Map.entry("jdbc-password", "events_pass"));
+
+    private static final String[] APP_PREFIXES = {"spring.", "events.", "server.", "management."};
+
+    // resent events are drawn from the last ones sent in the step
+    private static final int RESEND_POOL = 65_536;
+
+    private static final String[] DB_COUNTERS = {"xact_commit", "xact_rollback", "deadlocks", "blks_read",
+            "blks_hit", "tup_inserted", "tup_updated", "tup_deleted", "temp_bytes"};
+
+    private final Map<String, String> options;
+    private final JsonMapper json = JsonMapper.builder().enable(SerializationFeature.INDENT_OUTPUT).build();
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    // eventIds no earlier run has used
+    private final AtomicLong nextEventId = new AtomicLong(System.currentTimeMillis() * 1000);
+    private String baseUrl;
+    private Connection db;
+    private boolean statements;
+
+    private EventReplayLoad(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        List<String> appArgs = new ArrayList<>(List.of("--server.port=0", "--spring.grpc.server.port=0"));
+        for (String arg : args) {
+            String[] kv = arg.replaceFirst("^--", "").split("=", 2);
+            if (Arrays.stream(APP_PREFIXES).anyMatch(kv[0]::startsWith)) {
+                appArgs.add(arg);
+            } else if (DEFAULTS.containsKey(kv[0])) {
+                options.put(kv[0], kv.length > 1 ? kv[1] : "");
+            } else {
+                throw new IllegalArgumentException("Unknown option " + arg + "; known: " + DEFAULTS.keySet());
+            }
+        }
+        new EventReplayLoad(options).run(appArgs);
+        System.exit(0);
+    }
+
+    private void run(List<String> appArgs) throws Exception {
+        PostgreSQLContainer postgres = null;
+        String jdbcUrl = options.get("jdbc-url");
+        if (jdbcUrl.isEmpty()) {
+            postgres = new PostgreSQLContainer("postgres:15")
+                    .withDatabaseName("events").withUsername("events_user").withPassword("events_pass")
+                    .withCommand("postgres", "-c", "shared_preload_libraries=pg_stat_statements",
+                            "-c", "pg_stat_statements.track=all");
+            postgres.start();
+            jdbcUrl = postgres.getJdbcUrl();
+        }
+        appArgs.add("--spring.datasource.url=" + jdbcUrl);
+        appArgs.add("--spring.datasource.username=" + options.get("jdbc-user"));
+        appArgs.add("--spring.datasource.password=" + options.get("jdbc-password"));
+
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Kolkata"));
+        try (ConfigurableApplicationContext app = new SpringApplicationBuilder(EventsApplication.class)
+                .run(appArgs.toArray(String[]::new));
+             Connection connection = DriverManager.getConnection(jdbcUrl,
+                     options.get("jdbc-user"), options.get("jdbc-password"))) {
+            baseUrl = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+            db = connection;
+            statements = enableStatementStats();
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("startedAt", Instant.now().toString());
+            report.put("environment", environment(appArgs));
+            report.put("options", options);
+            List<Object> steps = new ArrayList<>();
+            report.put("steps", steps);
+            for (Source source : sources()) {
+                for (String ratio : list("duplicate-ratio")) {
+                    for (String clients : list("concurrency")) {
+                        steps.add(step(source, Double.parseDouble(ratio), Integer.parseInt(clients)));
+                        write(report);
+                    }
+                }
+            }
+            report.put("finishedAt", Instant.now().toString());
+            write(report);
+            System.out.println("Report written to " + Path.of(options.get("output")).toAbsolutePath());
+        } finally {
+            if (postgres != null) {
+                postgres.stop();
+            }
+        }
+    }
+
+    private Map<String, Object> step(Source source, double duplicateRatio, int clients) throws Exception {
+        long warmup = Duration.ofSeconds(Long.parseLong(options.get("warmup"))).toNanos();
+        long measured = Duration.ofSeconds(Long.parseLong(options.get("seconds"))).toNanos();
+        double statsShare = Double.parseDouble(options.get("stats-share"));
+        AtomicReferenceArray<String> sent = new AtomicReferenceArray<>(RESEND_POOL);
+        AtomicLong sentCount = new AtomicLong();
+        Map<String, Recorder[]> latencies = new ConcurrentHashMap<>();
+        Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+        Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+        LongAdder eventsSent = new LongAdder();
+        Map<String, Long> dbBefore = new LinkedHashMap<>();
+        CountDownLatch warmedUp = new CountDownLatch(clients);
+        CountDownLatch reset = new CountDownLatch(1);
+        long[] window = new long[2];
+
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            long warmupEnd = System.nanoTime() + warmup;
+            for (int c = 0; c < clients; c++) {
+                int client = c;
+                threads.submit(() -> {
+                    Random random = new Random(client);
+                    Map<String, Recorder> own = new LinkedHashMap<>();
+                    boolean measuring = false;
+                    while (true) {
+                        long now = System.nanoTime();
+                        if (!measuring && now >= warmupEnd) {
+                            warmedUp.countDown();
+                            reset.await();
+                            measuring = true;
+                        } else if (measuring && now >= window[1]) {
+                            break;
+                        }
+                        boolean stats = random.nextDouble() < statsShare;
+                        String kind;
+                        HttpRequest request;
+                        int events = 0;
+                        if (stats) {
+                            boolean machine = random.nextBoolean();
+                            kind = machine ? "GET /events/stats" : "GET /events/stats/top-defect-lines";
+                            request = machine ? machineStats(source, random) : topDefectLines(source, random);
+                        } else {
+                            kind = "POST /events/batch";
+                            events = source.events().size();
+                            request = batch(source, duplicateRatio, random, sent, sentCount);
+                        }
+                        long started = System.nanoTime();
+                        String failure = null;
+                        String body = null;
+                        try {
+                            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+                            body = response.body();
+                            failure = response.statusCode() == 200 ? null : "HTTP " + response.statusCode();
+                        } catch (IOException e) {
+                            failure = e.getClass().getSimpleName();
+                        }
+                        long elapsed = System.nanoTime() - started;
+                        if (!measuring) {
+                            continue;
+                        }
+                        if (failure != null) {
+                            failures.computeIfAbsent(kind + " " + failure, k -> new LongAdder()).increment();
+                            continue;
+                        }
+                        own.computeIfAbsent(kind, k -> new Recorder()).add(elapsed);
+                        if (!stats) {
+                            eventsSent.add(events);
+                            count(body, outcomes);
+                        }
+                    }
+                    own.forEach((kind, recorder) ->
+                            latencies.computeIfAbsent(kind, k -> new Recorder[clients])[client] = recorder);
+                    return null;
+                });
+            }
+            warmedUp.await();
+            dbBefore.putAll(databaseCounters());
+            resetStatementStats();
+            window[0] = System.nanoTime();
+            window[1] = window[0] + measured;
+            reset.countDown();
+        }
+        double seconds = (System.nanoTime() - window[0]) / 1e9;
+
+        Map<String, Object> step = new LinkedHashMap<>();
+        step.put("source", source.name());
+        step.put("eventsPerBatch", source.events().size());
+        step.put("duplicateRatio", duplicateRatio);
+        step.put("concurrency", clients);
+        step.put("seconds", Math.round(seconds * 10) / 10.0);
+        long ok = 0;
+        Map<String, Object> kinds = new TreeMap<>();
+        for (Map.Entry<String, Recorder[]> e : latencies.entrySet()) {
+            long[] sorted = Arrays.stream(e.getValue()).filter(r -> r != null)
+                    .flatMapToLong(r -> Arrays.stream(r.toArray())).sorted().toArray();
+            ok += sorted.length;
+            kinds.put(e.getKey(), latency(sorted, seconds));
+        }
+        long failed = failures.values().stream().mapToLong(LongAdder::sum).sum();
+        step.put("requestsPerSecond", Math.round(ok / seconds * 10) / 10.0);
+        step.put("eventsPerSecond", Math.round(eventsSent.sum() / seconds));
+        step.put("failed", failed);
+        step.put("requests", kinds);
+        Map<String, Long> totals = new TreeMap<>();
+        outcomes.forEach((k, v) -> totals.put(k, v.sum()));
+        step.put("events", totals);
+        Map<String, Long> failuresByKind = new TreeMap<>();
+        failures.forEach((k, v) -> failuresByKind.put(k, v.sum()));
+        step.put("failures", failuresByKind);
+        Map<String, Long> dbDelta = new LinkedHashMap<>();
+        databaseCounters().forEach((k, v) -> dbDelta.put(k, v - dbBefore.getOrDefault(k, 0L)));
+        step.put("database", dbDelta);
+        step.put("statements", statements ? topStatements() : null);
+
+        System.out.printf("%s dup=%.2f clients=%d: %.1f requests/s, %d events/s, %d failed%n",
+                source.name(), duplicateRatio, clients, ok / seconds, Math.round(eventsSent.sum() / seconds), failed);
+        kinds.forEach((kind, l) -> System.out.println("  " + kind + " " + l));
+        return step;
+    }
+
+    private HttpRequest batch(Source source, double duplicateRatio, Random random,
+                              AtomicReferenceArray<String> sent, AtomicLong sentCount) {
+        StringBuilder body = new StringBuilder(source.events().size() * 200).append("{\"events\":[");
+        for (int i = 0; i < source.events().size(); i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            long available = Math.min(sentCount.get(), RESEND_POOL);
+            String resent = available > 0 && random.nextDouble() < duplicateRatio
+                    ? sent.get((int) (random.nextLong(available)))
+                    : null;
+            if (resent != null) {
+                body.append(resent);
+                continue;
+            }
+            String event = source.events().get(i).render(nextEventId.getAndIncrement(), source.shift());
+            sent.set((int) (sentCount.getAndIncrement() % RESEND_POOL), event);
+            body.append(event);
+        }
+        body.append("]}");
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/events/batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+    }
+
+    // a random machine of the source over the last day
+    private HttpRequest machineStats(Source source, Random random) {
+        Instant end = Instant.now();
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/events/stats?machineId="
+                        + source.events().get(random.nextInt(source.events().size())).machineId()
+                        + "&start=" + end.minus(Duration.ofDays(1)) + "&end=" + end))
+                .GET()
+                .build();
+    }
+
+    private HttpRequest topDefectLines(Source source, Random random) {
+        Instant end = Instant.now();
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/events/stats/top-defect-lines?factoryId="
+                        + source.events().get(random.nextInt(source.events().size())).factoryId()
+                        + "&start=" + end.minus(Duration.ofDays(1)) + "&end=" + end + "&limit=10"))
+                .GET()
+                .build();
+    }
+
+    private void count(String body, Map<String, LongAdder> outcomes) {
+        JsonNode response = json.readTree(body);
+        for (String field : List.of("accepted", "deduped", "updated", "rejected")) {
+            outcomes.computeIfAbsent(field, k -> new LongAdder()).add(response.path(field).asLong());
+        }
+    }
+
+    private static Map<String, Object> latency(long[] sorted, double seconds) {
+        Map<String, Object> l = new LinkedHashMap<>();
+        l.put("ok", sorted.length);
+        l.put("perSecond", Math.round(sorted.length / seconds * 10) / 10.0);
+        l.put("p50Ms", percentile(sorted, 0.50));
+        l.put("p95Ms", percentile(sorted, 0.95));
+        l.put("p99Ms", percentile(sorted, 0.99));
+        l.put("maxMs", sorted.length == 0 ? 0.0 : Math.round(sorted[sorted.length - 1] / 1e4) / 100.0);
+        return l;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return Math.round(sorted[Math.max(0, index)] / 1e4) / 100.0;
+    }
+
+    private List<Source> sources() throws IOException {
+        List<Source> sources = new ArrayList<>();
+        for (String file : list("files")) {
+            JsonNode events = json.readTree(Path.of(file).toFile()).path("events");
+            List<Template> templates = new ArrayList<>(events.size());
+            Instant latest = Instant.EPOCH;
+            for (JsonNode e : events) {
+                Template t = new Template(Instant.parse(e.path("eventTime").asString()),
+                        e.path("machineId").asString(), e.path("factoryId").asString(), e.path("lineId").asString(),
+                        e.path("durationMs").asLong(), e.path("defectCount").asInt());
+                Instant received = Instant.parse(e.path("receivedTime").asString());
+                latest = received.isAfter(latest) ? received : latest;
+                templates.add(t);
+            }
+            sources.add(new Source(Path.of(file).getFileName().toString(), templates,
+                    Duration.between(latest, Instant.now())));
+        }
+        for (String size : list("generated")) {
+            int n = Integer.parseInt(size);
+            Random random = new Random(n);
+            Instant now = Instant.now();
+            List<Template> templates = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                int machine = random.nextInt(100);
+                templates.add(new Template(now.minusSeconds(60 + random.nextInt(6 * 3600)), "M-" + machine,
+                        "F-" + machine % 20, "L-" + random.nextInt(50), random.nextInt(5_000), random.nextInt(6)));
+            }
+            sources.add(new Source("generated-" + n, templates, Duration.ZERO));
+        }
+        return sources;
+    }
+
+    private List<String> list(String option) {
+        return Arrays.stream(options.get(option).split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+    }
+
+    private Map<String, Object> environment(List<String> appArgs) throws SQLException {
+        Map<String, Object> env = new LinkedHashMap<>();
+        env.put("java", System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+        env.put("cpus", Runtime.getRuntime().availableProcessors());
+        env.put("os", System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+        try (Statement s = db.createStatement(); ResultSet rs = s.executeQuery("SELECT version()")) {
+            rs.next();
+            env.put("postgres", rs.getString(1));
+        }
+        env.put("applicationArgs", appArgs.stream().filter(a -> !a.contains("password")).toList());
+        env.put("statementStats", statements);
+        return env;
+    }
+
+    private boolean enableStatementStats() {
+        try (Statement s = db.createStatement()) {
+            s.execute("CREATE EXTENSION IF NOT EXISTS pg_stat_statements");
+            s.execute("SELECT pg_stat_statements_reset()");
+            return true;
+        } catch (SQLException e) {
+            System.out.println("pg_stat_statements unavailable, reporting without statements: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void resetStatementStats() throws SQLException {
+        if (statements) {
+            try (Statement s = db.createStatement()) {
+                s.execute("SELECT pg_stat_statements_reset()");
+            }
+        }
+    }
+
+    private Map<String, Long> databaseCounters() throws SQLException {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        try (Statement s = db.createStatement();
+             ResultSet rs = s.executeQuery("SELECT " + String.join(", ", DB_COUNTERS)
+                     + " FROM pg_stat_database WHERE datname = current_database()")) {
+            rs.next();
+            for (String counter : DB_COUNTERS) {
+                counters.put(counter, rs.getLong(counter));
+            }
+        }
+        return counters;
+    }
+
+    private List<Map<String, Object>> topStatements() throws SQLException {
+        List<Map<String, Object>> top = new ArrayList<>();
+        try (PreparedStatement ps = db.prepareStatement("""
+                SELECT query, calls, total_exec_time, mean_exec_time, rows,
+                       shared_blks_hit, shared_blks_read, temp_blks_written, wal_bytes
+                FROM pg_stat_statements
+                WHERE dbid = (SELECT oid FROM pg_database WHERE datname = current_database())
+                  AND query NOT LIKE '%pg_stat%'
+                ORDER BY total_exec_time DESC
+                LIMIT ?
+                """)) {
+            ps.setInt(1, Integer.parseInt(options.get("top-statements")));
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                Map<String, Object> statement = new LinkedHashMap<>();
+                String query = rs.getString("query").replaceAll("\\s+", " ").trim();
+                statement.put("query", query.length() > 300 ? query.substring(0, 300) + "..." : query);
+                statement.put("calls", rs.getLong("calls"));
+                statement.put("totalMs", Math.round(rs.getDouble("total_exec_time") * 100) / 100.0);
+                statement.put("meanMs", Math.round(rs.getDouble("mean_exec_time") * 1000) / 1000.0);
+                statement.put("rows", rs.getLong("rows"));
+                statement.put("sharedBlksHit", rs.getLong("shared_blks_hit"));
+                statement.put("sharedBlksRead", rs.getLong("shared_blks_read"));
+                statement.put("tempBlksWritten", rs.getLong("temp_blks_written"));
+                statement.put("walBytes", rs.getBigDecimal("wal_bytes").longValue());
+                top.add(statement);
+            }
+        }
+        return top;
+    }
+
+    private void write(Map<String, Object> report) throws IOException {
+        Path output = Path.of(options.get("output"));
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        json.writeValue(output.toFile(), report);
+    }
+
+    // one event of a source; fields other than the eventId and times are sent as they are
+    private record Template(Instant eventTime, String machineId, String factoryId, String lineId,
+                            long durationMs, int defectCount) {
+
+        String render(long eventId, Duration shift) {
+            Instant time = eventTime.plus(shift);
+            return "{\"eventId\":\"E-" + eventId
+                    + "\",\"eventTime\":\"" + time
+                    + "\",\"receivedTime\":\"" + Instant.now()
+                    + "\",\"machineId\":\"" + machineId
+                    + "\",\"factoryId\":\"" + factoryId
+                    + "\",\"lineId\":\"" + lineId
+                    + "\",\"durationMs\":" + durationMs
+                    + ",\"defectCount\":" + defectCount + '}';
+        }
+    }
+
+    // shift moves the source's latest receivedTime to the start of the run
+    private record Source(String name, List<Template> events, Duration shift) {
+    }
+
+    // latencies of one client and request kind
+    private static final class Recorder {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package dev.factory.events.benchmark;
+
+import dev.factory.events.api.dto.EventBatchRequest;
+import dev.factory.events.api.dto.EventIngestRequest;
+import dev.factory.events.service.EventNormalizer;
+import dev.factory.events.service.model.NormalizedBatch;
+import dev.factory.events.service.model.NormalizedEvent;
+import org.openjdk.jmh.annotations.*;
+import tools.jackson.databind.ObjectReader;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The in-process steps of {@code POST /events/batch} ahead of the upsert: binding the
+ * JSON body, the business rules of {@link EventNormalizer} and the in-request dedupe,
+ * alone and together as {@code DbBackedNativeIngestionService.ingest} runs them.
+ * <p>
+ * {@code duplicateRatio} is the share of events that repeat an eventId sent earlier in
+ * the same batch. Every event is valid. Run with {@code -prof gc} for the allocation
+ * rate; see Benchmarks.md for how to launch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IngestPathBenchmark {
+
+    private static final Instant NOW = Instant.parse("2026-01-15T10:00:00Z");
+
+    @Param({"500", "5000"})
+    int batchSize;
+
+    @Param({"0", "0.1", "0.5"})
+    double duplicateRatio;
+
+    private ObjectReader batchReader;
+    private byte[] json;
+    private List<EventIngestRequest> events;
+    private List<NormalizedEvent> checked;
+    private EventNormalizer normalizer;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        events = new ArrayList<>(batchSize);
+        int distinct = 0;
+        for (int i = 0; i < batchSize; i++) {
+            boolean repeat = distinct > 0 && random.nextDouble() < duplicateRatio;
+            int id = repeat ? random.nextInt(distinct) : distinct++;
+            EventIngestRequest e = new EventIngestRequest();
+            e.setEventId("E-" + id);
+            e.setEventTime(NOW.minusSeconds(3600 - i % 3600));
+            e.setReceivedTime(NOW.minusSeconds(1));
+            e.setMachineId("M-" + (id % 20));
+            e.setFactoryId("F-" + (id % 2));
+            e.setLineId("L-" + (id % 10));
+            e.setDurationMs(1000 + i % 500);
+            e.setDefectCount(i % 7 - 1);
+            events.add(e);
+        }
+
+        JsonMapper mapper = JsonMapper.builder().build();
+        batchReader = mapper.readerFor(EventBatchRequest.class);
+        json = mapper.writeValueAsBytes(new EventBatchRequest(events));
+        normalizer = new EventNormalizer(() -> NOW);
+        checked = normalizer.applyRules(events).events();
+    }
+
+    @Benchmark
+    public EventBatchRequest deserialize() {
+        return batchReader.readValue(json);
+    }
+
+    @Benchmark
+    public NormalizedBatch applyRules() {
+        return normalizer.applyRules(events);
+    }
+
+    @Benchmark
+    public List<NormalizedEvent> dedupe() {
+        return EventNormalizer.dedupe(checked);
+    }
+
+    // what the service does between validation and the upsert
+    @Benchmark
+    public int ingestPath() {
+        NormalizedBatch batch = normalizer.applyRules(batchReader.<EventBatchRequest>readValue(json).getEvents());
+        return EventNormalizer.dedupe(batch.events()).size() + batch.rejections().size();
+    }
+}
@@ -0,0 +1,242 @@
+package dev.factory.events.benchmark;
+
+import dev.factory.events.EventsApplication;
+import dev.factory.events.repository.EventRepository;
+import dev.factory.events.service.DbBackedNativeIngestionService;
+import dev.factory.events.service.model.NormalizedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+import tools.jackson.databind.SerializationFeature;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the workload of {@code OverlappingBatchesIT}: {@code threads} threads upsert
+ * {@code batches} batches each of {@code batch-size} eventIds drawn from a shared pool of
+ * {@code distinct-ids}, each batch in its own shuffled order and with later receivedTimes
+ * than the batches before it. Starts PostgreSQL in a container (or uses
+ * {@code --jdbc-url}) and the application in this JVM, and calls
+ * {@link DbBackedNativeIngestionService#upsert} directly.
+ * <p>
+ * Per run the report holds wall time, throughput, lock-conflict retries, failed batches,
+ * the deadlocks PostgreSQL detected and an estimate of the time backends spent waiting
+ * for locks: {@code pg_stat_activity} is sampled every {@code sample-millis} and each
+ * backend waiting on a lock counts for the interval. {@code --events.*} options are passed
+ * to the application, e.g. {@code --events.ingestion.retry.max-attempts=1}.
+ * <pre>
+ * mvn -B test-compile
+ * mvn -B dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp "target/test-classes:target/classes:$(cat target/test-classpath.txt)" \
+ *     dev.factory.events.benchmark.OverlappingBatchesLoad --runs=5 --output=target/overlapping-batches.json
+ * </pre>
+ */
+public class OverlappingBatchesLoad {
+
+    private static final Map<String, String> DEFAULTS = Map.ofEntries(
+            Map.entry("threads", "12"),
+            Map.entry("batches", "15"),
+            Map.entry("batch-size", "400"),
+            Map.entry("distinct-ids", "2000"),
+            Map.entry("sample-millis", "5"),
+            Map.entry("runs", "5"),
+            Map.entry("output", "target/overlapping-batches.json"),
+            Map.entry("jdbc-url", ""),
+            Map.entry("jdbc-user", "events_user"),
+            Map.entry("jdbc-password", "events_pass"));
+
+    private final Map<String, String> options;
+    private final JsonMapper json = JsonMapper.builder().enable(SerializationFeature.INDENT_OUTPUT).build();
+
+    private OverlappingBatchesLoad(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        List<String> appArgs = new ArrayList<>(List.of("--spring.main.web-application-type=none",
+                "--spring.grpc.server.port=0"));
+        for (String arg : args) {
+            String[] kv = arg.replaceFirst("^--", "").split("=", 2);
+            if (kv[0].startsWith("events.")) {
+                appArgs.add(arg);
+            } else if (DEFAULTS.containsKey(kv[0])) {
+                options.put(kv[0], kv.length > 1 ? kv[1] : "");
+            } else {
+                throw new IllegalArgumentException("Unknown option " + arg + "; known: " + DEFAULTS.keySet());
+            }
+        }
+        new OverlappingBatchesLoad(options).run(appArgs);
+        System.exit(0);
+    }
+
+    private void run(List<String> appArgs) throws Exception {
+        PostgreSQLContainer postgres = null;
+        String jdbcUrl = options.get("jdbc-url");
+        if (jdbcUrl.isEmpty()) {
+            postgres = new PostgreSQLContainer("postgres:15")
+                    .withDatabaseName("events").withUsername("events_user").withPassword("events_pass");
+            postgres.start();
+            jdbcUrl = postgres.getJdbcUrl();
+        }
+        appArgs.add("--spring.datasource.url=" + jdbcUrl);
+        appArgs.add("--spring.datasource.username=" + options.get("jdbc-user"));
+        appArgs.add("--spring.datasource.password=" + options.get("jdbc-password"));
+
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Kolkata"));
+        try (ConfigurableApplicationContext app = new SpringApplicationBuilder(EventsApplication.class)
+                .run(appArgs.toArray(String[]::new))) {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("startedAt", Instant.now().toString());
+            report.put("options", options);
+            report.put("applicationArgs", appArgs.stream().filter(a -> !a.contains("password")).toList());
+            List<Object> runs = new ArrayList<>();
+            report.put("runs", runs);
+            for (int run = 0; run < Integer.parseInt(options.get("runs")); run++) {
+                app.getBean(EventRepository.class).deleteAllInBatch();
+                Map<String, Object> result = run(app);
+                runs.add(result);
+                System.out.println("run " + (run + 1) + ": " + result);
+            }
+            report.put("finishedAt", Instant.now().toString());
+            write(report);
+            System.out.println("Report written to " + Path.of(options.get("output")).toAbsolutePath());
+        } finally {
+            if (postgres != null) {
+                postgres.stop();
+            }
+        }
+    }
+
+    private Map<String, Object> run(ConfigurableApplicationContext app) throws Exception {
+        DbBackedNativeIngestionService ingestion = app.getBean(DbBackedNativeIngestionService.class);
+        MeterRegistry registry = app.getBean(MeterRegistry.class);
+        JdbcTemplate jdbc = app.getBean(JdbcTemplate.class);
+        int threads = Integer.parseInt(options.get("threads"));
+        int batches = Integer.parseInt(options.get("batches"));
+        int batchSize = Integer.parseInt(options.get("batch-size"));
+        long sampleMillis = Long.parseLong(options.get("sample-millis"));
+        Instant hourAgo = Instant.now().truncatedTo(ChronoUnit.SECONDS).minusSeconds(3600);
+
+        AtomicLong sequence = new AtomicLong();
+        double retriesBefore = retries(registry);
+        long deadlocksBefore = deadlocks(jdbc);
+        AtomicBoolean sampling = new AtomicBoolean(true);
+        AtomicLong lockWaitMillis = new AtomicLong();
+        Thread sampler = Thread.ofPlatform().start(() -> {
+            while (sampling.get()) {
+                Long waiting = jdbc.queryForObject("""
+                        SELECT count(*) FROM pg_stat_activity
+                        WHERE datname = current_database() AND wait_event_type = 'Lock'
+                        """, Long.class);
+                lockWaitMillis.addAndGet(waiting * sampleMillis);
+                try {
+                    Thread.sleep(sampleMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long started = System.nanoTime();
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Random random = new Random(t);
+                results.add(pool.submit(() -> {
+                    start.await();
+                    for (int b = 0; b < batches; b++) {
+                        try {
+                            ingestion.upsert(batch(random, sequence, batchSize, hourAgo));
+                        } catch (RuntimeException e) {
+                            failed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            pool.shutdownNow();
+            sampling.set(false);
+            sampler.join();
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        long events = (long) threads * batches * batchSize;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("events", events);
+        result.put("seconds", Math.round(seconds * 10) / 10.0);
+        result.put("eventsPerSecond", Math.round(events / seconds));
+        result.put("retries", Math.round(retries(registry) - retriesBefore));
+        result.put("deadlocks", deadlocks(jdbc) - deadlocksBefore);
+        result.put("lockWaitMillis", lockWaitMillis.get());
+        result.put("failedBatches", failed.get());
+        return result;
+    }
+
+    // batch-size distinct ids in random order; no two versions have the same payload, so
+    // none is deduped, and versions move between machines and hours
+    private List<NormalizedEvent> batch(Random random, AtomicLong sequence, int batchSize, Instant hourAgo) {
+        int distinctIds = Integer.parseInt(options.get("distinct-ids"));
+        List<Integer> ids = new ArrayList<>(distinctIds);
+        for (int i = 0; i < distinctIds; i++) {
+            ids.add(i);
+        }
+        Collections.shuffle(ids, random);
+        List<NormalizedEvent> batch = new ArrayList<>(batchSize);
+        for (int id : ids.subList(0, batchSize)) {
+            long seq = sequence.incrementAndGet();
+            batch.add(new NormalizedEvent("OV-" + id, hourAgo.minus(Duration.ofMinutes(seq % 180)),
+                    hourAgo.plusMillis(seq), "OV-M-" + seq % 5, "OV-F", "OV-L-" + seq % 3, seq, (int) (seq % 7)));
+        }
+        return batch;
+    }
+
+    private static double retries(MeterRegistry registry) {
+        return registry.find("events.ingest.retries").counters().stream().mapToDouble(Counter::count).sum();
+    }
+
+    private static long deadlocks(JdbcTemplate jdbc) {
+        return jdbc.queryForObject("SELECT deadlocks FROM pg_stat_database WHERE datname = current_database()",
+                Long.class);
+    }
+
+    private void write(Map<String, Object> report) throws IOException {
+        Path output = Path.of(options.get("output"));
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        json.writeValue(output.toFile(), report);
+    }
+}
@@ -0,0 +1,86 @@
+package dev.factory.events.benchmark;
+
+import dev.factory.events.api.dto.MachineStatsResponse;
+import dev.factory.events.api.dto.TopDefectLinesResponse;
+import dev.factory.events.config.StatsProperties;
+import dev.factory.events.repository.EventRepository;
+import dev.factory.events.repository.MachineStatsProjection;
+import dev.factory.events.repository.TopDefectLineProjection;
+import dev.factory.events.service.LineStatsService;
+import dev.factory.events.service.MachineStatsService;
+import dev.factory.events.service.RecentStats;
+import dev.factory.events.util.IngestMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the stats services add around a database answer: the defect rate and status of
+ * {@code GET /events/stats} and the per-line percentages of
+ * {@code GET /events/stats/top-defect-lines}, including their query timers. The
+ * repository returns prepared rows, so no query runs. Run with {@code -prof gc} for the
+ * allocation rate; see Benchmarks.md for how to launch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatsMappingBenchmark {
+
+    private static final Instant END = Instant.parse("2026-01-15T10:00:00Z");
+    private static final Instant START = END.minusSeconds(6 * 3600);
+
+    // rows the top-defect-lines query returns, i.e. its limit
+    @Param({"10", "1000"})
+    int lines;
+
+    private MachineStatsService machineStats;
+    private LineStatsService lineStats;
+
+    private record Line(String getLineId, Long getTotalDefects, Long getEventCount)
+            implements TopDefectLineProjection {
+    }
+
+    private record Machine(long getEventsCount, long getDefectsCount) implements MachineStatsProjection {
+    }
+
+    @Setup
+    public void setUp() {
+        List<TopDefectLineProjection> rows = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            rows.add(new Line("L-" + i, (long) (lines - i) * 3, 1000L + i));
+        }
+        MachineStatsProjection machine = new Machine(12_000, 37);
+        EventRepository repository = (EventRepository) Proxy.newProxyInstance(
+                EventRepository.class.getClassLoader(), new Class<?>[]{EventRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "fetchStats" -> machine;
+                    case "findTopDefectLinesNative" -> rows;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        // not loaded, so every window is answered by the repository
+        RecentStats recentStats = new RecentStats(null, () -> END, new StatsProperties(), registry);
+        IngestMetrics metrics = new IngestMetrics(registry);
+        machineStats = new MachineStatsService(repository, recentStats, metrics);
+        lineStats = new LineStatsService(repository, recentStats, metrics);
+    }
+
+    @Benchmark
+    public MachineStatsResponse machineStats() {
+        return machineStats.getStats("M-1", START, END);
+    }
+
+    @Benchmark
+    public TopDefectLinesResponse topDefectLines() {
+        return lineStats.getTopDefectLines("F-1", START, END, lines);
+    }
+}
@@ -0,0 +1,176 @@
+package dev.factory.events.benchmark;
+
+import dev.factory.events.EventsApplication;
+import dev.factory.events.api.dto.EventBatchRequest;
+import dev.factory.events.config.IngestionProperties.StagingLoad;
+import dev.factory.events.domain.IngestCounts;
+import dev.factory.events.repository.EventIngestionJDBCRepository;
+import dev.factory.events.repository.EventRepository;
+import dev.factory.events.service.model.NormalizedEvent;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+import tools.jackson.databind.SerializationFeature;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.function.Function;
+
+/**
+ * Times the upsert paths of {@link EventIngestionJDBCRepository} on one batch, without
+ * HTTP or JSON binding: starts PostgreSQL in a container (or uses {@code --jdbc-url})
+ * and the application in this JVM, and calls the repository directly. A path is a
+ * {@link StagingLoad} of the temp-table upsert, or {@code ARRAYS} for
+ * {@link EventIngestionJDBCRepository#ingestBatchFromArrays}.
+ * <p>
+ * Each run of a path empties {@code events}, loads the batch once as a warm-up, empties
+ * it again, then times one load into the empty table (all new) and one repeat (all
+ * duplicates). Runs alternate between paths. The report holds the time and counts of
+ * every load.
+ * <pre>
+ * mvn -B test-compile
+ * mvn -B dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp "target/test-classes:target/classes:$(cat target/test-classpath.txt)" \
+ *     dev.factory.events.benchmark.UpsertPathLoad --runs=3 --output=target/upsert-paths.json
+ * </pre>
+ */
+public class UpsertPathLoad {
+
+    private static final Map<String, String> DEFAULTS = Map.ofEntries(
+            Map.entry("file", "large_events.json"),
+            Map.entry("paths", "BATCH_INSERT,BINARY_COPY,ARRAYS"),
+            Map.entry("runs", "3"),
+            Map.entry("output", "target/upsert-paths.json"),
+            Map.entry("jdbc-url", ""),
+            Map.entry("jdbc-user", "events_user"),
+            Map.entry("jdbc-password", "events_pass"));
+
+    private static final Instant RECEIVED = Instant.parse("2026-01-19T00:00:00Z");
+
+    private final Map<String, String> options;
+    private final JsonMapper json = JsonMapper.builder().enable(SerializationFeature.INDENT_OUTPUT).build();
+
+    private UpsertPathLoad(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            String[] kv = arg.replaceFirst("^--", "").split("=", 2);
+            if (!DEFAULTS.containsKey(kv[0])) {
+                throw new IllegalArgumentException("Unknown option " + arg + "; known: " + DEFAULTS.keySet());
+            }
+            options.put(kv[0], kv.length > 1 ? kv[1] : "");
+        }
+        new UpsertPathLoad(options).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        PostgreSQLContainer postgres = null;
+        String jdbcUrl = options.get("jdbc-url");
+        if (jdbcUrl.isEmpty()) {
+            postgres = new PostgreSQLContainer("postgres:15")
+                    .withDatabaseName("events").withUsername("events_user").withPassword("events_pass");
+            postgres.start();
+            jdbcUrl = postgres.getJdbcUrl();
+        }
+
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Kolkata"));
+        try (ConfigurableApplicationContext app = new SpringApplicationBuilder(EventsApplication.class).run(
+                "--spring.main.web-application-type=none",
+                "--spring.grpc.server.port=0",
+                "--spring.datasource.url=" + jdbcUrl,
+                "--spring.datasource.username=" + options.get("jdbc-user"),
+                "--spring.datasource.password=" + options.get("jdbc-password"))) {
+            EventIngestionJDBCRepository repo = app.getBean(EventIngestionJDBCRepository.class);
+            EventRepository events = app.getBean(EventRepository.class);
+            List<NormalizedEvent> batch = batch();
+
+            Map<String, Function<List<NormalizedEvent>, IngestCounts>> paths = new LinkedHashMap<>();
+            for (String path : list("paths")) {
+                paths.put(path, path(repo, path));
+            }
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("startedAt", Instant.now().toString());
+            report.put("options", options);
+            Map<String, List<Object>> results = new LinkedHashMap<>();
+            paths.keySet().forEach(path -> results.put(path, new ArrayList<>()));
+            report.put("paths", results);
+            int runs = Integer.parseInt(options.get("runs"));
+            for (int run = 0; run < runs; run++) {
+                for (Map.Entry<String, Function<List<NormalizedEvent>, IngestCounts>> path : paths.entrySet()) {
+                    events.deleteAllInBatch();
+                    path.getValue().apply(batch);
+                    events.deleteAllInBatch();
+
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("new", timed(path.getValue(), batch));
+                    result.put("duplicates", timed(path.getValue(), batch));
+                    results.get(path.getKey()).add(result);
+                    System.out.println(path.getKey() + " run " + (run + 1) + ": " + result);
+                }
+            }
+            events.deleteAllInBatch();
+            report.put("finishedAt", Instant.now().toString());
+            write(report);
+            System.out.println("Report written to " + Path.of(options.get("output")).toAbsolutePath());
+        } finally {
+            if (postgres != null) {
+                postgres.stop();
+            }
+        }
+    }
+
+    private static Function<List<NormalizedEvent>, IngestCounts> path(EventIngestionJDBCRepository repo, String path) {
+        if (path.equals("ARRAYS")) {
+            return repo::ingestBatchFromArrays;
+        }
+        StagingLoad load = StagingLoad.valueOf(path);
+        return batch -> repo.ingestBatch(batch, load);
+    }
+
+    private static Map<String, Object> timed(Function<List<NormalizedEvent>, IngestCounts> path,
+                                             List<NormalizedEvent> batch) {
+        long start = System.nanoTime();
+        IngestCounts counts = path.apply(batch);
+        Map<String, Object> load = new LinkedHashMap<>();
+        load.put("ms", Math.round((System.nanoTime() - start) / 1e4) / 100.0);
+        load.put("accepted", counts.accepted());
+        load.put("updated", counts.updated());
+        load.put("deduped", counts.deduped());
+        return load;
+    }
+
+    private List<NormalizedEvent> batch() {
+        EventBatchRequest req = json.readValue(Path.of(options.get("file")).toFile(), EventBatchRequest.class);
+        return req.getEvents().stream()
+                .map(raw -> new NormalizedEvent(raw.getEventId(), raw.getEventTime(), RECEIVED,
+                        raw.getMachineId(), raw.getFactoryId(), raw.getLineId(),
+                        raw.getDurationMs(), raw.getDefectCount()))
+                .toList();
+    }
+
+    private List<String> list(String option) {
+        return Arrays.stream(options.get(option).split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+    }
+
+    private void write(Map<String, Object> report) throws IOException {
+        Path output = Path.of(options.get("output"));
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        json.writeValue(output.toFile(), report);
+    }
+}
@@ -0,0 +1,41 @@
+package dev.factory.events.domain;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EventKeyTest {
+
+    @Test
+    void canonicalIdsAreTheirNumber() {
+        assertThat(EventKey.of("E-0")).isZero();
+        assertThat(EventKey.of("E-42")).isEqualTo(42);
+        assertThat(EventKey.of("E-9223372036854775807")).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void otherIdsNeedAnAlias() {
+        assertThat(EventKey.of("E-007")).isEqualTo(EventKey.ALIASED);
+        assertThat(EventKey.of("E-00")).isEqualTo(EventKey.ALIASED);
+        assertThat(EventKey.of("E-9223372036854775808")).isEqualTo(EventKey.ALIASED);
+        assertThat(EventKey.of("E-" + "9".repeat(30))).isEqualTo(EventKey.ALIASED);
+        assertThat(EventKey.of("E-")).isEqualTo(EventKey.ALIASED);
+        assertThat(EventKey.of("E-1a")).isEqualTo(EventKey.ALIASED);
+        assertThat(EventKey.of("E--1")).isEqualTo(EventKey.ALIASED);
+        assertThat(EventKey.of("X-1")).isEqualTo(EventKey.ALIASED);
+    }
+
+    @Test
+    void canonicalKeysMapBack() {
+        for (String eventId : new String[]{"E-0", "E-7", "E-1000000", "E-9223372036854775807"}) {
+            assertThat(EventKey.toEventId(EventKey.of(eventId))).isEqualTo(eventId);
+        }
+    }
+
+    @Test
+    void aliasesAreNotDecodedLocally() {
+        assertThat(EventKey.isAlias(-1)).isTrue();
+        assertThatThrownBy(() -> EventKey.toEventId(-5)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,44 @@
+package dev.factory.events.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PayloadFingerprintTest {
+
+    private static final Instant T = Instant.parse("2026-01-15T10:00:00.123456Z");
+
+    private long base() {
+        return PayloadFingerprint.of(T, "M1", "F-1", "L-1", 1000, 2);
+    }
+
+    @Test
+    void samePayloadGivesSameFingerprint() {
+        assertThat(PayloadFingerprint.of(Instant.parse("2026-01-15T10:00:00.123456Z"), "M1", "F-1", "L-1", 1000, 2))
+                .isEqualTo(base());
+    }
+
+    @Test
+    void everyComparedFieldChangesTheFingerprint() {
+        assertThat(PayloadFingerprint.of(T.plusNanos(1_000), "M1", "F-1", "L-1", 1000, 2)).isNotEqualTo(base());
+        assertThat(PayloadFingerprint.of(T, "M2", "F-1", "L-1", 1000, 2)).isNotEqualTo(base());
+        assertThat(PayloadFingerprint.of(T, "M1", "F-2", "L-1", 1000, 2)).isNotEqualTo(base());
+        assertThat(PayloadFingerprint.of(T, "M1", "F-1", "L-2", 1000, 2)).isNotEqualTo(base());
+        assertThat(PayloadFingerprint.of(T, "M1", "F-1", "L-1", 1001, 2)).isNotEqualTo(base());
+        assertThat(PayloadFingerprint.of(T, "M1", "F-1", "L-1", 1000, 3)).isNotEqualTo(base());
+    }
+
+    @Test
+    void fieldBoundariesAreKeptApart() {
+        assertThat(PayloadFingerprint.of(T, "M1F", "-1", "L-1", 1000, 2)).isNotEqualTo(base());
+    }
+
+    @Test
+    void eventTimeIsComparedAtStoredMicrosecondPrecision() {
+        // PostgreSQL rounds timestamptz input to the nearest microsecond
+        assertThat(PayloadFingerprint.of(T.plusNanos(400), "M1", "F-1", "L-1", 1000, 2)).isEqualTo(base());
+        assertThat(PayloadFingerprint.of(T.plusNanos(600), "M1", "F-1", "L-1", 1000, 2)).isNotEqualTo(base());
+    }
+}
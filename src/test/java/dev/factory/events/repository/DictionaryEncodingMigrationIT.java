@@ -0,0 +1,105 @@
+package dev.factory.events.repository;
+
+import dev.factory.events.AbstractIntegrationTest;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs V6 over a schema populated at V5, the way an existing deployment upgrades.
+ */
+class DictionaryEncodingMigrationIT extends AbstractIntegrationTest {
+
+    private static final String SCHEMA = "v6_upgrade";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private TransactionTemplate tx;
+
+    private Flyway flyway(String target) {
+        return Flyway.configure()
+                .dataSource(dataSource)
+                .schemas(SCHEMA)
+                .target(target)
+                .load();
+    }
+
+    // triggers and functions find their tables through the search path, as in the app's schema
+    private <T> T inSchema(Supplier<T> work) {
+        return tx.execute(status -> {
+            jdbc.execute("SET LOCAL search_path TO " + SCHEMA);
+            return work.get();
+        });
+    }
+
+    @AfterEach
+    void dropSchema() {
+        jdbc.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+    }
+
+    @Test
+    void storedEventsKeepTheirIdsAndRollups() {
+        flyway("5").migrate();
+        inSchema(() -> {
+            jdbc.update("""
+                    INSERT INTO events (
+                        event_id, event_time, received_time, machine_id, factory_id, line_id,
+                        duration_ms, defect_count, payload_fingerprint)
+                    SELECT v.event_id, v.event_time, v.event_time, v.machine_id, 'F-1', v.line_id, 1000, v.defects,
+                           payload_fingerprint(v.event_time, v.machine_id, 'F-1', v.line_id, 1000, v.defects)
+                    FROM (VALUES
+                        ('E-1', now() - INTERVAL '1 day', 'M-1', 'L-1', 2),
+                        ('E-007', now() - INTERVAL '1 day', 'M-é', 'L-2', -1),
+                        ('E-99999999999999999999', now() - INTERVAL '10 years', 'M-1', 'L-2', 3)
+                    ) AS v(event_id, event_time, machine_id, line_id, defects)
+                    """);
+            return jdbc.update("""
+                    INSERT INTO event_ids (event_id, event_time, received_time, payload_fingerprint)
+                    SELECT event_id, event_time, received_time, payload_fingerprint FROM events
+                    """);
+        });
+        List<Map<String, Object>> events = inSchema(() -> jdbc.queryForList("""
+                SELECT id, event_id, event_time, machine_id, factory_id, line_id, defect_count, payload_fingerprint
+                FROM events ORDER BY id
+                """));
+        List<Map<String, Object>> rollups = inSchema(() -> jdbc.queryForList("""
+                SELECT machine_id, hour, events_count, defects_count
+                FROM machine_stats_hourly ORDER BY 1, 2
+                """));
+
+        flyway("latest").migrate();
+
+        assertThat(inSchema(() -> jdbc.queryForList("""
+                SELECT id, event_id, event_time, machine_id, factory_id, line_id, defect_count, payload_fingerprint
+                FROM events_named ORDER BY id
+                """))).hasSize(3).isEqualTo(events);
+        assertThat(inSchema(() -> jdbc.queryForList("""
+                SELECT m.machine_id, r.hour, r.events_count, r.defects_count
+                FROM machine_stats_hourly r
+                JOIN machines m ON m.id = r.machine_key
+                ORDER BY 1, 2
+                """))).isEqualTo(rollups);
+        assertThat(inSchema(() -> jdbc.queryForList("SELECT event_key FROM event_ids ORDER BY 1", Long.class)))
+                .containsExactly(-2L, -1L, 1L);
+        // nothing of the old layout is left behind
+        assertThat(jdbc.queryForList("""
+                SELECT relname FROM pg_class
+                WHERE relnamespace = '%s'::regnamespace AND relname LIKE '%%wide%%'
+                """.formatted(SCHEMA), String.class)).isEmpty();
+    }
+}
@@ -0,0 +1,113 @@
+package dev.factory.events.repository;
+
+import dev.factory.events.AbstractIntegrationTest;
+import dev.factory.events.repository.DimensionDictionary.Dimension;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DimensionDictionaryIT extends AbstractIntegrationTest {
+
+    @Autowired
+    private DimensionDictionary dictionary;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private TransactionTemplate tx;
+
+    @Test
+    void eventKeysMatchTheSqlFunctions() {
+        List<String> eventIds = List.of(
+                "E-0", "E-1", "E-007", "E-00", "E-9223372036854775807", "E-9223372036854775808",
+                "E-" + "1".repeat(62));
+
+        long[] keys = tx.execute(status -> dictionary.eventKeys(eventIds));
+
+        for (int i = 0; i < eventIds.size(); i++) {
+            assertThat(jdbc.queryForObject("SELECT event_key(?)", Long.class, eventIds.get(i)))
+                    .as(eventIds.get(i)).isEqualTo(keys[i]);
+            assertThat(jdbc.queryForObject("SELECT event_id(?)", String.class, keys[i])).isEqualTo(eventIds.get(i));
+            assertThat(dictionary.eventId(keys[i])).isEqualTo(eventIds.get(i));
+        }
+        assertThat(keys[2]).isNegative();
+        assertThat(dictionary.eventKey("E-007")).isEqualTo(keys[2]);
+    }
+
+    @Test
+    void namesMapToOneKeyAndBack() {
+        int[] keys = tx.execute(status -> dictionary.keys(Dimension.LINE, List.of("L-dict-2", "L-dict-1", "L-dict-2")));
+
+        assertThat(keys[0]).isEqualTo(keys[2]).isNotEqualTo(keys[1]);
+        assertThat(dictionary.name(Dimension.LINE, keys[1])).isEqualTo("L-dict-1");
+        assertThat(jdbc.queryForObject("SELECT line_id FROM lines WHERE id = ?", String.class, keys[0]))
+                .isEqualTo("L-dict-2");
+        assertThat(dictionary.key(Dimension.LINE, "L-dict-1")).isEqualTo(keys[1]);
+    }
+
+    @Test
+    void keysOfARolledBackTransactionAreNotKept() {
+        int discarded = tx.execute(status -> {
+            int key = dictionary.key(Dimension.MACHINE, "M-dict-rollback");
+            assertThat(dictionary.name(Dimension.MACHINE, key)).isEqualTo("M-dict-rollback");
+            status.setRollbackOnly();
+            return key;
+        });
+
+        int key = tx.execute(status -> dictionary.key(Dimension.MACHINE, "M-dict-rollback"));
+
+        assertThat(key).isNotEqualTo(discarded);
+        assertThat(jdbc.queryForObject("SELECT machine_id FROM machines WHERE id = ?", String.class, key))
+                .isEqualTo("M-dict-rollback");
+    }
+
+    @Test
+    void concurrentTransactionsAgreeOnNewKeys() throws Exception {
+        int threads = 4;
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            names.add("M-dict-race-" + i);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<int[]>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                List<String> shuffled = new ArrayList<>(names);
+                Collections.shuffle(shuffled);
+                results.add(pool.submit(() -> {
+                    start.await();
+                    int[] keys = tx.execute(status -> dictionary.keys(Dimension.MACHINE, shuffled));
+                    int[] byName = new int[names.size()];
+                    for (int i = 0; i < shuffled.size(); i++) {
+                        byName[names.indexOf(shuffled.get(i))] = keys[i];
+                    }
+                    return byName;
+                }));
+            }
+            start.countDown();
+
+            int[] first = results.get(0).get(30, TimeUnit.SECONDS);
+            for (Future<int[]> result : results) {
+                assertThat(result.get(30, TimeUnit.SECONDS)).containsExactly(first);
+            }
+            assertThat(jdbc.queryForObject("SELECT count(*) FROM machines WHERE machine_id LIKE 'M-dict-race-%'",
+                    Integer.class)).isEqualTo(names.size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
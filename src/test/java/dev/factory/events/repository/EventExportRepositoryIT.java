@@ -0,0 +1,80 @@
+package dev.factory.events.repository;
+
+import dev.factory.events.AbstractIntegrationTest;
+import dev.factory.events.domain.EventEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EventExportRepositoryIT extends AbstractIntegrationTest {
+
+    private static final Instant T0 = Instant.parse("2026-01-01T00:00:00Z");
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private EventExportRepository exportRepository;
+
+    @BeforeEach
+    void setUp() {
+        eventRepository.deleteAllInBatch();
+        eventRepository.save(new EventEntity("E-1", T0, T0.plusSeconds(1), "M1", "F01", "L1", 1000, 2));
+        eventRepository.save(new EventEntity("E-2", T0.plusSeconds(60), T0.plusSeconds(61), "M2", "F01", "L2", 900, -1));
+        eventRepository.save(new EventEntity("custom-3", T0.plusSeconds(120), T0.plusSeconds(121), "M1", "F02", "L1", 800, 0));
+        eventRepository.save(new EventEntity("E-4", T0.plusSeconds(3600), T0.plusSeconds(3601), "M1", "F01", "L1", 700, 1));
+    }
+
+    private List<String> export(String factoryId, String machineId, Instant from, Instant to) throws IOException {
+        List<String> rows = new ArrayList<>();
+        // a fetch size below the row count, so the cursor is read in several round trips
+        exportRepository.forEachEvent(factoryId, machineId, from, to, 1,
+                (eventId, eventTime, receivedTime, m, f, l, durationMs, defectCount) ->
+                        rows.add(String.join("|", eventId, eventTime.toString(), receivedTime.toString(), m, f, l,
+                                Long.toString(durationMs), Integer.toString(defectCount))));
+        return rows;
+    }
+
+    @Test
+    void everyFieldIsExportedWithIdsDecoded() throws IOException {
+        assertThat(export(null, null, T0, T0.plusSeconds(3600))).containsExactlyInAnyOrder(
+                "E-1|2026-01-01T00:00:00Z|2026-01-01T00:00:01Z|M1|F01|L1|1000|2",
+                "E-2|2026-01-01T00:01:00Z|2026-01-01T00:01:01Z|M2|F01|L2|900|-1",
+                "custom-3|2026-01-01T00:02:00Z|2026-01-01T00:02:01Z|M1|F02|L1|800|0");
+    }
+
+    @Test
+    void factoryAndMachineNarrowTheExport() throws IOException {
+        Instant to = T0.plusSeconds(7200);
+
+        assertThat(export("F01", null, T0, to)).extracting(r -> r.split("\\|")[0])
+                .containsExactlyInAnyOrder("E-1", "E-2", "E-4");
+        assertThat(export(null, "M1", T0, to)).extracting(r -> r.split("\\|")[0])
+                .containsExactlyInAnyOrder("E-1", "custom-3", "E-4");
+        assertThat(export("F01", "M1", T0, to)).extracting(r -> r.split("\\|")[0])
+                .containsExactlyInAnyOrder("E-1", "E-4");
+        assertThat(export("F404", null, T0, to)).isEmpty();
+    }
+
+    @Test
+    void aFailingWriteStopsTheExportWithItsIOException() {
+        List<String> seen = new ArrayList<>();
+
+        assertThatThrownBy(() -> exportRepository.forEachEvent(null, null, T0, T0.plusSeconds(7200), 1,
+                (eventId, eventTime, receivedTime, m, f, l, durationMs, defectCount) -> {
+                    seen.add(eventId);
+                    throw new IOException("Broken pipe");
+                }))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Broken pipe");
+        assertThat(seen).hasSize(1);
+    }
+}
@@ -0,0 +1,198 @@
+package dev.factory.events.repository;
+
+import dev.factory.events.AbstractIntegrationTest;
+import dev.factory.events.api.dto.EventBatchRequest;
+import dev.factory.events.config.IngestionProperties.StagingLoad;
+import dev.factory.events.domain.EventEntity;
+import dev.factory.events.domain.IngestCounts;
+import dev.factory.events.service.model.NormalizedEvent;
+import dev.factory.events.service.model.SlottedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventIngestionJDBCRepositoryIT extends AbstractIntegrationTest {
+
+    private static final Instant RECEIVED = Instant.parse("2026-01-19T00:00:00.123456Z");
+
+    @Autowired
+    private EventIngestionJDBCRepository repo;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private List<NormalizedEvent> sampleEvents(Instant receivedTime) {
+        EventBatchRequest req = JsonMapper.builder().build()
+                .readValue(new File("large_events.json"), EventBatchRequest.class);
+        return req.getEvents().stream()
+                .map(raw -> new NormalizedEvent(
+                        raw.getEventId(),
+                        raw.getEventTime(),
+                        receivedTime,
+                        raw.getMachineId(),
+                        raw.getFactoryId(),
+                        raw.getLineId(),
+                        raw.getDurationMs(),
+                        raw.getDefectCount()
+                ))
+                .toList();
+    }
+
+    @BeforeEach
+    void clean() {
+        eventRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void binaryCopyClassifiesDuplicatesAndUpdates() {
+        repo.ingestBatch(sampleEvents(RECEIVED), StagingLoad.BATCH_INSERT);
+
+        IngestCounts dup = repo.ingestBatch(sampleEvents(RECEIVED.plusSeconds(1)), StagingLoad.BINARY_COPY);
+        assertThat(dup).isEqualTo(new IngestCounts(0, 0, 5000));
+
+        List<NormalizedEvent> changed = sampleEvents(RECEIVED.plusSeconds(2)).stream()
+                .map(e -> new NormalizedEvent(
+                        e.getEventId(), e.getEventTime(), e.getReceivedTime(),
+                        e.getMachineId(), e.getFactoryId(), e.getLineId(),
+                        e.getDurationMs(), e.getDefectCount() + 1))
+                .toList();
+        IngestCounts upd = repo.ingestBatch(changed, StagingLoad.BINARY_COPY);
+        assertThat(upd).isEqualTo(new IngestCounts(0, 5000, 0));
+    }
+
+    @Test
+    void arrayUpsertClassifiesDuplicatesAndUpdates() {
+        repo.ingestBatchFromArrays(sampleEvents(RECEIVED));
+
+        IngestCounts dup = repo.ingestBatchFromArrays(sampleEvents(RECEIVED.plusSeconds(1)));
+        assertThat(dup).isEqualTo(new IngestCounts(0, 0, 5000));
+
+        List<NormalizedEvent> changed = sampleEvents(RECEIVED.plusSeconds(2)).subList(0, 10).stream()
+                .map(e -> new NormalizedEvent(
+                        e.getEventId(), e.getEventTime(), e.getReceivedTime(),
+                        e.getMachineId(), e.getFactoryId(), e.getLineId(),
+                        e.getDurationMs() + 1, e.getDefectCount()))
+                .toList();
+        assertThat(repo.ingestBatchFromArrays(changed)).isEqualTo(new IngestCounts(0, 10, 0));
+    }
+
+    @Test
+    void slottedUpsertSplitsCountsPerRequest() {
+        List<NormalizedEvent> events = sampleEvents(RECEIVED).subList(0, 4);
+        repo.ingestBatchFromArrays(events.subList(0, 1));
+
+        NormalizedEvent first = events.get(0);
+        NormalizedEvent changed = new NormalizedEvent(
+                first.getEventId(), first.getEventTime(), RECEIVED.plusSeconds(5),
+                first.getMachineId(), first.getFactoryId(), first.getLineId(),
+                first.getDurationMs(), first.getDefectCount() + 1);
+
+        // slot 0: an existing duplicate and a new event
+        // slot 1: a new event, and a newer version of slot 0's duplicate
+        // slot 2: a new event that slot 1 also sends
+        IngestCounts[] counts = repo.ingestSlotted(List.of(
+                List.of(new SlottedEvent(0, first), new SlottedEvent(0, events.get(1)),
+                        new SlottedEvent(1, events.get(2)), new SlottedEvent(2, events.get(3))),
+                List.of(new SlottedEvent(1, changed), new SlottedEvent(1, events.get(3)))
+        ), 3);
+
+        assertThat(counts[0]).isEqualTo(new IngestCounts(1, 0, 1));
+        assertThat(counts[1]).isEqualTo(new IngestCounts(1, 1, 1));
+        assertThat(counts[2]).isEqualTo(new IngestCounts(1, 0, 0));
+        assertThat(eventRepository.count()).isEqualTo(4);
+    }
+
+    @Test
+    void splitIngestClassifiesConflictsFromTheInsertOnlyPath() {
+        List<NormalizedEvent> events = sampleEvents(RECEIVED).subList(0, 6);
+        repo.ingestBatchFromArrays(events.subList(0, 2));
+
+        NormalizedEvent first = events.get(0);
+        NormalizedEvent changed = new NormalizedEvent(
+                first.getEventId(), first.getEventTime(), RECEIVED.plusSeconds(5),
+                first.getMachineId(), first.getFactoryId(), first.getLineId(),
+                first.getDurationMs() + 1, first.getDefectCount());
+
+        // likely new: a changed version of a stored event, plus two new ones
+        // possibly seen: a stored duplicate and a new event (a false positive)
+        IngestCounts[] counts = repo.ingestSplit(
+                List.of(changed, events.get(2), events.get(3)),
+                List.of(events.get(1), events.get(4)));
+
+        assertThat(counts[0]).isEqualTo(new IngestCounts(2, 0, 0));
+        assertThat(counts[1]).isEqualTo(new IngestCounts(1, 1, 1));
+        assertThat(eventRepository.count()).isEqualTo(5);
+        assertThat(eventRepository.findAllByEventIdIn(List.of(first.getEventId())).getFirst().getDurationMs())
+                .isEqualTo(first.getDurationMs() + 1);
+    }
+
+    @Test
+    void forEachEventIdVisitsEveryRow() {
+        repo.ingestBatchFromArrays(sampleEvents(RECEIVED));
+
+        List<String> ids = new ArrayList<>();
+        repo.forEachEventId(100, ids::add);
+
+        assertThat(ids).hasSize(5000).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void storedFingerprintsMatchTheBackfillFunction() {
+        NormalizedEvent first = sampleEvents(RECEIVED).getFirst();
+        // sub-microsecond eventTime, rounded on the way in
+        NormalizedEvent precise = new NormalizedEvent(
+                "E-999999", first.getEventTime().plusNanos(123_456_789 % 1_000_000), RECEIVED,
+                "M-\u00e9", first.getFactoryId(), first.getLineId(),
+                first.getDurationMs(), first.getDefectCount());
+        repo.ingestBatch(sampleEvents(RECEIVED), StagingLoad.BINARY_COPY);
+        repo.ingestBatchFromArrays(List.of(precise));
+
+        Integer mismatches = jdbc.queryForObject("""
+                SELECT count(*) FROM events_named
+                WHERE payload_fingerprint <> payload_fingerprint(
+                    event_time, machine_id, factory_id, line_id, duration_ms, defect_count)
+                """, Integer.class);
+        assertThat(eventRepository.count()).isEqualTo(5001);
+        assertThat(mismatches).isZero();
+    }
+
+    @Test
+    void everyIngestPathStoresTheSameRows() {
+        List<NormalizedEvent> events = sampleEvents(RECEIVED);
+
+        IngestCounts fresh = repo.ingestBatchFromArrays(events);
+        IngestCounts again = repo.ingestBatchFromArrays(events);
+        List<EventEntity> expected = storedRows();
+
+        assertThat(fresh).isEqualTo(new IngestCounts(events.size(), 0, 0));
+        assertThat(again).isEqualTo(new IngestCounts(0, 0, events.size()));
+        for (StagingLoad mode : StagingLoad.values()) {
+            eventRepository.deleteAllInBatch();
+
+            assertThat(repo.ingestBatch(events, mode)).as(mode.name()).isEqualTo(fresh);
+            assertThat(repo.ingestBatch(events, mode)).as(mode.name()).isEqualTo(again);
+            assertThat(storedRows()).as(mode.name())
+                    .usingRecursiveFieldByFieldElementComparatorIgnoringFields("id", "createdAt", "updatedAt")
+                    .containsExactlyElementsOf(expected);
+        }
+    }
+
+    private List<EventEntity> storedRows() {
+        return eventRepository.findAll().stream()
+                .sorted(Comparator.comparing(EventEntity::getEventId))
+                .toList();
+    }
+}
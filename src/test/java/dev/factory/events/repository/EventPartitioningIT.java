@@ -0,0 +1,242 @@
+package dev.factory.events.repository;
+
+import dev.factory.events.AbstractIntegrationTest;
+import dev.factory.events.domain.EventEntity;
+import dev.factory.events.domain.IngestCounts;
+import dev.factory.events.repository.EventPartitionRepository.Partition;
+import dev.factory.events.service.model.NormalizedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventPartitioningIT extends AbstractIntegrationTest {
+
+    private static final Pattern NAMED_PARAM = Pattern.compile("(?<!:):(\\w+)");
+    private static final Pattern RELATION = Pattern.compile("\"Relation Name\": \"(\\w+)\"");
+    private static final Pattern SUBPLANS_REMOVED = Pattern.compile("\"Subplans Removed\": (\\d+)");
+
+    @Autowired
+    private EventIngestionJDBCRepository repo;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private EventPartitionRepository partitions;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private TransactionTemplate tx;
+
+    @BeforeEach
+    void clean() {
+        eventRepository.deleteAllInBatch();
+    }
+
+    private static NormalizedEvent event(String eventId, Instant eventTime, Instant receivedTime, int defects) {
+        return new NormalizedEvent(eventId, eventTime, receivedTime, "M1", "F1", "L1", 1000, defects);
+    }
+
+    private Partition partitionAt(int index) {
+        List<Partition> all = partitions.findRangePartitions();
+        assertThat(all).hasSizeGreaterThan(index);
+        return all.get(index);
+    }
+
+    /**
+     * EXPLAINs the native SQL of a repository method with the given parameter values and
+     * returns the JSON plan.
+     */
+    private String explain(String method, Map<String, Object> params) {
+        String sql = querySql(method);
+        List<Object> args = new ArrayList<>();
+        Matcher m = NAMED_PARAM.matcher(sql);
+        while (m.find()) {
+            args.add(params.get(m.group(1)));
+        }
+        String positional = m.replaceAll("?");
+        return jdbc.queryForList("EXPLAIN (COSTS OFF, FORMAT JSON) " + positional, String.class, args.toArray())
+                .getFirst();
+    }
+
+    private static String querySql(String method) {
+        return Arrays.stream(EventRepository.class.getMethods())
+                .filter(m -> m.getName().equals(method))
+                .findFirst()
+                .orElseThrow()
+                .getAnnotation(Query.class)
+                .value();
+    }
+
+    // partitions of events only; the rollup tables are not partitioned
+    private static Set<String> scanned(String plan) {
+        Set<String> relations = new HashSet<>();
+        Matcher m = RELATION.matcher(plan);
+        while (m.find()) {
+            if (m.group(1).startsWith("events")) {
+                relations.add(m.group(1));
+            }
+        }
+        return relations;
+    }
+
+    private static OffsetDateTime at(Instant t) {
+        return t.atOffset(ZoneOffset.UTC);
+    }
+
+    @Test
+    void fetchStatsScansOnlyThePartitionOfItsRange() {
+        Partition p = partitionAt(1);
+
+        // the partial hours at both edges are read from events
+        String plan = explain("fetchRolledUpStats", Map.of(
+                "machineId", "M1",
+                "startTime", at(p.from().plus(Duration.ofMinutes(90))),
+                "endTime", at(p.from().plus(Duration.ofMinutes(210))),
+                "fullFrom", at(p.from().plus(Duration.ofHours(2))),
+                "fullTo", at(p.from().plus(Duration.ofHours(3)))));
+
+        assertThat(scanned(plan)).containsExactly(p.name());
+    }
+
+    @Test
+    void topDefectLinesScansOnlyThePartitionsItsRangeSpans() {
+        Partition first = partitionAt(1);
+        Partition second = partitionAt(2);
+
+        String plan = explain("findTopDefectLinesRolledUp", Map.of(
+                "factoryId", "F1",
+                "startTime", at(first.to().minus(Duration.ofMinutes(90))),
+                "endTime", at(second.from().plus(Duration.ofMinutes(30))),
+                "fullFrom", at(first.to().minus(Duration.ofHours(1))),
+                "fullTo", at(second.from()),
+                "limit", 5));
+
+        assertThat(scanned(plan)).containsExactlyInAnyOrder(first.name(), second.name());
+    }
+
+    @Test
+    void genericPlansPruneAtExecutorStartup() {
+        Partition p = partitionAt(1);
+        int rangePartitions = partitions.findRangePartitions().size();
+
+        // parameters bound to EXPLAIN are planned as constants, so go through PREPARE
+        String sql = NAMED_PARAM.matcher(querySql("fetchRolledUpStats")).replaceAll(r -> switch (r.group(1)) {
+            case "machineId" -> "\\$1";
+            case "startTime" -> "\\$2";
+            case "endTime" -> "\\$3";
+            case "fullFrom" -> "\\$4";
+            default -> "\\$5";
+        });
+        String plan = tx.execute(status -> {
+            jdbc.execute("SET LOCAL plan_cache_mode = force_generic_plan");
+            jdbc.execute("PREPARE stats(text, timestamptz, timestamptz, timestamptz, timestamptz) AS " + sql);
+            try {
+                return jdbc.queryForObject(
+                        "EXPLAIN (ANALYZE, COSTS OFF, TIMING OFF, FORMAT JSON) EXECUTE stats('M1', '%s', '%s', '%s', '%s')"
+                                .formatted(p.from().plus(Duration.ofMinutes(30)), p.to().minus(Duration.ofMinutes(30)),
+                                        p.from().plus(Duration.ofHours(1)), p.to().minus(Duration.ofHours(1))),
+                        String.class);
+            } finally {
+                jdbc.execute("DEALLOCATE stats");
+            }
+        });
+
+        // both edge scans prune all other partitions, the default one included;
+        // the UNION ALL node reports zero removed subplans of its own
+        List<Integer> removed = new ArrayList<>();
+        Matcher m = SUBPLANS_REMOVED.matcher(plan);
+        while (m.find()) {
+            removed.add(Integer.parseInt(m.group(1)));
+        }
+        assertThat(removed).filteredOn(n -> n > 0).containsExactly(rangePartitions, rangePartitions);
+        assertThat(scanned(plan)).containsExactly(p.name());
+    }
+
+    @Test
+    void updatingEventTimeMovesTheRowAcrossPartitions() {
+        Partition first = partitionAt(1);
+        Partition second = partitionAt(2);
+        Instant received = Instant.parse("2026-01-19T00:00:00Z");
+
+        repo.ingestBatchFromArrays(List.of(event("E-1", first.from().plusSeconds(60), received, 1)));
+        IngestCounts counts = repo.ingestBatch(List.of(event("E-1", second.from().plusSeconds(60), received.plusSeconds(1), 2)));
+
+        assertThat(counts).isEqualTo(new IngestCounts(0, 1, 0));
+        assertThat(jdbc.queryForList("SELECT tableoid::regclass::text FROM events WHERE event_key = 1", String.class))
+                .containsExactly(second.name());
+        assertThat(jdbc.queryForObject("SELECT event_time FROM event_ids WHERE event_key = 1", OffsetDateTime.class)
+                .toInstant()).isEqualTo(second.from().plusSeconds(60));
+    }
+
+    @Test
+    void eventIdStaysUniqueAcrossPartitions() {
+        Partition first = partitionAt(1);
+        Partition second = partitionAt(2);
+        Instant received = Instant.parse("2026-01-19T00:00:00Z");
+
+        repo.ingestSplit(List.of(event("E-1", first.from(), received, 1)), List.of());
+        // the insert-only path must not add a second row in another partition
+        IngestCounts[] split = repo.ingestSplit(List.of(event("E-1", second.from(), received, 1)), List.of());
+
+        assertThat(split[0].accepted()).isZero();
+        assertThat(split[1]).isEqualTo(IngestCounts.NONE);
+        assertThat(eventRepository.findAllByEventIdIn(List.of("E-1")))
+                .extracting(EventEntity::getEventTime)
+                .containsExactly(first.from());
+    }
+
+    @Test
+    void deletingRowsReleasesTheirEventIds() {
+        Partition p = partitionAt(1);
+        repo.ingestBatchFromArrays(List.of(event("E-1", p.from(), Instant.parse("2026-01-19T00:00:00Z"), 1)));
+
+        eventRepository.deleteAllInBatch();
+
+        assertThat(jdbc.queryForObject("SELECT count(*) FROM event_ids", Long.class)).isZero();
+    }
+
+    @Test
+    void detachReleasesTheEventIdsAndRollupsOfThePartition() {
+        Instant from = Instant.parse("2020-01-06T00:00:00Z");
+        partitions.create("events_p20200106", from, from.plus(Duration.ofDays(7)));
+        try {
+            Instant received = Instant.parse("2026-01-19T00:00:00Z");
+            Instant kept = partitionAt(1).from();
+            repo.ingestBatchFromArrays(List.of(
+                    event("E-1", from.plusSeconds(60), received, 1),
+                    event("E-2", kept, received, 1)));
+
+            int released = partitions.detach(partitionAt(0));
+
+            assertThat(released).isEqualTo(1);
+            assertThat(jdbc.queryForList("SELECT event_id(event_key) FROM event_ids", String.class)).containsExactly("E-2");
+            assertThat(jdbc.queryForList("SELECT hour FROM machine_stats_hourly WHERE events_count > 0", OffsetDateTime.class))
+                    .extracting(OffsetDateTime::toInstant)
+                    .containsExactly(kept);
+            assertThat(partitions.findRangePartitions()).extracting(Partition::name).doesNotContain("events_p20200106");
+        } finally {
+            jdbc.execute("DROP TABLE events_p20200106");
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package dev.factory.events.repository;
+
+import dev.factory.events.AbstractIntegrationTest;
+import dev.factory.events.domain.EventEntity;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@Transactional
+class EventRepositoryHistogramIT extends AbstractIntegrationTest {
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    private EventEntity event(String eventId, Instant eventTime, String machineId, String lineId, int defectCount) {
+        return new EventEntity(eventId, eventTime, Instant.now(), machineId, "F01", lineId, 1000, defectCount);
+    }
+
+    private static Instant t(String time) {
+        return Instant.parse("2026-01-01T" + time + "Z");
+    }
+
+    @Test
+    void hourBucketsCombineTheRollupWithBothEdges() {
+        eventRepository.save(event("E1", t("00:40:00"), "M1", "L1", 2));
+        eventRepository.save(event("E2", t("00:10:00"), "M1", "L1", 9));
+        eventRepository.save(event("E3", t("01:05:00"), "M1", "L1", -1));
+        eventRepository.save(event("E4", t("01:55:00"), "M1", "L1", 3));
+        eventRepository.save(event("E5", t("03:10:00"), "M1", "L1", 4));
+        eventRepository.save(event("E6", t("03:30:00"), "M1", "L1", 9));
+        eventRepository.save(event("E7", t("01:30:00"), "M2", "L1", 9));
+
+        List<HistogramBucketProjection> result =
+                eventRepository.fetchMachineHistogram("M1", t("00:30:00"), t("03:20:00"), Duration.ofHours(1));
+
+        assertThat(result)
+                .extracting(HistogramBucketProjection::getBucketStart, HistogramBucketProjection::getEventsCount,
+                        HistogramBucketProjection::getDefectsCount)
+                .containsExactly(
+                        tuple(t("00:00:00"), 1L, 2L),
+                        tuple(t("01:00:00"), 2L, 3L),
+                        tuple(t("03:00:00"), 1L, 4L));
+    }
+
+    @Test
+    void dayBucketsAreAlignedToUtcMidnight() {
+        eventRepository.save(event("E1", t("23:59:59"), "M1", "L1", 1));
+        eventRepository.save(event("E2", Instant.parse("2026-01-02T00:00:00Z"), "M1", "L1", 1));
+        eventRepository.save(event("E3", Instant.parse("2026-01-02T13:00:00Z"), "M1", "L1", 5));
+
+        List<HistogramBucketProjection> result = eventRepository.fetchMachineHistogram("M1",
+                t("12:00:00"), Instant.parse("2026-01-03T00:00:00Z"), Duration.ofDays(1));
+
+        assertThat(result)
+                .extracting(HistogramBucketProjection::getBucketStart, HistogramBucketProjection::getEventsCount,
+                        HistogramBucketProjection::getDefectsCount)
+                .containsExactly(
+                        tuple(t("00:00:00"), 1L, 1L),
+                        tuple(Instant.parse("2026-01-02T00:00:00Z"), 2L, 6L));
+    }
+
+    @Test
+    void minuteBucketsAreReadFromEvents() {
+        eventRepository.save(event("E1", t("00:00:10"), "M1", "L1", 1));
+        eventRepository.save(event("E2", t("00:00:50"), "M1", "L1", 1));
+        eventRepository.save(event("E3", t("01:02:00"), "M1", "L1", 2));
+        eventRepository.save(event("E4", t("01:03:00"), "M1", "L1", 2));
+
+        List<HistogramBucketProjection> result =
+                eventRepository.fetchMachineHistogram("M1", t("00:00:00"), t("01:03:00"), Duration.ofMinutes(1));
+
+        assertThat(result)
+                .extracting(HistogramBucketProjection::getBucketStart, HistogramBucketProjection::getEventsCount)
+                .containsExactly(
+                        tuple(t("00:00:00"), 2L),
+                        tuple(t("01:02:00"), 1L));
+    }
+
+    @Test
+    void lineBucketsCountOnlyThatLine() {
+        eventRepository.save(event("E1", t("00:10:00"), "M1", "L1", 2));
+        eventRepository.save(event("E2", t("00:20:00"), "M2", "L1", 3));
+        eventRepository.save(event("E3", t("00:30:00"), "M1", "L2", 9));
+        eventRepository.save(event("E4", t("02:30:00"), "M1", "L1", 1));
+
+        List<HistogramBucketProjection> result =
+                eventRepository.fetchLineHistogram("F01", "L1", t("00:00:00"), t("03:00:00"), Duration.ofHours(1));
+
+        assertThat(result)
+                .extracting(HistogramBucketProjection::getBucketStart, HistogramBucketProjection::getEventsCount,
+                        HistogramBucketProjection::getDefectsCount)
+                .containsExactly(
+                        tuple(t("00:00:00"), 2L, 5L),
+                        tuple(t("02:00:00"), 1L, 1L));
+    }
+
+    @Test
+    void unknownMachineHasNoBuckets() {
+        assertThat(eventRepository.fetchMachineHistogram("M404", t("00:00:00"), t("03:00:00"), Duration.ofHours(1)))
+                .isEmpty();
+    }
+}
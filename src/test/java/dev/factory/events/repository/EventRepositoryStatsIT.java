@@ -7,8 +7,10 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.time.Instant;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 @Transactional
 class EventRepositoryStatsIT extends AbstractIntegrationTest {
@@ -110,4 +112,51 @@ class EventRepositoryStatsIT extends AbstractIntegrationTest {
         assertThat(stats.getEventsCount()).isEqualTo(1);
         assertThat(stats.getDefectsCount()).isEqualTo(3);
     }
+
+    @Test
+    void severalMachinesAreCountedInOneQuery() {
+        Instant start = Instant.parse("2026-01-01T00:30:00Z");
+        Instant end = Instant.parse("2026-01-01T03:30:00Z");
+
+        // edges and a whole hour of the rollup
+        eventRepository.save(event("E1", start, "M7", 2));
+        eventRepository.save(event("E2", start.plusSeconds(3600), "M7", -1));
+        eventRepository.save(event("E3", end.minusSeconds(1), "M7", 3));
+        eventRepository.save(event("E4", end, "M7", 50));
+        eventRepository.save(event("E5", start.plusSeconds(3600), "M8", 4));
+        eventRepository.save(event("E6", start.plusSeconds(3600), "M9", 4));
+
+        List<MachineIdStatsProjection> result =
+                eventRepository.fetchStatsForMachines(List.of("M8", "M7", "M10"), start, end);
+
+        assertThat(result)
+                .extracting(MachineIdStatsProjection::getMachineId, MachineStatsProjection::getEventsCount,
+                        MachineStatsProjection::getDefectsCount)
+                .containsExactlyInAnyOrder(
+                        tuple("M7", 3L, 5L),
+                        tuple("M8", 1L, 4L));
+    }
+
+    @Test
+    void edgesOfSeveralMachinesAreCountedInOneQuery() {
+        Instant start = Instant.parse("2026-01-01T00:00:30Z");
+        Instant wholeFrom = Instant.parse("2026-01-01T00:01:00Z");
+        Instant wholeTo = Instant.parse("2026-01-01T00:10:00Z");
+        Instant end = Instant.parse("2026-01-01T00:10:30Z");
+
+        eventRepository.save(event("E1", start, "M7", 2));
+        eventRepository.save(event("E2", wholeFrom, "M7", 9));
+        eventRepository.save(event("E3", wholeTo, "M7", 1));
+        eventRepository.save(event("E4", end, "M7", 9));
+        eventRepository.save(event("E5", start, "M8", 9));
+
+        List<MachineIdStatsProjection> result = eventRepository.fetchEdgeStatsForMachines(
+                new String[]{"M7"}, start, wholeFrom, wholeTo, end);
+
+        assertThat(result).singleElement().satisfies(m -> {
+            assertThat(m.getMachineId()).isEqualTo("M7");
+            assertThat(m.getEventsCount()).isEqualTo(2);
+            assertThat(m.getDefectsCount()).isEqualTo(3);
+        });
+    }
 }
@@ -10,6 +10,7 @@ import java.time.Instant;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 @Transactional
 class EventRepositoryTopDefectLinesIT extends AbstractIntegrationTest {
@@ -138,4 +139,52 @@ class EventRepositoryTopDefectLinesIT extends AbstractIntegrationTest {
 
         assertThat(result).isEmpty();
     }
+
+    @Test
+    void severalFactoriesAreLimitedAndOrderedEachOnTheirOwn() {
+        Instant start = Instant.parse("2026-01-01T00:30:00Z");
+        Instant end = Instant.parse("2026-01-01T03:30:00Z");
+
+        // edges and a whole hour of the rollup
+        eventRepository.save(event("E1", start.plusSeconds(10), "F01", "L1", 1));
+        eventRepository.save(event("E2", start.plusSeconds(3600), "F01", "L2", 4));
+        eventRepository.save(event("E3", end.minusSeconds(10), "F01", "L3", 3));
+        eventRepository.save(event("E4", start.plusSeconds(3600), "F02", "L1", 9));
+        eventRepository.save(event("E5", start.plusSeconds(20), "F03", "L1", 9));
+
+        List<FactoryDefectLineProjection> result =
+                eventRepository.findTopDefectLinesForFactories(List.of("F02", "F01", "F09"), start, end, 2);
+
+        assertThat(result)
+                .extracting(FactoryDefectLineProjection::getFactoryId, TopDefectLineProjection::getLineId,
+                        TopDefectLineProjection::getTotalDefects, TopDefectLineProjection::getEventCount)
+                .containsExactly(
+                        tuple("F01", "L2", 4L, 1L),
+                        tuple("F01", "L3", 3L, 1L),
+                        tuple("F02", "L1", 9L, 1L));
+    }
+
+    @Test
+    void edgesOfSeveralFactoriesAreCountedPerFactoryAndLine() {
+        Instant start = Instant.parse("2026-01-01T00:00:30Z");
+        Instant wholeFrom = Instant.parse("2026-01-01T00:01:00Z");
+        Instant wholeTo = Instant.parse("2026-01-01T00:10:00Z");
+        Instant end = Instant.parse("2026-01-01T00:10:30Z");
+
+        eventRepository.save(event("E1", start, "F01", "L1", 2));
+        eventRepository.save(event("E2", wholeTo.plusSeconds(5), "F01", "L1", -1));
+        eventRepository.save(event("E3", wholeFrom, "F01", "L1", 7));
+        eventRepository.save(event("E4", start.plusSeconds(1), "F02", "L2", 4));
+        eventRepository.save(event("E5", start.plusSeconds(1), "F02", "L3", 4));
+
+        List<FactoryDefectLineProjection> result = eventRepository.findEdgeLineStatsForFactories(
+                new String[]{"F01", "F02"}, new String[]{"L1", "L2"}, start, wholeFrom, wholeTo, end);
+
+        assertThat(result)
+                .extracting(FactoryDefectLineProjection::getFactoryId, TopDefectLineProjection::getLineId,
+                        TopDefectLineProjection::getTotalDefects, TopDefectLineProjection::getEventCount)
+                .containsExactlyInAnyOrder(
+                        tuple("F01", "L1", 2L, 2L),
+                        tuple("F02", "L2", 4L, 1L));
+    }
 }
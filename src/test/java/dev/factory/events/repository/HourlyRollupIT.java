@@ -0,0 +1,148 @@
+package dev.factory.events.repository;
+
+import dev.factory.events.AbstractIntegrationTest;
+import dev.factory.events.service.model.NormalizedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class HourlyRollupIT extends AbstractIntegrationTest {
+
+    private static final Instant HOUR = Instant.parse("2026-01-12T08:00:00Z");
+    private static final Instant RECEIVED = Instant.parse("2026-01-19T00:00:00Z");
+
+    @Autowired
+    private EventIngestionJDBCRepository repo;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void clean() {
+        eventRepository.deleteAllInBatch();
+    }
+
+    private static NormalizedEvent event(String eventId, Instant eventTime, Instant receivedTime,
+                                         String machineId, String lineId, int defects) {
+        return new NormalizedEvent(eventId, eventTime, receivedTime, machineId, "F1", lineId, 1000, defects);
+    }
+
+    private static Instant minute(int minutes) {
+        return HOUR.plus(Duration.ofMinutes(minutes));
+    }
+
+    private void assertRollupsMatchEvents() {
+        assertThat(jdbc.queryForList("""
+                SELECT machine_key, hour, events_count, defects_count
+                FROM machine_stats_hourly
+                WHERE events_count <> 0
+                ORDER BY 1, 2
+                """)).isEqualTo(jdbc.queryForList("""
+                SELECT machine_key, date_trunc('hour', event_time, 'UTC') AS hour,
+                       count(*) AS events_count, sum(greatest(defect_count, 0))::bigint AS defects_count
+                FROM events
+                GROUP BY 1, 2
+                ORDER BY 1, 2
+                """));
+        assertThat(jdbc.queryForList("""
+                SELECT factory_key, hour, line_key, events_count, defects_count
+                FROM line_stats_hourly
+                WHERE events_count <> 0
+                ORDER BY 1, 2, 3
+                """)).isEqualTo(jdbc.queryForList("""
+                SELECT factory_key, date_trunc('hour', event_time, 'UTC') AS hour, line_key,
+                       count(*) AS events_count, sum(greatest(defect_count, 0))::bigint AS defects_count
+                FROM events
+                GROUP BY 1, 2, 3
+                ORDER BY 1, 2, 3
+                """));
+    }
+
+    @Test
+    void insertsUpdatesAndDeletesKeepTheRollupsInStep() {
+        repo.ingestBatch(List.of(
+                event("E-1", minute(5), RECEIVED, "M1", "L1", 2),
+                event("E-2", minute(70), RECEIVED, "M1", "L1", -1),
+                event("E-3", minute(130), RECEIVED, "M2", "L2", 4)));
+        assertRollupsMatchEvents();
+
+        // replacements move events to another hour, machine and line
+        repo.ingestBatch(List.of(
+                event("E-1", minute(200), RECEIVED.plusSeconds(1), "M2", "L2", 3),
+                event("E-2", minute(75), RECEIVED.plusSeconds(1), "M1", "L1", 5)));
+        assertRollupsMatchEvents();
+
+        jdbc.update("DELETE FROM events WHERE event_id(event_key) = 'E-3'");
+        assertRollupsMatchEvents();
+    }
+
+    @Test
+    void statsCombineWholeHoursWithTheEventsOfPartialHours() {
+        repo.ingestBatch(List.of(
+                event("E-1", minute(10), RECEIVED, "M1", "L1", 1),
+                event("E-2", minute(50), RECEIVED, "M1", "L1", 2),
+                event("E-3", minute(90), RECEIVED, "M1", "L2", 4),
+                event("E-4", minute(150), RECEIVED, "M1", "L2", 8),
+                event("E-5", minute(170), RECEIVED, "M1", "L1", 16)));
+
+        // [08:30, 10:40): E-2 from the head, E-3 from the rolled-up 09:00 hour, E-4 from the tail
+        MachineStatsProjection stats = eventRepository.fetchStats("M1", minute(30), minute(160));
+
+        assertThat(stats.getEventsCount()).isEqualTo(3);
+        assertThat(stats.getDefectsCount()).isEqualTo(14);
+        assertThat(eventRepository.findTopDefectLinesNative("F1", minute(30), minute(160), 5))
+                .extracting(TopDefectLineProjection::getLineId, TopDefectLineProjection::getTotalDefects,
+                        TopDefectLineProjection::getEventCount)
+                .containsExactly(
+                        tuple("L2", 12L, 2L),
+                        tuple("L1", 2L, 1L));
+    }
+
+    @Test
+    void windowsWithinOneHourReadOnlyEvents() {
+        repo.ingestBatch(List.of(
+                event("E-1", minute(10), RECEIVED, "M1", "L1", 1),
+                event("E-2", minute(20), RECEIVED, "M1", "L1", 2)));
+
+        MachineStatsProjection stats = eventRepository.fetchStats("M1", minute(15), minute(45));
+
+        assertThat(stats.getEventsCount()).isEqualTo(1);
+        assertThat(stats.getDefectsCount()).isEqualTo(2);
+    }
+
+    @Test
+    void linesWhoseEventsWereAllRemovedAreNotListed() {
+        repo.ingestBatch(List.of(
+                event("E-1", minute(0), RECEIVED, "M1", "L1", 1),
+                event("E-2", minute(0), RECEIVED, "M1", "L2", 2)));
+        jdbc.update("DELETE FROM events WHERE event_id(event_key) = 'E-2'");
+
+        assertThat(jdbc.queryForList("""
+                        SELECT l.line_id, r.events_count
+                        FROM line_stats_hourly r
+                        JOIN lines l ON l.id = r.line_key
+                        WHERE r.hour = ?
+                        ORDER BY 1
+                        """,
+                HOUR.atOffset(ZoneOffset.UTC)))
+                .containsExactly(
+                        Map.of("line_id", "L1", "events_count", 1L),
+                        Map.of("line_id", "L2", "events_count", 0L));
+        assertThat(eventRepository.findTopDefectLinesNative("F1", HOUR, minute(60), 5))
+                .extracting(TopDefectLineProjection::getLineId)
+                .containsExactly("L1");
+    }
+}
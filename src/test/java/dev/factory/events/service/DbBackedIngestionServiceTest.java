@@ -7,6 +7,7 @@ import dev.factory.events.util.ClockProvider;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.time.Instant;
 import java.util.List;
@@ -26,7 +27,7 @@ class DbBackedIngestionServiceTest {
     void setUp() {
         eventRepository = mock(EventRepository.class);
         clockProvider = mock(ClockProvider.class);
-        service = new DbBackedIngestionService(eventRepository, clockProvider);
+        service = new DbBackedIngestionService(eventRepository, clockProvider, mock(ApplicationEventPublisher.class));
 
         fixedNow = Instant.parse("2026-01-15T10:00:00Z");
         when(clockProvider.now()).thenReturn(fixedNow);
@@ -0,0 +1,210 @@
+package dev.factory.events.service;
+
+import dev.factory.events.api.dto.EventBatchRequest;
+import dev.factory.events.api.dto.EventBatchResponse;
+import dev.factory.events.api.dto.EventIngestRequest;
+import dev.factory.events.api.dto.RejectionReason;
+import dev.factory.events.config.IngestionProperties;
+import dev.factory.events.domain.IngestCounts;
+import dev.factory.events.repository.EventIngestionJDBCRepository;
+import dev.factory.events.service.model.NormalizedEvent;
+import dev.factory.events.util.ClockProvider;
+import dev.factory.events.util.IngestMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.PessimisticLockingFailureException;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class DbBackedNativeIngestionServiceTest {
+
+    private EventIngestionJDBCRepository repo;
+    private IngestionProperties props;
+    private GroupCommitter groupCommitter;
+    private EventIdFilter eventIdFilter;
+    private RecentPayloadCache payloadCache;
+    private ShardedUpserter shardedUpserter;
+    private SimpleMeterRegistry registry;
+    private DbBackedNativeIngestionService service;
+
+    private final Instant fixedNow = Instant.parse("2026-01-15T10:00:00Z");
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(EventIngestionJDBCRepository.class);
+        ClockProvider clock = () -> fixedNow;
+        props = new IngestionProperties();
+        groupCommitter = mock(GroupCommitter.class);
+        eventIdFilter = mock(EventIdFilter.class);
+        payloadCache = mock(RecentPayloadCache.class);
+        shardedUpserter = mock(ShardedUpserter.class);
+        props.getRetry().setInitialBackoff(Duration.ofMillis(1));
+        registry = new SimpleMeterRegistry();
+        LockConflictRetry retry = new LockConflictRetry(props, registry);
+        service = new DbBackedNativeIngestionService(repo, clock, props, groupCommitter, eventIdFilter, payloadCache, shardedUpserter, retry, new IngestMetrics(registry));
+    }
+
+    private EventIngestRequest baseEvent(String eventId) {
+        EventIngestRequest e = new EventIngestRequest();
+        e.setEventId(eventId);
+        e.setEventTime(fixedNow.minusSeconds(60));
+        e.setMachineId("M1");
+        e.setFactoryId("F-1");
+        e.setLineId("L-1");
+        e.setDurationMs(1000);
+        e.setDefectCount(0);
+        return e;
+    }
+
+    @Test
+    void tempTableUpsertIsTheDefault() {
+        when(repo.ingestBatch(anyList())).thenReturn(new IngestCounts(1, 0, 0));
+
+        EventBatchResponse res = service.ingest(new EventBatchRequest(List.of(baseEvent("E-1"))));
+
+        assertThat(res.getAccepted()).isEqualTo(1);
+        verify(repo).ingestBatch(anyList());
+        verify(repo, never()).ingestBatchFromArrays(anyList());
+    }
+
+    @Test
+    void arrayUpsertIsUsedWhenConfigured() {
+        props.setUpsert(IngestionProperties.Upsert.ARRAYS);
+        when(repo.ingestBatchFromArrays(anyList())).thenReturn(new IngestCounts(0, 1, 1));
+
+        EventBatchResponse res = service.ingest(
+                new EventBatchRequest(List.of(baseEvent("E-1"), baseEvent("E-2"))));
+
+        assertThat(res.getUpdated()).isEqualTo(1);
+        assertThat(res.getDeduped()).isEqualTo(1);
+        verify(repo).ingestBatchFromArrays(anyList());
+        verify(repo, never()).ingestBatch(anyList());
+    }
+
+    @Test
+    void upsertThatLostADeadlockIsRepeated() {
+        when(repo.ingestBatch(anyList()))
+                .thenThrow(new PessimisticLockingFailureException("deadlock", new SQLException("deadlock detected", "40P01")))
+                .thenReturn(new IngestCounts(1, 0, 0));
+
+        EventBatchResponse res = service.ingest(new EventBatchRequest(List.of(baseEvent("E-1"))));
+
+        assertThat(res.getAccepted()).isEqualTo(1);
+        verify(repo, times(2)).ingestBatch(anyList());
+    }
+
+    @Test
+    void outcomesRejectionsAndStagesAreMetered() {
+        EventIngestRequest tooLong = baseEvent("E-3");
+        tooLong.setDurationMs(Duration.ofHours(7).toMillis());
+        when(repo.ingestBatch(anyList())).thenReturn(new IngestCounts(1, 0, 0));
+
+        service.ingest(new EventBatchRequest(List.of(baseEvent("E-1"), baseEvent("E-1"), tooLong)));
+
+        verify(repo).ingestBatch(argThat(events -> events.size() == 1));
+        assertThat(registry.get("events.ingest.events").tag("outcome", "accepted").counter().count()).isEqualTo(1);
+        assertThat(registry.get("events.ingest.rejected").tag("reason", RejectionReason.INVALID_DURATION.name())
+                .counter().count()).isEqualTo(1);
+        assertThat(registry.get("events.ingest.batch.size").summary().totalAmount()).isEqualTo(3);
+        assertThat(registry.get("events.ingest.stage").tag("stage", "normalize").timer().count()).isEqualTo(1);
+        assertThat(registry.get("events.ingest.stage").tag("stage", "dedupe").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void groupCommitIsUsedWhenEnabled() {
+        when(groupCommitter.isEnabled()).thenReturn(true);
+        when(groupCommitter.ingest(anyList(), any())).thenReturn(new IngestCounts(1, 0, 0));
+
+        EventBatchResponse res = service.ingest(new EventBatchRequest(List.of(baseEvent("E-1"))));
+
+        assertThat(res.getAccepted()).isEqualTo(1);
+        verify(groupCommitter).ingest(anyList(), any());
+        verifyNoInteractions(repo);
+    }
+
+    @Test
+    void largeBatchesGoThroughShardedUpserterWhenItApplies() {
+        when(shardedUpserter.applies(anyList())).thenReturn(true);
+        when(shardedUpserter.ingest(anyList(), any())).thenReturn(new IngestCounts(2, 0, 0));
+        when(groupCommitter.isEnabled()).thenReturn(true);
+
+        EventBatchResponse res = service.ingest(new EventBatchRequest(List.of(baseEvent("E-1"), baseEvent("E-2"))));
+
+        assertThat(res.getAccepted()).isEqualTo(2);
+        verify(shardedUpserter).ingest(argThat(events -> events.size() == 2), any());
+        verifyNoInteractions(groupCommitter, repo);
+    }
+
+    @Test
+    void warmFilterSendsUnseenIdsThroughInsertOnlyPath() {
+        when(eventIdFilter.isReady()).thenReturn(true);
+        when(eventIdFilter.mightContain("E-1")).thenReturn(false);
+        when(eventIdFilter.mightContain("E-2")).thenReturn(true);
+        when(eventIdFilter.mightContain("E-3")).thenReturn(true);
+        when(repo.ingestSplit(anyList(), anyList())).thenReturn(new IngestCounts[]{
+                new IngestCounts(1, 0, 0), new IngestCounts(1, 0, 1)});
+
+        EventBatchResponse res = service.ingest(new EventBatchRequest(
+                List.of(baseEvent("E-1"), baseEvent("E-2"), baseEvent("E-3"))));
+
+        assertThat(res.getAccepted()).isEqualTo(2);
+        assertThat(res.getDeduped()).isEqualTo(1);
+        verify(repo).ingestSplit(
+                argThat(l -> l.size() == 1 && l.get(0).getEventId().equals("E-1")),
+                argThat(l -> l.size() == 2));
+        verify(eventIdFilter).recordFalsePositives(1);
+        verify(eventIdFilter).addAll(argThat(l -> l.size() == 3));
+        verify(repo, never()).ingestBatch(anyList());
+    }
+
+    @Test
+    void retransmissionsAnsweredByPayloadCacheSkipTheDatabase() {
+        when(payloadCache.isEnabled()).thenReturn(true);
+        when(payloadCache.lookup(anyList())).thenReturn(
+                new RecentPayloadCache.Lookup(List.of(), new IngestCounts(0, 0, 2)));
+
+        EventBatchResponse res = service.ingest(
+                new EventBatchRequest(List.of(baseEvent("E-1"), baseEvent("E-2"))));
+
+        assertThat(res.getDeduped()).isEqualTo(2);
+        verifyNoInteractions(repo);
+    }
+
+    @Test
+    void payloadCacheMissesAreWritten() {
+        when(payloadCache.isEnabled()).thenReturn(true);
+        when(payloadCache.lookup(anyList())).thenAnswer(inv -> {
+            List<NormalizedEvent> batch = inv.getArgument(0);
+            return new RecentPayloadCache.Lookup(batch.subList(1, 2), new IngestCounts(0, 0, 1));
+        });
+        when(repo.ingestBatch(anyList())).thenReturn(new IngestCounts(1, 0, 0));
+
+        EventBatchResponse res = service.ingest(
+                new EventBatchRequest(List.of(baseEvent("E-1"), baseEvent("E-2"))));
+
+        assertThat(res.getAccepted()).isEqualTo(1);
+        assertThat(res.getDeduped()).isEqualTo(1);
+        verify(repo).ingestBatch(argThat(l -> l.size() == 1 && l.get(0).getEventId().equals("E-2")));
+    }
+
+    @Test
+    void fullyRejectedBatchSkipsTheDatabase() {
+        EventIngestRequest e = baseEvent("E-1");
+        e.setDurationMs(7 * 60 * 60 * 1000L);
+
+        EventBatchResponse res = service.ingest(new EventBatchRequest(List.of(e)));
+
+        assertThat(res.getRejected()).isEqualTo(1);
+        verifyNoInteractions(repo);
+    }
+}
@@ -0,0 +1,80 @@
+package dev.factory.events.service;
+
+import dev.factory.events.api.dto.BucketWidth;
+import dev.factory.events.api.dto.DefectHistogramResponse;
+import dev.factory.events.repository.EventRepository;
+import dev.factory.events.repository.HistogramBucketProjection;
+import dev.factory.events.util.IngestMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DefectHistogramServiceTest {
+
+    private EventRepository eventRepository;
+    private DefectHistogramService service;
+
+    @BeforeEach
+    void setUp() {
+        eventRepository = mock(EventRepository.class);
+        service = new DefectHistogramService(eventRepository, new IngestMetrics(new SimpleMeterRegistry()));
+    }
+
+    private static Instant t(String time) {
+        return Instant.parse("2026-01-01T" + time + "Z");
+    }
+
+    private record Row(Instant getBucketStart, long getEventsCount, long getDefectsCount)
+            implements HistogramBucketProjection {
+    }
+
+    @Test
+    void everyBucketOfTheWindowIsListedWithEmptyOnesAsZero() {
+        Instant start = t("00:30:00");
+        Instant end = t("04:00:00");
+        when(eventRepository.fetchMachineHistogram("M1", start, end, Duration.ofHours(1)))
+                .thenReturn(List.of(new Row(t("00:00:00"), 3, 1), new Row(t("02:00:00"), 5, 4)));
+
+        DefectHistogramResponse res = service.getMachineHistogram("M1", start, end, BucketWidth.HOUR);
+
+        assertEquals("M1", res.getMachineId());
+        assertNull(res.getLineId());
+        assertEquals(BucketWidth.HOUR, res.getBucket());
+        assertEquals(List.of(
+                new DefectHistogramResponse.Bucket(t("00:00:00"), 3, 1),
+                new DefectHistogramResponse.Bucket(t("01:00:00"), 0, 0),
+                new DefectHistogramResponse.Bucket(t("02:00:00"), 5, 4),
+                new DefectHistogramResponse.Bucket(t("03:00:00"), 0, 0)), res.getBuckets());
+    }
+
+    @Test
+    void lineWithoutEventsGetsOnlyEmptyBuckets() {
+        Instant start = t("00:00:00");
+        Instant end = t("00:03:00");
+        when(eventRepository.fetchLineHistogram("F1", "L1", start, end, Duration.ofMinutes(1))).thenReturn(List.of());
+
+        DefectHistogramResponse res = service.getLineHistogram("F1", "L1", start, end, BucketWidth.MINUTE);
+
+        assertEquals("F1", res.getFactoryId());
+        assertEquals("L1", res.getLineId());
+        assertEquals(3, res.getBuckets().size());
+        assertEquals(t("00:02:00"), res.getBuckets().get(2).getStart());
+    }
+
+    @Test
+    void bucketsOverlappingTheWindowAreCounted() {
+        assertEquals(4, BucketWidth.HOUR.count(t("00:30:00"), t("03:00:01")));
+        assertEquals(3, BucketWidth.HOUR.count(t("00:00:00"), t("03:00:00")));
+        assertEquals(1, BucketWidth.DAY.count(t("00:00:00"), t("23:59:59")));
+        assertEquals(0, BucketWidth.MINUTE.count(t("00:05:00"), t("00:05:00")));
+    }
+}
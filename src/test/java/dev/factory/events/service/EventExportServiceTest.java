@@ -0,0 +1,76 @@
+package dev.factory.events.service;
+
+import dev.factory.events.api.dto.ExportFormat;
+import dev.factory.events.config.ExportProperties;
+import dev.factory.events.repository.EventExportRepository;
+import dev.factory.events.repository.EventExportRepository.ExportedEventHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class EventExportServiceTest {
+
+    private static final Instant FROM = Instant.parse("2026-01-01T00:00:00Z");
+    private static final Instant TO = Instant.parse("2026-01-02T00:00:00Z");
+
+    private EventExportRepository exportRepo;
+    private EventExportService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        exportRepo = mock(EventExportRepository.class);
+        ExportProperties props = new ExportProperties();
+        props.setFetchSize(500);
+        service = new EventExportService(exportRepo, JsonMapper.builder().build(), props);
+
+        doAnswer(inv -> {
+            ExportedEventHandler action = inv.getArgument(5);
+            action.accept("E-1", FROM, FROM.plusSeconds(1), "M-1", "F-1", "L-1", 1200, 3);
+            action.accept("custom \"2\"", FROM.plusMillis(1500), FROM.plusSeconds(2), "M,2", "F-1", "L-2", 0, -1);
+            return null;
+        }).when(exportRepo).forEachEvent(eq("F-1"), eq(null), eq(FROM), eq(TO), eq(500), any());
+    }
+
+    private String export(ExportFormat format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, service.export(format, "F-1", null, FROM, TO, out));
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void ndjsonHasOneEventPerLineInTheIngestFormat() throws IOException {
+        assertEquals("""
+                {"eventId":"E-1","eventTime":"2026-01-01T00:00:00Z","receivedTime":"2026-01-01T00:00:01Z",\
+                "machineId":"M-1","factoryId":"F-1","lineId":"L-1","durationMs":1200,"defectCount":3}
+                {"eventId":"custom \\"2\\"","eventTime":"2026-01-01T00:00:01.500Z","receivedTime":"2026-01-01T00:00:02Z",\
+                "machineId":"M,2","factoryId":"F-1","lineId":"L-2","durationMs":0,"defectCount":-1}
+                """, export(ExportFormat.NDJSON));
+    }
+
+    @Test
+    void csvHasAHeaderAndQuotesOnlyWhereNeeded() throws IOException {
+        assertEquals(EventExportService.CSV_HEADER
+                + "E-1,2026-01-01T00:00:00Z,2026-01-01T00:00:01Z,M-1,F-1,L-1,1200,3\n"
+                + "\"custom \"\"2\"\"\",2026-01-01T00:00:01.500Z,2026-01-01T00:00:02Z,\"M,2\",F-1,L-2,0,-1\n",
+                export(ExportFormat.CSV));
+    }
+
+    @Test
+    void lineBreaksInAFieldAreQuoted() throws IOException {
+        StringWriter w = new StringWriter();
+        EventExportService.writeField(w, "a\nb");
+        assertEquals("\"a\nb\"", w.toString());
+    }
+}
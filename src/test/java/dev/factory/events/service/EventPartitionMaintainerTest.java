@@ -0,0 +1,106 @@
+package dev.factory.events.service;
+
+import dev.factory.events.config.PartitionProperties;
+import dev.factory.events.repository.EventPartitionRepository;
+import dev.factory.events.repository.EventPartitionRepository.Partition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class EventPartitionMaintainerTest {
+
+    // a Thursday
+    private static final Instant NOW = Instant.parse("2026-01-15T10:00:00Z");
+
+    private EventPartitionRepository repo;
+    private PartitionProperties props;
+    private EventPartitionMaintainer maintainer;
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(EventPartitionRepository.class);
+        props = new PartitionProperties();
+        props.setHistory(Duration.ZERO);
+        maintainer = new EventPartitionMaintainer(repo, props, () -> NOW);
+    }
+
+    private static Partition week(String monday) {
+        Instant from = Instant.parse(monday + "T00:00:00Z");
+        return new Partition("events_p" + monday.replace("-", ""), from, from.plus(Duration.ofDays(7)));
+    }
+
+    @Test
+    void createsWeeklyPartitionsFromTheCurrentMondayOnwards() {
+        props.setPremake(2);
+        when(repo.findRangePartitions()).thenReturn(List.of(week("2026-01-12")));
+
+        maintainer.maintain();
+
+        verify(repo).create("events_p20260119", Instant.parse("2026-01-19T00:00:00Z"), Instant.parse("2026-01-26T00:00:00Z"));
+        verify(repo).create("events_p20260126", Instant.parse("2026-01-26T00:00:00Z"), Instant.parse("2026-02-02T00:00:00Z"));
+        verify(repo, times(2)).create(anyString(), any(), any());
+    }
+
+    @Test
+    void dailyPartitionsSkipDaysCoveredByAnExistingWeek() {
+        props.setGranularity(PartitionProperties.Granularity.DAILY);
+        props.setPremake(5);
+        when(repo.findRangePartitions()).thenReturn(List.of(week("2026-01-12")));
+
+        maintainer.maintain();
+
+        // the week of the 12th runs until the 19th
+        verify(repo).create("events_p20260119", Instant.parse("2026-01-19T00:00:00Z"), Instant.parse("2026-01-20T00:00:00Z"));
+        verify(repo).create("events_p20260120", Instant.parse("2026-01-20T00:00:00Z"), Instant.parse("2026-01-21T00:00:00Z"));
+        verify(repo, times(2)).create(anyString(), any(), any());
+    }
+
+    @Test
+    void detachesOnlyPartitionsEndingBeforeTheRetention() {
+        props.setPremake(0);
+        props.setRetention(Duration.ofDays(14));
+        when(repo.findRangePartitions()).thenReturn(List.of(
+                week("2025-12-22"), week("2025-12-29"), week("2026-01-05"), week("2026-01-12")));
+
+        maintainer.maintain();
+
+        // cutoff is 2026-01-01T10:00Z: the week of the 29th ends after it
+        verify(repo).detach(week("2025-12-22"));
+        verify(repo, times(1)).detach(any());
+        verify(repo, never()).create(anyString(), any(), any());
+    }
+
+    @Test
+    void coversRecentHistoryAndKeepsGoingPastAFailedCreate() {
+        props.setPremake(0);
+        props.setHistory(Duration.ofDays(14));
+        when(repo.findRangePartitions()).thenReturn(List.of(week("2026-01-12")));
+        // rows for that week already sit in the default partition
+        doThrow(new DataIntegrityViolationException("violated by some row"))
+                .when(repo).create(eq("events_p20251229"), any(), any());
+
+        maintainer.maintain();
+
+        verify(repo).create(eq("events_p20251229"), any(), any());
+        verify(repo).create("events_p20260105", Instant.parse("2026-01-05T00:00:00Z"), Instant.parse("2026-01-12T00:00:00Z"));
+        verify(repo, times(2)).create(anyString(), any(), any());
+    }
+
+    @Test
+    void keepsEverythingWithoutRetention() {
+        when(repo.findRangePartitions()).thenReturn(List.of(week("2020-01-06")));
+
+        maintainer.maintain();
+
+        verify(repo, never()).detach(any());
+    }
+}
@@ -0,0 +1,155 @@
+package dev.factory.events.service;
+
+import dev.factory.events.config.IngestionProperties;
+import dev.factory.events.domain.IngestCounts;
+import dev.factory.events.repository.EventIngestionJDBCRepository;
+import dev.factory.events.service.model.NormalizedEvent;
+import dev.factory.events.service.model.SlottedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class GroupCommitterTest {
+
+    private EventIngestionJDBCRepository repo;
+    private EventIdFilter eventIdFilter;
+    private IngestionProperties props;
+    private GroupCommitter committer;
+
+    private static final IngestCounts DIRECT = new IngestCounts(-1, -1, -1);
+    private final Function<List<NormalizedEvent>, IngestCounts> direct = batch -> DIRECT;
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(EventIngestionJDBCRepository.class);
+        props = new IngestionProperties();
+        props.getGroupCommit().setEnabled(true);
+        props.getGroupCommit().setWindow(Duration.ofMillis(200));
+        props.getGroupCommit().setMaxWait(Duration.ofSeconds(5));
+        props.getGroupCommit().setMaxEvents(10);
+        eventIdFilter = mock(EventIdFilter.class);
+        committer = new GroupCommitter(repo, props, new LockConflictRetry(props, new SimpleMeterRegistry()),
+                eventIdFilter);
+        committer.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        committer.stop();
+    }
+
+    private NormalizedEvent event(String eventId) {
+        Instant t = Instant.parse("2026-01-15T10:00:00Z");
+        return new NormalizedEvent(eventId, t, t, "M1", "F-1", "L-1", 1000, 0);
+    }
+
+    @Test
+    void concurrentRequestsShareOneUpsertAndGetTheirOwnCounts() throws Exception {
+        when(repo.ingestSlotted(anyList(), anyInt())).thenAnswer(inv -> {
+            int slots = inv.getArgument(1);
+            IngestCounts[] counts = new IngestCounts[slots];
+            for (int i = 0; i < slots; i++) {
+                counts[i] = new IngestCounts(i + 1, 0, 0);
+            }
+            return counts;
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<IngestCounts>> results = List.of(
+                    pool.submit(() -> committer.ingest(List.of(event("E-1")), direct)),
+                    pool.submit(() -> committer.ingest(List.of(event("E-2")), direct)),
+                    pool.submit(() -> committer.ingest(List.of(event("E-3")), direct)));
+
+            List<IngestCounts> counts = results.stream().map(f -> {
+                try {
+                    return f.get(5, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }).toList();
+
+            assertThat(counts).extracting(IngestCounts::accepted).containsExactlyInAnyOrder(1, 2, 3);
+            verify(repo, times(1)).ingestSlotted(anyList(), anyInt());
+            verify(eventIdFilter, times(3)).addAll(anyList());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void requestsAtMaxEventsBypassTheGroup() {
+        List<NormalizedEvent> large = java.util.stream.IntStream.range(0, 10)
+                .mapToObj(i -> event("E-" + i))
+                .toList();
+
+        assertThat(committer.ingest(large, direct)).isSameAs(DIRECT);
+        verifyNoInteractions(repo, eventIdFilter);
+    }
+
+    @Test
+    void requestNotPickedUpWithinMaxWaitRunsDirectly() {
+        props.getGroupCommit().setWindow(Duration.ofSeconds(2));
+        props.getGroupCommit().setMaxWait(Duration.ofMillis(20));
+
+        assertThat(committer.ingest(List.of(event("E-1")), direct)).isSameAs(DIRECT);
+    }
+
+    @Test
+    void requestWhoseGroupOutlastsTheTimeoutFails() {
+        props.getGroupCommit().setWindow(Duration.ofMillis(10));
+        props.getGroupCommit().setMaxWait(Duration.ofMillis(50));
+        props.getGroupCommit().setTimeout(Duration.ofMillis(300));
+        CountDownLatch release = new CountDownLatch(1);
+        when(repo.ingestSlotted(anyList(), anyInt())).thenAnswer(inv -> {
+            release.await();
+            return new IngestCounts[]{new IngestCounts(1, 0, 0)};
+        });
+
+        long started = System.nanoTime();
+        try {
+            assertThatThrownBy(() -> committer.ingest(List.of(event("E-1")), direct))
+                    .isInstanceOf(QueryTimeoutException.class);
+            assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(2));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void failedGroupFallsBackToDirectIngestion() {
+        when(repo.ingestSlotted(anyList(), anyInt())).thenThrow(new IllegalStateException("boom"));
+
+        assertThat(committer.ingest(List.of(event("E-1")), direct)).isSameAs(DIRECT);
+    }
+
+    @Test
+    void overlappingEventIdsAreSplitIntoRounds() {
+        List<GroupCommitter.Pending> group = List.of(
+                new GroupCommitter.Pending(List.of(event("E-1"), event("E-2"))),
+                new GroupCommitter.Pending(List.of(event("E-2"), event("E-3"))),
+                new GroupCommitter.Pending(List.of(event("E-2"))));
+
+        List<List<SlottedEvent>> rounds = GroupCommitter.rounds(group);
+
+        assertThat(rounds).hasSize(3);
+        assertThat(rounds.get(0)).extracting(se -> se.event().getEventId())
+                .containsExactly("E-1", "E-2", "E-3");
+        assertThat(rounds.get(1)).extracting(SlottedEvent::slot).containsExactly(1);
+        assertThat(rounds.get(2)).extracting(SlottedEvent::slot).containsExactly(2);
+    }
+}
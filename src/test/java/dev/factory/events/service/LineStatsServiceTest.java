@@ -3,7 +3,11 @@ package dev.factory.events.service;
 import dev.factory.events.api.dto.DefectLineResponse;
 import dev.factory.events.api.dto.TopDefectLinesResponse;
 import dev.factory.events.repository.EventRepository;
+import dev.factory.events.repository.FactoryDefectLineProjection;
 import dev.factory.events.repository.TopDefectLineProjection;
+import dev.factory.events.util.IngestMetrics;
+import dev.factory.events.util.MinuteRing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,9 +16,17 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -23,11 +35,14 @@ class LineStatsServiceTest {
     @Mock
     private EventRepository eventRepository;
 
+    @Mock
+    private RecentStats recentStats;
+
     private LineStatsService service;
 
     @BeforeEach
     void setUp() {
-        service = new LineStatsService(eventRepository);
+        service = new LineStatsService(eventRepository, recentStats, new IngestMetrics(new SimpleMeterRegistry()));
     }
 
     @Test
@@ -100,6 +115,114 @@ class LineStatsServiceTest {
         assertEquals(33.33, result.getDefectLines().get(0).getDefectsPercent());
     }
 
+    @Test
+    void recentWindowIsRankedInMemoryWithEdgeMinutesFromEvents() {
+        Instant from = Instant.parse("2026-01-01T10:00:30Z");
+        Instant to = Instant.parse("2026-01-01T11:00:00Z");
+        Instant wholeFrom = Instant.parse("2026-01-01T10:01:00Z");
+
+        when(recentStats.covers(from, to)).thenReturn(true);
+        when(recentStats.lineIds("F01")).thenReturn(Set.of("L1", "L2"));
+        when(eventRepository.findEdgeLineStats("F01", Set.of("L1", "L2"), from, wholeFrom, to, to))
+                .thenReturn(List.of(projection("L2", 4, 1)));
+        when(recentStats.topDefectLines("F01", wholeFrom, to, Map.of("L2", new MinuteRing.Counts(1, 4)), 2))
+                .thenReturn(List.of(new RecentStats.LineCounts("L2", 10, 40)));
+
+        TopDefectLinesResponse result = service.getTopDefectLines("F01", from, to, 2);
+
+        assertEquals(1, result.getDefectLines().size());
+        assertEquals("L2", result.getDefectLines().get(0).getLineId());
+        assertEquals(25.0, result.getDefectLines().get(0).getDefectsPercent());
+        verify(eventRepository, never()).findTopDefectLinesNative(any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void recentWindowOnWholeMinutesDoesNotQueryEvents() {
+        Instant from = Instant.parse("2026-01-01T10:00:00Z");
+        Instant to = Instant.parse("2026-01-01T11:00:00Z");
+
+        when(recentStats.covers(from, to)).thenReturn(true);
+        when(recentStats.topDefectLines("F01", from, to, Map.of(), 5)).thenReturn(List.of());
+
+        assertEquals(0, service.getTopDefectLines("F01", from, to, 5).getDefectLines().size());
+        verifyNoInteractions(eventRepository);
+    }
+
+    @Test
+    void factoryWithoutKnownLinesSkipsTheEdgeQuery() {
+        Instant from = Instant.parse("2026-01-01T10:00:30Z");
+        Instant to = Instant.parse("2026-01-01T11:00:00Z");
+        Instant wholeFrom = Instant.parse("2026-01-01T10:01:00Z");
+
+        when(recentStats.covers(from, to)).thenReturn(true);
+        when(recentStats.lineIds("F09")).thenReturn(Set.of());
+        when(recentStats.topDefectLines("F09", wholeFrom, to, Map.of(), 5)).thenReturn(List.of());
+
+        assertEquals(0, service.getTopDefectLines("F09", from, to, 5).getDefectLines().size());
+        verifyNoInteractions(eventRepository);
+    }
+
+    @Test
+    void severalFactoriesAreRankedInOneQueryAndKeyedInRequestOrder() {
+        Instant from = Instant.parse("2026-01-01T00:00:00Z");
+        Instant to = Instant.parse("2026-01-02T00:00:00Z");
+
+        when(eventRepository.findTopDefectLinesForFactories(Set.of("F02", "F01", "F09"), from, to, 2))
+                .thenReturn(List.of(
+                        projection("F01", "L1", 50, 200),
+                        projection("F01", "L2", 20, 100),
+                        projection("F02", "L7", 3, 3)));
+
+        Map<String, TopDefectLinesResponse> result =
+                service.getTopDefectLinesForFactories(List.of("F02", "F01", "F09"), from, to, 2);
+
+        assertEquals(List.of("F02", "F01", "F09"), List.copyOf(result.keySet()));
+        assertEquals(List.of("L1", "L2"),
+                result.get("F01").getDefectLines().stream().map(DefectLineResponse::getLineId).toList());
+        assertEquals(25.0, result.get("F01").getDefectLines().get(0).getDefectsPercent());
+        assertEquals(100.0, result.get("F02").getDefectLines().get(0).getDefectsPercent());
+        assertEquals(0, result.get("F09").getDefectLines().size());
+        verify(eventRepository, never()).findTopDefectLinesNative(any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void recentWindowOfSeveralFactoriesReadsTheirEdgesInOneQuery() {
+        Instant from = Instant.parse("2026-01-01T10:00:30Z");
+        Instant to = Instant.parse("2026-01-01T11:00:00Z");
+        Instant wholeFrom = Instant.parse("2026-01-01T10:01:00Z");
+
+        when(recentStats.covers(from, to)).thenReturn(true);
+        when(recentStats.lineIds("F01")).thenReturn(Set.of("L1"));
+        when(recentStats.lineIds("F02")).thenReturn(Set.of());
+        when(eventRepository.findEdgeLineStatsForFactories(aryEq(new String[]{"F01", "F02"}), aryEq(new String[]{"L1"}),
+                eq(from), eq(wholeFrom), eq(to), eq(to)))
+                .thenReturn(List.of(projection("F01", "L1", 4, 1)));
+        when(recentStats.topDefectLines("F01", wholeFrom, to, Map.of("L1", new MinuteRing.Counts(1, 4)), 3))
+                .thenReturn(List.of(new RecentStats.LineCounts("L1", 10, 40)));
+        when(recentStats.topDefectLines("F02", wholeFrom, to, Map.of(), 3)).thenReturn(List.of());
+
+        Map<String, TopDefectLinesResponse> result =
+                service.getTopDefectLinesForFactories(List.of("F01", "F02"), from, to, 3);
+
+        assertEquals(25.0, result.get("F01").getDefectLines().get(0).getDefectsPercent());
+        assertEquals(0, result.get("F02").getDefectLines().size());
+        verify(eventRepository, never()).findEdgeLineStats(any(), any(), any(), any(), any(), any());
+    }
+
+    private FactoryDefectLineProjection projection(
+            String factoryId,
+            String lineId,
+            long totalDefects,
+            long eventCount
+    ) {
+        return new FactoryDefectLineProjection() {
+            @Override public String getFactoryId() { return factoryId; }
+            @Override public String getLineId() { return lineId; }
+            @Override public Long getTotalDefects() { return totalDefects; }
+            @Override public Long getEventCount() { return eventCount; }
+        };
+    }
+
     private TopDefectLineProjection projection(
             String lineId,
             long totalDefects,
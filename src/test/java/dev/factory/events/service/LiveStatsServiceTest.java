@@ -0,0 +1,242 @@
+package dev.factory.events.service;
+
+import dev.factory.events.api.dto.BulkStatsResponse;
+import dev.factory.events.api.dto.MachineStatsResponse;
+import dev.factory.events.api.dto.TopDefectLinesResponse;
+import dev.factory.events.config.StatsProperties;
+import dev.factory.events.service.model.EventsChanged;
+import dev.factory.events.service.model.NormalizedEvent;
+import dev.factory.events.util.ClockProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LiveStatsServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-15T10:00:00Z");
+    private static final Duration HOUR = Duration.ofHours(1);
+
+    private MachineStatsService machineStatsService;
+    private LineStatsService lineStatsService;
+    private StatsProperties props;
+    private SimpleMeterRegistry registry;
+    private LiveStatsService live;
+
+    @BeforeEach
+    void setUp() {
+        machineStatsService = mock(MachineStatsService.class);
+        when(machineStatsService.getStatsForMachines(anyCollection(), any(), any())).thenAnswer(inv -> {
+            Collection<String> ids = inv.getArgument(0);
+            return ids.stream().map(id -> {
+                MachineStatsResponse res = new MachineStatsResponse();
+                res.setMachineId(id);
+                return res;
+            }).toList();
+        });
+        lineStatsService = mock(LineStatsService.class);
+        when(lineStatsService.getTopDefectLinesForFactories(anyCollection(), any(), any(), anyInt())).thenAnswer(inv -> {
+            Collection<String> ids = inv.getArgument(0);
+            Map<String, TopDefectLinesResponse> res = new LinkedHashMap<>();
+            ids.forEach(id -> res.put(id, new TopDefectLinesResponse()));
+            return res;
+        });
+        ClockProvider clock = mock(ClockProvider.class);
+        when(clock.now()).thenReturn(NOW);
+
+        props = new StatsProperties();
+        registry = new SimpleMeterRegistry();
+        live = new LiveStatsService(machineStatsService, lineStatsService, clock, props, registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    // what the transaction manager does on commit or rollback
+    private static void complete(boolean committed) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(TransactionSynchronization::beforeCompletion);
+        if (committed) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach(s -> s.afterCompletion(committed
+                ? TransactionSynchronization.STATUS_COMMITTED
+                : TransactionSynchronization.STATUS_ROLLED_BACK));
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    private static EventsChanged added(String machineId, String factoryId) {
+        return new EventsChanged(List.of(), List.of(
+                new NormalizedEvent("E-1", NOW.minusSeconds(60), NOW, machineId, factoryId, "L-1", 1000, 1)));
+    }
+
+    // sends run on threads of their own; passes are repeated until the last send is done
+    private void pushUntil(BooleanSupplier done) throws InterruptedException {
+        for (int i = 0; i < 200 && !done.getAsBoolean(); i++) {
+            live.push();
+            Thread.sleep(10);
+        }
+        assertThat(done.getAsBoolean()).isTrue();
+    }
+
+    private double subscriptions() {
+        return registry.get("events.stats.live.subscriptions").gauge().value();
+    }
+
+    @Test
+    void firstEventHoldsEverythingSubscribedInOrder() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        assertThat(live.subscribe(emitter, List.of("M2", "M1", "M2"), List.of("F1"), HOUR, 3)).isTrue();
+
+        pushUntil(() -> emitter.snapshots.size() == 1);
+
+        BulkStatsResponse first = emitter.snapshots.getFirst();
+        assertThat(first.getMachines()).extracting(MachineStatsResponse::getMachineId).containsExactly("M2", "M1");
+        assertThat(first.getTopDefectLines()).containsOnlyKeys("F1");
+        verify(machineStatsService).getStatsForMachines(Set.of("M1", "M2"), NOW.minus(HOUR), NOW);
+        verify(lineStatsService).getTopDefectLinesForFactories(Set.of("F1"), NOW.minus(HOUR), NOW, 3);
+    }
+
+    @Test
+    void committedChangesAreCoalescedIntoOneEventOfTheKeysTouched() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        live.subscribe(emitter, List.of("M1", "M2"), List.of("F1", "F2"), HOUR, 3);
+        pushUntil(() -> emitter.snapshots.size() == 1);
+
+        TransactionSynchronizationManager.initSynchronization();
+        live.onChanged(added("M2", "F2"));
+        live.onChanged(added("M9", "F9"));
+        complete(true);
+        live.onChanged(added("M2", "F2"));
+
+        pushUntil(() -> emitter.snapshots.size() == 2);
+
+        BulkStatsResponse second = emitter.snapshots.get(1);
+        assertThat(second.getMachines()).extracting(MachineStatsResponse::getMachineId).containsExactly("M2");
+        assertThat(second.getTopDefectLines()).containsOnlyKeys("F2");
+        verify(machineStatsService).getStatsForMachines(Set.of("M2"), NOW.minus(HOUR), NOW);
+    }
+
+    @Test
+    void rolledBackChangesAreNotPushed() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        live.subscribe(emitter, List.of("M1", "M2"), List.of(), HOUR, 3);
+        pushUntil(() -> emitter.snapshots.size() == 1);
+
+        TransactionSynchronizationManager.initSynchronization();
+        live.onChanged(added("M1", "F1"));
+        complete(false);
+        live.onChanged(added("M2", "F1"));
+
+        pushUntil(() -> emitter.snapshots.size() == 2);
+
+        assertThat(emitter.snapshots.get(1).getMachines()).extracting(MachineStatsResponse::getMachineId).containsExactly("M2");
+        assertThat(emitter.snapshots.get(1).getTopDefectLines()).isEmpty();
+    }
+
+    @Test
+    void subscriptionsSharingAWindowShareOneQuery() throws Exception {
+        RecordingEmitter a = new RecordingEmitter();
+        RecordingEmitter b = new RecordingEmitter();
+        RecordingEmitter wider = new RecordingEmitter();
+        live.subscribe(a, List.of("M1"), List.of(), HOUR, 3);
+        live.subscribe(b, List.of("M1", "M2"), List.of(), HOUR, 3);
+        live.subscribe(wider, List.of("M1"), List.of(), Duration.ofHours(8), 3);
+
+        pushUntil(() -> a.snapshots.size() == 1 && b.snapshots.size() == 1 && wider.snapshots.size() == 1);
+
+        verify(machineStatsService).getStatsForMachines(Set.of("M1", "M2"), NOW.minus(HOUR), NOW);
+        verify(machineStatsService).getStatsForMachines(Set.of("M1"), NOW.minus(Duration.ofHours(8)), NOW);
+        verify(machineStatsService, times(2)).getStatsForMachines(anyCollection(), any(), any());
+        assertThat(b.snapshots.getFirst().getMachines()).extracting(MachineStatsResponse::getMachineId).containsExactly("M1", "M2");
+    }
+
+    @Test
+    void failedWriteDropsTheSubscriptionAndFreesItsPlace() throws Exception {
+        props.getLive().setMaxSubscriptions(1);
+        RecordingEmitter gone = new RecordingEmitter();
+        gone.broken = true;
+        assertThat(live.subscribe(gone, List.of("M1"), List.of(), HOUR, 3)).isTrue();
+        assertThat(live.subscribe(new RecordingEmitter(), List.of("M1"), List.of(), HOUR, 3)).isFalse();
+
+        pushUntil(() -> subscriptions() == 0);
+
+        assertThat(live.subscribe(new RecordingEmitter(), List.of("M1"), List.of(), HOUR, 3)).isTrue();
+    }
+
+    @Test
+    void failedQueryKeepsTheMarksForTheNextPass() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        live.subscribe(emitter, List.of(), List.of("F1"), HOUR, 3);
+        when(lineStatsService.getTopDefectLinesForFactories(anyCollection(), any(), any(), anyInt()))
+                .thenThrow(new IllegalStateException("database down"))
+                .thenReturn(Map.of("F1", new TopDefectLinesResponse()));
+
+        assertThatThrownBy(live::push).isInstanceOf(IllegalStateException.class);
+        pushUntil(() -> emitter.snapshots.size() == 1);
+
+        assertThat(emitter.snapshots.getFirst().getTopDefectLines()).containsOnlyKeys("F1");
+        verify(lineStatsService, times(2)).getTopDefectLinesForFactories(eq(Set.of("F1")), any(), any(), eq(3));
+    }
+
+    @Test
+    void idleSubscriptionsGetHeartbeats() throws Exception {
+        props.getLive().setHeartbeat(Duration.ZERO);
+        RecordingEmitter emitter = new RecordingEmitter();
+        live.subscribe(emitter, List.of("M1"), List.of(), HOUR, 3);
+
+        pushUntil(() -> emitter.snapshots.size() == 1 && emitter.heartbeats.get() > 0);
+    }
+
+    // keeps what would be written to the client
+    private static class RecordingEmitter extends SseEmitter {
+        final List<BulkStatsResponse> snapshots = new CopyOnWriteArrayList<>();
+        final AtomicInteger heartbeats = new AtomicInteger();
+        volatile boolean broken;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (broken) {
+                throw new IOException("Broken pipe");
+            }
+            Set<ResponseBodyEmitter.DataWithMediaType> parts = builder.build();
+            parts.stream()
+                    .map(ResponseBodyEmitter.DataWithMediaType::getData)
+                    .filter(BulkStatsResponse.class::isInstance)
+                    .map(BulkStatsResponse.class::cast)
+                    .findFirst()
+                    .ifPresentOrElse(snapshots::add, heartbeats::incrementAndGet);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package dev.factory.events.service;
+
+import dev.factory.events.config.IngestionProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LockConflictRetryTest {
+
+    private IngestionProperties props;
+    private SimpleMeterRegistry registry;
+    private LockConflictRetry retry;
+
+    @BeforeEach
+    void setUp() {
+        props = new IngestionProperties();
+        props.getRetry().setInitialBackoff(Duration.ofMillis(1));
+        props.getRetry().setMaxBackoff(Duration.ofMillis(2));
+        registry = new SimpleMeterRegistry();
+        retry = new LockConflictRetry(props, registry);
+    }
+
+    private static RuntimeException deadlock() {
+        return new PessimisticLockingFailureException("upsert", new SQLException("deadlock detected", "40P01"));
+    }
+
+    private static RuntimeException serializationFailure() {
+        return new PessimisticLockingFailureException("upsert",
+                new SQLException("could not serialize access due to concurrent update", "40001"));
+    }
+
+    @Test
+    void conflictsAreRetriedUntilTheTransactionCommits() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = retry.run(() -> switch (attempts.incrementAndGet()) {
+            case 1 -> throw deadlock();
+            case 2 -> throw serializationFailure();
+            default -> "committed";
+        });
+
+        assertThat(result).isEqualTo("committed");
+        assertThat(attempts).hasValue(3);
+        assertThat(registry.get("events.ingest.retries").tag("cause", "deadlock").counter().count()).isEqualTo(1);
+        assertThat(registry.get("events.ingest.retries").tag("cause", "serialization").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void lastConflictIsRethrownOnceAttemptsAreUsedUp() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> retry.run(() -> {
+            attempts.incrementAndGet();
+            throw deadlock();
+        })).isInstanceOf(PessimisticLockingFailureException.class).hasRootCauseMessage("deadlock detected");
+
+        assertThat(attempts).hasValue(4);
+        assertThat(registry.get("events.ingest.retries.exhausted").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void otherFailuresAreNotRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> retry.run(() -> {
+            attempts.incrementAndGet();
+            throw new DataIntegrityViolationException("constraint", new SQLException("check violation", "23514"));
+        })).isInstanceOf(DataIntegrityViolationException.class);
+        assertThatThrownBy(() -> retry.run(() -> {
+            attempts.incrementAndGet();
+            throw new CannotAcquireLockException("lock timeout", new SQLException("lock timeout", "55P03"));
+        })).isInstanceOf(CannotAcquireLockException.class);
+
+        assertThat(attempts).hasValue(2);
+    }
+
+    @Test
+    void callInsideAnOpenTransactionRunsOnce() {
+        AtomicInteger attempts = new AtomicInteger();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertThatThrownBy(() -> retry.run(() -> {
+                attempts.incrementAndGet();
+                throw deadlock();
+            })).isInstanceOf(PessimisticLockingFailureException.class).hasRootCauseMessage("deadlock detected");
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void oneAttemptDisablesRetries() {
+        props.getRetry().setMaxAttempts(1);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> new LockConflictRetry(props, registry).run(() -> {
+            attempts.incrementAndGet();
+            throw serializationFailure();
+        })).isInstanceOf(PessimisticLockingFailureException.class)
+                .hasRootCauseMessage("could not serialize access due to concurrent update");
+
+        assertThat(attempts).hasValue(1);
+    }
+}
@@ -2,14 +2,21 @@ package dev.factory.events.service;
 
 import dev.factory.events.api.dto.MachineStatsResponse;
 import dev.factory.events.repository.EventRepository;
+import dev.factory.events.repository.MachineIdStatsProjection;
 import dev.factory.events.repository.MachineStatsProjection;
+import dev.factory.events.util.IngestMetrics;
+import dev.factory.events.util.MinuteRing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import java.time.Instant;
+import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -17,12 +24,14 @@ import static org.mockito.Mockito.when;
 class MachineStatsServiceTest {
 
     private EventRepository eventRepository;
+    private RecentStats recentStats;
     private MachineStatsService service;
 
     @BeforeEach
     void setUp() {
         eventRepository = mock(EventRepository.class);
-        service = new MachineStatsService(eventRepository);
+        recentStats = mock(RecentStats.class);
+        service = new MachineStatsService(eventRepository, recentStats, new IngestMetrics(new SimpleMeterRegistry()));
     }
 
     private MachineStatsProjection projection(long events, long defects) {
@@ -129,4 +138,113 @@ class MachineStatsServiceTest {
         Mockito.verify(eventRepository)
                 .fetchStats("MX", start, end);
     }
+
+    @Test
+    void recentWindowOnWholeMinutesIsAnsweredFromMemory() {
+        Instant start = Instant.parse("2026-01-01T10:00:00Z");
+        Instant end = Instant.parse("2026-01-01T11:00:00Z");
+
+        when(recentStats.covers(start, end)).thenReturn(true);
+        when(recentStats.machineCounts("M1", start, end)).thenReturn(new MinuteRing.Counts(40, 3));
+
+        MachineStatsResponse res = service.getStats("M1", start, end);
+
+        assertEquals(40, res.getEventsCount());
+        assertEquals(3, res.getDefectsCount());
+        Mockito.verifyNoInteractions(eventRepository);
+    }
+
+    @Test
+    void partialMinutesOfARecentWindowAreReadFromEvents() {
+        Instant start = Instant.parse("2026-01-01T10:00:30Z");
+        Instant end = Instant.parse("2026-01-01T11:00:15Z");
+        Instant wholeFrom = Instant.parse("2026-01-01T10:01:00Z");
+        Instant wholeTo = Instant.parse("2026-01-01T11:00:00Z");
+
+        when(recentStats.covers(start, end)).thenReturn(true);
+        when(recentStats.machineCounts("M1", wholeFrom, wholeTo)).thenReturn(new MinuteRing.Counts(40, 3));
+        MachineStatsProjection edges = projection(2, 1);
+        when(eventRepository.fetchEdgeStats("M1", start, wholeFrom, wholeTo, end)).thenReturn(edges);
+
+        MachineStatsResponse res = service.getStats("M1", start, end);
+
+        assertEquals(42, res.getEventsCount());
+        assertEquals(4, res.getDefectsCount());
+        Mockito.verify(eventRepository, Mockito.never()).fetchStats(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void windowWithinOneMinuteIsReadFromEventsOnly() {
+        Instant start = Instant.parse("2026-01-01T10:00:10Z");
+        Instant end = Instant.parse("2026-01-01T10:00:50Z");
+
+        when(recentStats.covers(start, end)).thenReturn(true);
+        when(recentStats.machineCounts("M1", end, end)).thenReturn(MinuteRing.Counts.ZERO);
+        MachineStatsProjection edges = projection(1, 0);
+        when(eventRepository.fetchEdgeStats("M1", start, end, end, end)).thenReturn(edges);
+
+        MachineStatsResponse res = service.getStats("M1", start, end);
+
+        assertEquals(1, res.getEventsCount());
+    }
+
+    private MachineIdStatsProjection projection(String machineId, long events, long defects) {
+        MachineIdStatsProjection p = mock(MachineIdStatsProjection.class);
+        when(p.getMachineId()).thenReturn(machineId);
+        when(p.getEventsCount()).thenReturn(events);
+        when(p.getDefectsCount()).thenReturn(defects);
+        return p;
+    }
+
+    @Test
+    void severalMachinesAreReadInOneQueryAndAnsweredInRequestOrder() {
+        Instant start = Instant.parse("2026-01-01T00:00:00Z");
+        Instant end = Instant.parse("2026-01-01T10:00:00Z");
+        MachineIdStatsProjection m1 = projection("M1", 10, 5);
+        MachineIdStatsProjection m2 = projection("M2", 100, 40);
+
+        when(eventRepository.fetchStatsForMachines(Set.of("M2", "M1", "M3"), start, end))
+                .thenReturn(List.of(m1, m2));
+
+        List<MachineStatsResponse> res = service.getStatsForMachines(List.of("M2", "M1", "M3", "M2"), start, end);
+
+        assertEquals(List.of("M2", "M1", "M3"), res.stream().map(MachineStatsResponse::getMachineId).toList());
+        assertEquals(100, res.get(0).getEventsCount());
+        assertEquals(4.0, res.get(0).getAvgDefectRate());
+        assertEquals("WARNING", res.get(0).getStatus());
+        assertEquals(0.5, res.get(1).getAvgDefectRate());
+        assertEquals(0, res.get(2).getEventsCount());
+        assertEquals(start, res.get(2).getStart());
+        Mockito.verify(eventRepository, Mockito.never()).fetchStats(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void noMachinesNeedNoQuery() {
+        Instant start = Instant.parse("2026-01-01T00:00:00Z");
+
+        assertEquals(List.of(), service.getStatsForMachines(List.of(), start, start.plusSeconds(3600)));
+        Mockito.verifyNoInteractions(eventRepository, recentStats);
+    }
+
+    @Test
+    void partialMinutesOfSeveralMachinesAreReadInOneQuery() {
+        Instant start = Instant.parse("2026-01-01T10:00:30Z");
+        Instant end = Instant.parse("2026-01-01T11:00:00Z");
+        Instant wholeFrom = Instant.parse("2026-01-01T10:01:00Z");
+
+        when(recentStats.covers(start, end)).thenReturn(true);
+        when(recentStats.machineCounts("M1", wholeFrom, end)).thenReturn(new MinuteRing.Counts(40, 3));
+        when(recentStats.machineCounts("M2", wholeFrom, end)).thenReturn(new MinuteRing.Counts(7, 0));
+        MachineIdStatsProjection edges = projection("M2", 2, 1);
+        when(eventRepository.fetchEdgeStatsForMachines(aryEq(new String[]{"M1", "M2"}), eq(start), eq(wholeFrom),
+                eq(end), eq(end))).thenReturn(List.of(edges));
+
+        List<MachineStatsResponse> res = service.getStatsForMachines(List.of("M1", "M2"), start, end);
+
+        assertEquals(40, res.get(0).getEventsCount());
+        assertEquals(9, res.get(1).getEventsCount());
+        assertEquals(1, res.get(1).getDefectsCount());
+        Mockito.verify(eventRepository, Mockito.never()).fetchEdgeStats(Mockito.any(), Mockito.any(), Mockito.any(),
+                Mockito.any(), Mockito.any());
+    }
 }
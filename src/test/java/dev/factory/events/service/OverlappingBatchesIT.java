@@ -0,0 +1,147 @@
+package dev.factory.events.service;
+
+import dev.factory.events.AbstractIntegrationTest;
+import dev.factory.events.repository.EventRepository;
+import dev.factory.events.service.model.NormalizedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Stress test of many threads upserting overlapping eventId sets, each batch in its own
+ * shuffled order and with later receivedTimes than the batches before it. Every batch
+ * must commit with the newest version of each event, and the few deadlocks PostgreSQL
+ * detects must all have been absorbed by retries. OverlappingBatchesLoad in the
+ * benchmark package measures the same workload.
+ */
+class OverlappingBatchesIT extends AbstractIntegrationTest {
+
+    private static final int THREADS = 12;
+    private static final int BATCHES_PER_THREAD = 15;
+    private static final int BATCH_SIZE = 400;
+    private static final int DISTINCT_IDS = 2000;
+    // with eventIds locked in key order, deadlocks are rare; in batch order they never stop
+    private static final int MAX_DEADLOCKS = THREADS;
+
+    @Autowired
+    private DbBackedNativeIngestionService ingestion;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private final Instant hourAgo = Instant.now().truncatedTo(ChronoUnit.SECONDS).minusSeconds(3600);
+
+    @BeforeEach
+    void clean() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    void overlappingBatchesFromManyThreadsAllCommitWithTheNewestVersionOfEachEvent() throws Exception {
+        // each version carries its sequence number as receivedTime offset and duration
+        AtomicLong sequence = new AtomicLong();
+        Map<String, Long> newest = new ConcurrentHashMap<>();
+        double retriesBefore = retries();
+        long deadlocksBefore = deadlocks();
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                Random random = new Random(t);
+                results.add(pool.submit(() -> {
+                    start.await();
+                    for (int b = 0; b < BATCHES_PER_THREAD; b++) {
+                        try {
+                            ingestion.upsert(batch(random, sequence, newest));
+                        } catch (RuntimeException e) {
+                            failed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long deadlocks = deadlocks() - deadlocksBefore;
+        assertThat(failed).hasValue(0);
+        assertThat(deadlocks).isLessThanOrEqualTo(MAX_DEADLOCKS);
+        assertThat(retries() - retriesBefore).isGreaterThanOrEqualTo(deadlocks);
+        assertThat(eventRepository.count()).isEqualTo(newest.size());
+        Map<String, Long> stored = new HashMap<>();
+        jdbc.query("SELECT event_id(event_key), duration_ms FROM events",
+                (RowCallbackHandler) rs -> stored.put(rs.getString(1), rs.getLong(2)));
+        assertThat(stored).isEqualTo(newest);
+        assertThat(jdbc.queryForObject("""
+                SELECT coalesce(sum(h.events_count), 0)
+                FROM machine_stats_hourly h
+                JOIN machines m ON m.id = h.machine_key
+                WHERE m.machine_id LIKE 'OV-M-%'
+                """, Long.class)).isEqualTo(newest.size());
+    }
+
+    // BATCH_SIZE distinct ids in random order; no two versions have the same payload, so
+    // none is deduped, and versions move between machines and hours
+    private List<NormalizedEvent> batch(Random random, AtomicLong sequence, Map<String, Long> newest) {
+        List<Integer> ids = new ArrayList<>(DISTINCT_IDS);
+        for (int i = 0; i < DISTINCT_IDS; i++) {
+            ids.add(i);
+        }
+        Collections.shuffle(ids, random);
+        List<NormalizedEvent> batch = new ArrayList<>(BATCH_SIZE);
+        for (int id : ids.subList(0, BATCH_SIZE)) {
+            long seq = sequence.incrementAndGet();
+            String eventId = "OV-" + id;
+            newest.merge(eventId, seq, Math::max);
+            batch.add(new NormalizedEvent(eventId, hourAgo.minus(Duration.ofMinutes(seq % 180)),
+                    hourAgo.plusMillis(seq), "OV-M-" + seq % 5, "OV-F", "OV-L-" + seq % 3, seq, (int) (seq % 7)));
+        }
+        return batch;
+    }
+
+    private double retries() {
+        return registry.find("events.ingest.retries").counters().stream().mapToDouble(Counter::count).sum();
+    }
+
+    private long deadlocks() {
+        return jdbc.queryForObject("SELECT deadlocks FROM pg_stat_database WHERE datname = current_database()",
+                Long.class);
+    }
+}
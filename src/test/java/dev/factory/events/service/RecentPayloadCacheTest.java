@@ -0,0 +1,151 @@
+package dev.factory.events.service;
+
+import dev.factory.events.config.IngestionProperties;
+import dev.factory.events.domain.IngestCounts;
+import dev.factory.events.service.model.EventsChanged;
+import dev.factory.events.service.model.NormalizedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecentPayloadCacheTest {
+
+    private static final Instant T = Instant.parse("2026-01-15T10:00:00Z");
+
+    private IngestionProperties props;
+    private RecentPayloadCache cache;
+
+    @BeforeEach
+    void setUp() {
+        props = new IngestionProperties();
+        props.getPayloadCache().setEnabled(true);
+        cache = new RecentPayloadCache(props, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    // what the transaction manager does on commit or rollback
+    private static void complete(boolean committed) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(TransactionSynchronization::beforeCompletion);
+        if (committed) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach(s -> s.afterCompletion(committed
+                ? TransactionSynchronization.STATUS_COMMITTED
+                : TransactionSynchronization.STATUS_ROLLED_BACK));
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    private NormalizedEvent event(String eventId, long receivedOffset, int defects) {
+        return new NormalizedEvent(eventId, T, T.plusSeconds(receivedOffset), "M1", "F-1", "L-1", 1000, defects);
+    }
+
+    @Test
+    void identicalRetransmissionIsDeduped() {
+        cache.put(event("E-1", 0, 1));
+
+        RecentPayloadCache.Lookup lookup = cache.lookup(List.of(event("E-1", 30, 1), event("E-2", 30, 0)));
+
+        assertThat(lookup.counts()).isEqualTo(new IngestCounts(0, 0, 1));
+        assertThat(lookup.remaining()).extracting(NormalizedEvent::getEventId).containsExactly("E-2");
+        assertThat(cache.hitRatio()).isEqualTo(0.5);
+    }
+
+    @Test
+    void olderDifferentPayloadIsDroppedUncounted() {
+        cache.put(event("E-1", 10, 1));
+
+        RecentPayloadCache.Lookup lookup = cache.lookup(List.of(event("E-1", 5, 2)));
+
+        assertThat(lookup.counts()).isEqualTo(IngestCounts.NONE);
+        assertThat(lookup.remaining()).isEmpty();
+    }
+
+    @Test
+    void newerDifferentPayloadIsEvictedAndSentToTheDatabase() {
+        cache.put(event("E-1", 0, 1));
+        NormalizedEvent changed = event("E-1", 5, 2);
+
+        NormalizedEvent other = event("E-2", 5, 0);
+
+        RecentPayloadCache.Lookup lookup = cache.lookup(List.of(changed, other));
+        assertThat(lookup.remaining()).containsExactly(changed, other);
+
+        // until the write commits, an identical copy of the old version is not answered from cache
+        assertThat(cache.lookup(List.of(event("E-1", 6, 1))).remaining()).hasSize(1);
+
+        // the upsert replaced E-1 and deduped E-2
+        TransactionSynchronizationManager.initSynchronization();
+        cache.onChanged(new EventsChanged(List.of(event("E-1", 0, 1)), List.of(changed)));
+        complete(true);
+        assertThat(cache.lookup(List.of(event("E-1", 9, 2))).counts()).isEqualTo(new IngestCounts(0, 0, 1));
+        assertThat(cache.lookup(List.of(event("E-2", 9, 0))).remaining()).hasSize(1);
+    }
+
+    @Test
+    void onlyCommittedWritesAreCached() {
+        NormalizedEvent a = event("E-1", 0, 0);
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.onChanged(new EventsChanged(List.of(), List.of(a)));
+        assertThat(cache.size()).isZero();
+        complete(false);
+        assertThat(cache.size()).isZero();
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.onChanged(new EventsChanged(List.of(), List.of(a)));
+        complete(true);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void aWriteTheDatabaseDidNotStoreIsNotCached() {
+        cache.put(event("E-1", 0, 1));
+        // A sends a newer version and evicts E-1; B sends a later one
+        NormalizedEvent a = event("E-1", 5, 2);
+        NormalizedEvent b = event("E-1", 10, 3);
+        cache.lookup(List.of(a));
+        cache.lookup(List.of(b));
+
+        // B commits first and is stored; A then loses to it and is reported as nothing written
+        TransactionSynchronizationManager.initSynchronization();
+        cache.onChanged(new EventsChanged(List.of(event("E-1", 0, 1)), List.of(b)));
+        complete(true);
+
+        // a retransmission of A's payload, received later still, must reach the database
+        assertThat(cache.lookup(List.of(event("E-1", 20, 2))).remaining()).hasSize(1);
+    }
+
+    @Test
+    void neverMovesBackToAnOlderVersion() {
+        cache.put(event("E-1", 10, 2));
+        cache.put(event("E-1", 5, 1));
+
+        assertThat(cache.lookup(List.of(event("E-1", 20, 2))).counts()).isEqualTo(new IngestCounts(0, 0, 1));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedBeyondCapacity() {
+        props.getPayloadCache().setMaxEntries(64);
+        cache = new RecentPayloadCache(props, new SimpleMeterRegistry());
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put(event("E-" + i, 0, 0));
+        }
+        assertThat(cache.size()).isLessThanOrEqualTo(64);
+    }
+}
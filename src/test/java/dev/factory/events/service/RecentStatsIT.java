@@ -0,0 +1,191 @@
+package dev.factory.events.service;
+
+import dev.factory.events.AbstractIntegrationTest;
+import dev.factory.events.api.dto.DefectLineResponse;
+import dev.factory.events.api.dto.EventBatchRequest;
+import dev.factory.events.api.dto.EventIngestRequest;
+import dev.factory.events.api.dto.MachineStatsResponse;
+import dev.factory.events.domain.IngestCounts;
+import dev.factory.events.repository.EventIngestionJDBCRepository;
+import dev.factory.events.repository.EventRepository;
+import dev.factory.events.repository.MachineStatsProjection;
+import dev.factory.events.repository.TopDefectLineProjection;
+import dev.factory.events.service.model.NormalizedEvent;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+// the counters only see ingestion, so every test uses machines of its own
+@TestPropertySource(properties = "events.stats.recent.enabled=true")
+class RecentStatsIT extends AbstractIntegrationTest {
+
+    @Autowired
+    private RecentStats recentStats;
+
+    @Autowired
+    private MachineStatsService statsService;
+
+    @Autowired
+    private LineStatsService lineStatsService;
+
+    @Autowired
+    private EventIngestionJDBCRepository repo;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    @Qualifier("JPAIngestion")
+    private EventIngestionService jpaIngestion;
+
+    @Autowired
+    private TransactionTemplate tx;
+
+    private final Instant hourAgo = Instant.now().truncatedTo(ChronoUnit.MINUTES).minus(Duration.ofHours(1));
+
+    @BeforeAll
+    void awaitLoad() throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (!recentStats.covers(hourAgo, hourAgo.plus(Duration.ofHours(1)))) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    private static NormalizedEvent event(String eventId, Instant eventTime, Instant receivedTime, String machineId, int defects) {
+        return new NormalizedEvent(eventId, eventTime, receivedTime, machineId, "F1", "L1", 1000, defects);
+    }
+
+    private static NormalizedEvent lineEvent(String eventId, Instant eventTime, String factoryId, String lineId, int defects) {
+        return new NormalizedEvent(eventId, eventTime, Instant.now(), "RS-M", factoryId, lineId, 1000, defects);
+    }
+
+    private Instant hourAgoPlus(int seconds) {
+        return hourAgo.plusSeconds(seconds);
+    }
+
+    private void assertMatchesDatabase(String machineId, Instant start, Instant end) {
+        assertThat(recentStats.covers(start, end)).isTrue();
+        MachineStatsResponse fromMemory = statsService.getStats(machineId, start, end);
+        MachineStatsProjection fromDb = eventRepository.fetchStats(machineId, start, end);
+        assertThat(fromMemory.getEventsCount()).isEqualTo(fromDb.getEventsCount());
+        assertThat(fromMemory.getDefectsCount()).isEqualTo(fromDb.getDefectsCount());
+    }
+
+    @Test
+    void replacementsMoveCountsBetweenMachinesAndMinutes() {
+        Instant received = Instant.now();
+        repo.ingestBatch(List.of(
+                event("RS-1", hourAgoPlus(10), received, "RS-A", 2),
+                event("RS-2", hourAgoPlus(70), received, "RS-A", -1),
+                event("RS-3", hourAgoPlus(130), received, "RS-B", 4)));
+        repo.ingestBatchFromArrays(List.of(
+                event("RS-1", hourAgoPlus(200), received.plusSeconds(1), "RS-B", 3),
+                event("RS-2", hourAgoPlus(70), received.plusSeconds(1), "RS-A", 5),
+                event("RS-3", hourAgoPlus(130), received.plusSeconds(1), "RS-B", 4)));
+
+        for (String machine : List.of("RS-A", "RS-B")) {
+            assertMatchesDatabase(machine, hourAgo, hourAgo.plus(Duration.ofHours(1)));
+            assertMatchesDatabase(machine, hourAgoPlus(30), hourAgoPlus(150));
+            assertMatchesDatabase(machine, hourAgoPlus(65), hourAgoPlus(75));
+        }
+        assertThat(statsService.getStats("RS-A", hourAgo, hourAgoPlus(600)).getEventsCount()).isEqualTo(1);
+        assertThat(statsService.getStats("RS-B", hourAgo, hourAgoPlus(600)).getDefectsCount()).isEqualTo(7);
+    }
+
+    @Test
+    void insertOnlyPathIsCounted() {
+        Instant received = Instant.now();
+        IngestCounts[] split = repo.ingestSplit(
+                List.of(event("RS-10", hourAgoPlus(10), received, "RS-C", 1)),
+                List.of(event("RS-11", hourAgoPlus(20), received, "RS-C", 1)));
+        assertThat(split[0].accepted()).isEqualTo(1);
+
+        assertMatchesDatabase("RS-C", hourAgo, hourAgoPlus(120));
+        assertThat(statsService.getStats("RS-C", hourAgo, hourAgoPlus(120)).getEventsCount()).isEqualTo(2);
+    }
+
+    @Test
+    void jpaIngestionIsCounted() {
+        jpaIngestion.ingest(new EventBatchRequest(List.of(request("RS-20", hourAgoPlus(10), "RS-D", 1))));
+        jpaIngestion.ingest(new EventBatchRequest(List.of(request("RS-20", hourAgoPlus(100), "RS-E", 6))));
+
+        assertMatchesDatabase("RS-D", hourAgo, hourAgoPlus(600));
+        assertMatchesDatabase("RS-E", hourAgo, hourAgoPlus(600));
+        assertThat(statsService.getStats("RS-E", hourAgo, hourAgoPlus(600)).getDefectsCount()).isEqualTo(6);
+    }
+
+    @Test
+    void rolledBackWritesAreNotCounted() {
+        tx.executeWithoutResult(status -> {
+            repo.ingestBatchFromArrays(List.of(event("RS-30", hourAgoPlus(10), Instant.now(), "RS-F", 1)));
+            status.setRollbackOnly();
+        });
+
+        assertThat(statsService.getStats("RS-F", hourAgo, hourAgoPlus(600)).getEventsCount()).isZero();
+    }
+
+    private void assertTopLinesMatchDatabase(String factoryId, Instant start, Instant end, int limit) {
+        assertThat(recentStats.covers(start, end)).isTrue();
+        List<DefectLineResponse> fromMemory = lineStatsService.getTopDefectLines(factoryId, start, end, limit).getDefectLines();
+        List<TopDefectLineProjection> fromDb = eventRepository.findTopDefectLinesNative(factoryId, start, end, limit);
+        assertThat(fromMemory)
+                .extracting(DefectLineResponse::getLineId, DefectLineResponse::getTotalDefects, DefectLineResponse::getEventCount)
+                .containsExactlyElementsOf(fromDb.stream()
+                        .map(p -> tuple(p.getLineId(), p.getTotalDefects(), p.getEventCount()))
+                        .toList());
+    }
+
+    @Test
+    void topDefectLinesMatchTheDatabase() {
+        repo.ingestBatch(List.of(
+                lineEvent("RS-40", hourAgoPlus(10), "RS-F40", "L1", 2),
+                lineEvent("RS-41", hourAgoPlus(70), "RS-F40", "L2", 5),
+                lineEvent("RS-42", hourAgoPlus(75), "RS-F40", "L3", -1),
+                lineEvent("RS-43", hourAgoPlus(130), "RS-F40", "L3", 2),
+                lineEvent("RS-44", hourAgoPlus(190), "RS-F40", "L4", 2)));
+        // moves a defect-heavy event from L2 to L1
+        repo.ingestBatchFromArrays(List.of(
+                lineEvent("RS-41", hourAgoPlus(200), "RS-F40", "L1", 6)));
+
+        assertTopLinesMatchDatabase("RS-F40", hourAgo, hourAgo.plus(Duration.ofHours(1)), 10);
+        assertTopLinesMatchDatabase("RS-F40", hourAgo, hourAgo.plus(Duration.ofHours(1)), 2);
+        assertTopLinesMatchDatabase("RS-F40", hourAgoPlus(30), hourAgoPlus(150), 10);
+        assertTopLinesMatchDatabase("RS-F40", hourAgoPlus(65), hourAgoPlus(80), 10);
+        assertThat(lineStatsService.getTopDefectLines("RS-F40", hourAgo, hourAgoPlus(600), 1).getDefectLines())
+                .extracting(DefectLineResponse::getLineId, DefectLineResponse::getTotalDefects)
+                .containsExactly(tuple("L1", 8L));
+    }
+
+    @Test
+    void windowsReachingPastTheHorizonAreNotCovered() {
+        Instant now = Instant.now();
+
+        assertThat(recentStats.covers(now.minus(Duration.ofHours(25)), now)).isFalse();
+        assertThat(recentStats.covers(now.minus(Duration.ofHours(23)), now)).isTrue();
+        assertThat(recentStats.covers(now, now.plus(Duration.ofDays(1)))).isFalse();
+    }
+
+    private static EventIngestRequest request(String eventId, Instant eventTime, String machineId, int defects) {
+        EventIngestRequest e = new EventIngestRequest();
+        e.setEventId(eventId);
+        e.setEventTime(eventTime);
+        e.setMachineId(machineId);
+        e.setFactoryId("F1");
+        e.setLineId("L1");
+        e.setDurationMs(1000);
+        e.setDefectCount(defects);
+        return e;
+    }
+}
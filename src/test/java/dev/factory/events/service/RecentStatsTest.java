@@ -0,0 +1,124 @@
+package dev.factory.events.service;
+
+import dev.factory.events.config.StatsProperties;
+import dev.factory.events.repository.EventIngestionJDBCRepository;
+import dev.factory.events.repository.EventIngestionJDBCRepository.MinuteCountHandler;
+import dev.factory.events.service.model.EventsChanged;
+import dev.factory.events.service.model.NormalizedEvent;
+import dev.factory.events.util.ClockProvider;
+import dev.factory.events.util.MinuteRing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RecentStatsTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-15T10:00:00Z");
+    private static final Instant HOUR_AGO = NOW.minus(Duration.ofHours(1));
+    private static final long HOUR_AGO_MINUTE = HOUR_AGO.getEpochSecond() / 60;
+
+    private RecentStats stats;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        EventIngestionJDBCRepository repo = mock(EventIngestionJDBCRepository.class);
+        ClockProvider clock = mock(ClockProvider.class);
+        when(clock.now()).thenReturn(NOW);
+
+        // already stored: L1 has 3 defects in its first minute, L2 one defect
+        doAnswer(inv -> {
+            Consumer<Runnable> snapshot = inv.getArgument(2);
+            snapshot.accept(() -> { });
+            MinuteCountHandler handler = inv.getArgument(3);
+            handler.accept("M1", "F1", "L1", HOUR_AGO_MINUTE, 2, 3);
+            handler.accept("M2", "F1", "L2", HOUR_AGO_MINUTE + 1, 1, 1);
+            return null;
+        }).when(repo).forEachMinuteCount(any(), anyInt(), any(), any());
+
+        StatsProperties props = new StatsProperties();
+        props.getRecent().setEnabled(true);
+        stats = new RecentStats(repo, clock, props, new SimpleMeterRegistry());
+        stats.start();
+        for (int i = 0; i < 200 && !stats.covers(HOUR_AGO, NOW); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(stats.covers(HOUR_AGO, NOW)).isTrue();
+    }
+
+    private static NormalizedEvent event(String eventId, int minutes, String machineId, String lineId, int defects) {
+        return new NormalizedEvent(eventId, HOUR_AGO.plus(Duration.ofMinutes(minutes)), NOW, machineId, "F1", lineId, 1000, defects);
+    }
+
+    @Test
+    void loadedCountsAreServed() {
+        assertThat(stats.machineCounts("M1", HOUR_AGO, NOW)).isEqualTo(new MinuteRing.Counts(2, 3));
+        assertThat(stats.topDefectLines("F1", HOUR_AGO, NOW, Map.of(), 5))
+                .extracting(RecentStats.LineCounts::lineId, RecentStats.LineCounts::defects, RecentStats.LineCounts::events)
+                .containsExactly(tuple("L1", 3L, 2L), tuple("L2", 1L, 1L));
+        assertThat(stats.lineIds("F1")).containsExactlyInAnyOrder("L1", "L2");
+        assertThat(stats.lineIds("F2")).isEmpty();
+    }
+
+    @Test
+    void replacementMovesCountsToTheNewLineAndMinute() {
+        stats.onChanged(new EventsChanged(
+                List.of(event("E-1", 0, "M1", "L1", 3)),
+                List.of(event("E-1", 30, "M2", "L3", 5))));
+
+        assertThat(stats.machineCounts("M1", HOUR_AGO, NOW)).isEqualTo(new MinuteRing.Counts(1, 0));
+        assertThat(stats.machineCounts("M2", HOUR_AGO.plus(Duration.ofMinutes(30)), NOW)).isEqualTo(new MinuteRing.Counts(1, 5));
+        assertThat(stats.topDefectLines("F1", HOUR_AGO, NOW, Map.of(), 5))
+                .extracting(RecentStats.LineCounts::lineId)
+                .containsExactly("L3", "L2", "L1");
+    }
+
+    @Test
+    void topLinesKeepsTheLimitWithTiesBrokenByLineId() {
+        stats.onChanged(new EventsChanged(List.of(), List.of(
+                event("E-1", 5, "M1", "L4", 3),
+                event("E-2", 5, "M1", "L0", 3))));
+
+        assertThat(stats.topDefectLines("F1", HOUR_AGO, NOW, Map.of(), 2))
+                .extracting(RecentStats.LineCounts::lineId)
+                .containsExactly("L0", "L1");
+        assertThat(stats.topDefectLines("F1", HOUR_AGO, NOW, Map.of(), 0)).isEmpty();
+    }
+
+    @Test
+    void extraCountsAreAddedAndLinesWithoutEventsAreLeftOut() {
+        stats.onChanged(new EventsChanged(List.of(event("E-9", 1, "M2", "L2", 1)), List.of()));
+
+        assertThat(stats.topDefectLines("F1", HOUR_AGO, NOW, Map.of("L5", new MinuteRing.Counts(1, 7)), 5))
+                .extracting(RecentStats.LineCounts::lineId, RecentStats.LineCounts::defects)
+                .containsExactly(tuple("L5", 7L), tuple("L1", 3L));
+    }
+
+    @Test
+    void windowsBeyondTheHorizonAreNotCovered() {
+        assertThat(stats.covers(NOW.minus(Duration.ofHours(25)), NOW)).isFalse();
+        assertThat(stats.covers(NOW.minus(Duration.ofHours(24)), NOW)).isTrue();
+        assertThat(stats.covers(NOW, NOW.plus(Duration.ofHours(1)))).isFalse();
+    }
+
+    @Test
+    void changesOlderThanTheHorizonAreIgnored() {
+        NormalizedEvent old = new NormalizedEvent("E-1", NOW.minus(Duration.ofDays(2)), NOW, "M9", "F1", "L1", 1000, 1);
+        stats.onChanged(new EventsChanged(List.of(), List.of(old)));
+
+        assertThat(stats.machineCounts("M9", HOUR_AGO, NOW)).isEqualTo(MinuteRing.Counts.ZERO);
+    }
+}
@@ -0,0 +1,118 @@
+package dev.factory.events.service;
+
+import dev.factory.events.AbstractIntegrationTest;
+import dev.factory.events.config.IngestionProperties;
+import dev.factory.events.config.IngestionProperties.Atomicity;
+import dev.factory.events.domain.EventEntity;
+import dev.factory.events.domain.IngestCounts;
+import dev.factory.events.repository.EventRepository;
+import dev.factory.events.service.model.NormalizedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@TestPropertySource(properties = {
+        "events.ingestion.sharding.shards=4",
+        "events.ingestion.sharding.min-events=100"
+})
+class ShardedUpserterIT extends AbstractIntegrationTest {
+
+    @Autowired
+    private DbBackedNativeIngestionService ingestion;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private IngestionProperties props;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private final Instant hourAgo = Instant.now().truncatedTo(ChronoUnit.SECONDS).minusSeconds(3600);
+
+    @BeforeEach
+    void clean() {
+        eventRepository.deleteAll();
+    }
+
+    @AfterEach
+    void restore() {
+        props.getSharding().setAtomicity(Atomicity.PER_SHARD);
+        props.getSharding().setLockTimeout(Duration.ofSeconds(2));
+    }
+
+    // over four hours, and with dimension ids every sub-batch shares
+    private List<NormalizedEvent> batch(int count, Instant receivedTime, int defects) {
+        return batch(count, receivedTime, defects, 0);
+    }
+
+    private List<NormalizedEvent> batch(int count, Instant receivedTime, int defects, int hourShift) {
+        return IntStream.rangeClosed(1, count)
+                .mapToObj(i -> new NormalizedEvent("E-" + i, hourAgo.minus(Duration.ofHours(i % 4 + hourShift)),
+                        receivedTime, "SH-M-" + i % 7, "SH-F", "SH-L-" + i % 3, 1000, defects))
+                .toList();
+    }
+
+    @ParameterizedTest
+    @EnumSource(Atomicity.class)
+    void largeBatchIsWrittenAcrossShardsAndCountedOnce(Atomicity atomicity) {
+        props.getSharding().setAtomicity(atomicity);
+
+        IngestCounts first = ingestion.upsert(batch(1000, hourAgo, 0));
+        IngestCounts resent = ingestion.upsert(batch(1000, hourAgo, 0));
+        List<NormalizedEvent> changed = new ArrayList<>(batch(1000, hourAgo.plusSeconds(1), 1).subList(0, 300));
+        changed.addAll(batch(1000, hourAgo, 0).subList(300, 1000));
+        IngestCounts updated = ingestion.upsert(changed);
+
+        assertThat(first).isEqualTo(new IngestCounts(1000, 0, 0));
+        assertThat(resent).isEqualTo(new IngestCounts(0, 0, 1000));
+        assertThat(updated).isEqualTo(new IngestCounts(0, 300, 700));
+        assertThat(eventRepository.count()).isEqualTo(1000);
+        assertThat(eventRepository.findAllByEventIdIn(List.of("E-1", "E-300", "E-301")))
+                .extracting(EventEntity::getEventId, EventEntity::getDefectCount)
+                .containsExactlyInAnyOrder(
+                        tuple("E-1", 1),
+                        tuple("E-300", 1),
+                        tuple("E-301", 0));
+        assertThat(hourlyEventCount()).isEqualTo(1000);
+    }
+
+    @Test
+    void allOrNothingFallsBackToOneConnectionWhenSubBatchesWaitForEachOther() {
+        props.getSharding().setAtomicity(Atomicity.ALL_OR_NOTHING);
+        props.getSharding().setLockTimeout(Duration.ofMillis(200));
+        ingestion.upsert(batch(1000, hourAgo, 0));
+
+        // each update takes its event out of the rollup rows of another sub-batch's hour
+        IngestCounts moved = ingestion.upsert(batch(1000, hourAgo.plusSeconds(1), 1, 1));
+
+        assertThat(moved).isEqualTo(new IngestCounts(0, 1000, 0));
+        assertThat(eventRepository.count()).isEqualTo(1000);
+        assertThat(hourlyEventCount()).isEqualTo(1000);
+    }
+
+    private long hourlyEventCount() {
+        return jdbc.queryForObject("""
+                SELECT coalesce(sum(h.events_count), 0)
+                FROM machine_stats_hourly h
+                JOIN machines m ON m.id = h.machine_key
+                WHERE m.machine_id LIKE 'SH-M-%'
+                """, Long.class);
+    }
+}
@@ -0,0 +1,251 @@
+package dev.factory.events.service;
+
+import dev.factory.events.config.IngestionProperties;
+import dev.factory.events.config.IngestionProperties.Atomicity;
+import dev.factory.events.domain.IngestCounts;
+import dev.factory.events.repository.EventIngestionJDBCRepository;
+import dev.factory.events.service.model.NormalizedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ShardedUpserterTest {
+
+    private EventIngestionJDBCRepository repo;
+    private JdbcTemplate jdbc;
+    private PlatformTransactionManager transactionManager;
+    private IngestionProperties props;
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(EventIngestionJDBCRepository.class);
+        jdbc = mock(JdbcTemplate.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(inv -> new SimpleTransactionStatus());
+        props = new IngestionProperties();
+        props.getSharding().setShards(4);
+        props.getSharding().setMinEvents(10);
+    }
+
+    private ShardedUpserter upserter() {
+        return new ShardedUpserter(repo, jdbc, transactionManager, props);
+    }
+
+    // one event per minute, so 100 events span two hours
+    private static List<NormalizedEvent> events(int count) {
+        Instant t = Instant.parse("2026-01-15T08:00:00Z");
+        return IntStream.rangeClosed(1, count)
+                .mapToObj(i -> new NormalizedEvent("E-" + i, t.plusSeconds(60L * (i - 1)), t, "M-1", "F-1", "L-1", 1000, 0))
+                .toList();
+    }
+
+    @Test
+    void appliesOnlyToLargeBatchesWithMoreThanOneShard() {
+        assertThat(upserter().applies(events(9))).isFalse();
+        assertThat(upserter().applies(events(10))).isTrue();
+
+        props.getSharding().setShards(1);
+        assertThat(upserter().applies(events(1000))).isFalse();
+    }
+
+    @Test
+    void partitionsAreDisjointAndKeepEveryEvent() {
+        List<NormalizedEvent> batch = events(1000);
+
+        List<List<NormalizedEvent>> shards = ShardedUpserter.partition(batch, 4, ShardedUpserter::eventIdHash);
+
+        assertThat(shards).hasSize(4).allSatisfy(shard -> assertThat(shard).hasSizeBetween(200, 300));
+        assertThat(shards.stream().flatMap(List::stream)).containsExactlyInAnyOrderElementsOf(batch);
+        assertThat(ShardedUpserter.partition(batch, 4, ShardedUpserter::eventIdHash)).isEqualTo(shards);
+    }
+
+    @Test
+    void hourPartitionsKeepEachHourTogether() {
+        // 1000 minutes are 16 full hours and 40 minutes; one part gets five of them
+        List<List<NormalizedEvent>> shards = ShardedUpserter.partition(events(1000), 4, ShardedUpserter::utcHour);
+
+        assertThat(shards).extracting(List::size).containsExactlyInAnyOrder(280, 240, 240, 240);
+        assertThat(shards).allSatisfy(shard -> assertThat(shard)
+                .extracting(ShardedUpserter::utcHour)
+                .allMatch(hour -> Math.floorMod(hour - ShardedUpserter.utcHour(shard.getFirst()), 4) == 0));
+    }
+
+    @Test
+    void batchOfOnePartIsWrittenDirectly() {
+        props.getSharding().setAtomicity(Atomicity.ALL_OR_NOTHING);
+        List<NormalizedEvent> batch = events(50);
+        List<List<NormalizedEvent>> written = new CopyOnWriteArrayList<>();
+
+        upserter().ingest(batch, shard -> {
+            written.add(shard);
+            return IngestCounts.NONE;
+        });
+
+        assertThat(written).containsExactly(batch);
+        verifyNoInteractions(repo, transactionManager);
+    }
+
+    @Test
+    void subBatchesRunConcurrentlyAndTheirCountsAreMerged() {
+        CountDownLatch allStarted = new CountDownLatch(4);
+        List<List<NormalizedEvent>> written = new CopyOnWriteArrayList<>();
+
+        IngestCounts counts = upserter().ingest(events(100), shard -> {
+            allStarted.countDown();
+            await(allStarted);
+            written.add(shard);
+            return new IngestCounts(shard.size(), 0, 1);
+        });
+
+        assertThat(counts).isEqualTo(new IngestCounts(100, 0, 4));
+        assertThat(written).hasSize(4);
+        verify(repo).addDimensionKeys(events(100));
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    void shardsAreCappedByMaxConnections() {
+        props.getSharding().setShards(16);
+        props.getSharding().setMaxConnections(3);
+        List<Integer> sizes = new CopyOnWriteArrayList<>();
+
+        upserter().ingest(events(100), shard -> {
+            sizes.add(shard.size());
+            return IngestCounts.NONE;
+        });
+
+        assertThat(sizes).hasSize(3);
+    }
+
+    @Test
+    void allOrNothingPartitionsByHour() {
+        props.getSharding().setAtomicity(Atomicity.ALL_OR_NOTHING);
+        List<List<NormalizedEvent>> written = new CopyOnWriteArrayList<>();
+
+        IngestCounts counts = upserter().ingest(events(100), shard -> {
+            written.add(shard);
+            return new IngestCounts(shard.size(), 0, 0);
+        });
+
+        assertThat(counts.accepted()).isEqualTo(100);
+        assertThat(written).extracting(List::size).containsExactlyInAnyOrder(60, 40);
+        verify(jdbc, times(2)).queryForObject(anyString(), eq(String.class), eq("2000ms"));
+    }
+
+    @Test
+    void allOrNothingLockFailureRollsBackAndWritesOnOneConnection() {
+        props.getSharding().setAtomicity(Atomicity.ALL_OR_NOTHING);
+        List<NormalizedEvent> batch = events(100);
+        List<TransactionStatus> committed = recordCommits();
+        List<List<NormalizedEvent>> written = new CopyOnWriteArrayList<>();
+
+        IngestCounts counts = upserter().ingest(batch, shard -> {
+            if (shard.size() < batch.size() && shard.contains(batch.getFirst())) {
+                throw new CannotAcquireLockException("lock timeout");
+            }
+            written.add(shard);
+            return new IngestCounts(shard.size(), 0, 0);
+        });
+
+        assertThat(counts.accepted()).isEqualTo(100);
+        assertThat(written).last().isEqualTo(batch);
+        verify(transactionManager, times(1)).rollback(any());
+        assertThat(committed).hasSize(1).allMatch(TransactionStatus::isRollbackOnly);
+    }
+
+    @Test
+    void perShardFailureLeavesTheOtherSubBatchesWritten() {
+        List<NormalizedEvent> batch = events(100);
+        NormalizedEvent poison = batch.getFirst();
+        Set<NormalizedEvent> written = new HashSet<>();
+
+        assertThatThrownBy(() -> upserter().ingest(batch, failingOn(poison, written)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("shard failed");
+
+        assertThat(written).hasSizeBetween(50, 90).doesNotContain(poison);
+    }
+
+    @Test
+    void allOrNothingCommitsEverySubBatchTogether() {
+        props.getSharding().setAtomicity(Atomicity.ALL_OR_NOTHING);
+        List<TransactionStatus> committed = recordCommits();
+        AtomicInteger committedWhileWriting = new AtomicInteger();
+
+        IngestCounts counts = upserter().ingest(events(100), shard -> {
+            committedWhileWriting.accumulateAndGet(committed.size(), Math::max);
+            return new IngestCounts(shard.size(), 0, 0);
+        });
+
+        assertThat(counts.accepted()).isEqualTo(100);
+        assertThat(committedWhileWriting).hasValue(0);
+        assertThat(committed).hasSize(2).noneMatch(TransactionStatus::isRollbackOnly);
+        verify(transactionManager, never()).rollback(any());
+    }
+
+    @Test
+    void allOrNothingRollsBackEverySubBatchWhenOneFails() {
+        props.getSharding().setAtomicity(Atomicity.ALL_OR_NOTHING);
+        List<TransactionStatus> committed = recordCommits();
+        List<NormalizedEvent> batch = events(100);
+
+        assertThatThrownBy(() -> upserter().ingest(batch, failingOn(batch.getFirst(), new HashSet<>())))
+                .hasMessage("shard failed");
+
+        // the failed sub-batch is rolled back, the others are marked rollback-only before they finish
+        verify(transactionManager, times(1)).rollback(any());
+        assertThat(committed).hasSize(1).allMatch(TransactionStatus::isRollbackOnly);
+    }
+
+    private List<TransactionStatus> recordCommits() {
+        List<TransactionStatus> committed = new CopyOnWriteArrayList<>();
+        doAnswer(inv -> {
+            committed.add(inv.getArgument(0));
+            return null;
+        }).when(transactionManager).commit(any());
+        return committed;
+    }
+
+    private static Function<List<NormalizedEvent>, IngestCounts> failingOn(NormalizedEvent poison,
+                                                                          Set<NormalizedEvent> written) {
+        return shard -> {
+            if (shard.contains(poison)) {
+                throw new IllegalStateException("shard failed");
+            }
+            synchronized (written) {
+                written.addAll(shard);
+            }
+            return new IngestCounts(shard.size(), 0, 0);
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
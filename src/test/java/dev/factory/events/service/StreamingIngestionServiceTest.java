@@ -0,0 +1,125 @@
+package dev.factory.events.service;
+
+import dev.factory.events.api.EventBatchValidator;
+import dev.factory.events.api.dto.*;
+import dev.factory.events.config.IngestionProperties;
+import dev.factory.events.util.IngestMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.mockito.ArgumentCaptor;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class StreamingIngestionServiceTest {
+
+    private EventIngestionService ingestionService;
+    private IngestionProperties props;
+    private StreamingIngestionService service;
+
+    @BeforeEach
+    void setUp() {
+        ingestionService = mock(EventIngestionService.class);
+        when(ingestionService.ingest(any())).thenAnswer(inv -> {
+            EventBatchRequest req = inv.getArgument(0);
+            return new EventBatchResponse(req.getEvents().size(), 0, 0, 0, List.of());
+        });
+        props = new IngestionProperties();
+        props.getStream().setChunkSize(2);
+        service = newService();
+    }
+
+    private StreamingIngestionService newService() {
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+        return new StreamingIngestionService(ingestionService, validator, new EventBatchValidator(),
+                JsonMapper.builder().build(), props, new IngestMetrics(new SimpleMeterRegistry()));
+    }
+
+    private String line(String eventId) {
+        return """
+                {"eventId":"%s","eventTime":"2026-01-15T09:59:00Z","receivedTime":"2026-01-15T09:59:00Z",\
+                "machineId":"M-1","factoryId":"F-1","lineId":"L-1","durationMs":1000,"defectCount":0}
+                """.formatted(eventId);
+    }
+
+    private EventBatchResponse ingest(String body) throws IOException {
+        return service.ingest(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void flushesFixedSizeChunksAndAggregates() throws IOException {
+        EventBatchResponse res = ingest(line("E-1") + line("E-2") + line("E-3") + line("E-4") + line("E-5"));
+
+        assertThat(res.getAccepted()).isEqualTo(5);
+        assertThat(res.getRejected()).isZero();
+
+        ArgumentCaptor<EventBatchRequest> captor = ArgumentCaptor.forClass(EventBatchRequest.class);
+        verify(ingestionService, times(3)).ingest(captor.capture());
+        assertThat(captor.getAllValues()).extracting(r -> r.getEvents().size()).containsExactly(2, 2, 1);
+    }
+
+    @ParameterizedTest
+    @EnumSource(IngestionProperties.Validation.class)
+    void malformedAndInvalidLinesAreRejectedIndividually(IngestionProperties.Validation validation) throws IOException {
+        props.setValidation(validation);
+        service = newService();
+        String body = line("E-1")
+                + "{not json\n"
+                + "\n"
+                + line("X-2")
+                + line("E-3");
+
+        EventBatchResponse res = ingest(body);
+
+        assertThat(res.getAccepted()).isEqualTo(2);
+        assertThat(res.getRejected()).isEqualTo(2);
+        assertThat(res.getRejections())
+                .extracting(EventRejection::getEventId, EventRejection::getReason)
+                .containsExactly(
+                        org.assertj.core.groups.Tuple.tuple(null, RejectionReason.MALFORMED_REQUEST),
+                        org.assertj.core.groups.Tuple.tuple("X-2", RejectionReason.MALFORMED_REQUEST));
+    }
+
+    @Test
+    void oversizedLinesAreSkippedWithoutBuffering() throws IOException {
+        props.getStream().setMaxLineLength(500);
+
+        EventBatchResponse res = ingest(line("E-1") + "x".repeat(10_000) + "\n" + line("E-2").strip());
+
+        assertThat(res.getRejected()).isEqualTo(1);
+        assertThat(res.getAccepted()).isEqualTo(2);
+    }
+
+    @Test
+    void chunkRejectionsAreMergedAndListIsCapped() throws IOException {
+        props.getStream().setMaxRejections(1);
+        doReturn(new EventBatchResponse(0, 0, 0, 1,
+                List.of(new EventRejection("E-1", RejectionReason.INVALID_DURATION))))
+                .when(ingestionService).ingest(any());
+
+        EventBatchResponse res = ingest(line("E-1") + "garbage\n");
+
+        assertThat(res.getRejected()).isEqualTo(2);
+        assertThat(res.getRejections()).hasSize(1);
+    }
+
+    @Test
+    void crlfLineEndingsAreAccepted() throws IOException {
+        EventBatchResponse res = ingest(line("E-1").replace("\n", "\r\n") + line("E-2").replace("\n", "\r\n"));
+
+        assertThat(res.getAccepted()).isEqualTo(2);
+        assertThat(res.getRejected()).isZero();
+    }
+}
@@ -0,0 +1,52 @@
+package dev.factory.events.service;
+
+import dev.factory.events.service.model.NormalizedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WalDrainerTest {
+
+    private static final Instant T = Instant.parse("2026-01-15T10:00:00Z");
+
+    private NormalizedEvent event(String eventId, long receivedOffset, int defects) {
+        return new NormalizedEvent(eventId, T, T.plusSeconds(receivedOffset), "M1", "F-1", "L-1", 1000, defects);
+    }
+
+    @Test
+    void laterChangedPayloadReplacesEarlierOne() {
+        NormalizedEvent first = event("E-1", 0, 1);
+        NormalizedEvent other = event("E-2", 0, 0);
+        NormalizedEvent changed = event("E-1", 5, 2);
+
+        assertThat(WalDrainer.latestPerEventId(List.of(first, other, changed)))
+                .containsExactly(changed, other);
+    }
+
+    @Test
+    void repeatedPayloadKeepsFirstReceived() {
+        NormalizedEvent first = event("E-1", 0, 1);
+        NormalizedEvent repeat = event("E-1", 5, 1);
+
+        assertThat(WalDrainer.latestPerEventId(List.of(first, repeat))).containsExactly(first);
+    }
+
+    @Test
+    void differentPayloadReceivedAtTheSameInstantKeepsFirst() {
+        NormalizedEvent first = event("E-1", 5, 1);
+        NormalizedEvent sameInstant = event("E-1", 5, 2);
+
+        assertThat(WalDrainer.latestPerEventId(List.of(first, sameInstant))).containsExactly(first);
+    }
+
+    @Test
+    void earlierReceivedVersionDoesNotReplaceNewer() {
+        NormalizedEvent newer = event("E-1", 5, 2);
+        NormalizedEvent older = event("E-1", 0, 1);
+
+        assertThat(WalDrainer.latestPerEventId(List.of(newer, older))).containsExactly(newer);
+    }
+}
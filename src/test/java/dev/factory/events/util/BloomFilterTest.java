@@ -0,0 +1,51 @@
+package dev.factory.events.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BloomFilterTest {
+
+    @Test
+    void neverReportsAnAddedValueAsAbsent() {
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+        IntStream.range(0, 10_000).forEach(i -> filter.put("E-" + i));
+
+        assertThat(IntStream.range(0, 10_000).allMatch(i -> filter.mightContain("E-" + i))).isTrue();
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTargetAtCapacity() {
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+        IntStream.range(0, 10_000).forEach(i -> filter.put("E-" + i));
+
+        long falsePositives = IntStream.range(0, 100_000)
+                .filter(i -> filter.mightContain("other-" + i))
+                .count();
+
+        assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+        assertThat(filter.expectedFalsePositiveRate()).isBetween(0.005, 0.02);
+        assertThat(filter.approximateElementCount()).isBetween(9_500L, 10_500L);
+    }
+
+    @Test
+    void putReportsWhetherTheValueWasNew() {
+        BloomFilter filter = BloomFilter.create(1_000, 0.01);
+
+        assertThat(filter.put("E-1")).isTrue();
+        assertThat(filter.put("E-1")).isFalse();
+    }
+
+    @Test
+    void sizesBitArrayFromCapacityAndRate() {
+        BloomFilter filter = BloomFilter.create(1_000_000, 0.01);
+
+        // about 9.6 bits and 7 hashes per entry at 1%
+        assertThat(filter.memoryBytes()).isBetween(1_150_000L, 1_250_000L);
+        assertThat(filter.hashCount()).isEqualTo(7);
+        assertThatThrownBy(() -> BloomFilter.create(0, 0.01)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
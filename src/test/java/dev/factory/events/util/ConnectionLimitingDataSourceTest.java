@@ -0,0 +1,165 @@
+package dev.factory.events.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class ConnectionLimitingDataSourceTest {
+
+    private DataSource pool;
+    private List<Connection> handedOut;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = mock(DataSource.class);
+        handedOut = new ArrayList<>();
+        when(pool.getConnection()).thenAnswer(inv -> {
+            Connection c = mock(Connection.class);
+            synchronized (handedOut) {
+                handedOut.add(c);
+            }
+            return c;
+        });
+    }
+
+    @Test
+    void closingReturnsThePermitOnce() throws SQLException {
+        ConnectionLimitingDataSource limited = new ConnectionLimitingDataSource(pool, 2, 10, Duration.ofSeconds(1));
+
+        Connection c = limited.getConnection();
+        assertThat(limited.getAvailable()).isEqualTo(1);
+        c.close();
+        c.close();
+
+        assertThat(limited.getAvailable()).isEqualTo(2);
+        verify(handedOut.getFirst(), times(2)).close();
+    }
+
+    @Test
+    void callsAreForwardedToThePoolConnection() throws SQLException {
+        ConnectionLimitingDataSource limited = new ConnectionLimitingDataSource(pool, 1, 10, Duration.ofSeconds(1));
+        PGConnection pg = mock(PGConnection.class);
+
+        try (Connection c = limited.getConnection()) {
+            when(handedOut.getFirst().unwrap(PGConnection.class)).thenReturn(pg);
+            when(handedOut.getFirst().getAutoCommit()).thenThrow(new SQLException("broken"));
+
+            assertThat(c.unwrap(PGConnection.class)).isSameAs(pg);
+            assertThatThrownBy(c::getAutoCommit).isInstanceOf(SQLException.class).hasMessage("broken");
+            assertThat(c).isEqualTo(c).isNotEqualTo(handedOut.getFirst());
+        }
+    }
+
+    @Test
+    void waitingCallerTimesOut() throws SQLException {
+        ConnectionLimitingDataSource limited = new ConnectionLimitingDataSource(pool, 1, 10, Duration.ofMillis(50));
+        Connection held = limited.getConnection();
+
+        assertThatThrownBy(limited::getConnection)
+                .isInstanceOf(SQLTransientConnectionException.class)
+                .hasMessageContaining("after 50 ms");
+        assertThat(limited.getWaiting()).isZero();
+        verify(pool, times(1)).getConnection();
+        held.close();
+    }
+
+    @Test
+    void releasedPermitGoesToAWaitingCaller() throws Exception {
+        ConnectionLimitingDataSource limited = new ConnectionLimitingDataSource(pool, 1, 10, Duration.ofSeconds(5));
+        Connection held = limited.getConnection();
+
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Connection> waiter = threads.submit(() -> limited.getConnection());
+            while (limited.getWaiting() == 0) {
+                Thread.onSpinWait();
+            }
+            held.close();
+
+            assertThat(waiter.get(5, TimeUnit.SECONDS)).isNotNull();
+            assertThat(limited.getAvailable()).isZero();
+        }
+    }
+
+    @Test
+    void callersBeyondMaxWaitingFailAtOnce() throws Exception {
+        ConnectionLimitingDataSource limited = new ConnectionLimitingDataSource(pool, 1, 2, Duration.ofSeconds(5));
+        Connection held = limited.getConnection();
+
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Connection>> waiters = List.of(
+                    threads.submit(() -> limited.getConnection()),
+                    threads.submit(() -> limited.getConnection()));
+            while (limited.getWaiting() < 2) {
+                Thread.onSpinWait();
+            }
+
+            assertThatThrownBy(limited::getConnection)
+                    .isInstanceOf(SQLTransientConnectionException.class)
+                    .hasMessageContaining("max-waiting 2");
+
+            held.close();
+            for (Future<Connection> waiter : waiters) {
+                waiter.get(5, TimeUnit.SECONDS).close();
+            }
+        }
+        assertThat(limited.getAvailable()).isEqualTo(1);
+    }
+
+    @Test
+    void poolFailureReturnsThePermit() throws SQLException {
+        when(pool.getConnection()).thenThrow(new SQLTransientConnectionException("pool timeout"));
+        ConnectionLimitingDataSource limited = new ConnectionLimitingDataSource(pool, 1, 10, Duration.ofSeconds(1));
+
+        assertThatThrownBy(limited::getConnection).hasMessage("pool timeout");
+        assertThat(limited.getAvailable()).isEqualTo(1);
+    }
+
+    @Test
+    void neverHandsOutMoreThanMaxConcurrent() throws Exception {
+        ConnectionLimitingDataSource limited = new ConnectionLimitingDataSource(pool, 4, 1000, Duration.ofSeconds(30));
+        AtomicInteger inUse = new AtomicInteger();
+        AtomicInteger maxInUse = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> callers = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                callers.add(threads.submit(() -> {
+                    start.await();
+                    try (Connection ignored = limited.getConnection()) {
+                        maxInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+                        Thread.sleep(1);
+                        inUse.decrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> caller : callers) {
+                caller.get(30, TimeUnit.SECONDS);
+            }
+        }
+
+        assertThat(maxInUse.get()).isBetween(1, 4);
+        assertThat(limited.getAvailable()).isEqualTo(4);
+        assertThat(handedOut).hasSize(500);
+    }
+}
@@ -0,0 +1,97 @@
+package dev.factory.events.util;
+
+import dev.factory.events.api.dto.EventRejection;
+import dev.factory.events.api.dto.RejectionReason;
+import dev.factory.events.util.IngestMetrics.Stage;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngestMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private IngestMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new IngestMetrics(registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private Timer stage(String stage) {
+        return registry.get("events.ingest.stage").tag("stage", stage).timer();
+    }
+
+    // what the transaction manager does on commit or rollback
+    private static void complete(boolean committed) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(TransactionSynchronization::beforeCompletion);
+        if (committed) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach(s -> s.afterCompletion(committed
+                ? TransactionSynchronization.STATUS_COMMITTED
+                : TransactionSynchronization.STATUS_ROLLED_BACK));
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void commitIsTimedOncePerTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        metrics.timeCommit();
+        metrics.timeCommit();
+        complete(true);
+
+        TransactionSynchronizationManager.initSynchronization();
+        metrics.timeCommit();
+        complete(true);
+
+        assertThat(stage("commit").count()).isEqualTo(2);
+    }
+
+    @Test
+    void rollbackIsNotTimedAsACommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        metrics.timeCommit();
+        complete(false);
+
+        assertThat(stage("commit").count()).isZero();
+        assertThat(TransactionSynchronizationManager.hasResource(metrics)).isFalse();
+    }
+
+    @Test
+    void commitOutsideATransactionIsIgnored() {
+        metrics.timeCommit();
+
+        assertThat(stage("commit").count()).isZero();
+    }
+
+    @Test
+    void everyStageAndRejectionReasonIsRegisteredUpFront() {
+        metrics.time(Stage.UPSERT, () -> { });
+        metrics.rejected(List.of(
+                new EventRejection("E-1", RejectionReason.INVALID_DURATION),
+                new EventRejection("E-2", RejectionReason.INVALID_DURATION)));
+
+        assertThat(registry.find("events.ingest.stage").timers()).hasSize(Stage.values().length);
+        assertThat(registry.find("events.ingest.rejected").counters()).hasSize(RejectionReason.values().length);
+        assertThat(stage("upsert").count()).isEqualTo(1);
+        assertThat(registry.get("events.ingest.rejected").tag("reason", "INVALID_DURATION").counter().count())
+                .isEqualTo(2);
+    }
+}
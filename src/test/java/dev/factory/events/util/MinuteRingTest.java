@@ -0,0 +1,117 @@
+package dev.factory.events.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MinuteRingTest {
+
+    @Test
+    void sumsTheMinutesOfTheRange() {
+        MinuteRing ring = new MinuteRing(60);
+        ring.add(100, 2, 1);
+        ring.add(101, 3, 0);
+        ring.add(105, 1, 4);
+
+        assertThat(ring.sum(100, 105)).isEqualTo(new MinuteRing.Counts(5, 1));
+        assertThat(ring.sum(101, 106)).isEqualTo(new MinuteRing.Counts(4, 4));
+        assertThat(ring.sum(102, 105)).isEqualTo(MinuteRing.Counts.ZERO);
+    }
+
+    @Test
+    void removalsCancelAdditions() {
+        MinuteRing ring = new MinuteRing(60);
+        ring.add(100, 1, 3);
+        ring.add(100, -1, -3);
+        ring.add(101, 1, 2);
+
+        assertThat(ring.sum(100, 102)).isEqualTo(new MinuteRing.Counts(1, 2));
+    }
+
+    @Test
+    void laterMinuteTakesOverTheSlot() {
+        MinuteRing ring = new MinuteRing(10);
+        ring.add(100, 5, 5);
+        ring.add(110, 1, 0);
+
+        assertThat(ring.sum(100, 101)).isEqualTo(MinuteRing.Counts.ZERO);
+        assertThat(ring.sum(110, 111)).isEqualTo(new MinuteRing.Counts(1, 0));
+    }
+
+    @Test
+    void writesForMinutesThatLeftTheRingAreDropped() {
+        MinuteRing ring = new MinuteRing(10);
+        ring.add(110, 1, 0);
+        ring.add(100, 5, 5);
+
+        assertThat(ring.sum(100, 111)).isEqualTo(new MinuteRing.Counts(1, 0));
+    }
+
+    @Test
+    void sumCoversAtMostTheLastCapacityMinutes() {
+        MinuteRing ring = new MinuteRing(10);
+        ring.add(92, 1, 0);
+        ring.add(104, 1, 0);
+
+        // minutes before 95 cannot be told apart from ones the ring has moved past
+        assertThat(ring.sum(90, 105)).isEqualTo(new MinuteRing.Counts(1, 0));
+    }
+
+    @Test
+    void concurrentWritersLoseNoCounts() throws InterruptedException {
+        MinuteRing ring = new MinuteRing(60);
+        int threads = 8;
+        int perThread = 10_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    ring.add(1000 + i % 30, 1, 2);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(ring.sum(1000, 1030)).isEqualTo(new MinuteRing.Counts(threads * perThread, 2L * threads * perThread));
+    }
+
+    @Test
+    void windowIsSplitAtItsWholeMinutes() {
+        Instant start = Instant.parse("2026-01-15T10:00:30Z");
+        Instant end = Instant.parse("2026-01-15T10:05:10Z");
+
+        Instant wholeFrom = MinuteRing.wholeMinutesFrom(start, end);
+        assertThat(wholeFrom).isEqualTo(Instant.parse("2026-01-15T10:01:00Z"));
+        assertThat(MinuteRing.wholeMinutesTo(wholeFrom, end)).isEqualTo(Instant.parse("2026-01-15T10:05:00Z"));
+
+        Instant aligned = Instant.parse("2026-01-15T10:00:00Z");
+        assertThat(MinuteRing.wholeMinutesFrom(aligned, end)).isEqualTo(aligned);
+    }
+
+    @Test
+    void windowWithinOneMinuteHasNoWholeMinutes() {
+        Instant start = Instant.parse("2026-01-15T10:00:10Z");
+        Instant end = Instant.parse("2026-01-15T10:00:50Z");
+
+        Instant wholeFrom = MinuteRing.wholeMinutesFrom(start, end);
+        assertThat(wholeFrom).isEqualTo(end);
+        assertThat(MinuteRing.wholeMinutesTo(wholeFrom, end)).isEqualTo(end);
+    }
+
+    @Test
+    void rejectsEmptyCapacity() {
+        assertThatThrownBy(() -> new MinuteRing(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
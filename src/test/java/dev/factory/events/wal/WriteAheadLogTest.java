@@ -0,0 +1,164 @@
+package dev.factory.events.wal;
+
+import dev.factory.events.service.model.NormalizedEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WriteAheadLogTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+
+    @TempDir
+    Path dir;
+
+    private NormalizedEvent event(int i) {
+        Instant t = Instant.parse("2026-01-15T10:00:00.123456789Z");
+        return new NormalizedEvent("E-" + i, t.plusSeconds(i), t, "M-" + (i % 3), "F-1", "L-" + (i % 2), 1000 + i, i % 4);
+    }
+
+    private List<NormalizedEvent> events(int from, int to) {
+        return IntStream.range(from, to).mapToObj(this::event).toList();
+    }
+
+    private List<NormalizedEvent> readAll(WriteAheadLog wal, WalPosition from) throws IOException {
+        List<NormalizedEvent> all = new ArrayList<>();
+        WalBatch batch;
+        while (!(batch = wal.read(from, 7)).events().isEmpty()) {
+            all.addAll(batch.events());
+            from = batch.next();
+        }
+        return all;
+    }
+
+    @Test
+    void appendedEventsReadBackInOrder() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(dir, SEGMENT_SIZE)) {
+            wal.append(events(0, 3));
+            WalPosition head = wal.append(events(3, 5));
+
+            WalBatch batch = wal.read(WalPosition.START, 100);
+            assertThat(batch.events()).containsExactlyElementsOf(events(0, 5));
+            assertThat(batch.next()).isEqualTo(head);
+            assertThat(wal.read(batch.next(), 100).events()).isEmpty();
+        }
+    }
+
+    @Test
+    void rollsToNewSegmentsWhenFull() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(dir, SEGMENT_SIZE)) {
+            wal.append(events(0, 40));
+            wal.append(events(40, 60));
+
+            assertThat(wal.segmentCount()).isGreaterThan(1);
+            assertThat(readAll(wal, WalPosition.START)).containsExactlyElementsOf(events(0, 60));
+        }
+    }
+
+    @Test
+    void failedAppendAfterARollLeavesNothingBehind() throws IOException {
+        Instant t = Instant.parse("2026-01-15T10:00:00Z");
+        List<NormalizedEvent> failing = new ArrayList<>(events(3, 40));
+        // the events before it fill more than one segment; this one cannot be encoded
+        failing.add(new NormalizedEvent("E-" + "9".repeat(70_000), t, t, "M-1", "F-1", "L-1", 1000, 0));
+
+        try (WriteAheadLog wal = new WriteAheadLog(dir, SEGMENT_SIZE)) {
+            WalPosition head = wal.append(events(0, 3));
+            assertThatThrownBy(() -> wal.append(failing)).isInstanceOf(IllegalArgumentException.class);
+            assertThat(wal.head()).isEqualTo(head);
+            assertThat(wal.segmentCount()).isEqualTo(1);
+
+            wal.append(events(40, 42));
+            assertThat(readAll(wal, WalPosition.START))
+                    .containsExactlyElementsOf(Stream.concat(events(0, 3).stream(), events(40, 42).stream()).toList());
+        }
+        try (WriteAheadLog wal = new WriteAheadLog(dir, SEGMENT_SIZE)) {
+            assertThat(readAll(wal, WalPosition.START))
+                    .containsExactlyElementsOf(Stream.concat(events(0, 3).stream(), events(40, 42).stream()).toList());
+        }
+    }
+
+    @Test
+    void failedAppendIsNotRecoveredAfterARestart() throws IOException {
+        Instant t = Instant.parse("2026-01-15T10:00:00Z");
+        List<NormalizedEvent> failing = new ArrayList<>(events(3, 5));
+        failing.add(new NormalizedEvent("E-" + "9".repeat(70_000), t, t, "M-1", "F-1", "L-1", 1000, 0));
+
+        try (WriteAheadLog wal = new WriteAheadLog(dir, SEGMENT_SIZE)) {
+            wal.append(events(0, 3));
+            assertThatThrownBy(() -> wal.append(failing)).isInstanceOf(IllegalArgumentException.class);
+        }
+        try (WriteAheadLog wal = new WriteAheadLog(dir, SEGMENT_SIZE)) {
+            assertThat(readAll(wal, WalPosition.START)).containsExactlyElementsOf(events(0, 3));
+        }
+    }
+
+    @Test
+    void reopenResumesAfterLastRecordAndCheckpoint() throws IOException {
+        WalPosition checkpoint;
+        try (WriteAheadLog wal = new WriteAheadLog(dir, SEGMENT_SIZE)) {
+            wal.append(events(0, 30));
+            checkpoint = wal.read(WalPosition.START, 20).next();
+            wal.checkpoint(checkpoint);
+        }
+
+        try (WriteAheadLog wal = new WriteAheadLog(dir, SEGMENT_SIZE)) {
+            assertThat(wal.checkpoint()).isEqualTo(checkpoint);
+            wal.append(events(30, 35));
+            assertThat(readAll(wal, wal.checkpoint())).containsExactlyElementsOf(events(20, 35));
+        }
+    }
+
+    @Test
+    void tornTailIsDiscardedOnRecovery() throws IOException {
+        WalPosition head;
+        try (WriteAheadLog wal = new WriteAheadLog(dir, SEGMENT_SIZE)) {
+            head = wal.append(events(0, 3));
+        }
+
+        // a record whose header made it to disk but whose payload did not
+        Path segment;
+        try (var files = Files.list(dir)) {
+            segment = files.filter(p -> p.getFileName().toString().endsWith(".seg")).findFirst().orElseThrow();
+        }
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ByteBuffer torn = ByteBuffer.allocate(12).putInt(40).putInt(12345).putInt(7).flip();
+            ch.write(torn, head.offset());
+        }
+
+        try (WriteAheadLog wal = new WriteAheadLog(dir, SEGMENT_SIZE)) {
+            assertThat(wal.head()).isEqualTo(head);
+            wal.append(events(3, 4));
+            assertThat(readAll(wal, WalPosition.START)).containsExactlyElementsOf(events(0, 4));
+        }
+    }
+
+    @Test
+    void checkpointDeletesConsumedSegments() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(dir, SEGMENT_SIZE)) {
+            wal.append(events(0, 60));
+            int before = wal.segmentCount();
+            assertThat(wal.depthBytes()).isPositive();
+
+            WalPosition end = wal.read(WalPosition.START, Integer.MAX_VALUE).next();
+            wal.checkpoint(end);
+
+            assertThat(wal.segmentCount()).isLessThan(before).isEqualTo(1);
+            assertThat(wal.depthBytes()).isZero();
+        }
+    }
+}